@@ -62,9 +62,11 @@ public abstract class AbstractBuildParticipant implements IBuildParticipant, IEx
 	private static final String NAME = "name"; //$NON-NLS-1$
 	private static final String ID = "id"; //$NON-NLS-1$
 	private static final String ATTR_PRIORITY = "priority"; //$NON-NLS-1$
+	private static final String ATTR_CONCURRENT = "concurrent"; //$NON-NLS-1$
 	public static final int DEFAULT_PRIORITY = 50;
 
 	private int fPriority = DEFAULT_PRIORITY;
+	private boolean fConcurrent;
 	private Set<IContentType> contentTypes = Collections.emptySet();
 	private String fId;
 	private String fName;
@@ -100,6 +102,15 @@ public abstract class AbstractBuildParticipant implements IBuildParticipant, IEx
 		return false;
 	}
 
+	/**
+	 * Participants declare they can build several files at the same time through the 'concurrent' attribute of their
+	 * extension. They can't by default.
+	 */
+	public boolean isConcurrent()
+	{
+		return fConcurrent;
+	}
+
 	public boolean isEnabled(BuildType type)
 	{
 		if (isRequired())
@@ -383,6 +394,7 @@ public abstract class AbstractBuildParticipant implements IBuildParticipant, IEx
 						"Unable to parse priority value ({0}) as an integer, defaulting to 50.", rawPriority), e); //$NON-NLS-1$
 			}
 		}
+		this.fConcurrent = Boolean.parseBoolean(config.getAttribute(ATTR_CONCURRENT));
 		this.fId = config.getAttribute(ID);
 		this.fName = config.getAttribute(NAME);
 		this.contributor = config.getContributor().getName();
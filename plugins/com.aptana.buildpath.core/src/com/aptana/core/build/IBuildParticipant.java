@@ -125,6 +125,14 @@ public interface IBuildParticipant
 	 */
 	public boolean isRequired();
 
+	/**
+	 * Can {@link #buildFile(BuildContext, IProgressMonitor)} be called for different files at the same time? A given
+	 * file, and its {@link BuildContext}, is still only handled by one thread at a time.
+	 * 
+	 * @return
+	 */
+	public boolean isConcurrent();
+
 	/**
 	 * Returns the list of filters.
 	 * 
@@ -11,10 +11,23 @@ import java.net.URI;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
@@ -33,8 +46,10 @@ import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.MultiRule;
 
 import com.aptana.buildpath.core.BuildPathCorePlugin;
 import com.aptana.core.CorePlugin;
@@ -59,6 +74,27 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 
 	public static final String ID = "com.aptana.ide.core.unifiedBuilder"; //$NON-NLS-1$
 
+	/**
+	 * Concurrent participants only run on worker threads when each worker gets at least this many files
+	 */
+	private static final int MIN_FILES_PER_WORKER = 25;
+
+	/**
+	 * Number of files, per worker, that may be built by the concurrent participants ahead of the other ones. This bounds
+	 * the number of parsed files held in memory at once.
+	 */
+	private static final int FILES_IN_FLIGHT_PER_WORKER = 4;
+
+	/**
+	 * Problem markers are written for this many files at once, in a single workspace operation
+	 */
+	private static final int FILES_PER_MARKER_UPDATE = 50;
+
+	/**
+	 * Interval, in milliseconds, at which cancellation is checked while waiting on the workers
+	 */
+	private static final long PROGRESS_INTERVAL = 100;
+
 	public UnifiedBuilder()
 	{
 	}
@@ -319,7 +355,8 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 			return;
 		}
 
-		SubMonitor sub = SubMonitor.convert(monitor, 15 * files.size());
+		SubMonitor sub = SubMonitor.convert(monitor, 16 * files.size());
+		List<BuildContext> built = new ArrayList<BuildContext>();
 		for (IFileStore file : files)
 		{
 			BuildContext context = new FileStoreBuildContext(file);
@@ -330,6 +367,7 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 			sub.worked(2);
 
 			buildFile(context, filteredParticipants, sub.newChild(12));
+			addMarkerUpdate(built, context, sub.newChild(1));
 
 			// stop building if canceled
 			if (sub.isCanceled())
@@ -337,6 +375,7 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 				break;
 			}
 		}
+		updateMarkers(built, sub.newChild(files.size()));
 		sub.done();
 	}
 
@@ -419,7 +458,26 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 			return;
 		}
 
-		SubMonitor sub = SubMonitor.convert(monitor, 15 * files.size());
+		int workers = getWorkerCount(files.size());
+		if (workers > 1)
+		{
+			List<IBuildParticipant> concurrentParticipants = CollectionsUtil.filter(participants,
+					new IFilter<IBuildParticipant>()
+					{
+						public boolean include(IBuildParticipant item)
+						{
+							return item.isConcurrent();
+						}
+					});
+			if (!CollectionsUtil.isEmpty(concurrentParticipants))
+			{
+				doBuildFiles(participants, concurrentParticipants, files, workers, monitor);
+				return;
+			}
+		}
+
+		SubMonitor sub = SubMonitor.convert(monitor, 16 * files.size());
+		List<BuildContext> built = new ArrayList<BuildContext>();
 		for (IFile file : files)
 		{
 			BuildContext context = new BuildContext(file);
@@ -430,6 +488,7 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 			sub.worked(2);
 
 			buildFile(context, filteredParticipants, sub.newChild(12));
+			addMarkerUpdate(built, context, sub.newChild(1));
 
 			// stop building if canceled
 			if (sub.isCanceled())
@@ -437,9 +496,148 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 				break;
 			}
 		}
+		updateMarkers(built, sub.newChild(files.size()));
 		sub.done();
 	}
 
+	/**
+	 * Builds the files with the concurrent participants running on a pool of worker threads. Each file is parsed once,
+	 * by the worker that builds it, and its {@link BuildContext} is then handed back to the calling thread which runs
+	 * the remaining participants and records the problem markers. Since the concurrent participants of a file run
+	 * first, participants don't necessarily run in priority order anymore. A concurrent participant failing on a file
+	 * is logged, the remaining participants still build that file.
+	 * 
+	 * @param participants
+	 * @param concurrentParticipants
+	 * @param files
+	 * @param workers
+	 * @param monitor
+	 * @throws CoreException
+	 */
+	private void doBuildFiles(List<IBuildParticipant> participants,
+			final List<IBuildParticipant> concurrentParticipants, Collection<IFile> files, int workers,
+			IProgressMonitor monitor) throws CoreException
+	{
+		List<IBuildParticipant> otherParticipants = new ArrayList<IBuildParticipant>(participants);
+		otherParticipants.removeAll(concurrentParticipants);
+
+		SubMonitor sub = SubMonitor.convert(monitor, 14 * files.size());
+		final AtomicBoolean canceled = new AtomicBoolean();
+		final IProgressMonitor workerMonitor = new NullProgressMonitor()
+		{
+			@Override
+			public boolean isCanceled()
+			{
+				return canceled.get();
+			}
+		};
+
+		List<BuildContext> built = new ArrayList<BuildContext>();
+		ExecutorService pool = createWorkerPool(workers);
+		try
+		{
+			CompletionService<BuildContext> completionService = new ExecutorCompletionService<BuildContext>(pool);
+			Map<Future<BuildContext>, BuildContext> pending = new HashMap<Future<BuildContext>, BuildContext>();
+			Iterator<IFile> iterator = files.iterator();
+
+			while (iterator.hasNext() || !pending.isEmpty())
+			{
+				// keep a bounded number of files going through the workers
+				while (iterator.hasNext() && pending.size() < workers * FILES_IN_FLIGHT_PER_WORKER)
+				{
+					final BuildContext context = new BuildContext(iterator.next());
+					pending.put(completionService.submit(new Callable<BuildContext>()
+					{
+						public BuildContext call() throws Exception
+						{
+							List<IBuildParticipant> filteredParticipants = getBuildParticipantManager()
+									.filterParticipants(concurrentParticipants, context.getContentType());
+							buildFile(context, filteredParticipants, workerMonitor);
+							return context;
+						}
+					}), context);
+				}
+
+				if (sub.isCanceled())
+				{
+					canceled.set(true);
+					break;
+				}
+
+				Future<BuildContext> future = completionService.poll(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+				if (future == null)
+				{
+					continue;
+				}
+				BuildContext context = pending.remove(future);
+				sub.worked(2);
+
+				try
+				{
+					future.get();
+				}
+				catch (ExecutionException e)
+				{
+					// one failing participant shouldn't keep the others from building the file
+					IdeLog.logError(BuildPathCorePlugin.getDefault(),
+							MessageFormat.format("Error building {0}", context.getFile()), e.getCause()); //$NON-NLS-1$
+				}
+
+				List<IBuildParticipant> filteredParticipants = getBuildParticipantManager().filterParticipants(
+						otherParticipants, context.getContentType());
+				buildFile(context, filteredParticipants, sub.newChild(10));
+				addMarkerUpdate(built, context, sub.newChild(1));
+			}
+		}
+		catch (InterruptedException e)
+		{
+			canceled.set(true);
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			pool.shutdownNow();
+			updateMarkers(built, sub.newChild(files.size()));
+			sub.done();
+		}
+	}
+
+	/**
+	 * Returns the number of worker threads used to build the given number of files. A result of one or less means the
+	 * files are built on the calling thread.
+	 * 
+	 * @param fileCount
+	 * @return
+	 */
+	protected int getWorkerCount(int fileCount)
+	{
+		return Math.min(Runtime.getRuntime().availableProcessors(), fileCount / MIN_FILES_PER_WORKER);
+	}
+
+	/**
+	 * Creates a fixed size pool of daemon threads used to run concurrent build participants.
+	 * 
+	 * @param size
+	 * @return
+	 */
+	protected ExecutorService createWorkerPool(int size)
+	{
+		final String name = MessageFormat.format("{0} ({1})", ID, getProjectHandle().getName()); //$NON-NLS-1$
+
+		return Executors.newFixedThreadPool(size, new ThreadFactory()
+		{
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, MessageFormat.format("{0} - worker {1}", name, //$NON-NLS-1$
+						count.incrementAndGet()));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
 	/**
 	 * FIXME This is a holy hell of a mess! We map from IFiles to IFileStores, then filter on that, then map back! Can't
 	 * we make the IIndexFilterParticipants also operate on IFiles? It seems like the only impl does anyways.
@@ -514,7 +712,7 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 			return;
 		}
 
-		SubMonitor sub = SubMonitor.convert(monitor, 2 * participants.size());
+		SubMonitor sub = SubMonitor.convert(monitor, participants.size());
 		for (IBuildParticipant participant : participants)
 		{
 			participant.buildFile(context, sub.newChild(1));
@@ -525,31 +723,81 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 				break;
 			}
 		}
-		updateMarkers(context, sub.newChild(participants.size()));
 		sub.done();
 	}
 
-	private void updateMarkers(BuildContext context, IProgressMonitor monitor)
+	/**
+	 * Queue the problems found for a file, writing the markers of all queued files once there are enough of them.
+	 * 
+	 * @param built
+	 * @param context
+	 * @param monitor
+	 */
+	private void addMarkerUpdate(List<BuildContext> built, BuildContext context, IProgressMonitor monitor)
 	{
-		final IFile file = context.getFile();
-		final Map<String, Collection<IProblem>> itemsByType = context.getProblems();
-		if (CollectionsUtil.isEmpty(itemsByType))
+		if (context.getFile() == null || CollectionsUtil.isEmpty(context.getProblems()))
 		{
 			return;
 		}
+
+		built.add(context);
+		if (built.size() >= FILES_PER_MARKER_UPDATE)
+		{
+			updateMarkers(built, monitor);
+		}
+	}
+
+	/**
+	 * Writes the markers for the problems found in the given files and empties the list.
+	 * 
+	 * @param built
+	 * @param monitor
+	 */
+	private void updateMarkers(final List<BuildContext> built, IProgressMonitor monitor)
+	{
+		if (built.isEmpty())
+		{
+			return;
+		}
+
+		final List<IFile> files = new ArrayList<IFile>(built.size());
+		final List<Map<String, Collection<IProblem>>> problems = new ArrayList<Map<String, Collection<IProblem>>>(
+				built.size());
+		List<ISchedulingRule> rules = new ArrayList<ISchedulingRule>(built.size());
+		for (BuildContext context : built)
+		{
+			IFile file = context.getFile();
+			files.add(file);
+			problems.add(context.getProblems());
+
+			ISchedulingRule rule = getMarkerRule(file);
+			if (rule != null)
+			{
+				rules.add(rule);
+			}
+		}
+		built.clear();
+
 		// Performance fix: schedules the error handling as a single workspace update so that we don't trigger a
-		// bunch of resource updated events while problem markers are being added to the file.
+		// bunch of resource updated events while problem markers are being added to the files.
 		IWorkspaceRunnable runnable = new IWorkspaceRunnable()
 		{
 			public void run(IProgressMonitor monitor)
 			{
-				updateMarkers(file, itemsByType, monitor);
+				SubMonitor sub = SubMonitor.convert(monitor, files.size());
+				for (int i = 0; i < files.size(); i++)
+				{
+					updateMarkers(files.get(i), problems.get(i), sub.newChild(1));
+				}
+				sub.done();
 			}
 		};
 
 		try
 		{
-			ResourcesPlugin.getWorkspace().run(runnable, getMarkerRule(file), IWorkspace.AVOID_UPDATE, monitor);
+			ISchedulingRule rule = rules.isEmpty() ? null : MultiRule.combine(rules
+					.toArray(new ISchedulingRule[rules.size()]));
+			ResourcesPlugin.getWorkspace().run(runnable, rule, IWorkspace.AVOID_UPDATE, monitor);
 		}
 		catch (CoreException e)
 		{
@@ -22,8 +22,8 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileInfo;
@@ -36,8 +36,9 @@ import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
 
+import com.aptana.core.IFilter;
 import com.aptana.core.logging.IdeLog;
-import com.aptana.core.util.ExpiringMap;
+import com.aptana.core.util.ExpiringCache;
 import com.aptana.core.util.ProgressMonitorInterrupter;
 import com.aptana.core.util.ProgressMonitorInterrupter.InterruptDelegate;
 import com.aptana.core.util.StringUtil;
@@ -53,6 +54,10 @@ import com.aptana.ide.core.io.preferences.PreferenceUtils;
 public abstract class BaseConnectionFileManager implements IConnectionFileManager {
 
 	protected static final int CACHE_TTL = 60000; /* 1min */
+	protected static final int CACHE_SIZE = 4096;
+	// per-file caches grow to this many times the largest listing, so that a listing never evicts its own entries
+	protected static final int LISTING_CAPACITY_FACTOR = 2;
+	private static final int DIRECTORY_CACHE_SIZE = 256;
 
 	private static final int RETRIES_AFTER_FAILURE = 2;
 	protected static final char[] EMPTY_PASSWORD = StringUtil.EMPTY.toCharArray();
@@ -65,9 +70,17 @@ public abstract class BaseConnectionFileManager implements IConnectionFileManage
 	protected IPath basePath;
 	protected String authId;
 
-	private Map<IPath, ExtendedFileInfo> fileInfoCache;
-	private Map<IPath, ExtendedFileInfo[]> fileInfosCache;
-	
+	// read without holding the session lock, so that cached metadata never waits for a running remote operation
+	private volatile ExpiringCache<IPath, ExtendedFileInfo> fileInfoCache;
+	private volatile ExpiringCache<IPath, ExtendedFileInfo[]> fileInfosCache;
+
+	private final AtomicLong cacheHits = new AtomicLong();
+	private final AtomicLong cacheMisses = new AtomicLong();
+	private final AtomicLong remoteFetches = new AtomicLong();
+	private final AtomicLong remoteFetchTime = new AtomicLong();
+	private final AtomicLong sessionWaits = new AtomicLong();
+	private final AtomicLong sessionWaitTime = new AtomicLong();
+
 	private final InterruptDelegate interruptDelegate = new InterruptDelegate() {
 		public void interrupt() {
 			interruptOperation();
@@ -96,8 +109,8 @@ public abstract class BaseConnectionFileManager implements IConnectionFileManage
 			return;
 		}
 		if (enabled) {
-			fileInfoCache = new ExpiringMap<IPath, ExtendedFileInfo>(CACHE_TTL);
-			fileInfosCache = new ExpiringMap<IPath, ExtendedFileInfo[]>(CACHE_TTL);
+			fileInfoCache = new ExpiringCache<IPath, ExtendedFileInfo>(CACHE_SIZE, CACHE_TTL);
+			fileInfosCache = new ExpiringCache<IPath, ExtendedFileInfo[]>(DIRECTORY_CACHE_SIZE, CACHE_TTL);
 		} else {
 			fileInfoCache = null;
 			fileInfosCache = null;
@@ -107,7 +120,20 @@ public abstract class BaseConnectionFileManager implements IConnectionFileManage
 	/* (non-Javadoc)
 	 * @see com.aptana.core.io.vfs.IConnectionFileManager#fetchInfo(org.eclipse.core.runtime.IPath, int, org.eclipse.core.runtime.IProgressMonitor)
 	 */
-	public final synchronized IExtendedFileInfo fetchInfo(IPath path, int options, IProgressMonitor monitor) throws CoreException {
+	public final IExtendedFileInfo fetchInfo(IPath path, int options, IProgressMonitor monitor) throws CoreException {
+		ExtendedFileInfo fileInfo = getCachedFileInfo(path);
+		countLookup(fileInfo != null);
+		if (fileInfo != null) {
+			return (IExtendedFileInfo) fileInfo.clone();
+		}
+		long requestTime = System.currentTimeMillis();
+		synchronized (this) {
+			sessionAcquired(requestTime);
+			return fetchInfoLocked(path, options, monitor);
+		}
+	}
+
+	private IExtendedFileInfo fetchInfoLocked(IPath path, int options, IProgressMonitor monitor) throws CoreException {
 		monitor = Policy.monitorFor(monitor);
 		monitor.beginTask(MessageFormat.format(Messages.BaseConnectionFileManager_gethering_details, path.toPortableString()), 2);
 		try {
@@ -128,21 +154,36 @@ public abstract class BaseConnectionFileManager implements IConnectionFileManage
 	/* (non-Javadoc)
 	 * @see com.aptana.core.io.vfs.IConnectionFileManager#childNames(org.eclipse.core.runtime.IPath, int, org.eclipse.core.runtime.IProgressMonitor)
 	 */
-	public final synchronized String[] childNames(IPath path, int options, IProgressMonitor monitor) throws CoreException {
+	public final String[] childNames(IPath path, int options, IProgressMonitor monitor) throws CoreException {
+		ExtendedFileInfo[] fileInfos = getCachedFileInfos(path);
+		countLookup(fileInfos != null);
+		if (fileInfos != null) {
+			return getNames(fileInfos);
+		}
+		long requestTime = System.currentTimeMillis();
+		synchronized (this) {
+			sessionAcquired(requestTime);
+			return childNamesLocked(path, options, monitor);
+		}
+	}
+
+	private String[] childNamesLocked(IPath path, int options, IProgressMonitor monitor) throws CoreException {
 		monitor = Policy.monitorFor(monitor);
 		monitor.beginTask(MessageFormat.format(Messages.BaseConnectionFileManager_listing_directory, path.toPortableString()), 2);
 		try {
 			ProgressMonitorInterrupter.setCurrentThreadInterruptDelegate(interruptDelegate);
 			ExtendedFileInfo[] fileInfos = getCachedFileInfos(path);
 			if (fileInfos != null) {
-				List<String> list = new ArrayList<String>();
-				for (ExtendedFileInfo fileInfo : fileInfos) {
-					list.add(fileInfo.getName());
-				}
-				return list.toArray(new String[list.size()]);
+				return getNames(fileInfos);
 			}
 			testOrConnect(monitor);
-			String[] result =  listDirectory(basePath.append(path), monitor);
+			long startTime = System.currentTimeMillis();
+			String[] result;
+			try {
+				result = listDirectory(basePath.append(path), monitor);
+			} finally {
+				remoteFetched(startTime);
+			}
 			setLastOperationTime();
 			return result;
 		} catch (FileNotFoundException e) {
@@ -157,7 +198,20 @@ public abstract class BaseConnectionFileManager implements IConnectionFileManage
 	/* (non-Javadoc)
 	 * @see com.aptana.core.io.vfs.IConnectionFileManager#childInfos(org.eclipse.core.runtime.IPath, int, org.eclipse.core.runtime.IProgressMonitor)
 	 */
-	public final synchronized IExtendedFileInfo[] childInfos(IPath path, int options, IProgressMonitor monitor) throws CoreException {
+	public final IExtendedFileInfo[] childInfos(IPath path, int options, IProgressMonitor monitor) throws CoreException {
+		ExtendedFileInfo[] fileInfos = getCachedFileInfos(path);
+		countLookup(fileInfos != null);
+		if (fileInfos != null) {
+			return fileInfos.clone();
+		}
+		long requestTime = System.currentTimeMillis();
+		synchronized (this) {
+			sessionAcquired(requestTime);
+			return childInfosLocked(path, options, monitor);
+		}
+	}
+
+	private IExtendedFileInfo[] childInfosLocked(IPath path, int options, IProgressMonitor monitor) throws CoreException {
 		monitor = Policy.monitorFor(monitor);
 		monitor.beginTask(MessageFormat.format(Messages.BaseConnectionFileManager_gethering_details, path.toPortableString()), 2);
 		options = (options & IExtendedFileStore.DETAILED);
@@ -167,11 +221,13 @@ public abstract class BaseConnectionFileManager implements IConnectionFileManage
 			if (fileInfos == null) {
 				testOrConnect(monitor);
 				try {
-					fileInfos = cache(path, fetchFilesInternal(basePath.append(path), options, monitor));
+					fileInfos = fetchFilesInternal(basePath.append(path), options, monitor);
+					// entries are complete before they become visible to lock-free readers
 					for (ExtendedFileInfo fileInfo : fileInfos) {
 						postProcessFileInfo(fileInfo, basePath.append(path), options, monitor);
 						cache(path.append(fileInfo.getName()), fileInfo);
 					}
+					cache(path, fileInfos);
 					setLastOperationTime();
 				} catch (FileNotFoundException e) {
 					setLastOperationTime();
@@ -492,7 +548,12 @@ public abstract class BaseConnectionFileManager implements IConnectionFileManage
 		for (int trial = 0; trial <= RETRIES_AFTER_FAILURE; ++trial) {
 			try {
 				testOrConnect(force, Policy.subMonitorFor(monitor, 1));
-				return fetchFiles(path, options, monitor);
+				long startTime = System.currentTimeMillis();
+				try {
+					return fetchFiles(path, options, monitor);
+				} finally {
+					remoteFetched(startTime);
+				}
 			} catch (CoreException e) {
 				IStatus status = e.getStatus();
 				if (multiStatus == null) {
@@ -514,7 +575,12 @@ public abstract class BaseConnectionFileManager implements IConnectionFileManage
 		for (int trial = 0; trial <= RETRIES_AFTER_FAILURE; ++trial) {
 			try {
 				testOrConnect(force, Policy.subMonitorFor(monitor, 1));
-				return fetchFile(path, options, monitor);
+				long startTime = System.currentTimeMillis();
+				try {
+					return fetchFile(path, options, monitor);
+				} finally {
+					remoteFetched(startTime);
+				}
 			} catch (CoreException e) {
 				IStatus status = e.getStatus();
 				if (multiStatus == null) {
@@ -619,52 +685,114 @@ public abstract class BaseConnectionFileManager implements IConnectionFileManage
 	}
 
 	private final ExtendedFileInfo getCachedFileInfo(IPath path) {
-		return (fileInfoCache != null) ? fileInfoCache.get(path) : null;
+		ExpiringCache<IPath, ExtendedFileInfo> cache = fileInfoCache;
+		return (cache != null) ? cache.get(path) : null;
 	}
 
 	private final ExtendedFileInfo[] getCachedFileInfos(IPath path) {
-		return (fileInfosCache !=  null) ? fileInfosCache.get(path) : null;
+		ExpiringCache<IPath, ExtendedFileInfo[]> cache = fileInfosCache;
+		return (cache != null) ? cache.get(path) : null;
 	}
 
 	private final ExtendedFileInfo cache(IPath path, ExtendedFileInfo fileInfo) {
-		if (fileInfoCache != null && fileInfo.exists()) {
-			fileInfoCache.put(path, fileInfo);
+		ExpiringCache<IPath, ExtendedFileInfo> cache = fileInfoCache;
+		if (cache != null && fileInfo.exists()) {
+			cache.put(path, fileInfo);
 		}
 		return fileInfo;
 	}
 
 	private final ExtendedFileInfo[] cache(IPath path, ExtendedFileInfo[] fileInfos) {
-		if (fileInfosCache != null) {
-			fileInfosCache.put(path, fileInfos);
+		ExpiringCache<IPath, ExtendedFileInfo[]> cache = fileInfosCache;
+		if (cache != null) {
+			cache.put(path, fileInfos);
 		}
 		return fileInfos;
 	}
 
-	protected void clearCache(IPath path) {
-		int segments = path.segmentCount();
-		if (fileInfoCache !=  null) {
-			for (IPath p : new ArrayList<IPath>(fileInfoCache.keySet())) {
-				if (p.segmentCount() >= segments && path.matchingFirstSegments(p) == segments) {
-					fileInfoCache.remove(p);
-				}
+	/**
+	 * Invalidates the cached details of the path and everything below it, as well as those of its parent directory,
+	 * whose listing and modification time change with it.
+	 * 
+	 * @param path
+	 */
+	protected void clearCache(final IPath path) {
+		final int segments = path.segmentCount();
+		IFilter<IPath> filter = new IFilter<IPath>() {
+			public boolean include(IPath p) {
+				return p.segmentCount() >= segments && path.matchingFirstSegments(p) == segments;
+			}
+		};
+		IPath parentPath = (segments > 0) ? path.removeLastSegments(1) : null;
+		ExpiringCache<IPath, ExtendedFileInfo> infoCache = fileInfoCache;
+		if (infoCache != null) {
+			infoCache.removeAll(filter);
+			if (parentPath != null) {
+				infoCache.remove(parentPath);
 			}
 		}
-		if (fileInfosCache != null) {
-			for (IPath p : new ArrayList<IPath>(fileInfosCache.keySet())) {
-				if (p.segmentCount() >= segments && path.matchingFirstSegments(p) == segments) {
-					fileInfosCache.remove(p);
-				}
+		ExpiringCache<IPath, ExtendedFileInfo[]> infosCache = fileInfosCache;
+		if (infosCache != null) {
+			infosCache.removeAll(filter);
+			if (parentPath != null) {
+				infosCache.remove(parentPath);
 			}
 		}
 	}
 
 	protected final void cleanup() {
-		if (fileInfoCache != null) {
-			fileInfoCache.clear();
+		ExpiringCache<IPath, ExtendedFileInfo> infoCache = fileInfoCache;
+		if (infoCache != null) {
+			infoCache.clear();
+		}
+		ExpiringCache<IPath, ExtendedFileInfo[]> infosCache = fileInfosCache;
+		if (infosCache != null) {
+			infosCache.clear();
+		}
+	}
+
+	/**
+	 * Returns the cache and latency counters of this connection.
+	 * 
+	 * @return
+	 */
+	public ConnectionStatistics getStatistics() {
+		long evictions = 0;
+		ExpiringCache<IPath, ExtendedFileInfo> infoCache = fileInfoCache;
+		if (infoCache != null) {
+			evictions += infoCache.getEvictions();
+		}
+		ExpiringCache<IPath, ExtendedFileInfo[]> infosCache = fileInfosCache;
+		if (infosCache != null) {
+			evictions += infosCache.getEvictions();
 		}
-		if (fileInfosCache != null) {
-			fileInfosCache.clear();
+		return new ConnectionStatistics(cacheHits.get(), cacheMisses.get(), evictions, remoteFetches.get(),
+				remoteFetchTime.get(), sessionWaits.get(), sessionWaitTime.get());
+	}
+
+	private void countLookup(boolean hit) {
+		(hit ? cacheHits : cacheMisses).incrementAndGet();
+	}
+
+	private void sessionAcquired(long requestTime) {
+		long waitTime = System.currentTimeMillis() - requestTime;
+		if (waitTime > 0) {
+			sessionWaits.incrementAndGet();
+			sessionWaitTime.addAndGet(waitTime);
+		}
+	}
+
+	private void remoteFetched(long startTime) {
+		remoteFetches.incrementAndGet();
+		remoteFetchTime.addAndGet(System.currentTimeMillis() - startTime);
+	}
+
+	private static String[] getNames(ExtendedFileInfo[] fileInfos) {
+		List<String> list = new ArrayList<String>();
+		for (ExtendedFileInfo fileInfo : fileInfos) {
+			list.add(fileInfo.getName());
 		}
+		return list.toArray(new String[list.size()]);
 	}
 	
 	protected void interruptOperation() {
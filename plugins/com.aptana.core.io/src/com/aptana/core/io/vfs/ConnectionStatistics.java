@@ -0,0 +1,114 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.aptana.core.io.vfs;
+
+import java.text.MessageFormat;
+
+/**
+ * A snapshot of the metadata cache and latency counters of a connection file manager.
+ * 
+ * @see BaseConnectionFileManager#getStatistics()
+ */
+public final class ConnectionStatistics {
+
+	private final long cacheHits;
+	private final long cacheMisses;
+	private final long cacheEvictions;
+	private final long remoteFetches;
+	private final long remoteFetchTime;
+	private final long sessionWaits;
+	private final long sessionWaitTime;
+
+	/* package */ ConnectionStatistics(long cacheHits, long cacheMisses, long cacheEvictions, long remoteFetches,
+			long remoteFetchTime, long sessionWaits, long sessionWaitTime) {
+		this.cacheHits = cacheHits;
+		this.cacheMisses = cacheMisses;
+		this.cacheEvictions = cacheEvictions;
+		this.remoteFetches = remoteFetches;
+		this.remoteFetchTime = remoteFetchTime;
+		this.sessionWaits = sessionWaits;
+		this.sessionWaitTime = sessionWaitTime;
+	}
+
+	public long getCacheHits() {
+		return cacheHits;
+	}
+
+	public long getCacheMisses() {
+		return cacheMisses;
+	}
+
+	/**
+	 * Returns the number of cache entries dropped because they expired or the cache was full.
+	 * 
+	 * @return
+	 */
+	public long getCacheEvictions() {
+		return cacheEvictions;
+	}
+
+	/**
+	 * Returns the ratio of metadata lookups answered from the cache, between 0 and 1.
+	 * 
+	 * @return
+	 */
+	public double getCacheHitRate() {
+		long lookups = cacheHits + cacheMisses;
+		return (lookups > 0) ? (double) cacheHits / lookups : 0;
+	}
+
+	/**
+	 * Returns the number of file info and directory listing requests sent to the server.
+	 * 
+	 * @return
+	 */
+	public long getRemoteFetches() {
+		return remoteFetches;
+	}
+
+	/**
+	 * Returns the total time spent in remote fetches, in milliseconds.
+	 * 
+	 * @return
+	 */
+	public long getRemoteFetchTime() {
+		return remoteFetchTime;
+	}
+
+	public long getAverageRemoteFetchTime() {
+		return (remoteFetches > 0) ? remoteFetchTime / remoteFetches : 0;
+	}
+
+	/**
+	 * Returns how many operations had to wait for the session.
+	 * 
+	 * @return
+	 */
+	public long getSessionWaits() {
+		return sessionWaits;
+	}
+
+	/**
+	 * Returns the total time operations waited for the session, in milliseconds.
+	 * 
+	 * @return
+	 */
+	public long getSessionWaitTime() {
+		return sessionWaitTime;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return MessageFormat.format("cache hits={0} misses={1} evictions={2} hit rate={3,number,percent}, remote fetches={4} avg={5}ms, session waits={6} total={7}ms", //$NON-NLS-1$
+				cacheHits, cacheMisses, cacheEvictions, getCacheHitRate(), remoteFetches, getAverageRemoteFetchTime(), sessionWaits, sessionWaitTime);
+	}
+}
@@ -0,0 +1,24 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.aptana.core.io.vfs;
+
+/**
+ * Implemented by connection file managers whose streams may be read and written by several threads at once, typically
+ * because each stream runs over its own pooled connection.
+ */
+public interface IConcurrentConnectionFileManager extends IConnectionFileManager {
+
+	/**
+	 * Returns the maximum number of input/output streams worth keeping open at the same time.
+	 * 
+	 * @return a number greater than or equal to 1
+	 */
+	public int getMaxConcurrentTransfers();
+
+}
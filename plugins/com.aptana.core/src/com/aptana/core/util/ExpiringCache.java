@@ -0,0 +1,162 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.aptana.core.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.aptana.core.IFilter;
+
+/**
+ * A thread-safe cache bounded both in size and in entry lifetime. Unlike {@link ExpiringMap}, expired entries are swept
+ * proactively while the cache is in use, and the least recently used entries are evicted once the maximum size is
+ * reached. The maximum size may grow while the cache is in use. Evictions are counted.
+ */
+public class ExpiringCache<K, V> {
+
+	private int maxSize;
+	private final long maxObjectTTL;
+	private final LinkedHashMap<K, Item<V>> map;
+
+	private long nextSweepTime;
+	private long evictions;
+
+	/**
+	 * @param maxSize
+	 *            maximum number of entries
+	 * @param maxObjectTTL
+	 *            time to live of an entry in milliseconds
+	 */
+	public ExpiringCache(int maxSize, long maxObjectTTL) {
+		this.maxSize = Math.max(1, maxSize);
+		this.maxObjectTTL = maxObjectTTL;
+		this.map = new LinkedHashMap<K, Item<V>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Item<V>> eldest) {
+				if (size() > ExpiringCache.this.maxSize) {
+					++evictions;
+					return true;
+				}
+				return false;
+			}
+		};
+		this.nextSweepTime = System.currentTimeMillis() + maxObjectTTL;
+	}
+
+	/**
+	 * Returns the cached value, or <code>null</code> if there is none or it has expired.
+	 * 
+	 * @param key
+	 * @return
+	 */
+	public synchronized V get(K key) {
+		long now = System.currentTimeMillis();
+		sweepIfDue(now);
+		Item<V> item = map.get(key);
+		if (item != null && item.expirationTime < now) {
+			map.remove(key);
+			++evictions;
+			item = null;
+		}
+		return (item != null) ? item.object : null;
+	}
+
+	/**
+	 * Raises the maximum size to at least the given number of entries. The maximum size is never lowered.
+	 * 
+	 * @param minSize
+	 */
+	public synchronized void ensureCapacity(int minSize) {
+		if (minSize > maxSize) {
+			maxSize = minSize;
+		}
+	}
+
+	public synchronized void put(K key, V value) {
+		long now = System.currentTimeMillis();
+		sweepIfDue(now);
+		map.put(key, new Item<V>(value, now + maxObjectTTL));
+	}
+
+	public synchronized V remove(K key) {
+		Item<V> item = map.remove(key);
+		return (item != null) ? item.object : null;
+	}
+
+	/**
+	 * Removes all entries whose key is accepted by the filter.
+	 * 
+	 * @param filter
+	 * @return the number of entries removed
+	 */
+	public synchronized int removeAll(IFilter<K> filter) {
+		int count = 0;
+		for (Iterator<K> i = map.keySet().iterator(); i.hasNext();) {
+			if (filter.include(i.next())) {
+				i.remove();
+				++count;
+			}
+		}
+		return count;
+	}
+
+	public synchronized void clear() {
+		map.clear();
+	}
+
+	/**
+	 * Returns the number of live entries.
+	 * 
+	 * @return
+	 */
+	public synchronized int size() {
+		sweep(System.currentTimeMillis());
+		return map.size();
+	}
+
+	/**
+	 * Returns the number of entries dropped because they expired or the cache was full.
+	 * 
+	 * @return
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	private void sweepIfDue(long now) {
+		if (now >= nextSweepTime) {
+			sweep(now);
+		}
+	}
+
+	private void sweep(long now) {
+		for (Iterator<Item<V>> i = map.values().iterator(); i.hasNext();) {
+			if (i.next().expirationTime < now) {
+				i.remove();
+				++evictions;
+			}
+		}
+		// at most half a lifetime of expired entries is kept around
+		nextSweepTime = now + Math.max(maxObjectTTL / 2, 1);
+	}
+
+	private static final class Item<V> {
+
+		private final V object;
+		private final long expirationTime;
+
+		private Item(V object, long expirationTime) {
+			this.object = object;
+			this.expirationTime = expirationTime;
+		}
+	}
+}
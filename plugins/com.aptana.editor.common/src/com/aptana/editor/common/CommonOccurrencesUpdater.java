@@ -7,7 +7,9 @@
  */
 package com.aptana.editor.common;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -63,6 +65,16 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 		 * @see org.eclipse.jface.text.IDocumentListener#documentChanged(org.eclipse.jface.text.DocumentEvent)
 		 */
 		public void documentChanged(DocumentEvent event) {
+			IdentifierOccurrenceIndex index = occurrenceIndex;
+
+			if (index != null) {
+				if (editor.isMarkingOccurrences()) {
+					index.documentChanged(event);
+				} else {
+					// nothing reads the index while occurrences aren't marked
+					occurrenceIndex = null;
+				}
+			}
 		}
 
 		/*
@@ -73,6 +85,8 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 			if (oldInput != null) {
 				oldInput.removeDocumentListener(this);
 			}
+
+			occurrenceIndex = null;
 		}
 
 		/*
@@ -82,6 +96,7 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 		public void inputDocumentChanged(IDocument oldInput, IDocument newInput) {
 			if (newInput != null) {
 				newInput.addDocumentListener(this);
+				occurrenceIndex = createOccurrenceIndex(newInput);
 			}
 		}
 
@@ -98,6 +113,7 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 
 			if (document != null) {
 				document.addDocumentListener(this);
+				occurrenceIndex = createOccurrenceIndex(document);
 			}
 		}
 
@@ -115,6 +131,8 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 			if (document != null) {
 				document.removeDocumentListener(this);
 			}
+
+			occurrenceIndex = null;
 		}
 
 	}
@@ -123,13 +141,16 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 		private IDocument document;
 		private ITextSelection selection;
 		private IAnnotationModel model;
+		private IdentifierOccurrenceIndex index;
 
-		public FindOccurrencesJob(IDocument document, ITextSelection selection, IAnnotationModel model) {
+		public FindOccurrencesJob(IDocument document, ITextSelection selection, IAnnotationModel model,
+				IdentifierOccurrenceIndex index) {
 			super(Messages.CommonOccurrencesUpdater_Mark_Word_Occurrences);
 
 			this.document = document;
 			this.selection = selection;
 			this.model = model;
+			this.index = index;
 		}
 
 		/**
@@ -190,51 +211,44 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 		 */
 		@Override
 		protected IStatus run(IProgressMonitor monitor) {
-			IStatus status = Status.OK_STATUS;
-
-			// start with an empty map in case we need to delete existing markers later
-			Map<Annotation, Position> annotationMap = new HashMap<Annotation, Position>();
+			// start with an empty list in case we need to delete existing markers later
+			List<Position> positions = new ArrayList<Position>();
 
 			if (editor.isMarkingOccurrences()) {
 				// find a "word" to search using the current selection
 				String word = getWord();
 
 				if (word != null && word.length() > 0) {
-					String source = document.get();
-					Pattern wordPattern = createWordPattern(word);
-					Matcher matcher = wordPattern.matcher(source);
-
-					while (matcher.find()) {
-						if (monitor.isCanceled()) {
-							status = Status.CANCEL_STATUS;
-							break;
+					if (index != null && IdentifierOccurrenceIndex.isIdentifier(word)) {
+						positions = index.getOccurrences(word);
+					} else {
+						// not a plain identifier, search the text
+						String source = document.get();
+						Pattern wordPattern = createWordPattern(word);
+						Matcher matcher = wordPattern.matcher(source);
+
+						while (matcher.find()) {
+							if (monitor.isCanceled()) {
+								return Status.CANCEL_STATUS;
+							}
+
+							int start = matcher.start();
+
+							positions.add(new Position(start, matcher.end() - start));
 						}
-
-						int start = matcher.start();
-						int length = matcher.end() - start;
-
-						// @formatter:off
-						annotationMap.put(new Annotation(ANNOTION_ID, false, ANNOTION_DESCRIPTION), new Position(start, length));
-						// @formatter:on
 					}
 				}
 			}
 
-			if (status == Status.OK_STATUS) {
-				// NOTE: We always update the annotation model even if we didn't find a word so we can clear the
-				// current occurrences
-				synchronized (getAnnotationModelLock(model)) {
-					if (model instanceof IAnnotationModelExtension) {
-						// @formatter:off
-						((IAnnotationModelExtension) model).replaceAnnotations(annotations, annotationMap);
-						// @formatter:on
-					}
-
-					annotations = annotationMap.keySet().toArray(new Annotation[annotationMap.keySet().size()]);
-				}
+			if (monitor.isCanceled()) {
+				return Status.CANCEL_STATUS;
 			}
 
-			return status;
+			// NOTE: We always update the annotation model even if we didn't find a word so we can clear the
+			// current occurrences
+			updateAnnotationModel(model, positions);
+
+			return Status.OK_STATUS;
 		}
 	}
 
@@ -247,6 +261,7 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 	private Annotation[] annotations;
 	private FindOccurrencesJob findOccurrencesJob;
 	private CancelerJob cancelerJob;
+	private volatile IdentifierOccurrenceIndex occurrenceIndex;
 
 	/**
 	 * CommonOccurrencesUpdater
@@ -257,6 +272,17 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 		this.editor = editor;
 	}
 
+	/**
+	 * Indexes the identifiers of the document, as long as occurrences are marked. Otherwise returns null, so the index
+	 * is neither built nor kept up to date for nothing.
+	 * 
+	 * @param document
+	 * @return
+	 */
+	private IdentifierOccurrenceIndex createOccurrenceIndex(IDocument document) {
+		return editor.isMarkingOccurrences() ? new IdentifierOccurrenceIndex(document) : null;
+	}
+
 	/**
 	 * createWordPattern
 	 * 
@@ -279,6 +305,64 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 		return Pattern.compile(regexSource);
 	}
 
+	/**
+	 * Brings the occurrence annotations in line with the given positions. Annotations already at one of the positions
+	 * are left alone, so only the occurrences that appeared or went away are added or removed.
+	 * 
+	 * @param model
+	 * @param positions
+	 */
+	private void updateAnnotationModel(IAnnotationModel model, List<Position> positions) {
+		synchronized (getAnnotationModelLock(model)) {
+			// the positions we need, by offset and length
+			Map<Position, Position> wanted = new HashMap<Position, Position>();
+
+			for (Position position : positions) {
+				wanted.put(position, position);
+			}
+
+			List<Annotation> kept = new ArrayList<Annotation>();
+			List<Annotation> removed = new ArrayList<Annotation>();
+
+			if (annotations != null) {
+				for (Annotation annotation : annotations) {
+					Position current = model.getPosition(annotation);
+
+					if (current != null && !current.isDeleted()
+							&& wanted.remove(new Position(current.getOffset(), current.getLength())) != null) {
+						kept.add(annotation);
+					} else {
+						removed.add(annotation);
+					}
+				}
+			}
+
+			Map<Annotation, Position> added = new HashMap<Annotation, Position>();
+
+			for (Position position : wanted.keySet()) {
+				added.put(new Annotation(ANNOTION_ID, false, ANNOTION_DESCRIPTION), position);
+			}
+
+			if (!removed.isEmpty() || !added.isEmpty()) {
+				if (model instanceof IAnnotationModelExtension) {
+					// @formatter:off
+					((IAnnotationModelExtension) model).replaceAnnotations(removed.toArray(new Annotation[removed.size()]), added);
+					// @formatter:on
+				} else {
+					for (Annotation annotation : removed) {
+						model.removeAnnotation(annotation);
+					}
+					for (Map.Entry<Annotation, Position> entry : added.entrySet()) {
+						model.addAnnotation(entry.getKey(), entry.getValue());
+					}
+				}
+			}
+
+			kept.addAll(added.keySet());
+			annotations = kept.toArray(new Annotation[kept.size()]);
+		}
+	}
+
 	/**
 	 * getAnnotationModel
 	 * 
@@ -430,14 +514,8 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 		final String property = event.getProperty();
 
 		if (IPreferenceConstants.EDITOR_MARK_OCCURRENCES.equals(property)) {
-			boolean newBooleanValue = false;
-			Object newValue = event.getNewValue();
-
-			if (newValue != null) {
-				newBooleanValue = Boolean.valueOf(newValue.toString()).booleanValue();
-			}
-
-			if (newBooleanValue) {
+			// the event may come from a store the editor's value overrides, so go by the editor
+			if (editor.isMarkingOccurrences()) {
 				install();
 			} else {
 				uninstall();
@@ -490,7 +568,7 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 			IAnnotationModel annotationModel = getAnnotationModel();
 
 			if (document != null && annotationModel != null) {
-				findOccurrencesJob = new FindOccurrencesJob(document, textSelection, annotationModel);
+				findOccurrencesJob = new FindOccurrencesJob(document, textSelection, annotationModel, occurrenceIndex);
 				findOccurrencesJob.schedule();
 			}
 		}
@@ -0,0 +1,221 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Position;
+
+/**
+ * Index of the identifiers in a document, by name. Identifiers are runs of unicode identifier characters, the same
+ * definition the occurrences updater uses to pick the word under the caret. The index is built once and then kept
+ * current from document events by rescanning only the lines an edit touched, so finding the occurrences of a name is a
+ * hash lookup instead of a scan of the whole document.
+ */
+/* package */class IdentifierOccurrenceIndex {
+
+	private static final class Identifier {
+		private final String name;
+		private int offset;
+
+		private Identifier(String name, int offset) {
+			this.name = name;
+			this.offset = offset;
+		}
+	}
+
+	/**
+	 * All identifiers, sorted by offset
+	 */
+	private final List<Identifier> identifiers = new ArrayList<Identifier>();
+	private final Map<String, List<Identifier>> identifiersByName = new HashMap<String, List<Identifier>>();
+
+	/**
+	 * IdentifierOccurrenceIndex
+	 * 
+	 * @param document
+	 */
+	/* package */IdentifierOccurrenceIndex(IDocument document) {
+		scan(document.get(), 0, identifiers);
+		for (Identifier identifier : identifiers) {
+			addByName(identifier);
+		}
+	}
+
+	/**
+	 * Determines if the text is a single identifier, that is if it can be looked up in this index.
+	 * 
+	 * @param text
+	 * @return
+	 */
+	/* package */static boolean isIdentifier(String text) {
+		if (text == null || text.length() == 0) {
+			return false;
+		}
+		for (int i = 0; i < text.length(); i++) {
+			if (!Character.isUnicodeIdentifierPart(text.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the positions of all occurrences of the given identifier, in document order.
+	 * 
+	 * @param name
+	 * @return
+	 */
+	/* package */synchronized List<Position> getOccurrences(String name) {
+		List<Identifier> list = identifiersByName.get(name);
+		if (list == null) {
+			return new ArrayList<Position>(0);
+		}
+		List<Position> positions = new ArrayList<Position>(list.size());
+		for (Identifier identifier : list) {
+			positions.add(new Position(identifier.offset, name.length()));
+		}
+		return positions;
+	}
+
+	/* package */synchronized int size() {
+		return identifiers.size();
+	}
+
+	/**
+	 * Brings the index up to date with a change that has been applied to the document. Only the lines touched by the
+	 * change are rescanned, identifiers after them are shifted.
+	 * 
+	 * @param event
+	 */
+	/* package */synchronized void documentChanged(DocumentEvent event) {
+		IDocument document = event.getDocument();
+		int offset = event.getOffset();
+		int newLength = (event.getText() == null) ? 0 : event.getText().length();
+		int delta = newLength - event.getLength();
+
+		// identifiers never span lines, so whole lines are rescanned
+		int start;
+		int end;
+		String text;
+		try {
+			start = document.getLineInformationOfOffset(offset).getOffset();
+			IRegion lastLine = document.getLineInformationOfOffset(offset + newLength);
+			end = lastLine.getOffset() + lastLine.getLength();
+			text = document.get(start, end - start);
+		} catch (BadLocationException e) {
+			// out of sync with the document, start over
+			rebuild(document);
+			return;
+		}
+
+		// drop the identifiers found in the old text of these lines, and shift the ones after them
+		int oldEnd = end - delta;
+		int first = indexOf(start);
+		int last = indexOf(oldEnd);
+		List<Identifier> removed = identifiers.subList(first, last);
+		for (Identifier identifier : removed) {
+			removeByName(identifier);
+		}
+		removed.clear();
+		if (delta != 0) {
+			for (int i = first; i < identifiers.size(); i++) {
+				identifiers.get(i).offset += delta;
+			}
+		}
+
+		// and insert the ones in the new text
+		List<Identifier> added = new ArrayList<Identifier>();
+		scan(text, start, added);
+		identifiers.addAll(first, added);
+		for (Identifier identifier : added) {
+			addByName(identifier);
+		}
+	}
+
+	private void rebuild(IDocument document) {
+		identifiers.clear();
+		identifiersByName.clear();
+		scan(document.get(), 0, identifiers);
+		for (Identifier identifier : identifiers) {
+			addByName(identifier);
+		}
+	}
+
+	/**
+	 * Returns the index of the first identifier at or after the given offset.
+	 * 
+	 * @param offset
+	 * @return
+	 */
+	private int indexOf(int offset) {
+		int low = 0;
+		int high = identifiers.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (identifiers.get(middle).offset < offset) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	private void addByName(Identifier identifier) {
+		List<Identifier> list = identifiersByName.get(identifier.name);
+		if (list == null) {
+			list = new ArrayList<Identifier>(4);
+			identifiersByName.put(identifier.name, list);
+		}
+		// keep document order, new identifiers mostly go at the end
+		int index = list.size();
+		while (index > 0 && list.get(index - 1).offset > identifier.offset) {
+			index--;
+		}
+		list.add(index, identifier);
+	}
+
+	private void removeByName(Identifier identifier) {
+		List<Identifier> list = identifiersByName.get(identifier.name);
+		if (list != null) {
+			for (int i = list.size() - 1; i >= 0; i--) {
+				if (list.get(i) == identifier) {
+					list.remove(i);
+					break;
+				}
+			}
+			if (list.isEmpty()) {
+				identifiersByName.remove(identifier.name);
+			}
+		}
+	}
+
+	private static void scan(String text, int baseOffset, List<Identifier> result) {
+		int length = text.length();
+		int i = 0;
+		while (i < length) {
+			if (Character.isUnicodeIdentifierPart(text.charAt(i))) {
+				int start = i;
+				while (i < length && Character.isUnicodeIdentifierPart(text.charAt(i))) {
+					i++;
+				}
+				result.add(new Identifier(text.substring(start, i), baseOffset + start));
+			} else {
+				i++;
+			}
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common.contentassist;
+
+/**
+ * Holds an immutable in-memory copy of a language's bundled metadata (elements, attributes, properties, etc.), so
+ * validators and content assist can look it up without querying the metadata index. The copy is read from the index on
+ * first use and replaced as a whole: {@link #reset()} drops it when the {@link MetadataLoader} rewrites the index, and
+ * a copy that was still being read at that point is never kept.
+ * 
+ * @param <T>
+ *            the type of the metadata copy
+ */
+public abstract class MetadataCache<T>
+{
+	private final Object lock = new Object();
+	private volatile T metadata;
+	private int generation;
+
+	/**
+	 * Returns the current copy of the metadata, reading it from the index if there's none yet.
+	 * 
+	 * @return
+	 */
+	public T get()
+	{
+		T result = metadata;
+		if (result != null)
+		{
+			return result;
+		}
+
+		int loadedGeneration;
+		synchronized (lock)
+		{
+			if (metadata != null)
+			{
+				return metadata;
+			}
+			loadedGeneration = generation;
+		}
+
+		// Read outside the lock, lookups shouldn't wait on each other. At worst two threads both read the index once.
+		result = load();
+		synchronized (lock)
+		{
+			if (loadedGeneration == generation && isLoaded(result))
+			{
+				metadata = result;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Drops the current copy, the next {@link #get()} reads the index again. Call this once the metadata index has been
+	 * rewritten.
+	 */
+	public void reset()
+	{
+		synchronized (lock)
+		{
+			generation++;
+			metadata = null;
+		}
+	}
+
+	/**
+	 * Reads the metadata from the index.
+	 * 
+	 * @return
+	 */
+	protected abstract T load();
+
+	/**
+	 * Whether the metadata read from the index can be kept. An empty index hasn't been written by the metadata loader
+	 * yet, so what was read from it should be used this once and then read again.
+	 * 
+	 * @param metadata
+	 * @return
+	 */
+	protected abstract boolean isLoaded(T metadata);
+}
@@ -328,6 +328,11 @@ public class ValidationPreferencePage extends PreferencePage implements IWorkben
 			return wrapped.isRequired();
 		}
 
+		public boolean isConcurrent()
+		{
+			return wrapped.isConcurrent();
+		}
+
 		public List<String> getFilters()
 		{
 			if (filters != null)
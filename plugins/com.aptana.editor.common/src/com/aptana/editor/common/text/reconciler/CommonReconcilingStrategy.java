@@ -42,7 +42,11 @@ import com.aptana.core.util.ResourceUtil;
 import com.aptana.editor.common.AbstractThemeableEditor;
 import com.aptana.editor.common.CommonEditorPlugin;
 import com.aptana.editor.common.ICommonAnnotationModel;
+import com.aptana.editor.common.IDebugScopes;
 import com.aptana.editor.common.util.EditorUtil;
+import com.aptana.parsing.ParseState;
+import com.aptana.parsing.ParserPoolFactory;
+import com.aptana.parsing.ast.IParseRootNode;
 
 public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconcilingStrategyExtension,
 		IBatchReconcilingStrategy, IDisposableReconcilingStrategy
@@ -67,6 +71,12 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 	 * Code Folding.
 	 */
 	private Map<ProjectionAnnotation, Position> fPositions = new HashMap<ProjectionAnnotation, Position>();
+	/**
+	 * The source and AST of the last parse without errors. They are handed to the parser on the next reconcile so it
+	 * can re-parse only the part of the document that was edited since.
+	 */
+	private String fLastSource;
+	private IParseRootNode fLastAST;
 
 	private IPropertyListener propertyListener = new IPropertyListener()
 	{
@@ -93,6 +103,7 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 			fEditor = null;
 		}
 		fPositions.clear();
+		clearLastAST();
 	}
 
 	protected AbstractThemeableEditor getEditor()
@@ -107,18 +118,19 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 
 	public void reconcile(IRegion partition)
 	{
-		// we can't do incremental yet
+		// edits are found by the parser itself, by comparing the document with the last parsed source
 	}
 
 	public void reconcile(DirtyRegion dirtyRegion, IRegion subRegion)
 	{
-		// we can't do incremental yet
+		// edits are found by the parser itself, by comparing the document with the last parsed source
 	}
 
 	public void setDocument(IDocument document)
 	{
 		folder = createFoldingComputer(document);
 		fDocument = document;
+		clearLastAST();
 	}
 
 	protected IFoldingComputer createFoldingComputer(IDocument document)
@@ -218,6 +230,9 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 	{
 		SubMonitor monitor = SubMonitor.convert(fMonitor, 100);
 
+		// parse first, so the outline, folding and the participants all get the cached AST
+		parseDocument();
+
 		if (fEditor != null)
 		{
 			fEditor.refreshOutline();
@@ -247,6 +262,52 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 		runParticipants(monitor.newChild(75));
 	}
 
+	/**
+	 * Parses the document, providing the result of the previous reconcile so that parsers that support it only
+	 * re-parse what was edited since. The new result is kept for the next reconcile when it has no errors, otherwise
+	 * the previous one is kept instead. Parsers never modify the previous result, so it can be shared with the parse
+	 * cache and whoever got it from there.
+	 */
+	private void parseDocument()
+	{
+		if (fEditor == null || fDocument == null)
+		{
+			return;
+		}
+
+		String source = fDocument.get();
+		ParseState parseState = new ParseState(source);
+
+		if (fLastAST != null)
+		{
+			parseState.setPreviousParseResult(fLastSource, fLastAST);
+		}
+
+		try
+		{
+			IParseRootNode ast = ParserPoolFactory.parse(fEditor.getContentType(), parseState);
+
+			if (ast != null && parseState.getErrors().isEmpty())
+			{
+				fLastSource = source;
+				fLastAST = ast;
+			}
+		}
+		catch (Exception e)
+		{
+			IdeLog.logTrace(CommonEditorPlugin.getDefault(), e.getMessage(), e, IDebugScopes.AST);
+		}
+	}
+
+	/**
+	 * Forget the result of the last parse, the next reconcile will parse the whole document.
+	 */
+	private void clearLastAST()
+	{
+		fLastSource = null;
+		fLastAST = null;
+	}
+
 	/**
 	 * Runs through the {@link IBuildParticipant}s that apply to this editor's underlying file.
 	 * 
@@ -142,6 +142,9 @@ public class CSSMetadataLoader extends MetadataLoader<CSSMetadataReader>
 		{
 			IdeLog.logError(CSSPlugin.getDefault(), e);
 		}
+
+		// Content assist reads the metadata from memory, make it pick up the new index
+		CSSIndexQueryHelper.resetMetadata();
 	}
 
 	protected IndexManager getIndexManager()
@@ -9,15 +9,14 @@ package com.aptana.editor.css.contentassist;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import com.aptana.core.logging.IdeLog;
-import com.aptana.core.util.CollectionsUtil;
-import com.aptana.core.util.ObjectUtil;
-import com.aptana.core.util.StringUtil;
+import com.aptana.editor.common.contentassist.MetadataCache;
 import com.aptana.editor.css.CSSPlugin;
 import com.aptana.editor.css.contentassist.index.CSSIndexReader;
 import com.aptana.editor.css.contentassist.index.ICSSIndexConstants;
@@ -31,6 +30,55 @@ import com.aptana.index.core.IndexPlugin;
 
 public class CSSIndexQueryHelper
 {
+	private static final MetadataCache<CSSMetadata> METADATA = new MetadataCache<CSSMetadata>()
+	{
+		@Override
+		protected CSSMetadata load()
+		{
+			CSSIndexReader reader = new CSSIndexReader();
+			Index index = getIndex();
+			try
+			{
+				return new CSSMetadata(reader.getElements(index), reader.getProperties(index),
+						reader.getPseudoClasses(index), reader.getPseudoElements(index));
+			}
+			catch (IOException e)
+			{
+				IdeLog.logError(CSSPlugin.getDefault(), e);
+			}
+			List<ElementElement> noElements = Collections.emptyList();
+			List<PropertyElement> noProperties = Collections.emptyList();
+			List<PseudoClassElement> noPseudoClasses = Collections.emptyList();
+			List<PseudoElementElement> noPseudoElements = Collections.emptyList();
+			return new CSSMetadata(noElements, noProperties, noPseudoClasses, noPseudoElements);
+		}
+
+		@Override
+		protected boolean isLoaded(CSSMetadata metadata)
+		{
+			return !metadata.isEmpty();
+		}
+	};
+
+	/**
+	 * Returns the in-memory copy of the CSS metadata. It's read from the metadata index once and shared, so use this
+	 * rather than querying the index for elements, properties, pseudo-classes or pseudo-elements.
+	 * 
+	 * @return
+	 */
+	public static CSSMetadata getMetadata()
+	{
+		return METADATA.get();
+	}
+
+	/**
+	 * Drops the in-memory copy of the CSS metadata. Called when the metadata index has been rebuilt.
+	 */
+	public static void resetMetadata()
+	{
+		METADATA.reset();
+	}
+
 	/**
 	 * getIndex
 	 * 
@@ -95,25 +143,7 @@ public class CSSIndexQueryHelper
 	 */
 	public ElementElement getElement(String name)
 	{
-		if (StringUtil.isEmpty(name))
-		{
-			return null;
-		}
-
-		try
-		{
-			List<ElementElement> elements = _reader.getElements(getIndex(), name);
-			if (!CollectionsUtil.isEmpty(elements))
-			{
-				return elements.get(0);
-			}
-		}
-		catch (IOException e)
-		{
-			IdeLog.logError(CSSPlugin.getDefault(), e);
-		}
-
-		return null;
+		return getMetadata().getElement(name);
 	}
 
 	/**
@@ -123,16 +153,7 @@ public class CSSIndexQueryHelper
 	 */
 	public List<ElementElement> getElements()
 	{
-		try
-		{
-			return _reader.getElements(getIndex());
-		}
-		catch (IOException e)
-		{
-			IdeLog.logError(CSSPlugin.getDefault(), e);
-		}
-
-		return Collections.emptyList();
+		return new ArrayList<ElementElement>(getMetadata().getElements());
 	}
 
 	/**
@@ -153,16 +174,7 @@ public class CSSIndexQueryHelper
 	 */
 	public List<PropertyElement> getProperties()
 	{
-		try
-		{
-			return _reader.getProperties(getIndex());
-		}
-		catch (IOException e)
-		{
-			IdeLog.logError(CSSPlugin.getDefault(), e);
-		}
-
-		return Collections.emptyList();
+		return new ArrayList<PropertyElement>(getMetadata().getProperties());
 	}
 
 	/**
@@ -172,25 +184,7 @@ public class CSSIndexQueryHelper
 	 */
 	public PropertyElement getProperty(String name)
 	{
-		if (StringUtil.isEmpty(name))
-		{
-			return null;
-		}
-
-		try
-		{
-			List<PropertyElement> properties = _reader.getProperties(getIndex(), name);
-			if (!CollectionsUtil.isEmpty(properties))
-			{
-				return properties.get(0);
-			}
-		}
-		catch (IOException e)
-		{
-			IdeLog.logError(CSSPlugin.getDefault(), e);
-		}
-
-		return null;
+		return getMetadata().getProperty(name);
 	}
 
 	/**
@@ -200,28 +194,12 @@ public class CSSIndexQueryHelper
 	 */
 	public List<PseudoClassElement> getPseudoClasses()
 	{
-		try
-		{
-			return _reader.getPseudoClasses(getIndex());
-		}
-		catch (IOException e)
-		{
-			IdeLog.logError(CSSPlugin.getDefault(), e);
-		}
-
-		return Collections.emptyList();
+		return new ArrayList<PseudoClassElement>(getMetadata().getPseudoClasses());
 	}
 
 	public PseudoClassElement getPseudoClass(String name)
 	{
-		for (PseudoClassElement pce : getPseudoClasses())
-		{
-			if (ObjectUtil.areEqual(name, pce.getName()))
-			{
-				return pce;
-			}
-		}
-		return null;
+		return getMetadata().getPseudoClass(name);
 	}
 
 	/**
@@ -231,27 +209,11 @@ public class CSSIndexQueryHelper
 	 */
 	public List<PseudoElementElement> getPseudoElements()
 	{
-		try
-		{
-			return _reader.getPseudoElements(getIndex());
-		}
-		catch (IOException e)
-		{
-			IdeLog.logError(CSSPlugin.getDefault(), e);
-		}
-
-		return Collections.emptyList();
+		return new ArrayList<PseudoElementElement>(getMetadata().getPseudoElements());
 	}
 
 	public PseudoElementElement getPseudoElement(String name)
 	{
-		for (PseudoElementElement pee : getPseudoElements())
-		{
-			if (ObjectUtil.areEqual(name, pee.getName()))
-			{
-				return pee;
-			}
-		}
-		return null;
+		return getMetadata().getPseudoElement(name);
 	}
 }
@@ -0,0 +1,183 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.css.contentassist;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.aptana.core.util.StringUtil;
+import com.aptana.editor.css.contentassist.model.ElementElement;
+import com.aptana.editor.css.contentassist.model.PropertyElement;
+import com.aptana.editor.css.contentassist.model.PseudoClassElement;
+import com.aptana.editor.css.contentassist.model.PseudoElementElement;
+
+/**
+ * An immutable copy of the CSS metadata index, with the elements, properties, pseudo-classes and pseudo-elements
+ * hashed by name. Shared by all threads, see {@link CSSIndexQueryHelper#getMetadata()}. Element and property names
+ * are matched ignoring case, as the index queries do.
+ */
+public final class CSSMetadata
+{
+	private final List<ElementElement> elements;
+	private final List<PropertyElement> properties;
+	private final List<PseudoClassElement> pseudoClasses;
+	private final List<PseudoElementElement> pseudoElements;
+
+	private final Map<String, ElementElement> elementsByName;
+	private final Map<String, PropertyElement> propertiesByName;
+	private final Map<String, PseudoClassElement> pseudoClassesByName;
+	private final Map<String, PseudoElementElement> pseudoElementsByName;
+
+	CSSMetadata(List<ElementElement> elements, List<PropertyElement> properties,
+			List<PseudoClassElement> pseudoClasses, List<PseudoElementElement> pseudoElements)
+	{
+		this.elements = Collections.unmodifiableList(elements);
+		this.properties = Collections.unmodifiableList(properties);
+		this.pseudoClasses = Collections.unmodifiableList(pseudoClasses);
+		this.pseudoElements = Collections.unmodifiableList(pseudoElements);
+
+		elementsByName = new HashMap<String, ElementElement>(elements.size());
+		for (ElementElement element : elements)
+		{
+			String name = element.getName().toLowerCase();
+			if (!elementsByName.containsKey(name))
+			{
+				elementsByName.put(name, element);
+			}
+		}
+		propertiesByName = new HashMap<String, PropertyElement>(properties.size());
+		for (PropertyElement property : properties)
+		{
+			String name = property.getName().toLowerCase();
+			if (!propertiesByName.containsKey(name))
+			{
+				propertiesByName.put(name, property);
+			}
+		}
+		pseudoClassesByName = new HashMap<String, PseudoClassElement>(pseudoClasses.size());
+		for (PseudoClassElement pseudoClass : pseudoClasses)
+		{
+			if (!pseudoClassesByName.containsKey(pseudoClass.getName()))
+			{
+				pseudoClassesByName.put(pseudoClass.getName(), pseudoClass);
+			}
+		}
+		pseudoElementsByName = new HashMap<String, PseudoElementElement>(pseudoElements.size());
+		for (PseudoElementElement pseudoElement : pseudoElements)
+		{
+			if (!pseudoElementsByName.containsKey(pseudoElement.getName()))
+			{
+				pseudoElementsByName.put(pseudoElement.getName(), pseudoElement);
+			}
+		}
+	}
+
+	/**
+	 * Whether there's any metadata at all. There's none until the metadata index has been written.
+	 * 
+	 * @return
+	 */
+	public boolean isEmpty()
+	{
+		return elements.isEmpty() && properties.isEmpty();
+	}
+
+	/**
+	 * getElements
+	 * 
+	 * @return
+	 */
+	public List<ElementElement> getElements()
+	{
+		return elements;
+	}
+
+	/**
+	 * getElement
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public ElementElement getElement(String name)
+	{
+		if (StringUtil.isEmpty(name))
+		{
+			return null;
+		}
+		return elementsByName.get(name.toLowerCase());
+	}
+
+	/**
+	 * getProperties
+	 * 
+	 * @return
+	 */
+	public List<PropertyElement> getProperties()
+	{
+		return properties;
+	}
+
+	/**
+	 * getProperty
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public PropertyElement getProperty(String name)
+	{
+		if (StringUtil.isEmpty(name))
+		{
+			return null;
+		}
+		return propertiesByName.get(name.toLowerCase());
+	}
+
+	/**
+	 * getPseudoClasses
+	 * 
+	 * @return
+	 */
+	public List<PseudoClassElement> getPseudoClasses()
+	{
+		return pseudoClasses;
+	}
+
+	/**
+	 * getPseudoClass
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public PseudoClassElement getPseudoClass(String name)
+	{
+		return pseudoClassesByName.get(name);
+	}
+
+	/**
+	 * getPseudoElements
+	 * 
+	 * @return
+	 */
+	public List<PseudoElementElement> getPseudoElements()
+	{
+		return pseudoElements;
+	}
+
+	/**
+	 * getPseudoElement
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public PseudoElementElement getPseudoElement(String name)
+	{
+		return pseudoElementsByName.get(name);
+	}
+}
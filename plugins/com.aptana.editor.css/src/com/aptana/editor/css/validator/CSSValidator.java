@@ -8,36 +8,39 @@
 package com.aptana.editor.css.validator;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Field;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import org.apache.commons.lang.StringEscapeUtils;
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.w3c.css.css.StyleReport;
-import org.w3c.css.css.StyleReportFactory;
 import org.w3c.css.css.StyleSheet;
+import org.w3c.css.css.StyleSheetGenerator;
 import org.w3c.css.css.StyleSheetParser;
+import org.w3c.css.parser.CssError;
+import org.w3c.css.parser.CssParseException;
+import org.w3c.css.parser.Errors;
 import org.w3c.css.properties.PropertiesLoader;
 import org.w3c.css.util.ApplContext;
+import org.w3c.css.util.InvalidParamException;
 import org.w3c.css.util.Utf8Properties;
+import org.w3c.css.util.Warning;
+import org.w3c.css.util.Warnings;
 
 import com.aptana.core.build.AbstractBuildParticipant;
 import com.aptana.core.build.IProblem;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.IOUtil;
+import com.aptana.core.util.StringUtil;
 import com.aptana.core.util.URLEncoder;
 import com.aptana.editor.css.CSSPlugin;
 import com.aptana.editor.css.ICSSConstants;
@@ -56,21 +59,14 @@ public class CSSValidator extends AbstractBuildParticipant
 	private static final String PROFILES_CONFIG_FILE = "AptanaCSSProfiles.properties"; //$NON-NLS-1$
 
 	/**
-	 * error pattern
+	 * runs of whitespace in error messages
 	 */
-	private static final Pattern ERROR_PATTERN = Pattern.compile(
-			"<(error)>(.*?)</\\1>", Pattern.MULTILINE | Pattern.DOTALL); //$NON-NLS-1$
-	/**
-	 * warning pattern
-	 */
-	private static final Pattern WARNING_PATTERN = Pattern.compile(
-			"<(warning)>(.*?)</\\1>", Pattern.MULTILINE | Pattern.DOTALL); //$NON-NLS-1$
+	private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s+"); //$NON-NLS-1$
 
 	/**
-	 * properties pattern
+	 * the level of the warnings that get reported
 	 */
-	private static final Pattern PROPERTIES_PATTERN = Pattern.compile(
-			"<([-A-Za-z0-9_:]+)>(.*?)</\\1>", Pattern.MULTILINE | Pattern.DOTALL); //$NON-NLS-1$
+	private static final int WARNING_LEVEL = 2;
 
 	// CSS3 properties that the validator doesn't recognize yet and need to be ignored
 	@SuppressWarnings("nls")
@@ -96,93 +92,47 @@ public class CSSValidator extends AbstractBuildParticipant
 			".*writing-mode.*", ".*zoom.*", ".*Parse Error.*", ".*-webkit-.*", ".*rgba.*is not a .* value.*",
 			".*Too many values or values are not recognized.*" };
 
-	static
-	{
-		loadAptanaCSSProfile();
-	}
+	/**
+	 * Matches any error message that mentions one of the CSS3 properties or at-rules above, or one of the
+	 * automatically filtered messages
+	 */
+	private static final Pattern CSS3_PATTERN = createCSS3Pattern();
 
-	private void processErrorsInReport(String report, String sourcePath, List<IProblem> items, List<String> filters)
-	{
-		int offset = 0;
-		String elementName = "errorlist"; //$NON-NLS-1$
-		String startTag = MessageFormat.format("<{0}>", elementName); //$NON-NLS-1$
-		String endTag = MessageFormat.format("</{0}>", elementName); //$NON-NLS-1$
+	/**
+	 * The spec links the validator's own report adds in front of property errors, keyed by property name
+	 */
+	private static final Utf8Properties PROPERTY_URLS = new Utf8Properties();
 
-		while (offset < report.length())
+	/**
+	 * The validator context is only used for one parse at a time, and building it loads the message bundles, so
+	 * each thread keeps its own copy across files
+	 */
+	private static final ThreadLocal<ApplContext> CONTEXT = new ThreadLocal<ApplContext>()
+	{
+		@Override
+		protected ApplContext initialValue()
 		{
-			int errorListStart = report.indexOf(startTag, offset);
-			if (errorListStart == -1)
-			{
-				break;
-			}
-
-			// advances past the start tag
-			errorListStart += startTag.length();
-
-			// gets the URI
-			int uriStart = report.indexOf("<uri>", errorListStart) + "<uri>".length(); //$NON-NLS-1$ //$NON-NLS-2$
-			int uriEnd = report.indexOf("</uri>", uriStart); //$NON-NLS-1$
-			String uri = new String(report.substring(uriStart, uriEnd));
-
-			// finds the end of this list
-			int errorListEnd = report.indexOf(endTag, errorListStart);
-
-			// checks if the uri matches the source
-			if (uri != null && URLEncoder.encode(uri, null, null).equals(sourcePath))
-			{
-				// extracts the error list
-				String listString = new String(report.substring(errorListStart, errorListEnd));
-				// finds the errors
-				String[] errors = getContent(ERROR_PATTERN, listString);
-				// add errors
-				addErrors(errors, sourcePath, items, filters);
-			}
-
-			// advances past the current error list
-			offset = errorListEnd + endTag.length();
+			ApplContext ac = new ApplContext("en"); //$NON-NLS-1$
+			ac.setProfile(APTANA_PROFILE);
+			return ac;
 		}
-	}
+	};
 
-	private void processWarningsInReport(String report, String sourcePath, List<IProblem> items, List<String> filters)
+	static
 	{
-		int offset = 0;
-		String elementName = "warninglist"; //$NON-NLS-1$
-		String startTag = MessageFormat.format("<{0}>", elementName); //$NON-NLS-1$
-		String endTag = MessageFormat.format("</{0}>", elementName); //$NON-NLS-1$
-
-		while (offset < report.length())
-		{
-			int warningListStart = report.indexOf(startTag, offset);
-			if (warningListStart == -1)
-			{
-				break;
-			}
-
-			// advances past the start tag
-			warningListStart += startTag.length();
-
-			// gets the URI
-			int uriStart = report.indexOf("<uri>", warningListStart) + "<uri>".length(); //$NON-NLS-1$ //$NON-NLS-2$
-			int uriEnd = report.indexOf("</uri>", uriStart); //$NON-NLS-1$
-			String uri = new String(report.substring(uriStart, uriEnd));
-
-			// finds the end of this list
-			int warningListEnd = report.indexOf(endTag, warningListStart);
+		loadAptanaCSSProfile();
+		loadPropertyURLs();
+	}
 
-			if (uri != null && URLEncoder.encode(uri, null, null).equals(sourcePath))
-			{
-				// extracts the warning list
-				String listString = new String(report.substring(warningListStart, warningListEnd));
-				// finds the warnings
-				String[] warnings = getContent(WARNING_PATTERN, listString);
-				// adds errors
-				addWarnings(warnings, sourcePath, items, filters);
-			}
+	/**
+	 * The user filters the filter pattern was last compiled from
+	 */
+	private List<String> fFilters;
 
-			// advance past the current warning list
-			offset = warningListEnd + endTag.length();
-		}
-	}
+	/**
+	 * The compiled user filters
+	 */
+	private List<Pattern> fFilterPatterns;
 
 	/**
 	 * Loads our CSS profile.
@@ -232,130 +182,126 @@ public class CSSValidator extends AbstractBuildParticipant
 	}
 
 	/**
-	 * Adds the CSS errors.
-	 * 
-	 * @param errors
-	 *            the array of errors
-	 * @param sourcePath
-	 *            the source path
-	 * @param manager
-	 *            the validation manager
-	 * @param items
-	 *            the list that stores the added validation items
+	 * Loads the spec links the W3C report generator uses for property errors.
 	 */
-	private void addErrors(String[] errors, String sourcePath, List<IProblem> items, List<String> filters)
+	private static void loadPropertyURLs()
 	{
-		Map<String, String> map;
-		for (String error : errors)
+		InputStream urlsStream = StyleSheetGenerator.class.getResourceAsStream("urls.properties"); //$NON-NLS-1$
+		if (urlsStream == null)
 		{
-			map = getProperties(error);
-
-			int lineNumber = Integer.parseInt(map.get("line")); //$NON-NLS-1$
-			String message = map.get("message"); //$NON-NLS-1$
-			String context = map.get("context"); //$NON-NLS-1$
-			String property = map.get("property"); //$NON-NLS-1$
-			String skippedstring = map.get("skippedstring"); //$NON-NLS-1$
-			String errorsubtype = map.get("errorsubtype"); //$NON-NLS-1$
-
-			// Don't attempt to add errors if there are already errors on this line
-			if (hasErrorOrWarningOnLine(items, lineNumber))
-			{
-				continue;
-			}
-
-			if (message == null)
+			return;
+		}
+		try
+		{
+			PROPERTY_URLS.load(urlsStream);
+		}
+		catch (IOException e)
+		{
+			IdeLog.logError(CSSPlugin.getDefault(), e);
+		}
+		finally
+		{
+			try
 			{
-				if (property == null)
-				{
-					property = context;
-				}
-				if (skippedstring.equals("[empty string]")) //$NON-NLS-1$
-				{
-					// alters the text a bit
-					skippedstring = "no properties defined"; //$NON-NLS-1$
-				}
-				message = MessageFormat.format("{0} : {1} for {2}", errorsubtype, skippedstring, property); //$NON-NLS-1$
+				urlsStream.close();
 			}
-			message = StringEscapeUtils.unescapeHtml(message);
-			message = message.replaceAll("\\s+", " "); //$NON-NLS-1$ //$NON-NLS-2$
-
-			if (!isIgnored(message, filters) && !containsCSS3Property(message) && !containsCSS3AtRule(message)
-					&& !isFiltered(message))
+			catch (IOException e)
 			{
-				// there is no info on the line offset or the length of the errored text
-				items.add(createError(message, lineNumber, 0, 0, sourcePath));
 			}
 		}
 	}
 
-	private static boolean isIgnored(String message, List<String> expressions)
+	private static Pattern createCSS3Pattern()
 	{
-		for (String expression : expressions)
+		List<String> expressions = new ArrayList<String>();
+		for (String property : CSS3_PROPERTIES)
 		{
-			if (message.matches(expression))
-			{
-				return true;
-			}
+			expressions.add(Pattern.quote("Property " + property)); //$NON-NLS-1$
 		}
-
-		return false;
+		for (String rule : CSS3_AT_RULES)
+		{
+			expressions.add(Pattern.quote(MessageFormat.format("the at-rule {0} is not implemented", rule))); //$NON-NLS-1$
+		}
+		for (String filtered : FILTERED_MESSAGES)
+		{
+			expressions.add(Pattern.quote(filtered));
+		}
+		return Pattern.compile(StringUtil.join("|", expressions)); //$NON-NLS-1$
 	}
 
 	/**
-	 * Adds the CSS warnings.
+	 * Compiles the given filters. Each filter is compiled on its own, so the group numbers its backreferences use stay
+	 * valid. Filters that are not valid expressions are logged and skipped.
 	 * 
-	 * @param warnings
-	 *            the array of warnings
-	 * @param sourcePath
-	 *            the source path
-	 * @param items
-	 *            the list that stores the added validation items
 	 * @param filters
+	 *            the user filters
+	 * @return the compiled filters
 	 */
-	private void addWarnings(String[] warnings, String sourcePath, List<IProblem> items, List<String> filters)
+	/* package */static List<Pattern> createFilterPatterns(List<String> filters)
 	{
-		Map<String, String> map;
-		String last = ""; //$NON-NLS-1$
-		for (String warning : warnings)
+		List<Pattern> patterns = new ArrayList<Pattern>(filters.size());
+		for (String filter : filters)
 		{
-			map = getProperties(warning);
-
-			int lineNumber = Integer.parseInt(map.get("line")); //$NON-NLS-1$
-			String level = map.get("level"); //$NON-NLS-1$
-			String message = MessageFormat.format("{0} (level {1})", map.get("message"), level); //$NON-NLS-1$ //$NON-NLS-2$
-			String context = map.get("context"); //$NON-NLS-1$
-
-			// Don't attempt to add warnings if there are already errors on this line
-			if (hasErrorOrWarningOnLine(items, lineNumber))
+			try
 			{
-				continue;
+				patterns.add(Pattern.compile(filter));
 			}
-
-			String hash = MessageFormat.format("{0}:{1}:{2}:{3}", lineNumber, level, message, context); //$NON-NLS-1$
-			// guards against duplicate warnings
-			if (!last.equals(hash) && !isIgnored(message, filters))
+			catch (PatternSyntaxException e)
 			{
-				items.add(createWarning(message, lineNumber, 0, 0, sourcePath));
+				IdeLog.logWarning(CSSPlugin.getDefault(), e.getMessage());
 			}
+		}
+		return patterns;
+	}
 
-			last = hash;
+	private synchronized List<Pattern> getFilterPatterns()
+	{
+		List<String> filters = getFilters();
+		if (!filters.equals(fFilters))
+		{
+			fFilterPatterns = createFilterPatterns(filters);
+			fFilters = filters;
 		}
+		return fFilterPatterns;
 	}
 
 	/**
-	 * Gets the validation report from the validator.
+	 * Returns whether one of the filters matches the whole message.
+	 * 
+	 * @param message
+	 * @param filterPatterns
+	 * @return
+	 */
+	/* package */static boolean isIgnored(String message, List<Pattern> filterPatterns)
+	{
+		for (Pattern pattern : filterPatterns)
+		{
+			if (pattern.matcher(message).matches())
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Parses the source with the W3C validator and collects its errors and warnings straight from the parsed style
+	 * sheet.
 	 * 
 	 * @param source
 	 *            the source text
 	 * @param path
 	 *            the source path
-	 * @return the report
+	 * @param filterPatterns
+	 *            the compiled user filters
+	 * @return the problems found
 	 */
-	private static String getReport(String source, URI path)
+	private List<IProblem> validate(String source, URI path, List<Pattern> filterPatterns)
 	{
+		List<IProblem> items = new ArrayList<IProblem>();
+
+		ApplContext ac = CONTEXT.get();
 		StyleSheetParser parser = new StyleSheetParser();
-		ApplContext ac = new ApplContext("en"); //$NON-NLS-1$
-		ac.setProfile(APTANA_PROFILE);
 		try
 		{
 			parser.parseStyleElement(ac, new ByteArrayInputStream(source.getBytes(IOUtil.UTF_8)), null, null,
@@ -373,91 +319,194 @@ public class CSSValidator extends AbstractBuildParticipant
 
 		StyleSheet stylesheet = parser.getStyleSheet();
 		stylesheet.findConflicts(ac);
-		StyleReport report = StyleReportFactory.getStyleReport(ac, "Title", stylesheet, "soap12", 2); //$NON-NLS-1$ //$NON-NLS-2$
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		report.print(new PrintWriter(out));
-		return out.toString().replaceAll("m:", ""); //$NON-NLS-1$ //$NON-NLS-2$
+
+		String sourcePath = path.toString();
+		addErrors(stylesheet.getErrors(), ac, sourcePath, items, filterPatterns);
+		addWarnings(stylesheet.getWarnings(), sourcePath, items, filterPatterns);
+		return items;
 	}
 
 	/**
-	 * Gets the list of contents in a source text that matches the specific pattern.
+	 * Adds the CSS errors.
 	 * 
-	 * @param pattern
-	 *            the pattern to match
-	 * @param source
-	 *            the source text
-	 * @return the matching contents in an array
+	 * @param errors
+	 *            the errors the validator found
+	 * @param ac
+	 *            the validator context
+	 * @param sourcePath
+	 *            the source path
+	 * @param items
+	 *            the list that stores the added validation items
+	 * @param filterPatterns
+	 *            the compiled user filters
 	 */
-	private static String[] getContent(Pattern pattern, String source)
+	private void addErrors(Errors errors, ApplContext ac, String sourcePath, List<IProblem> items,
+			List<Pattern> filterPatterns)
 	{
-		Matcher matcher = pattern.matcher(source);
-		List<String> result = new ArrayList<String>();
-		while (matcher.find())
+		for (CssError error : errors.getErrors())
 		{
-			result.add(matcher.group(2));
+			if (!isFromSource(error.getSourceFile(), sourcePath))
+			{
+				continue;
+			}
+
+			int lineNumber = error.getLine();
+
+			// Don't attempt to add errors if there are already errors on this line
+			if (hasErrorOrWarningOnLine(items, lineNumber))
+			{
+				continue;
+			}
+
+			String message = getErrorMessage(error.getException(), ac);
+			message = StringEscapeUtils.unescapeHtml(message);
+			message = WHITESPACE_PATTERN.matcher(message.trim()).replaceAll(" "); //$NON-NLS-1$
+
+			if (!isIgnored(message, filterPatterns) && !CSS3_PATTERN.matcher(message).find())
+			{
+				// there is no info on the line offset or the length of the errored text
+				items.add(createError(message, lineNumber, 0, 0, sourcePath));
+			}
 		}
-		return result.toArray(new String[result.size()]);
 	}
 
 	/**
-	 * Gets the properties map from a source text.
+	 * Adds the CSS warnings.
 	 * 
-	 * @param source
-	 *            the source text
-	 * @return the properties map
+	 * @param warnings
+	 *            the warnings the validator found
+	 * @param sourcePath
+	 *            the source path
+	 * @param items
+	 *            the list that stores the added validation items
+	 * @param filterPatterns
+	 *            the compiled user filters
 	 */
-	private static Map<String, String> getProperties(String source)
+	private void addWarnings(Warnings warnings, String sourcePath, List<IProblem> items, List<Pattern> filterPatterns)
 	{
-		Matcher matcher = PROPERTIES_PATTERN.matcher(source);
-		Map<String, String> result = new HashMap<String, String>();
-		String key, value;
-		while (matcher.find())
+		if (warnings.getWarningCount() == 0)
 		{
-			key = matcher.group(1);
-			value = matcher.group(2);
-			if (value != null)
+			return;
+		}
+		warnings.sort();
+
+		String last = StringUtil.EMPTY;
+		for (Warning warning : warnings.getWarnings())
+		{
+			if (warning.getLevel() > WARNING_LEVEL || !isFromSource(warning.getSourceFile(), sourcePath))
 			{
-				value = value.trim();
+				continue;
 			}
-			result.put(key, value);
+
+			int lineNumber = warning.getLine();
+			int level = warning.getLevel();
+			String message = MessageFormat.format("{0} (level {1})", //$NON-NLS-1$
+					StringUtil.getStringValue(warning.getWarningMessage()).trim(), level);
+			String context = (warning.getContext() == null) ? StringUtil.EMPTY : warning.getContext().toString();
+
+			// Don't attempt to add warnings if there are already errors on this line
+			if (hasErrorOrWarningOnLine(items, lineNumber))
+			{
+				continue;
+			}
+
+			String hash = MessageFormat.format("{0}:{1}:{2}:{3}", lineNumber, level, message, context); //$NON-NLS-1$
+			// guards against duplicate warnings
+			if (!last.equals(hash) && !isIgnored(message, filterPatterns))
+			{
+				items.add(createWarning(message, lineNumber, 0, 0, sourcePath));
+			}
+
+			last = hash;
 		}
-		return result;
 	}
 
-	private static boolean containsCSS3Property(String message)
+	private static boolean isFromSource(String uri, String sourcePath)
 	{
-		for (String property : CSS3_PROPERTIES)
+		return uri != null && URLEncoder.encode(uri, null, null).equals(sourcePath);
+	}
+
+	/**
+	 * Builds the message the W3C report generator shows for an error.
+	 * 
+	 * @param exception
+	 *            the error's exception
+	 * @param ac
+	 *            the validator context
+	 * @return the message
+	 */
+	private static String getErrorMessage(Throwable exception, ApplContext ac)
+	{
+		if (exception == null)
 		{
-			if (message.indexOf("Property " + property) > -1) //$NON-NLS-1$
-			{
-				return true;
-			}
+			return StringUtil.EMPTY;
 		}
-		return false;
+		if (exception instanceof CssParseException)
+		{
+			return getParseErrorMessage((CssParseException) exception, ac);
+		}
+		if (exception instanceof FileNotFoundException)
+		{
+			return ac.getMsg().getGeneratorString("not-found") + ": " + exception.getMessage(); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		if (exception instanceof InvalidParamException || exception instanceof IOException)
+		{
+			return StringUtil.getStringValue(exception.getMessage());
+		}
+		return ac.getMsg().getErrorString("unknown") + ' ' + exception; //$NON-NLS-1$
 	}
 
-	private static boolean containsCSS3AtRule(String message)
+	private static String getParseErrorMessage(CssParseException exception, ApplContext ac)
 	{
-		for (String rule : CSS3_AT_RULES)
+		String message;
+		if (exception.getException() != null && exception.getMessage() != null)
 		{
-			if (message.indexOf(MessageFormat.format("the at-rule {0} is not implemented", rule)) > -1) //$NON-NLS-1$
+			if (exception.isParseException())
 			{
-				return true;
+				message = exception.getMessage();
+			}
+			else if (exception.getException() instanceof NumberFormatException)
+			{
+				message = ac.getMsg().getGeneratorString("invalid-number"); //$NON-NLS-1$
+			}
+			else
+			{
+				message = exception.getException().getMessage();
+			}
+			if (exception.getSkippedString() == null && exception.getExp() != null)
+			{
+				message += " : " + exception.getExp().toStringFromStart(); //$NON-NLS-1$
 			}
 		}
-		return false;
-	}
+		else
+		{
+			message = ac.getMsg().getGeneratorString("unrecognize"); //$NON-NLS-1$
+		}
+		message = StringUtil.getStringValue(message);
 
-	private static boolean isFiltered(String message)
-	{
-		for (String filtered : FILTERED_MESSAGES)
+		// the report puts a link to the property's definition in front of the message
+		String property = exception.getProperty();
+		String propertyURL = (property == null) ? null : PROPERTY_URLS.getProperty(property);
+		if (propertyURL != null && PropertiesLoader.getProfile(ac.getCssVersion()).containsKey(property))
 		{
-			if (message.indexOf(filtered) > -1)
+			String cssVersion = ac.getCssVersion();
+			String baseURL;
+			if ("css3".equals(cssVersion)) //$NON-NLS-1$
 			{
-				return true;
+				baseURL = PROPERTY_URLS.getProperty("@url-base_css2.1"); //$NON-NLS-1$
 			}
+			else if ("css1".equals(cssVersion)) //$NON-NLS-1$
+			{
+				baseURL = PROPERTY_URLS.getProperty("@url-base_css2"); //$NON-NLS-1$
+			}
+			else
+			{
+				baseURL = PROPERTY_URLS.getProperty("@url-base_" + cssVersion); //$NON-NLS-1$
+			}
+			message = MessageFormat.format("{0} : {1} ({2}{3}) {4}", ac.getMsg().getGeneratorString("property"), //$NON-NLS-1$ //$NON-NLS-2$
+					property, baseURL, propertyURL, message);
 		}
-		return false;
+		return message;
 	}
 
 	public void buildFile(BuildContext context, IProgressMonitor monitor)
@@ -467,17 +516,7 @@ public class CSSValidator extends AbstractBuildParticipant
 			return;
 		}
 
-		List<IProblem> problems = new ArrayList<IProblem>();
-
-		String source = context.getContents();
-		URI uri = context.getURI();
-		String path = uri.toString();
-
-		String report = getReport(source, uri);
-		List<String> filters = getFilters();
-		processErrorsInReport(report, path, problems, filters);
-		processWarningsInReport(report, path, problems, filters);
-
+		List<IProblem> problems = validate(context.getContents(), context.getURI(), getFilterPatterns());
 		context.putProblems(ICSSConstants.W3C_PROBLEM, problems);
 	}
 
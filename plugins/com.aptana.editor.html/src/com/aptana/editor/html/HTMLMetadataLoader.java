@@ -145,6 +145,9 @@ public class HTMLMetadataLoader extends MetadataLoader<HTMLMetadataReader>
 		{
 			IdeLog.logError(HTMLPlugin.getDefault(), e);
 		}
+
+		// Validators and content assist read the metadata from memory, make them pick up the new index
+		HTMLIndexQueryHelper.resetMetadata();
 	}
 
 	protected IndexManager getIndexManager()
@@ -15,6 +15,7 @@ import java.util.List;
 import java.util.Map;
 
 import com.aptana.core.util.StringUtil;
+import com.aptana.editor.common.contentassist.MetadataCache;
 import com.aptana.editor.css.contentassist.index.ICSSIndexConstants;
 import com.aptana.editor.html.contentassist.index.HTMLIndexReader;
 import com.aptana.editor.html.contentassist.index.IHTMLIndexConstants;
@@ -28,6 +29,40 @@ import com.aptana.index.core.IndexPlugin;
 
 public class HTMLIndexQueryHelper
 {
+	private static final MetadataCache<HTMLMetadata> METADATA = new MetadataCache<HTMLMetadata>()
+	{
+		@Override
+		protected HTMLMetadata load()
+		{
+			return new HTMLMetadata(getIndex(), new HTMLIndexReader());
+		}
+
+		@Override
+		protected boolean isLoaded(HTMLMetadata metadata)
+		{
+			return !metadata.isEmpty();
+		}
+	};
+
+	/**
+	 * Returns the in-memory copy of the HTML metadata. It's read from the metadata index once and shared, so use this
+	 * rather than querying the index for elements, attributes, events or entities.
+	 * 
+	 * @return
+	 */
+	public static HTMLMetadata getMetadata()
+	{
+		return METADATA.get();
+	}
+
+	/**
+	 * Drops the in-memory copy of the HTML metadata. Called when the metadata index has been rebuilt.
+	 */
+	public static void resetMetadata()
+	{
+		METADATA.reset();
+	}
+
 	/**
 	 * getIndex
 	 * 
@@ -53,22 +88,6 @@ public class HTMLIndexQueryHelper
 		this._reader = new HTMLIndexReader();
 	}
 
-	/**
-	 * getAttribute
-	 * 
-	 * @param name
-	 * @return
-	 */
-	private List<AttributeElement> getAttribute(String name)
-	{
-		if (name != null && name.length() > 0)
-		{
-			return this._reader.getAttribute(getIndex(), name);
-		}
-
-		return Collections.emptyList();
-	}
-
 	/**
 	 * getAttribute
 	 * 
@@ -77,42 +96,7 @@ public class HTMLIndexQueryHelper
 	 */
 	public AttributeElement getAttribute(String elementName, String attributeName)
 	{
-		AttributeElement result = null;
-
-		if (elementName != null && elementName.length() > 0)
-		{
-			AttributeElement defaultAttribute = null;
-			AttributeElement candidateAttribute = null;
-
-			// TODO: optimize with a name->attribute hash
-			for (AttributeElement attribute : this.getAttribute(attributeName))
-			{
-				String elementRef = attribute.getElement();
-
-				if (elementRef != null && elementRef.length() > 0)
-				{
-					if (elementName.equals(elementRef))
-					{
-						candidateAttribute = attribute;
-					}
-				}
-				else
-				{
-					defaultAttribute = attribute;
-				}
-			}
-
-			if (candidateAttribute != null)
-			{
-				result = candidateAttribute;
-			}
-			else if (defaultAttribute != null)
-			{
-				result = defaultAttribute;
-			}
-		}
-
-		return result;
+		return getMetadata().getAttribute(elementName, attributeName);
 	}
 
 	/**
@@ -123,7 +107,7 @@ public class HTMLIndexQueryHelper
 	 */
 	public List<AttributeElement> getAttributes()
 	{
-		return _reader.getAttributes(getIndex());
+		return new ArrayList<AttributeElement>(getMetadata().getAttributes());
 	}
 
 	/**
@@ -137,7 +121,12 @@ public class HTMLIndexQueryHelper
 		List<AttributeElement> result = Collections.emptyList();
 		if (element != null)
 		{
-			List<AttributeElement> attributes = this._reader.getAttributes(getIndex(), element.getAttributes());
+			HTMLMetadata metadata = getMetadata();
+			List<AttributeElement> attributes = new ArrayList<AttributeElement>();
+			for (String name : element.getAttributes())
+			{
+				attributes.addAll(metadata.getAttributes(name));
+			}
 
 			if (attributes != null && !attributes.isEmpty())
 			{
@@ -225,17 +214,7 @@ public class HTMLIndexQueryHelper
 	 */
 	public ElementElement getElement(String name)
 	{
-		if (name != null && name.length() > 0)
-		{
-			List<ElementElement> elements = this._reader.getElements(getIndex(), name);
-
-			if (!elements.isEmpty())
-			{
-				return elements.get(0);
-			}
-		}
-
-		return null;
+		return getMetadata().getElement(name);
 	}
 
 	/**
@@ -245,7 +224,7 @@ public class HTMLIndexQueryHelper
 	 */
 	public List<ElementElement> getElements()
 	{
-		return this._reader.getElements(getIndex());
+		return new ArrayList<ElementElement>(getMetadata().getElements());
 	}
 
 	/**
@@ -255,7 +234,7 @@ public class HTMLIndexQueryHelper
 	 */
 	public List<EntityElement> getEntities()
 	{
-		return this._reader.getEntities(getIndex());
+		return new ArrayList<EntityElement>(getMetadata().getEntities());
 	}
 
 	/**
@@ -265,7 +244,7 @@ public class HTMLIndexQueryHelper
 	 */
 	public List<EventElement> getEvents()
 	{
-		return this._reader.getEvents(getIndex());
+		return new ArrayList<EventElement>(getMetadata().getEvents());
 	}
 
 	/**
@@ -278,8 +257,7 @@ public class HTMLIndexQueryHelper
 	{
 		if (element != null)
 		{
-			List<String> names = element.getEvents();
-			return this._reader.getEvents(getIndex(), names);
+			return getMetadata().getEvents(element.getEvents());
 		}
 
 		return Collections.emptyList();
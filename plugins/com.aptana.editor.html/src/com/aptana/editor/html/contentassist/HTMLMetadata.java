@@ -0,0 +1,243 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.html.contentassist;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.aptana.core.util.CollectionsUtil;
+import com.aptana.core.util.StringUtil;
+import com.aptana.editor.html.contentassist.index.HTMLIndexReader;
+import com.aptana.editor.html.contentassist.model.AttributeElement;
+import com.aptana.editor.html.contentassist.model.ElementElement;
+import com.aptana.editor.html.contentassist.model.EntityElement;
+import com.aptana.editor.html.contentassist.model.EventElement;
+import com.aptana.index.core.Index;
+
+/**
+ * An immutable copy of the HTML metadata index, with the elements, attributes, events and entities hashed by name.
+ * Shared by all threads, see {@link HTMLIndexQueryHelper#getMetadata()}. Names of elements, attributes and events are
+ * matched ignoring case, as the index queries do.
+ */
+public final class HTMLMetadata
+{
+	private final List<ElementElement> elements;
+	private final List<AttributeElement> attributes;
+	private final List<EventElement> events;
+	private final List<EntityElement> entities;
+
+	private final Map<String, ElementElement> elementsByName;
+	private final Map<String, List<AttributeElement>> attributesByName;
+	private final Map<String, EntityElement> entitiesByName;
+
+	/**
+	 * Reads all the metadata from the index.
+	 * 
+	 * @param index
+	 * @param reader
+	 */
+	HTMLMetadata(Index index, HTMLIndexReader reader)
+	{
+		elements = Collections.unmodifiableList(reader.getElements(index));
+		attributes = Collections.unmodifiableList(reader.getAttributes(index));
+		events = Collections.unmodifiableList(reader.getEvents(index));
+		entities = Collections.unmodifiableList(reader.getEntities(index));
+
+		elementsByName = new HashMap<String, ElementElement>(elements.size());
+		for (ElementElement element : elements)
+		{
+			String name = element.getName().toLowerCase();
+			if (!elementsByName.containsKey(name))
+			{
+				elementsByName.put(name, element);
+			}
+		}
+
+		attributesByName = new HashMap<String, List<AttributeElement>>();
+		for (AttributeElement attribute : attributes)
+		{
+			String name = attribute.getName().toLowerCase();
+			List<AttributeElement> named = attributesByName.get(name);
+			if (named == null)
+			{
+				named = new ArrayList<AttributeElement>(1);
+				attributesByName.put(name, named);
+			}
+			named.add(attribute);
+		}
+
+		entitiesByName = new HashMap<String, EntityElement>(entities.size());
+		for (EntityElement entity : entities)
+		{
+			entitiesByName.put(entity.getName(), entity);
+		}
+	}
+
+	/**
+	 * Whether there's any metadata at all. There's none until the metadata index has been written.
+	 * 
+	 * @return
+	 */
+	public boolean isEmpty()
+	{
+		return elements.isEmpty();
+	}
+
+	/**
+	 * getElements
+	 * 
+	 * @return
+	 */
+	public List<ElementElement> getElements()
+	{
+		return elements;
+	}
+
+	/**
+	 * getElement
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public ElementElement getElement(String name)
+	{
+		if (StringUtil.isEmpty(name))
+		{
+			return null;
+		}
+		return elementsByName.get(name.toLowerCase());
+	}
+
+	/**
+	 * getAttributes - Returns all the attributes in our metadata
+	 * 
+	 * @return
+	 */
+	public List<AttributeElement> getAttributes()
+	{
+		return attributes;
+	}
+
+	/**
+	 * Returns all the attributes with the given name, the ones for any element as well as the ones specific to an
+	 * element.
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public List<AttributeElement> getAttributes(String name)
+	{
+		if (StringUtil.isEmpty(name))
+		{
+			return Collections.emptyList();
+		}
+		List<AttributeElement> named = attributesByName.get(name.toLowerCase());
+		if (named == null)
+		{
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(named);
+	}
+
+	/**
+	 * Returns the attribute with the given name that applies to the given element: the one specific to that element if
+	 * there is one, otherwise the one for any element.
+	 * 
+	 * @param elementName
+	 * @param attributeName
+	 * @return
+	 */
+	public AttributeElement getAttribute(String elementName, String attributeName)
+	{
+		if (StringUtil.isEmpty(elementName))
+		{
+			return null;
+		}
+
+		AttributeElement defaultAttribute = null;
+		AttributeElement candidateAttribute = null;
+		for (AttributeElement attribute : getAttributes(attributeName))
+		{
+			String elementRef = attribute.getElement();
+			if (StringUtil.isEmpty(elementRef))
+			{
+				defaultAttribute = attribute;
+			}
+			else if (elementName.equalsIgnoreCase(elementRef))
+			{
+				candidateAttribute = attribute;
+			}
+		}
+		return (candidateAttribute != null) ? candidateAttribute : defaultAttribute;
+	}
+
+	/**
+	 * getEvents - gets all event metadata
+	 * 
+	 * @return
+	 */
+	public List<EventElement> getEvents()
+	{
+		return events;
+	}
+
+	/**
+	 * Returns the events with the given names.
+	 * 
+	 * @param names
+	 * @return
+	 */
+	public List<EventElement> getEvents(List<String> names)
+	{
+		if (CollectionsUtil.isEmpty(names))
+		{
+			return Collections.emptyList();
+		}
+		Set<String> lowerCaseNames = new HashSet<String>(names.size());
+		for (String name : names)
+		{
+			lowerCaseNames.add(name.toLowerCase());
+		}
+		List<EventElement> result = new ArrayList<EventElement>(names.size());
+		for (EventElement event : events)
+		{
+			if (lowerCaseNames.contains(event.getName().toLowerCase()))
+			{
+				result.add(event);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * getEntities
+	 * 
+	 * @return
+	 */
+	public List<EntityElement> getEntities()
+	{
+		return entities;
+	}
+
+	/**
+	 * getEntity
+	 * 
+	 * @param name
+	 *            the entity, i.e. "&amp;amp;"
+	 * @return
+	 */
+	public EntityElement getEntity(String name)
+	{
+		return entitiesByName.get(name);
+	}
+}
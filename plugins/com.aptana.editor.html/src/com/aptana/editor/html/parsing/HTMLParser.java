@@ -10,21 +10,31 @@ package com.aptana.editor.html.parsing;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Stack;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.rules.ITokenScanner;
 
 import beaver.Scanner.Exception;
 import beaver.Symbol;
 
+import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.StringUtil;
 import com.aptana.editor.css.ICSSConstants;
 import com.aptana.editor.css.parsing.ast.CSSDeclarationNode;
 import com.aptana.editor.css.parsing.ast.CSSRuleNode;
+import com.aptana.editor.html.HTMLPlugin;
 import com.aptana.editor.html.IHTMLConstants;
 import com.aptana.editor.html.parsing.ast.HTMLCommentNode;
 import com.aptana.editor.html.parsing.ast.HTMLElementNode;
@@ -36,6 +46,7 @@ import com.aptana.editor.html.parsing.lexer.HTMLTokens;
 import com.aptana.editor.js.IJSConstants;
 import com.aptana.parsing.IParseState;
 import com.aptana.parsing.IParser;
+import com.aptana.parsing.IParserPool;
 import com.aptana.parsing.ParseState;
 import com.aptana.parsing.ParserPoolFactory;
 import com.aptana.parsing.ast.IParseError;
@@ -49,7 +60,88 @@ import com.aptana.parsing.util.ParseUtil;
 
 public class HTMLParser implements IParser
 {
+	/**
+	 * A style or script block, parsed once the HTML has been scanned.
+	 */
+	private static class EmbeddedBlock
+	{
+		final HTMLSpecialNode node;
+		final String language;
+		final String text;
+		final int start;
+		IParseNode[] result = NO_PARSE_NODES;
+		List<IParseError> errors = Collections.emptyList();
+
+		EmbeddedBlock(HTMLSpecialNode node, String language, String text, int start)
+		{
+			this.node = node;
+			this.language = language;
+			this.text = text;
+			this.start = start;
+		}
+
+		/**
+		 * Parses the block. May be called on any thread, so results are only stored here.
+		 */
+		void parse()
+		{
+			try
+			{
+				ParseState subParseState = new ParseState(text, start);
+				// FIXME We need to propagate options down to sub-languages, i.e. JS's attach/collect comments
+				IParseNode parsed = ParserPoolFactory.parse(language, subParseState);
+				List<IParseError> subErrors = subParseState.getErrors();
+				if (subErrors != null && !subErrors.isEmpty())
+				{
+					errors = new ArrayList<IParseError>(subErrors.size());
+					for (IParseError subError : subErrors)
+					{
+						// Shift the line/offsets based on the starting offset/line of the sub-language!
+						errors.add(new ParseError(language, start + subError.getOffset(), subError.getLength(),
+								subError.getMessage(), subError.getSeverity()));
+					}
+				}
+				if (parsed == null)
+				{
+					parsed = new HTMLTextNode(text, start, start + text.length() - 1);
+				}
+				result = new IParseNode[] { parsed };
+			}
+			catch (java.lang.Exception e)
+			{
+			}
+		}
+	}
+
+	/**
+	 * A style or event handler attribute value, parsed once the HTML has been scanned.
+	 */
+	private static class EmbeddedAttribute
+	{
+		final HTMLElementNode element;
+		final String language;
+		final String text;
+		final int offset;
+
+		EmbeddedAttribute(HTMLElementNode element, String language, String text, int offset)
+		{
+			this.element = element;
+			this.language = language;
+			this.text = text;
+			this.offset = offset;
+		}
+	}
+
 	public static final HTMLNode[] NO_HTML_NODES = new HTMLNode[0];
+	private static final IParseNode[] NO_PARSE_NODES = new IParseNode[0];
+
+	/**
+	 * Style and script blocks are parsed in parallel only when there's at least this much of them in total.
+	 */
+	private static final int MIN_PARALLEL_LENGTH = 16 * 1024;
+	private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+	private static ExecutorService fWorkers;
+
 	private static final String ATTR_TYPE = "type"; //$NON-NLS-1$
 	private static final String ATTR_LANG = "language"; //$NON-NLS-1$
 
@@ -75,6 +167,9 @@ public class HTMLParser implements IParser
 	private List<IParseNode> fCommentNodes;
 	private boolean previousSymbolSkipped;
 
+	private List<EmbeddedBlock> fEmbeddedBlocks;
+	private List<EmbeddedAttribute> fEmbeddedAttributes;
+
 	/**
 	 * parse
 	 */
@@ -84,6 +179,8 @@ public class HTMLParser implements IParser
 		fScanner = new HTMLParserScanner();
 		fElementStack = new Stack<IParseNode>();
 		fCommentNodes = new ArrayList<IParseNode>();
+		fEmbeddedBlocks = new ArrayList<EmbeddedBlock>();
+		fEmbeddedAttributes = new ArrayList<EmbeddedAttribute>();
 
 		String source = parseState.getSource();
 		if (parseState instanceof HTMLParseState)
@@ -113,6 +210,7 @@ public class HTMLParser implements IParser
 			fCurrentElement = root;
 
 			parseAll(source);
+			parseEmbeddedLanguages();
 			root.setCommentNodes(fCommentNodes.toArray(new IParseNode[fCommentNodes.size()]));
 
 			// trim the tree
@@ -138,6 +236,8 @@ public class HTMLParser implements IParser
 			fCurrentSymbol = null;
 			fParseState = null;
 			fCommentNodes = null;
+			fEmbeddedBlocks = null;
+			fEmbeddedAttributes = null;
 		}
 
 		return root;
@@ -193,13 +293,25 @@ public class HTMLParser implements IParser
 			((HTMLTokenScanner) tokenScanner).setInsideSpecialTag(false);
 		}
 
-		IParseNode[] nested = getParseResult(language, start, end);
 		if (fCurrentElement != null)
 		{
-			HTMLSpecialNode node = new HTMLSpecialNode(startTag, nested, startTag.getStart(), fCurrentSymbol.getEnd());
+			HTMLSpecialNode node = new HTMLSpecialNode(startTag, NO_PARSE_NODES, startTag.getStart(),
+					fCurrentSymbol.getEnd());
 			node.setEndNode(fCurrentSymbol.getStart(), fCurrentSymbol.getEnd());
 			parseAttribute(node, startTag);
 			fCurrentElement.addChild(node);
+			if (start <= end)
+			{
+				try
+				{
+					// The content is parsed once the whole document has been scanned, see parseEmbeddedLanguages()
+					String text = fScanner.getSource().get(start, end - start + 1);
+					fEmbeddedBlocks.add(new EmbeddedBlock(node, language, text, start));
+				}
+				catch (BadLocationException e)
+				{
+				}
+			}
 		}
 	}
 
@@ -280,37 +392,175 @@ public class HTMLParser implements IParser
 		return false;
 	}
 
-	private IParseNode[] getParseResult(String language, int start, int end)
+	/**
+	 * Parses the CSS and JS embedded in the document. Style and script blocks are independent of each other, so when
+	 * there are several large ones and more than one processor they're parsed on a shared pool of workers (with this
+	 * thread pitching in). Style and event attributes are usually tiny, so rather than going through the parsing
+	 * engine and its cache for each of them, they're run through a single parser checked out per language.
+	 */
+	private void parseEmbeddedLanguages()
+	{
+		if (fMonitor != null && fMonitor.isCanceled())
+		{
+			return;
+		}
+
+		parseBlocks(fEmbeddedBlocks);
+		// Added in document order, regardless of which thread parsed a block
+		for (EmbeddedBlock block : fEmbeddedBlocks)
+		{
+			block.node.setChildren(block.result);
+			for (IParseError error : block.errors)
+			{
+				fParseState.addError(error);
+			}
+		}
+
+		parseAttributes(ICSSConstants.CONTENT_TYPE_CSS);
+		parseAttributes(IJSConstants.CONTENT_TYPE_JS);
+	}
+
+	private static void parseBlocks(final List<EmbeddedBlock> blocks)
 	{
-		if (start <= end)
+		int workers = Math.min(blocks.size(), PROCESSORS) - 1;
+		if (workers > 0)
+		{
+			int length = 0;
+			for (EmbeddedBlock block : blocks)
+			{
+				length += block.text.length();
+			}
+			if (length < MIN_PARALLEL_LENGTH)
+			{
+				workers = 0;
+			}
+		}
+
+		final AtomicInteger next = new AtomicInteger();
+		Runnable parseNext = new Runnable()
+		{
+			public void run()
+			{
+				int index;
+				while ((index = next.getAndIncrement()) < blocks.size())
+				{
+					blocks.get(index).parse();
+				}
+			}
+		};
+
+		List<Future<?>> running = new ArrayList<Future<?>>(workers);
+		for (int i = 0; i < workers; i++)
+		{
+			running.add(getWorkers().submit(parseNext));
+		}
+		// Workers may all be busy with other documents, so never just wait on them
+		parseNext.run();
+		for (Future<?> future : running)
 		{
 			try
 			{
-				String text = fScanner.getSource().get(start, end - start + 1);
-				ParseState subParseState = new ParseState(text, start);
-				// FIXME We need to propagate options down to sub-languages, i.e. JS's attach/collect comments
-				IParseNode node = ParserPoolFactory.parse(language, subParseState);
-				List<IParseError> subErrors = subParseState.getErrors();
-				if (subErrors != null)
+				future.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			catch (ExecutionException e)
+			{
+				IdeLog.logError(HTMLPlugin.getDefault(), e.getCause());
+			}
+		}
+	}
+
+	private static synchronized ExecutorService getWorkers()
+	{
+		if (fWorkers == null)
+		{
+			fWorkers = Executors.newFixedThreadPool(PROCESSORS - 1, new ThreadFactory()
+			{
+				private final AtomicInteger count = new AtomicInteger();
+
+				public Thread newThread(Runnable r)
 				{
-					for (IParseError subError : subErrors)
+					Thread thread = new Thread(r, "HTML embedded language parser " + count.incrementAndGet()); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return fWorkers;
+	}
+
+	private void parseAttributes(String language)
+	{
+		List<EmbeddedAttribute> attributes = new ArrayList<EmbeddedAttribute>();
+		for (EmbeddedAttribute attribute : fEmbeddedAttributes)
+		{
+			if (language.equals(attribute.language))
+			{
+				attributes.add(attribute);
+			}
+		}
+		if (attributes.isEmpty())
+		{
+			return;
+		}
+
+		IParserPool pool = ParserPoolFactory.getInstance().getParserPool(language);
+		if (pool == null)
+		{
+			return;
+		}
+		IParser parser = pool.checkOut();
+		if (parser == null)
+		{
+			return;
+		}
+		try
+		{
+			for (EmbeddedAttribute attribute : attributes)
+			{
+				IParseNode node;
+				try
+				{
+					node = parser.parse(new ParseState(attribute.text, attribute.offset));
+				}
+				catch (java.lang.Exception e)
+				{
+					continue;
+				}
+				if (node == null)
+				{
+					continue;
+				}
+
+				if (IJSConstants.CONTENT_TYPE_JS.equals(language))
+				{
+					for (IParseNode child : node)
 					{
-						// Shift the line/offsets based on the starting offset/line of the sub-language!
-						fParseState.addError(new ParseError(language, start + subError.getOffset(), subError
-								.getLength(), subError.getMessage(), subError.getSeverity()));
+						attribute.element.addJSAttributeNode(child);
 					}
 				}
-				if (node == null)
+				// should always have a rule node
+				else if (node.hasChildren())
 				{
-					node = new HTMLTextNode(text, start, end);
+					IParseNode rule = node.getChild(0);
+					if (rule instanceof CSSRuleNode)
+					{
+						CSSDeclarationNode[] declarations = ((CSSRuleNode) rule).getDeclarations();
+						for (CSSDeclarationNode declaration : declarations)
+						{
+							attribute.element.addCSSStyleNode(declaration);
+						}
+					}
 				}
-				return new IParseNode[] { node };
-			}
-			catch (java.lang.Exception e)
-			{
 			}
 		}
-		return new IParseNode[0];
+		finally
+		{
+			pool.checkIn(parser);
+		}
 	}
 
 	private void processComment()
@@ -480,46 +730,16 @@ public class HTMLParser implements IParser
 				if (HTMLUtils.isCSSAttribute(name))
 				{
 					String text = tagName + " {" + value + "}"; //$NON-NLS-1$ //$NON-NLS-2$
-					try
-					{
-
-						int startingOffset = absoluteOffset - (tagName.length() + 1);
-						IParseNode node = ParserPoolFactory.parse(ICSSConstants.CONTENT_TYPE_CSS, text, startingOffset);
-
-						// should always have a rule node
-						if (node.hasChildren())
-						{
-							IParseNode rule = node.getChild(0);
-							if (rule instanceof CSSRuleNode)
-							{
-								CSSDeclarationNode[] declarations = ((CSSRuleNode) rule).getDeclarations();
-								for (CSSDeclarationNode declaration : declarations)
-								{
-									element.addCSSStyleNode(declaration);
-								}
-							}
-						}
-					}
-					catch (java.lang.Exception e)
-					{
-					}
+					int startingOffset = absoluteOffset - (tagName.length() + 1);
+					fEmbeddedAttributes.add(new EmbeddedAttribute(element, ICSSConstants.CONTENT_TYPE_CSS, text,
+							startingOffset));
 				}
 				// checks if we need to process the value as JS
 				else if (HTMLUtils.isJSAttribute(tagName, name))
 				{
-					try
-					{
-						int startingOffset = absoluteOffset + 1;
-						IParseNode node = ParserPoolFactory.parse(IJSConstants.CONTENT_TYPE_JS, value, startingOffset);
-
-						for (IParseNode child : node)
-						{
-							element.addJSAttributeNode(child);
-						}
-					}
-					catch (java.lang.Exception e)
-					{
-					}
+					int startingOffset = absoluteOffset + 1;
+					fEmbeddedAttributes.add(new EmbeddedAttribute(element, IJSConstants.CONTENT_TYPE_JS, value,
+							startingOffset));
 				}
 			}
 		}
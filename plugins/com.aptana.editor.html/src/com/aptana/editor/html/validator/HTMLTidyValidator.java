@@ -13,7 +13,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -26,7 +25,6 @@ import org.eclipse.jface.text.IDocument;
 import org.jaxen.JaxenException;
 
 import com.aptana.core.IFilter;
-import com.aptana.core.IMap;
 import com.aptana.core.build.AbstractBuildParticipant;
 import com.aptana.core.build.IProblem;
 import com.aptana.core.logging.IdeLog;
@@ -36,6 +34,7 @@ import com.aptana.core.util.StringUtil;
 import com.aptana.editor.html.HTMLPlugin;
 import com.aptana.editor.html.IHTMLConstants;
 import com.aptana.editor.html.contentassist.HTMLIndexQueryHelper;
+import com.aptana.editor.html.contentassist.HTMLMetadata;
 import com.aptana.editor.html.contentassist.model.AttributeElement;
 import com.aptana.editor.html.contentassist.model.ElementElement;
 import com.aptana.editor.html.contentassist.model.EntityElement;
@@ -95,21 +94,10 @@ public class HTMLTidyValidator extends AbstractBuildParticipant
 		}
 	}
 
-	private HTMLIndexQueryHelper fQueryHelper;
-
-	/**
-	 * Cache from element names to the element metadata.
-	 */
-	private Map<String, ElementElement> fElementsMap;
 	/**
-	 * Cache from attribute names (possibly prepended by specific element name and then underscore) to the attribute
-	 * metadata.
+	 * The element, attribute and entity metadata.
 	 */
-	private Map<String, AttributeElement> fAttributesMap;
-	/**
-	 * Cache from entity names to the entity metadata.
-	 */
-	private Map<String, EntityElement> fEntityMap;
+	private HTMLMetadata fMetadata;
 
 	/**
 	 * Set of unique id values from elements
@@ -135,7 +123,7 @@ public class HTMLTidyValidator extends AbstractBuildParticipant
 			return;
 		}
 
-		fQueryHelper = new HTMLIndexQueryHelper();
+		fMetadata = HTMLIndexQueryHelper.getMetadata();
 		fIds = new HashSet<String>();
 
 		try
@@ -178,11 +166,8 @@ public class HTMLTidyValidator extends AbstractBuildParticipant
 		finally
 		{
 			// clean up caches!
-			fElementsMap = null;
-			fAttributesMap = null;
-			fEntityMap = null;
 			fIds = null;
-			fQueryHelper = null;
+			fMetadata = null;
 		}
 	}
 
@@ -591,61 +576,17 @@ public class HTMLTidyValidator extends AbstractBuildParticipant
 
 	private EntityElement getEntity(String entityName)
 	{
-		if (fEntityMap == null)
-		{
-			List<EntityElement> entities = fQueryHelper.getEntities();
-			fEntityMap = CollectionsUtil.mapFromValues(entities, new IMap<EntityElement, String>()
-			{
-				public String map(EntityElement item)
-				{
-					return item.getName();
-				}
-			});
-		}
-		return fEntityMap.get(entityName);
+		return fMetadata.getEntity(entityName);
 	}
 
 	private ElementElement getElement(String tagName)
 	{
-		if (fElementsMap == null)
-		{
-			List<ElementElement> elements = fQueryHelper.getElements();
-			fElementsMap = CollectionsUtil.mapFromValues(elements, new IMap<ElementElement, String>()
-			{
-				public String map(ElementElement item)
-				{
-					return item.getName();
-				}
-			});
-		}
-		return fElementsMap.get(tagName);
+		return fMetadata.getElement(tagName);
 	}
 
 	private AttributeElement getAttribute(String tagName, String attributeName)
 	{
-		if (fAttributesMap == null)
-		{
-			List<AttributeElement> attrs = fQueryHelper.getAttributes();
-			fAttributesMap = CollectionsUtil.mapFromValues(attrs, new IMap<AttributeElement, String>()
-			{
-				public String map(AttributeElement item)
-				{
-					String element = item.getElement();
-					if (StringUtil.isEmpty(element))
-					{
-						return item.getName();
-					}
-					return element + "_" + item.getName(); //$NON-NLS-1$
-				}
-			});
-		}
-
-		AttributeElement ae = fAttributesMap.get(tagName.toLowerCase() + "_" + attributeName); //$NON-NLS-1$
-		if (ae != null)
-		{
-			return ae;
-		}
-		return fAttributesMap.get(attributeName);
+		return fMetadata.getAttribute(tagName, attributeName);
 	}
 
 	/**
@@ -109,7 +109,6 @@ import com.aptana.formatter.ui.FormatterException;
 import com.aptana.formatter.ui.FormatterMessages;
 import com.aptana.formatter.ui.ScriptFormattingContextProperties;
 import com.aptana.parsing.IParseState;
-import com.aptana.parsing.IParser;
 import com.aptana.parsing.ParseState;
 import com.aptana.parsing.ParserPoolFactory;
 import com.aptana.parsing.ast.IParseNode;
@@ -307,19 +306,17 @@ public class JSFormatter extends AbstractScriptFormatter implements IScriptForma
 			return false;
 		}
 		output = output.trim();
-		IParser parser = checkoutParser();
-		IParseState parseState = new ParseState(output);
 		IParseRootNode outputParseResult = null;
 		try
 		{
-			outputParseResult = parser.parse(parseState);
+			// go through the parsing engine so the AST is cached for the editor once the formatted text is applied
+			outputParseResult = ParserPoolFactory.parse(getMainContentType(), new ParseState(output));
 		}
 		catch (Exception e)
 		{
 			IdeLog.logError(JSFormatterPlugin.getDefault(), e, IDebugScopes.DEBUG);
 			return false;
 		}
-		checkinParser(parser);
 		if (outputParseResult == null)
 		{
 			return false;
@@ -482,12 +479,10 @@ public class JSFormatter extends AbstractScriptFormatter implements IScriptForma
 			IParseState parseState)
 	{
 		String output = parseState.getSource();
-		IParser parser = checkoutParser();
 		List<IRegion> onOffRegions = null;
 		try
 		{
-			IParseRootNode parseResult = parser.parse(parseState);
-			checkinParser(parser);
+			IParseRootNode parseResult = ParserPoolFactory.parse(getMainContentType(), parseState);
 			if (parseResult != null)
 			{
 				IParseNode[] commentNodes = parseResult.getCommentNodes();
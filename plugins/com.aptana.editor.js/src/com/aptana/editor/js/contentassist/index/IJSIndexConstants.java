@@ -35,7 +35,8 @@ public interface IJSIndexConstants
 	// 0.31 - Added "requires" to index
 	// 0.32 - Transfer user agents from JSCA types to the properties that point to them
 	// 0.33 - Include function parameter and return values when they're not defined in sdoc comments
-	public static final double INDEX_VERSION = 0.33;
+	// 0.34 - Write property, function and event details as binary records instead of JSON
+	public static final double INDEX_VERSION = 0.34;
 
 	// for debugging, comment the line above, and uncomment the following
 	// public static final double INDEX_VERSION = new Random().nextDouble() * 1e6;
@@ -109,32 +109,39 @@ public class JSIndexReader extends IndexReader
 	protected TypeElement createType(QueryResult type)
 	{
 		TypeElement result;
-		String[] columns = this.getDelimiterPattern().split(type.getWord());
-		int column = 0;
+		String word = type.getWord();
+		String delimiter = this.getDelimiter();
+		int nameEnd = word.indexOf(delimiter);
 
 		// create type
 		result = new TypeElement();
 
 		// name
-		result.setName(columns[column]);
-		column++;
+		result.setName((nameEnd == -1) ? word : word.substring(0, nameEnd));
 
-		// super types
-		if (column < columns.length)
+		if (nameEnd != -1)
 		{
-			for (String parentType : this.getSubDelimiterPattern().split(columns[column]))
+			int parentTypesStart = nameEnd + delimiter.length();
+			int parentTypesEnd = word.indexOf(delimiter, parentTypesStart);
+
+			// super types
+			String parentTypes = (parentTypesEnd == -1) ? word.substring(parentTypesStart) : word.substring(
+					parentTypesStart, parentTypesEnd);
+
+			if (parentTypes.length() > 0)
 			{
-				result.addParentType(parentType);
+				for (String parentType : StringUtil.tokenize(parentTypes, this.getSubDelimiter()))
+				{
+					result.addParentType(parentType);
+				}
 			}
-		}
-		column++;
 
-		// description
-		if (column < columns.length)
-		{
-			result.setDescription(columns[column]);
+			// description
+			if (parentTypesEnd != -1)
+			{
+				result.setDescription(word.substring(parentTypesEnd + delimiter.length()));
+			}
 		}
-		column++;
 
 		// documents
 		for (String document : type.getDocuments())
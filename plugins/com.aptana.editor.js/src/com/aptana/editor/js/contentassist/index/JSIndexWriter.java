@@ -23,6 +23,7 @@ import com.aptana.editor.js.contentassist.model.FunctionElement;
 import com.aptana.editor.js.contentassist.model.PropertyElement;
 import com.aptana.editor.js.contentassist.model.TypeElement;
 import com.aptana.index.core.Index;
+import com.aptana.index.core.IndexRecord;
 import com.aptana.index.core.IndexWriter;
 
 public class JSIndexWriter extends IndexWriter
@@ -37,6 +38,18 @@ public class JSIndexWriter extends IndexWriter
 		return URI.create(IJSIndexConstants.METADATA_FILE_LOCATION);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.IndexWriter#serialize(java.lang.Object)
+	 */
+	@Override
+	protected String serialize(Object object)
+	{
+		// members are read back for every content assist request, so write them as records which decode without
+		// having to parse JSON
+		return IndexRecord.encode(object);
+	}
+
 	/**
 	 * writeEvent
 	 * 
@@ -0,0 +1,520 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.js.parsing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.aptana.editor.js.parsing.ast.IJSNodeTypes;
+import com.aptana.editor.js.parsing.ast.JSNode;
+import com.aptana.editor.js.parsing.ast.JSParseRootNode;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.IParseRootNode;
+import com.aptana.parsing.ast.ParseNode;
+
+/**
+ * Updates the AST of an earlier version of a JavaScript source so it matches a new version, re-parsing only the
+ * statements touched by the edit. The edited range is found by comparing both sources. The innermost statement list
+ * (the program, a function body or a block) that encloses that range is then located, and only its statements that
+ * overlap the edit are re-parsed, together with one statement on either side. The remaining statements are reused and
+ * the offsets of everything following the edit are shifted.
+ * <p>
+ * Since a statement list only contains statements, its children can be parsed as a program on their own. Whenever
+ * re-parsing them reports an error, or the edit can't be contained, no update is made and the caller is expected to
+ * parse the whole source instead.
+ * <p>
+ * The previous AST may still be used elsewhere (an outline or a hover on another thread for instance), so the update
+ * is made on copies of the nodes that change: the nodes enclosing the edit and the ones following it. Subtrees that
+ * come before the edit are shared by both ASTs. Their text is the same in both sources, only their top node's parent
+ * becomes the copy of its previous parent.
+ */
+class JSIncrementalReparser
+{
+	private final JSParser fParser;
+
+	/**
+	 * JSIncrementalReparser
+	 * 
+	 * @param parser
+	 */
+	JSIncrementalReparser(JSParser parser)
+	{
+		fParser = parser;
+	}
+
+	/**
+	 * Update the specified AST, which is the error-free result of parsing the old source, so it describes the new
+	 * source. An updated copy of the specified AST is returned, which shares the subtrees preceding the edit with it.
+	 * Null is returned when the update can't be done incrementally.
+	 * 
+	 * @param root
+	 * @param oldSource
+	 * @param newSource
+	 * @return
+	 */
+	JSParseRootNode reparse(JSParseRootNode root, String oldSource, String newSource)
+	{
+		int oldLength = oldSource.length();
+		int newLength = newSource.length();
+		int maxCommon = Math.min(oldLength, newLength);
+
+		// find the edited range by skipping the common prefix and suffix
+		int prefix = 0;
+
+		while (prefix < maxCommon && oldSource.charAt(prefix) == newSource.charAt(prefix))
+		{
+			prefix++;
+		}
+
+		if (prefix == oldLength && oldLength == newLength)
+		{
+			// nothing changed, but the caller will have to parse anyway, the previous result may be in use elsewhere
+			return null;
+		}
+
+		int suffix = 0;
+
+		while (suffix < maxCommon - prefix
+				&& oldSource.charAt(oldLength - 1 - suffix) == newSource.charAt(newLength - 1 - suffix))
+		{
+			suffix++;
+		}
+
+		int damageEnd = oldLength - suffix;
+		int delta = newLength - oldLength;
+
+		// find the innermost statement list whose braces are outside of the edit, along with the nodes leading to it
+		ParseNode container = root;
+		List<ParseNode> path = new ArrayList<ParseNode>();
+		List<ParseNode> containerPath = new ArrayList<ParseNode>();
+		IParseNode node = root;
+		int index;
+
+		path.add(root);
+
+		while ((index = findEnclosingChild(node, prefix, damageEnd)) != -1)
+		{
+			IParseNode child = node.getChild(index);
+
+			if (!(child instanceof ParseNode))
+			{
+				break;
+			}
+
+			path.add((ParseNode) child);
+
+			if (child.getNodeType() == IJSNodeTypes.STATEMENTS)
+			{
+				container = (ParseNode) child;
+				containerPath = new ArrayList<ParseNode>(path);
+			}
+
+			node = child;
+		}
+
+		if (containerPath.isEmpty())
+		{
+			containerPath = path.subList(0, 1);
+		}
+
+		// the range of text between the braces of the container, or the whole source for the root
+		int interiorStart = (container == root) ? 0 : container.getStartingOffset() + 1;
+		int interiorEnd = (container == root) ? oldLength : container.getEndingOffset();
+
+		// find the statements overlapping the edit, plus one on either side since a change may join them with their
+		// neighbors (think of automatic semicolon insertion)
+		IParseNode[] statements = container.getChildren();
+		int count = statements.length;
+		int first = count;
+		int last = -1;
+
+		for (int i = 0; i < count; i++)
+		{
+			if (first == count && statements[i].getEndingOffset() >= prefix - 1)
+			{
+				first = i;
+			}
+
+			if (statements[i].getStartingOffset() <= damageEnd)
+			{
+				last = i;
+			}
+		}
+
+		first = Math.max(first - 1, 0);
+		last = Math.min(last + 1, count - 1);
+
+		// re-parse from the end of the statement preceding the first one, so its documentation comes along
+		int fragmentStart = (first == 0) ? interiorStart : statements[first - 1].getEndingOffset() + 1;
+		int fragmentEnd = (last == count - 1 || count == 0) ? interiorEnd : statements[last].getEndingOffset() + 1;
+
+		if (fragmentStart > prefix || fragmentEnd < damageEnd || fragmentEnd + delta < fragmentStart)
+		{
+			return null;
+		}
+
+		// a line comment at the end of the fragment would swallow whatever follows it on the same line
+		int newFragmentEnd = fragmentEnd + delta;
+		boolean atLineEnd = newFragmentEnd == newLength || newSource.charAt(newFragmentEnd) == '\n'
+				|| newSource.charAt(newFragmentEnd) == '\r';
+		JSParseRootNode fragment = parseFragment(newSource.substring(fragmentStart, newFragmentEnd), fragmentStart,
+				atLineEnd);
+
+		if (fragment == null)
+		{
+			return null;
+		}
+
+		// the statements of the container: the ones before the fragment are kept as they are, the re-parsed ones are
+		// replaced and the ones after it are moved
+		List<IParseNode> children = new ArrayList<IParseNode>(count - (last - first + 1) + fragment.getChildCount());
+
+		for (int i = 0; i < first && i < count; i++)
+		{
+			children.add(statements[i]);
+		}
+
+		for (IParseNode statement : fragment.getChildren())
+		{
+			children.add(statement);
+		}
+
+		for (int i = last + 1; i < count; i++)
+		{
+			children.add(copyAndShift(statements[i], delta));
+		}
+
+		// then copy the nodes enclosing the fragment, from the container up to the root. Only their ending offsets and
+		// the tokens they keep after the fragment move.
+		ParseNode copy = copyEnclosingNode(container, children.toArray(new IParseNode[children.size()]), fragmentEnd,
+				delta);
+
+		for (int i = containerPath.size() - 2; i >= 0; i--)
+		{
+			ParseNode parent = containerPath.get(i);
+			IParseNode previousChild = containerPath.get(i + 1);
+			IParseNode[] parentChildren = parent.getChildren();
+			IParseNode[] copiedChildren = new IParseNode[parentChildren.length];
+			boolean after = false;
+
+			for (int j = 0; j < parentChildren.length; j++)
+			{
+				if (parentChildren[j] == previousChild)
+				{
+					copiedChildren[j] = copy;
+					after = true;
+				}
+				else
+				{
+					copiedChildren[j] = after ? copyAndShift(parentChildren[j], delta) : parentChildren[j];
+				}
+			}
+
+			copy = copyEnclosingNode(parent, copiedChildren, fragmentEnd, delta);
+		}
+
+		JSParseRootNode result = (JSParseRootNode) copy;
+
+		// merge comments, the ones inside the fragment have been collected again
+		result.setCommentNodes(mergeComments(root, fragment, fragmentStart, fragmentEnd, delta));
+		result.setLocation(0, newLength - 1);
+
+		return result;
+	}
+
+	/**
+	 * Returns a copy of a node enclosing the re-parsed fragment with the specified children. Its offsets, and the
+	 * tokens it keeps, that are at or after the end of the fragment are moved.
+	 * 
+	 * @param node
+	 * @param children
+	 * @param fragmentEnd
+	 * @param delta
+	 * @return
+	 */
+	private ParseNode copyEnclosingNode(ParseNode node, IParseNode[] children, int fragmentEnd, int delta)
+	{
+		ParseNode copy = node.copy(children);
+
+		if (copy instanceof JSNode)
+		{
+			((JSNode) copy).shiftOffsets(fragmentEnd, delta);
+		}
+		else
+		{
+			copy.setLocation(copy.getStartingOffset(), copy.getEndingOffset() + delta);
+		}
+
+		return copy;
+	}
+
+	/**
+	 * Returns a copy of a subtree that follows the re-parsed fragment, moved by the specified amount
+	 * 
+	 * @param node
+	 * @param delta
+	 * @return
+	 */
+	private IParseNode copyAndShift(IParseNode node, int delta)
+	{
+		if (!(node instanceof ParseNode))
+		{
+			return node;
+		}
+
+		ParseNode copy = ((ParseNode) node).deepCopy();
+
+		if (delta != 0)
+		{
+			shift(copy, delta);
+		}
+
+		return copy;
+	}
+
+	/**
+	 * Returns the index of the child of the specified node that encloses the edited range without touching its first
+	 * and last characters, or -1 if there is no such child
+	 * 
+	 * @param node
+	 * @param damageStart
+	 * @param damageEnd
+	 * @return
+	 */
+	private int findEnclosingChild(IParseNode node, int damageStart, int damageEnd)
+	{
+		IParseNode[] children = node.getChildren();
+
+		for (int i = 0; i < children.length; i++)
+		{
+			IParseNode child = children[i];
+
+			if (child.getStartingOffset() < damageStart && child.getEndingOffset() >= damageEnd)
+			{
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Merge the comments found before and after the fragment in the previous AST with the ones found in the fragment.
+	 * 
+	 * @param root
+	 * @param fragment
+	 * @param fragmentStart
+	 * @param fragmentEnd
+	 * @param delta
+	 * @return
+	 */
+	private IParseNode[] mergeComments(IParseRootNode root, IParseRootNode fragment, int fragmentStart,
+			int fragmentEnd, int delta)
+	{
+		List<IParseNode> comments = new ArrayList<IParseNode>();
+		IParseNode[] oldComments = root.getCommentNodes();
+		IParseNode[] newComments = fragment.getCommentNodes();
+
+		if (oldComments != null)
+		{
+			for (IParseNode comment : oldComments)
+			{
+				if (comment.getEndingOffset() < fragmentStart)
+				{
+					comments.add(comment);
+				}
+				else if (comment.getStartingOffset() >= fragmentEnd)
+				{
+					comments.add(copyAndShift(comment, delta));
+				}
+			}
+		}
+
+		if (newComments != null)
+		{
+			for (IParseNode comment : newComments)
+			{
+				comments.add(comment);
+			}
+		}
+
+		return comments.toArray(new IParseNode[comments.size()]);
+	}
+
+	/**
+	 * Determine if the fragment's statements and comments account for all of its text. The scanner reports an
+	 * unexpected character (an unterminated string for instance) as the end of the input, so a parse that stops early
+	 * doesn't necessarily report an error. Multi-line comments have to be closed within the fragment, and a line
+	 * comment that runs to the end of the fragment is only accepted if the fragment is followed by a line break.
+	 * 
+	 * @param fragment
+	 *            the fragment, parsed at offset 0
+	 * @param text
+	 * @param atLineEnd
+	 * @return
+	 */
+	private boolean isFullyParsed(JSParseRootNode fragment, String text, boolean atLineEnd)
+	{
+		int end = -1;
+		int childCount = fragment.getChildCount();
+
+		if (childCount > 0)
+		{
+			end = fragment.getChild(childCount - 1).getEndingOffset();
+		}
+
+		IParseNode[] comments = fragment.getCommentNodes();
+
+		if (comments != null)
+		{
+			for (IParseNode comment : comments)
+			{
+				int commentEnd = comment.getEndingOffset();
+
+				if (!atLineEnd && commentEnd == text.length() - 1
+						&& text.startsWith("//", comment.getStartingOffset())) //$NON-NLS-1$
+				{
+					return false;
+				}
+
+				// documentation comments take the location of the token following them
+				if (comment.getNodeType() == IJSNodeTypes.VSDOC_COMMENT && commentEnd >= text.length() - 1)
+				{
+					return false;
+				}
+
+				end = Math.max(end, commentEnd);
+			}
+		}
+
+		for (int i = end + 1; i < text.length(); i++)
+		{
+			if (!Character.isWhitespace(text.charAt(i)))
+			{
+				return false;
+			}
+		}
+
+		// an unterminated multi-line comment could be closed by the text following the fragment, the scanner would
+		// have taken it for something else here
+		int index = text.indexOf("/*"); //$NON-NLS-1$
+
+		while (index != -1)
+		{
+			if (!isInComment(comments, index))
+			{
+				return false;
+			}
+
+			index = text.indexOf("/*", index + 2); //$NON-NLS-1$
+		}
+
+		return true;
+	}
+
+	/**
+	 * Determine if the specified offset falls within one of the comments
+	 * 
+	 * @param comments
+	 * @param offset
+	 * @return
+	 */
+	private boolean isInComment(IParseNode[] comments, int offset)
+	{
+		if (comments != null)
+		{
+			for (IParseNode comment : comments)
+			{
+				if (comment.contains(offset))
+				{
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Parse a range of the new source as a program. Returns null if the parse fails or reports errors.
+	 * 
+	 * @param text
+	 * @param offset
+	 * @param atLineEnd
+	 * @return
+	 */
+	private JSParseRootNode parseFragment(String text, int offset, boolean atLineEnd)
+	{
+		// parsed at offset 0 and moved here, since the parser doesn't move the tokens the nodes keep
+		JSParseState fragmentState = new JSParseState(text, 0, true, true);
+
+		try
+		{
+			IParseRootNode result = fParser.parse(fragmentState);
+
+			if (result instanceof JSParseRootNode && fragmentState.getErrors().isEmpty()
+					&& isFullyParsed((JSParseRootNode) result, text, atLineEnd))
+			{
+				for (IParseNode child : result.getChildren())
+				{
+					shift(child, offset);
+				}
+
+				IParseNode[] comments = result.getCommentNodes();
+
+				if (comments != null)
+				{
+					for (IParseNode comment : comments)
+					{
+						shift(comment, offset);
+					}
+				}
+
+				return (JSParseRootNode) result;
+			}
+		}
+		catch (Exception e) // $codepro.audit.disable emptyCatchClause
+		{
+			// the fragment doesn't parse, the whole source has to be parsed then
+		}
+
+		return null;
+	}
+
+	/**
+	 * Move a subtree, including the tokens kept by its nodes, by the specified amount
+	 * 
+	 * @param node
+	 * @param delta
+	 */
+	private void shift(IParseNode node, int delta)
+	{
+		List<IParseNode> pending = new ArrayList<IParseNode>();
+
+		pending.add(node);
+
+		while (!pending.isEmpty())
+		{
+			IParseNode current = pending.remove(pending.size() - 1);
+
+			if (current instanceof JSNode)
+			{
+				((JSNode) current).shiftOffsets(Integer.MIN_VALUE, delta);
+			}
+			else if (current instanceof ParseNode)
+			{
+				((ParseNode) current).addOffset(delta);
+			}
+
+			for (IParseNode child : current.getChildren())
+			{
+				pending.add(child);
+			}
+		}
+	}
+}
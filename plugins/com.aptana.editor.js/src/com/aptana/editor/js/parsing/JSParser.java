@@ -80,6 +80,7 @@ import com.aptana.editor.js.vsdoc.parsing.VSDocReader;
 import com.aptana.parsing.IParseState;
 import com.aptana.parsing.IParser;
 import com.aptana.parsing.IRecoveryStrategy;
+import com.aptana.parsing.ParseState;
 import com.aptana.parsing.ast.IParseError;
 import com.aptana.parsing.ast.IParseNode;
 import com.aptana.parsing.ast.IParseRootNode;
@@ -409,6 +410,17 @@ public class JSParser extends Parser implements IParser
 	 */
 	public synchronized IParseRootNode parse(IParseState parseState) throws java.lang.Exception
 	{
+		// try to update the result of parsing the previous version of the source first
+		JSParseRootNode updated = reparse(parseState);
+
+		if (updated != null)
+		{
+			parseState.clearErrors();
+			parseState.setParseResult(updated);
+
+			return updated;
+		}
+
 		fParseState = parseState;
 
 		// make sure we have some source
@@ -502,6 +514,45 @@ public class JSParser extends Parser implements IParser
 		}
 	}
 
+	/**
+	 * Re-parse only the part of the source that changed since the previous result provided by the parse state, if
+	 * any. Returns null if there's no previous result or it can't be updated incrementally.
+	 * 
+	 * @param parseState
+	 * @return
+	 */
+	private JSParseRootNode reparse(IParseState parseState)
+	{
+		if (!(parseState instanceof ParseState) || parseState.getStartingOffset() != 0)
+		{
+			return null;
+		}
+
+		ParseState state = (ParseState) parseState;
+		IParseRootNode previousResult = state.getPreviousParseResult();
+		String previousSource = state.getPreviousSource();
+		String source = state.getSource();
+
+		if (!(previousResult instanceof JSParseRootNode) || previousSource == null || source == null
+				|| previousResult.getStartingOffset() != 0)
+		{
+			return null;
+		}
+
+		// re-parsed statements always get their comments collected and attached, so they have to be wanted
+		if (parseState instanceof JSParseState)
+		{
+			JSParseState jsParseState = (JSParseState) parseState;
+
+			if (!jsParseState.attachComments() || !jsParseState.collectComments())
+			{
+				return null;
+			}
+		}
+
+		return new JSIncrementalReparser(this).reparse((JSParseRootNode) previousResult, previousSource, source);
+	}
+
 	/**
 	 * parsePostDocumentationBlocks
 	 * 
@@ -113,4 +113,16 @@ public class JSAssignmentNode extends JSNode
 	{
 		return this.getChild(1);
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.js.parsing.ast.JSNode#shiftSymbols(int, int)
+	 */
+	@Override
+	protected void shiftSymbols(int position, int delta)
+	{
+		super.shiftSymbols(position, delta);
+
+		this._operator = shiftSymbol(this._operator, position, delta);
+	}
 }
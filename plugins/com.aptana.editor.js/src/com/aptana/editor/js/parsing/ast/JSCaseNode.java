@@ -61,4 +61,16 @@ public class JSCaseNode extends JSNode
 	{
 		return this.getChild(0);
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.js.parsing.ast.JSNode#shiftSymbols(int, int)
+	 */
+	@Override
+	protected void shiftSymbols(int position, int delta)
+	{
+		super.shiftSymbols(position, delta);
+
+		this._colon = shiftSymbol(this._colon, position, delta);
+	}
 }
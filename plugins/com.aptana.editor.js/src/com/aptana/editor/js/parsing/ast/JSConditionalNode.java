@@ -88,4 +88,17 @@ public class JSConditionalNode extends JSNode
 	{
 		return this.getChild(1);
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.js.parsing.ast.JSNode#shiftSymbols(int, int)
+	 */
+	@Override
+	protected void shiftSymbols(int position, int delta)
+	{
+		super.shiftSymbols(position, delta);
+
+		this._questionMark = shiftSymbol(this._questionMark, position, delta);
+		this._colon = shiftSymbol(this._colon, position, delta);
+	}
 }
@@ -66,4 +66,16 @@ public class JSDeclarationNode extends JSNode
 	{
 		return this.getChild(1);
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.js.parsing.ast.JSNode#shiftSymbols(int, int)
+	 */
+	@Override
+	protected void shiftSymbols(int position, int delta)
+	{
+		super.shiftSymbols(position, delta);
+
+		this._equalSign = shiftSymbol(this._equalSign, position, delta);
+	}
 }
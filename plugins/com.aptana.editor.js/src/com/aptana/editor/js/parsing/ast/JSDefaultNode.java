@@ -45,4 +45,16 @@ public class JSDefaultNode extends JSNode
 	{
 		return this._colon;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.js.parsing.ast.JSNode#shiftSymbols(int, int)
+	 */
+	@Override
+	protected void shiftSymbols(int position, int delta)
+	{
+		super.shiftSymbols(position, delta);
+
+		this._colon = shiftSymbol(this._colon, position, delta);
+	}
 }
@@ -101,4 +101,18 @@ public class JSForInNode extends JSNode
 	{
 		return this._rightParenthesis;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.js.parsing.ast.JSNode#shiftSymbols(int, int)
+	 */
+	@Override
+	protected void shiftSymbols(int position, int delta)
+	{
+		super.shiftSymbols(position, delta);
+
+		this._leftParenthesis = shiftSymbol(this._leftParenthesis, position, delta);
+		this._in = shiftSymbol(this._in, position, delta);
+		this._rightParenthesis = shiftSymbol(this._rightParenthesis, position, delta);
+	}
 }
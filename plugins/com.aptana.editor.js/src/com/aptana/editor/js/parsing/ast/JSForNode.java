@@ -123,4 +123,19 @@ public class JSForNode extends JSNode
 	{
 		return this._semicolon2;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.js.parsing.ast.JSNode#shiftSymbols(int, int)
+	 */
+	@Override
+	protected void shiftSymbols(int position, int delta)
+	{
+		super.shiftSymbols(position, delta);
+
+		this._leftParenthesis = shiftSymbol(this._leftParenthesis, position, delta);
+		this._semicolon1 = shiftSymbol(this._semicolon1, position, delta);
+		this._semicolon2 = shiftSymbol(this._semicolon2, position, delta);
+		this._rightParenthesis = shiftSymbol(this._rightParenthesis, position, delta);
+	}
 }
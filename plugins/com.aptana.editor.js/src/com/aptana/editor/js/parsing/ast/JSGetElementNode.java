@@ -56,4 +56,16 @@ public class JSGetElementNode extends JSBinaryOperatorNode
 	{
 		return this._rightBracket;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.js.parsing.ast.JSNode#shiftSymbols(int, int)
+	 */
+	@Override
+	protected void shiftSymbols(int position, int delta)
+	{
+		super.shiftSymbols(position, delta);
+
+		this._rightBracket = shiftSymbol(this._rightBracket, position, delta);
+	}
 }
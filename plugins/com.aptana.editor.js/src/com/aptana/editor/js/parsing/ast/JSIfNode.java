@@ -89,4 +89,17 @@ public class JSIfNode extends JSNode
 	{
 		return this.getChild(1);
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.js.parsing.ast.JSNode#shiftSymbols(int, int)
+	 */
+	@Override
+	protected void shiftSymbols(int position, int delta)
+	{
+		super.shiftSymbols(position, delta);
+
+		this._leftParenthesis = shiftSymbol(this._leftParenthesis, position, delta);
+		this._rightParenthesis = shiftSymbol(this._rightParenthesis, position, delta);
+	}
 }
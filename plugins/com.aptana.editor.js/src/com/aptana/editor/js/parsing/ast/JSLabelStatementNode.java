@@ -77,4 +77,16 @@ public abstract class JSLabelStatementNode extends JSNode
 
 		return hash * 31 + ((_label == null) ? 0 : _label.value.hashCode());
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.js.parsing.ast.JSNode#shiftSymbols(int, int)
+	 */
+	@Override
+	protected void shiftSymbols(int position, int delta)
+	{
+		super.shiftSymbols(position, delta);
+
+		this._label = shiftSymbol(this._label, position, delta);
+	}
 }
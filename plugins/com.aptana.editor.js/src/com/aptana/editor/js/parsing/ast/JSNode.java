@@ -12,6 +12,8 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
+import beaver.Symbol;
+
 import com.aptana.editor.js.IJSConstants;
 import com.aptana.editor.js.sdoc.model.DocumentationBlock;
 import com.aptana.parsing.ast.IParseNode;
@@ -242,6 +244,62 @@ public class JSNode extends ParseNode
 		fSemicolonIncluded = included;
 	}
 
+	/**
+	 * Move every offset of this node, and of the tokens it keeps, that is at or after the specified position by the
+	 * specified amount. This is used to update a node that contains, or follows, a range of text that has been edited.
+	 * Descendants are not visited.
+	 * 
+	 * @param position
+	 * @param delta
+	 */
+	public void shiftOffsets(int position, int delta)
+	{
+		int start = this.getStart();
+		int end = this.getEnd();
+
+		if (start >= position)
+		{
+			// empty nodes end right before they start, so move both
+			this.setLocation(start + delta, end + delta);
+		}
+		else if (end >= position)
+		{
+			this.setLocation(start, end + delta);
+		}
+
+		shiftSymbols(position, delta);
+	}
+
+	/**
+	 * Returns a copy of a token moved by the specified amount if it is at or after the specified position, or the token
+	 * itself otherwise
+	 * 
+	 * @param symbol
+	 * @param position
+	 * @param delta
+	 * @return
+	 */
+	protected static Symbol shiftSymbol(Symbol symbol, int position, int delta)
+	{
+		if (symbol == null || symbol.getStart() < position)
+		{
+			return symbol;
+		}
+
+		return new Symbol(symbol.getId(), symbol.getStart() + delta, symbol.getEnd() + delta, symbol.value);
+	}
+
+	/**
+	 * Move the tokens this node keeps that are at or after the specified position. Sub-classes that keep tokens must
+	 * override this method.
+	 * 
+	 * @param position
+	 * @param delta
+	 */
+	protected void shiftSymbols(int position, int delta)
+	{
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.parsing.ast.ParseNode#toString()
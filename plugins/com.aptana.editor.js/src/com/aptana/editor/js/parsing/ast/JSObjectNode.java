@@ -58,4 +58,17 @@ public class JSObjectNode extends JSNode
 	{
 		return this._rightBrace;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.js.parsing.ast.JSNode#shiftSymbols(int, int)
+	 */
+	@Override
+	protected void shiftSymbols(int position, int delta)
+	{
+		super.shiftSymbols(position, delta);
+
+		this._leftBrace = shiftSymbol(this._leftBrace, position, delta);
+		this._rightBrace = shiftSymbol(this._rightBrace, position, delta);
+	}
 }
@@ -76,4 +76,16 @@ public class JSPostUnaryOperatorNode extends JSNode
 	{
 		return this._operator;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.js.parsing.ast.JSNode#shiftSymbols(int, int)
+	 */
+	@Override
+	protected void shiftSymbols(int position, int delta)
+	{
+		super.shiftSymbols(position, delta);
+
+		this._operator = shiftSymbol(this._operator, position, delta);
+	}
 }
@@ -103,4 +103,19 @@ public class JSSwitchNode extends JSNode
 	{
 		return this._rightParenthesis;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.js.parsing.ast.JSNode#shiftSymbols(int, int)
+	 */
+	@Override
+	protected void shiftSymbols(int position, int delta)
+	{
+		super.shiftSymbols(position, delta);
+
+		this._leftParenthesis = shiftSymbol(this._leftParenthesis, position, delta);
+		this._rightParenthesis = shiftSymbol(this._rightParenthesis, position, delta);
+		this._leftBrace = shiftSymbol(this._leftBrace, position, delta);
+		this._rightBrace = shiftSymbol(this._rightBrace, position, delta);
+	}
 }
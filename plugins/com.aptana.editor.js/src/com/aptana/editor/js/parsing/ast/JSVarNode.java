@@ -72,4 +72,16 @@ public class JSVarNode extends JSNode
 	{
 		return this._var;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.js.parsing.ast.JSNode#shiftSymbols(int, int)
+	 */
+	@Override
+	protected void shiftSymbols(int position, int delta)
+	{
+		super.shiftSymbols(position, delta);
+
+		this._var = shiftSymbol(this._var, position, delta);
+	}
 }
@@ -62,6 +62,17 @@ public class JSLintValidator extends AbstractBuildParticipant
 	private static final String JSLINT_FILENAME = "fulljslint.js"; //$NON-NLS-1$
 	private static Script JS_LINT_SCRIPT;
 
+	/**
+	 * Most scopes with an initialized JSLINT we keep around for reuse. JSLint keeps its state in shared closures (and
+	 * patches the standard prototypes), so a scope may only be used by one thread at a time.
+	 */
+	private static final int MAX_POOLED_SCOPES = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Idle scopes in which the JSLint script has already been run. Access should be synchronized on the list.
+	 */
+	private static final List<Scriptable> LINT_SCOPES = new ArrayList<Scriptable>(MAX_POOLED_SCOPES);
+
 	private Map<String, Object> options;
 
 	@SuppressWarnings("nls")
@@ -130,9 +141,65 @@ public class JSLintValidator extends AbstractBuildParticipant
 			return Collections.emptyList();
 		}
 
+		Scriptable scope = checkOutScope(context, script);
+		boolean reusable = false;
+		try
+		{
+			List<IProblem> items = lint(context, scope, source, path);
+			reusable = true;
+			return items;
+		}
+		finally
+		{
+			if (reusable)
+			{
+				checkInScope(scope);
+			}
+		}
+	}
+
+	/**
+	 * Grab an idle scope holding an initialized JSLINT, or set up a new one if none is available. Running the JSLint
+	 * script is far more expensive than linting a typical file, so we avoid doing it for every file.
+	 * 
+	 * @param context
+	 * @param script
+	 * @return
+	 */
+	private static Scriptable checkOutScope(Context context, Script script)
+	{
+		synchronized (LINT_SCOPES)
+		{
+			if (!LINT_SCOPES.isEmpty())
+			{
+				return LINT_SCOPES.remove(LINT_SCOPES.size() - 1);
+			}
+		}
+
 		Scriptable scope = context.initStandardObjects();
 		script.exec(context, scope);
+		return scope;
+	}
 
+	/**
+	 * Hand a scope back once a lint run has completed normally. JSLINT resets its state at the start of every run, so
+	 * the scope can be used for the next file as is.
+	 * 
+	 * @param scope
+	 */
+	private static void checkInScope(Scriptable scope)
+	{
+		synchronized (LINT_SCOPES)
+		{
+			if (LINT_SCOPES.size() < MAX_POOLED_SCOPES)
+			{
+				LINT_SCOPES.add(scope);
+			}
+		}
+	}
+
+	private List<IProblem> lint(Context context, Scriptable scope, String source, String path)
+	{
 		Object functionObj = scope.get("JSLINT", scope); //$NON-NLS-1$
 		if (!(functionObj instanceof Function))
 		{
@@ -13,12 +13,16 @@
 
 package com.aptana.filesystem.ftp.internal;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
@@ -29,9 +33,9 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
-import java.util.Map;
 import java.util.TimeZone;
 import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.runtime.Assert;
@@ -45,9 +49,11 @@ import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.PerformanceStats;
 import org.eclipse.core.runtime.Status;
 
+import com.aptana.core.IFilter;
 import com.aptana.core.io.vfs.ExtendedFileInfo;
+import com.aptana.core.io.vfs.IConcurrentConnectionFileManager;
 import com.aptana.core.io.vfs.IExtendedFileStore;
-import com.aptana.core.util.ExpiringMap;
+import com.aptana.core.util.ExpiringCache;
 import com.aptana.filesystem.ftp.FTPPlugin;
 import com.aptana.filesystem.ftp.IFTPConnectionFileManager;
 import com.aptana.filesystem.ftp.IFTPConstants;
@@ -74,12 +80,15 @@ import com.enterprisedt.net.ftp.pro.ProFTPClient;
 /**
  * @author Max Stepanov
  */
-public class FTPConnectionFileManager extends BaseFTPConnectionFileManager implements IFTPConnectionFileManager, IPoolConnectionManager {
+public class FTPConnectionFileManager extends BaseFTPConnectionFileManager implements IFTPConnectionFileManager, IPoolConnectionManager, IConcurrentConnectionFileManager {
 	
+	private static final int MAX_CONCURRENT_TRANSFERS = 4;
 	private static final String TMP_TIMEZONE_CHECK = "_tmp_tz_check"; //$NON-NLS-1$
 
 	private final static String WINDOWS_STR = "WINDOWS"; //$NON-NLS-1$
 
+	private final static Pattern PASV_REPLY_PATTERN = Pattern.compile("(\\d+),(\\d+),(\\d+),(\\d+),(\\d+),(\\d+)"); //$NON-NLS-1$
+
 	private final static SimpleDateFormat[] UTIME_FORMATS = new SimpleDateFormat[] {
 		new SimpleDateFormat("'UTIME' yyyyMMddHHmmss '{0}'"), //$NON-NLS-1$
 		new SimpleDateFormat("'UTIME {0}' yyyyMMddHHmmss yyyyMMddHHmmss yyyyMMddHHmmss 'UTC'"), //$NON-NLS-1$
@@ -93,8 +102,9 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 	private FTPFileFactory fileFactory;
 	private Boolean statSupported = null;
 	private Boolean listASupported = null;
+	private Boolean mlsdSupported = null;
 	private int utimeFormat = -1;
-	private Map<IPath, FTPFile> ftpFileCache = new ExpiringMap<IPath, FTPFile>(CACHE_TTL);
+	private ExpiringCache<IPath, FTPFile> ftpFileCache = new ExpiringCache<IPath, FTPFile>(CACHE_SIZE, CACHE_TTL);
 	private long serverToLocalTimeZoneShift = Integer.MIN_VALUE;
 	protected boolean hasServerInfo;
 	protected PrintWriter messageLogWriter;
@@ -289,6 +299,9 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 		Policy.checkCanceled(monitor);
 		monitor.subTask(Messages.FTPConnectionFileManager_gethering_server_info);
 		serverFeatures = null;
+		mlsdSupported = null;
+		// time zone detection below relies on LIST times, not on machine listings
+		hasServerInfo = false;
 		try {
 			String[] features = ftpClient.features();
 			if (features != null && features.length > 0) {
@@ -541,13 +554,13 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 		clearCacheAbsolute(basePath.append(path));
 	}
 
-	private void clearCacheAbsolute(IPath path) {
-		int segments = path.segmentCount();
-		for (IPath p : new ArrayList<IPath>(ftpFileCache.keySet())) {
-			if (p.segmentCount() >= segments && path.matchingFirstSegments(p) == segments) {
-				ftpFileCache.remove(p);
+	private void clearCacheAbsolute(final IPath path) {
+		final int segments = path.segmentCount();
+		ftpFileCache.removeAll(new IFilter<IPath>() {
+			public boolean include(IPath p) {
+				return p.segmentCount() >= segments && path.matchingFirstSegments(p) == segments;
 			}
-		}
+		});
 	}
 
 	/*
@@ -635,9 +648,10 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 					return fileInfo;
 				}
 				FTPFile[] ftpFiles = listFiles(dirPath, monitor);
+				ftpFileCache.ensureCapacity(LISTING_CAPACITY_FACTOR * ftpFiles.length);
 				for (FTPFile ftpFile : ftpFiles) {
 					Date lastModifiedServerInLocalTZ = ftpFile.lastModified();
-					if (serverToLocalTimeZoneShift != 0 && lastModifiedServerInLocalTZ != null) {
+					if (serverToLocalTimeZoneShift != 0 && lastModifiedServerInLocalTZ != null && !(ftpFile instanceof MachineListedFile)) {
 						ftpFile.setLastModified(new Date(lastModifiedServerInLocalTZ.getTime()+serverToLocalTimeZoneShift));
 					}
 					String fileName = ftpFile.getName();
@@ -656,7 +670,7 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 				}
 			}
 			if ((options & IExtendedFileStore.DETAILED) != 0) {
-				if (result != null && !result.isDir() && name != null && result.lastModified().getSeconds() == 0) {
+				if (result != null && !result.isDir() && name != null && !(result instanceof MachineListedFile) && result.lastModified().getSeconds() == 0) {
 					if (serverSupportsFeature("MDTM")) { //$NON-NLS-1$
 						changeCurrentDir(dirPath);
 						Policy.checkCanceled(monitor);
@@ -697,6 +711,7 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 		monitor = Policy.subMonitorFor(monitor, 1);
 		try {
 			FTPFile[] ftpFiles = listFiles(path, monitor);
+			ftpFileCache.ensureCapacity(LISTING_CAPACITY_FACTOR * ftpFiles.length);
 			monitor.beginTask(Messages.FTPConnectionFileManager_gethering_file_details, ftpFiles.length);
 			List<ExtendedFileInfo> list = new ArrayList<ExtendedFileInfo>();
 			for (FTPFile ftpFile : ftpFiles) {
@@ -706,11 +721,11 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 					continue;
 				}
 				Date lastModifiedServerInLocalTZ = ftpFile.lastModified();
-				if (serverToLocalTimeZoneShift != 0 && lastModifiedServerInLocalTZ != null) {
+				if (serverToLocalTimeZoneShift != 0 && lastModifiedServerInLocalTZ != null && !(ftpFile instanceof MachineListedFile)) {
 					ftpFile.setLastModified(new Date(lastModifiedServerInLocalTZ.getTime()+serverToLocalTimeZoneShift));
 				}
 				if ((options & IExtendedFileStore.DETAILED) != 0) {
-					if (!ftpFile.isDir() && ftpFile.lastModified().getSeconds() == 0) {
+					if (!ftpFile.isDir() && !(ftpFile instanceof MachineListedFile) && ftpFile.lastModified().getSeconds() == 0) {
 						if (serverSupportsFeature("MDTM")) { //$NON-NLS-1$
 							changeCurrentDir(path);
 							Policy.checkCanceled(monitor);
@@ -750,6 +765,7 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 	protected String[] listDirectory(IPath path, IProgressMonitor monitor) throws CoreException, FileNotFoundException {
 		try {
 			FTPFile[] ftpFiles = listFiles(path, monitor);
+			ftpFileCache.ensureCapacity(LISTING_CAPACITY_FACTOR * ftpFiles.length);
 			List<String> list = new ArrayList<String>();
 			for (FTPFile ftpFile : ftpFiles) {
 				String name = ftpFile.getName();
@@ -1150,8 +1166,108 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 		}
 	}
 
+	/**
+	 * Returns whether directories may be listed with MLSD. The time zone detection needs LIST times, so machine
+	 * listings are only used once server info has been gathered.
+	 */
+	protected boolean canUseMachineListing() {
+		return hasServerInfo && !Boolean.FALSE.equals(mlsdSupported) && serverSupportsFeature("MLST") //$NON-NLS-1$
+				&& FTPConnectMode.PASV.equals(ftpClient.getConnectMode());
+	}
+
+	/**
+	 * Lists a directory with a single MLSD over a passive data connection. Entries carry exact UTC times, sizes and
+	 * permissions, so no per-file MDTM round trips nor time zone shifts are needed. Returns <code>null</code> when the
+	 * data connection fails, the directory has to be listed some other way then.
+	 */
+	private FTPFile[] ftpMLSD(IPath dirPath, IProgressMonitor monitor) throws IOException, FTPException {
+		Policy.checkCanceled(monitor);
+		FTPReply reply = ftpClient.sendCommand("PASV"); //$NON-NLS-1$
+		ftpClient.validateReply(reply, new String[] { "227" }); //$NON-NLS-1$
+		Matcher matcher = PASV_REPLY_PATTERN.matcher(reply.getReplyText());
+		if (!matcher.find()) {
+			throw new MalformedReplyException(reply.getReplyText());
+		}
+		int dataPort = Integer.parseInt(matcher.group(5)) * 256 + Integer.parseInt(matcher.group(6));
+		List<FTPFile> list = new ArrayList<FTPFile>();
+		boolean transferred = false;
+		Socket socket = new Socket();
+		try {
+			try {
+				// the advertised address is often a private one behind NAT, use the control connection host
+				socket.connect(new InetSocketAddress(ftpClient.getRemoteHost(), dataPort), TIMEOUT);
+				socket.setSoTimeout(TIMEOUT);
+			} catch (IOException e) {
+				// nothing has been sent on the control connection yet
+				return null;
+			}
+			reply = ftpClient.sendCommand("MLSD " + dirPath.toPortableString()); //$NON-NLS-1$
+			ftpClient.validateReply(reply, new String[] { "125", "150" }); //$NON-NLS-1$ //$NON-NLS-2$
+			try {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), ftpClient.getControlEncoding()));
+				String line;
+				while ((line = reader.readLine()) != null) {
+					FTPFile ftpFile = MachineListedFile.parse(line);
+					if (ftpFile != null) {
+						list.add(ftpFile);
+					}
+				}
+				transferred = true;
+			} catch (IOException e) {
+				// the listing is incomplete
+			}
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException ignore) {
+			}
+		}
+		if (!transferred) {
+			// the server still replies to the broken transfer, that reply must be read before sending anything else
+			try {
+				ftpClient.validateTransfer();
+			} catch (FTPException ignore) {
+			} catch (IOException e) {
+				// no reply, the control connection is out of step
+				try {
+					ftpClient.quitImmediately();
+				} catch (Exception ignore) {
+				}
+				throw e;
+			}
+			return null;
+		}
+		ftpClient.validateTransfer();
+		return list.toArray(new FTPFile[list.size()]);
+	}
+
 	private FTPFile[] listFiles(IPath dirPath, IProgressMonitor monitor) throws IOException, ParseException, FTPException {
 		FTPFile[] ftpFiles = null;
+		if (canUseMachineListing()) {
+			try {
+				ftpFiles = ftpMLSD(dirPath, monitor);
+				// when the data connection we open ourselves fails, LIST sets up its own from now on
+				mlsdSupported = Boolean.valueOf(ftpFiles != null);
+			} catch (MalformedReplyException e) {
+				mlsdSupported = Boolean.FALSE;
+			} catch (FTPException e) {
+				int code = e.getReplyCode();
+				if (code == 500 || code == 501 || code == 502 || code == 504 || code == 425 || code == 426) {
+					mlsdSupported = Boolean.FALSE;
+				} else if (code == 550 || code == 450) {
+					throwFileNotFound(e, dirPath);
+				} else {
+					throw e;
+				}
+			}
+			if (ftpFiles != null) {
+				if (!MachineListedFile.containsLink(ftpFiles)) {
+					return ftpFiles;
+				}
+				// link targets are only reported by LIST
+				ftpFiles = null;
+			}
+		}
 		if (!Boolean.FALSE.equals(statSupported) && dirPath.toPortableString().indexOf(' ') == -1) {
 			try {
 				ftpFiles = ftpSTAT(dirPath.addTrailingSeparator().toPortableString());
@@ -1238,6 +1354,14 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 		return sb.toString();
 	}
 
+	/* (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.IConcurrentConnectionFileManager#getMaxConcurrentTransfers()
+	 */
+	public int getMaxConcurrentTransfers() {
+		// every stream checks out its own client from the pool
+		return MAX_CONCURRENT_TRANSFERS;
+	}
+
 	public FTPClient newClient() {
 		return new ProFTPClient();
 	}
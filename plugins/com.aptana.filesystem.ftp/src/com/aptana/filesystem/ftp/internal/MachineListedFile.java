@@ -0,0 +1,169 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.aptana.filesystem.ftp.internal;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.eclipse.core.runtime.Path;
+
+import com.enterprisedt.net.ftp.FTPFile;
+
+/**
+ * A file parsed from an MLSD/MLST fact line (RFC 3659). Its modification time is exact and in UTC.
+ */
+final class MachineListedFile extends FTPFile {
+
+	private static final String FACT_TYPE = "type"; //$NON-NLS-1$
+	private static final String FACT_SIZE = "size"; //$NON-NLS-1$
+	private static final String FACT_MODIFY = "modify"; //$NON-NLS-1$
+	private static final String FACT_PERM = "perm"; //$NON-NLS-1$
+	private static final String FACT_UNIX_MODE = "unix.mode"; //$NON-NLS-1$
+	private static final String FACT_UNIX_OWNER = "unix.owner"; //$NON-NLS-1$
+	private static final String FACT_UNIX_GROUP = "unix.group"; //$NON-NLS-1$
+	private static final String TYPE_DIR = "dir"; //$NON-NLS-1$
+	private static final String TYPE_CDIR = "cdir"; //$NON-NLS-1$
+	private static final String TYPE_PDIR = "pdir"; //$NON-NLS-1$
+	private static final String TYPE_LINK_PREFIX = "os.unix=s"; //$NON-NLS-1$
+
+	private final boolean link;
+
+	private MachineListedFile(String raw, String name, long size, boolean isDir, Date lastModified, boolean link) {
+		super(raw, name, size, isDir, lastModified);
+		this.link = link;
+	}
+
+	/**
+	 * Parses "fact=value;...; name", returning <code>null</code> for malformed lines.
+	 */
+	static MachineListedFile parse(String line) {
+		int index = line.indexOf(' ');
+		if (index <= 0 || index == line.length() - 1) {
+			return null;
+		}
+		String name = line.substring(index + 1);
+		String type = null;
+		long size = 0;
+		Date lastModified = null;
+		String perm = null;
+		String mode = null;
+		String owner = null;
+		String group = null;
+		for (String fact : line.substring(0, index).split(";")) { //$NON-NLS-1$
+			int eq = fact.indexOf('=');
+			if (eq <= 0) {
+				continue;
+			}
+			String key = fact.substring(0, eq).toLowerCase(Locale.ENGLISH);
+			String value = fact.substring(eq + 1);
+			if (FACT_TYPE.equals(key)) {
+				type = value.toLowerCase(Locale.ENGLISH);
+			} else if (FACT_SIZE.equals(key)) {
+				try {
+					size = Long.parseLong(value);
+				} catch (NumberFormatException e) {
+				}
+			} else if (FACT_MODIFY.equals(key)) {
+				lastModified = parseTime(value);
+			} else if (FACT_PERM.equals(key)) {
+				perm = value.toLowerCase(Locale.ENGLISH);
+			} else if (FACT_UNIX_MODE.equals(key)) {
+				mode = value;
+			} else if (FACT_UNIX_OWNER.equals(key)) {
+				owner = value;
+			} else if (FACT_UNIX_GROUP.equals(key)) {
+				group = value;
+			}
+		}
+		if (type == null) {
+			return null;
+		}
+		if (TYPE_CDIR.equals(type)) {
+			name = "."; //$NON-NLS-1$
+		} else if (TYPE_PDIR.equals(type)) {
+			name = ".."; //$NON-NLS-1$
+		} else if (name.indexOf('/') != -1) {
+			name = Path.fromPortableString(name).lastSegment();
+		}
+		boolean isDir = TYPE_DIR.equals(type) || TYPE_CDIR.equals(type) || TYPE_PDIR.equals(type);
+		MachineListedFile ftpFile = new MachineListedFile(line, name, size, isDir, (lastModified != null) ? lastModified : new Date(0), type.startsWith(TYPE_LINK_PREFIX));
+		ftpFile.setPermissions(toPermissionsString(isDir, mode, perm));
+		if (owner != null) {
+			ftpFile.setOwner(owner);
+		}
+		if (group != null) {
+			ftpFile.setGroup(group);
+		}
+		return ftpFile;
+	}
+
+	static boolean containsLink(FTPFile[] ftpFiles) {
+		for (FTPFile ftpFile : ftpFiles) {
+			if (ftpFile instanceof MachineListedFile && ((MachineListedFile) ftpFile).link) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Parses YYYYMMDDHHMMSS[.sss] in UTC.
+	 */
+	private static Date parseTime(String value) {
+		if (value.length() < 14) {
+			return null;
+		}
+		try {
+			Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC")); //$NON-NLS-1$
+			calendar.clear();
+			calendar.set(Integer.parseInt(value.substring(0, 4)), Integer.parseInt(value.substring(4, 6)) - 1,
+					Integer.parseInt(value.substring(6, 8)), Integer.parseInt(value.substring(8, 10)),
+					Integer.parseInt(value.substring(10, 12)), Integer.parseInt(value.substring(12, 14)));
+			if (value.length() > 15 && value.charAt(14) == '.') {
+				String fraction = (value.substring(15) + "00").substring(0, 3); //$NON-NLS-1$
+				calendar.set(Calendar.MILLISECOND, Integer.parseInt(fraction));
+			}
+			return calendar.getTime();
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Builds an "ls -l" style permission string from the UNIX.mode fact, or approximates the owner bits from the
+	 * perm fact when the server does not report a mode.
+	 */
+	private static String toPermissionsString(boolean isDir, String mode, String perm) {
+		StringBuffer sb = new StringBuffer(10);
+		sb.append(isDir ? 'd' : '-');
+		if (mode != null) {
+			try {
+				int bits = Integer.parseInt(mode, 8);
+				for (int shift = 6; shift >= 0; shift -= 3) {
+					sb.append((bits & (4 << shift)) != 0 ? 'r' : '-');
+					sb.append((bits & (2 << shift)) != 0 ? 'w' : '-');
+					sb.append((bits & (1 << shift)) != 0 ? 'x' : '-');
+				}
+				return sb.toString();
+			} catch (NumberFormatException e) {
+				sb.setLength(1);
+			}
+		}
+		if (perm == null) {
+			return null;
+		}
+		boolean read = isDir ? (perm.indexOf('l') != -1 || perm.indexOf('e') != -1) : perm.indexOf('r') != -1;
+		boolean write = isDir ? (perm.indexOf('c') != -1 || perm.indexOf('m') != -1) : (perm.indexOf('w') != -1 || perm.indexOf('a') != -1);
+		sb.append(read ? 'r' : '-').append(write ? 'w' : '-').append(isDir && perm.indexOf('e') != -1 ? 'x' : '-');
+		sb.append("------"); //$NON-NLS-1$
+		return sb.toString();
+	}
+}
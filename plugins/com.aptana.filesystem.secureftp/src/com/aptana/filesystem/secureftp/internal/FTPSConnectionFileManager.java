@@ -329,6 +329,15 @@ public class FTPSConnectionFileManager extends FTPConnectionFileManager implemen
 		monitor.worked(1);
 	}
 
+	/* (non-Javadoc)
+	 * @see com.aptana.filesystem.ftp.internal.FTPConnectionFileManager#canUseMachineListing()
+	 */
+	@Override
+	protected boolean canUseMachineListing() {
+		// MLSD data connections are opened as plain sockets and would bypass the TLS data channel
+		return false;
+	}
+
 	/* (non-Javadoc)
 	 * @see com.aptana.filesystem.secureftp.FTPConnectionFileManager#getRootCanonicalURI()
 	 */
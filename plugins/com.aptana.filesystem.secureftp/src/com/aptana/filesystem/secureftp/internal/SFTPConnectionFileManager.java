@@ -30,7 +30,6 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.Map;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.runtime.Assert;
@@ -43,9 +42,10 @@ import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
 
+import com.aptana.core.IFilter;
 import com.aptana.core.io.vfs.ExtendedFileInfo;
 import com.aptana.core.io.vfs.IExtendedFileStore;
-import com.aptana.core.util.ExpiringMap;
+import com.aptana.core.util.ExpiringCache;
 import com.aptana.filesystem.ftp.Policy;
 import com.aptana.filesystem.ftp.internal.BaseFTPConnectionFileManager;
 import com.aptana.filesystem.secureftp.ISFTPConnectionFileManager;
@@ -77,7 +77,7 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 	private IPath keyFilePath;
 	private String transferType;
 	private IPath cwd;
-	private Map<IPath, FTPFile> ftpFileCache = new ExpiringMap<IPath, FTPFile>(CACHE_TTL);
+	private ExpiringCache<IPath, FTPFile> ftpFileCache = new ExpiringCache<IPath, FTPFile>(CACHE_SIZE, CACHE_TTL);
 
 	private Thread keepaliveThread;
 
@@ -390,13 +390,13 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 		clearCacheAbsolute(basePath.append(path));
 	}
 	
-	private void clearCacheAbsolute(IPath path) {
-		int segments = path.segmentCount();
-		for (IPath p : new ArrayList<IPath>(ftpFileCache.keySet())) {
-			if (p.segmentCount() >= segments && path.matchingFirstSegments(p) == segments) {
-				ftpFileCache.remove(p);
+	private void clearCacheAbsolute(final IPath path) {
+		final int segments = path.segmentCount();
+		ftpFileCache.removeAll(new IFilter<IPath>() {
+			public boolean include(IPath p) {
+				return p.segmentCount() >= segments && path.matchingFirstSegments(p) == segments;
 			}
-		}
+		});
 	}
 
 	/* (non-Javadoc)
@@ -456,6 +456,7 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 					return fileInfo;
 				}
 				FTPFile[] ftpFiles = listFiles(dirPath, monitor);
+				ftpFileCache.ensureCapacity(LISTING_CAPACITY_FACTOR * ftpFiles.length);
 				for (FTPFile ftpFile : ftpFiles) {
 					String fileName = ftpFile.getName();
 					if (fileName == null || ".".equals(fileName) || "..".equals(fileName)) { //$NON-NLS-1$ //$NON-NLS-2$
@@ -497,6 +498,7 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 		monitor = Policy.subMonitorFor(monitor, 1);
 		try {
 			FTPFile[] ftpFiles = listFiles(path, monitor);
+			ftpFileCache.ensureCapacity(LISTING_CAPACITY_FACTOR * ftpFiles.length);
 			monitor.beginTask(Messages.SFTPConnectionFileManager_GatheringFileDetails, ftpFiles.length);
 			List<ExtendedFileInfo> list = new ArrayList<ExtendedFileInfo>();
 			for (FTPFile ftpFile : ftpFiles) {
@@ -715,6 +717,7 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 	protected String[] listDirectory(IPath path, IProgressMonitor monitor) throws CoreException, FileNotFoundException {
 		try {
 			FTPFile[] ftpFiles = listFiles(path, monitor);
+			ftpFileCache.ensureCapacity(LISTING_CAPACITY_FACTOR * ftpFiles.length);
 			List<String> list = new ArrayList<String>();
 			for (FTPFile ftpFile : ftpFiles) {
 				String name = ftpFile.getName();
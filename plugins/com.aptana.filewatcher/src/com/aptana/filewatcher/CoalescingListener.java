@@ -0,0 +1,183 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.filewatcher;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import net.contentobjects.jnotify.IJNotify;
+import net.contentobjects.jnotify.JNotifyListener;
+
+/**
+ * Adapts raw {@link JNotifyListener} callbacks to an {@link IFileEventBatchListener}. Events are merged per file and
+ * delivered once no new event arrived for {@link #QUIET_PERIOD} ms, or at the latest {@link #MAX_DELAY} ms after the
+ * first event of a burst.
+ */
+/* package */class CoalescingListener implements JNotifyListener
+{
+
+	/* package */static final long QUIET_PERIOD = 200;
+	/* package */static final long MAX_DELAY = 2000;
+
+	private final IFileEventBatchListener listener;
+	private final ScheduledExecutorService dispatcher;
+	private final Map<String, FileEvent> pending = new LinkedHashMap<String, FileEvent>();
+	private final Runnable flush = new Runnable()
+	{
+		public void run()
+		{
+			flush();
+		}
+	};
+
+	private long firstEventTime;
+	private long lastEventTime;
+	private boolean scheduled;
+	private volatile boolean disposed;
+
+	/* package */CoalescingListener(IFileEventBatchListener listener, ScheduledExecutorService dispatcher)
+	{
+		this.listener = listener;
+		this.dispatcher = dispatcher;
+	}
+
+	public void fileCreated(int wd, String rootPath, String name)
+	{
+		add(new FileEvent(IJNotify.FILE_CREATED, wd, rootPath, name, null));
+	}
+
+	public void fileDeleted(int wd, String rootPath, String name)
+	{
+		add(new FileEvent(IJNotify.FILE_DELETED, wd, rootPath, name, null));
+	}
+
+	public void fileModified(int wd, String rootPath, String name)
+	{
+		add(new FileEvent(IJNotify.FILE_MODIFIED, wd, rootPath, name, null));
+	}
+
+	public void fileRenamed(int wd, String rootPath, String oldName, String newName)
+	{
+		add(new FileEvent(IJNotify.FILE_RENAMED, wd, rootPath, newName, oldName));
+	}
+
+	/* package */void dispose()
+	{
+		disposed = true;
+		synchronized (this)
+		{
+			pending.clear();
+		}
+	}
+
+	private synchronized void add(FileEvent event)
+	{
+		if (disposed)
+		{
+			return;
+		}
+		String key = event.getRootPath() + '\0' + event.getName();
+		FileEvent previous = pending.remove(key);
+		FileEvent merged = (previous == null) ? event : merge(previous, event);
+		if (merged != null)
+		{
+			pending.put(key, merged);
+		}
+		lastEventTime = System.currentTimeMillis();
+		if (!scheduled)
+		{
+			firstEventTime = lastEventTime;
+			try
+			{
+				dispatcher.schedule(flush, QUIET_PERIOD, TimeUnit.MILLISECONDS);
+				scheduled = true;
+			}
+			catch (RejectedExecutionException e)
+			{
+				// shutting down
+				pending.clear();
+			}
+		}
+	}
+
+	/**
+	 * Merges two consecutive events for the same file, returning <code>null</code> if they cancel out.
+	 */
+	private static FileEvent merge(FileEvent previous, FileEvent next)
+	{
+		switch (previous.getType())
+		{
+			case IJNotify.FILE_CREATED:
+				if (next.getType() == IJNotify.FILE_DELETED)
+				{
+					return null;
+				}
+				return (next.getType() == IJNotify.FILE_MODIFIED) ? previous : next;
+			case IJNotify.FILE_DELETED:
+				if (next.getType() == IJNotify.FILE_CREATED)
+				{
+					// replaced, e.g. written to a lock file and moved back
+					return new FileEvent(IJNotify.FILE_MODIFIED, next.getWatchId(), next.getRootPath(),
+							next.getName(), null);
+				}
+				return next;
+			case IJNotify.FILE_MODIFIED:
+			case IJNotify.FILE_RENAMED:
+				return (next.getType() == IJNotify.FILE_MODIFIED) ? previous : next;
+			default:
+				return next;
+		}
+	}
+
+	private void flush()
+	{
+		List<FileEvent> events;
+		synchronized (this)
+		{
+			long now = System.currentTimeMillis();
+			long quiet = now - lastEventTime;
+			if (quiet < QUIET_PERIOD && now - firstEventTime < MAX_DELAY)
+			{
+				try
+				{
+					dispatcher.schedule(flush, QUIET_PERIOD - quiet, TimeUnit.MILLISECONDS);
+					return;
+				}
+				catch (RejectedExecutionException e)
+				{
+					// shutting down, deliver what we have
+				}
+			}
+			scheduled = false;
+			if (pending.isEmpty())
+			{
+				return;
+			}
+			events = new ArrayList<FileEvent>(pending.values());
+			pending.clear();
+		}
+		if (disposed)
+		{
+			return;
+		}
+		try
+		{
+			listener.filesChanged(events);
+		}
+		catch (Throwable e)
+		{
+			FileWatcherPlugin.log(e);
+		}
+	}
+
+}
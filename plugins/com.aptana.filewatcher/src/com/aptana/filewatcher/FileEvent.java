@@ -0,0 +1,100 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.filewatcher;
+
+import net.contentobjects.jnotify.IJNotify;
+
+/**
+ * A single, possibly coalesced, file system change delivered to an {@link IFileEventBatchListener}.
+ */
+public final class FileEvent
+{
+
+	private final int type;
+	private final int watchId;
+	private final String rootPath;
+	private final String name;
+	private final String oldName;
+
+	/**
+	 * @param type
+	 *            one of {@link IJNotify#FILE_CREATED}, {@link IJNotify#FILE_DELETED}, {@link IJNotify#FILE_MODIFIED}
+	 *            or {@link IJNotify#FILE_RENAMED}
+	 * @param watchId
+	 * @param rootPath
+	 * @param name
+	 *            the (new) name, relative to the root path
+	 * @param oldName
+	 *            the old name for renames, <code>null</code> otherwise
+	 */
+	public FileEvent(int type, int watchId, String rootPath, String name, String oldName)
+	{
+		this.type = type;
+		this.watchId = watchId;
+		this.rootPath = rootPath;
+		this.name = name;
+		this.oldName = oldName;
+	}
+
+	public int getType()
+	{
+		return type;
+	}
+
+	public int getWatchId()
+	{
+		return watchId;
+	}
+
+	public String getRootPath()
+	{
+		return rootPath;
+	}
+
+	/**
+	 * Returns the name relative to the root path; the new name for renames. May be <code>null</code>.
+	 *
+	 * @return
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	public String getOldName()
+	{
+		return oldName;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		StringBuilder builder = new StringBuilder();
+		switch (type)
+		{
+			case IJNotify.FILE_CREATED:
+				builder.append("created "); //$NON-NLS-1$
+				break;
+			case IJNotify.FILE_DELETED:
+				builder.append("deleted "); //$NON-NLS-1$
+				break;
+			case IJNotify.FILE_MODIFIED:
+				builder.append("modified "); //$NON-NLS-1$
+				break;
+			default:
+				builder.append("renamed ").append(oldName).append(" -> "); //$NON-NLS-1$ //$NON-NLS-2$
+				break;
+		}
+		return builder.append(name).append(" in ").append(rootPath).toString(); //$NON-NLS-1$
+	}
+
+}
@@ -7,6 +7,12 @@
  */
 package com.aptana.filewatcher;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
 import net.contentobjects.jnotify.IJNotify;
 import net.contentobjects.jnotify.JNotifyException;
 import net.contentobjects.jnotify.JNotifyListener;
@@ -21,6 +27,8 @@ public class FileWatcher
 
 	private static IJNotify _instance;
 	private static boolean fgNotify = true;
+	private static ScheduledExecutorService fgDispatcher;
+	private static final Map<Integer, CoalescingListener> fgBatchListeners = new HashMap<Integer, CoalescingListener>();
 
 	private synchronized static IJNotify instance()
 	{
@@ -65,11 +73,72 @@ public class FileWatcher
 		return instance().addWatch(path, mask, watchSubtree, listener);
 	}
 
+	/**
+	 * Adds a watch whose changes are coalesced and delivered in batches, one per burst of activity (e.g. a git
+	 * checkout), on a single dispatch thread shared by all batched watches.
+	 * 
+	 * @param path
+	 * @param mask
+	 * @param watchSubtree
+	 * @param listener
+	 * @return the watch id, to be passed to {@link #removeWatch(int)}
+	 * @throws JNotifyException
+	 */
+	public static int addWatch(String path, int mask, boolean watchSubtree, IFileEventBatchListener listener)
+			throws JNotifyException
+	{
+		CoalescingListener coalescingListener = new CoalescingListener(listener, dispatcher());
+		int watchId = instance().addWatch(path, mask, watchSubtree, coalescingListener);
+		synchronized (fgBatchListeners)
+		{
+			fgBatchListeners.put(watchId, coalescingListener);
+		}
+		return watchId;
+	}
+
 	public static boolean removeWatch(int watchId) throws JNotifyException
 	{
+		CoalescingListener coalescingListener;
+		synchronized (fgBatchListeners)
+		{
+			coalescingListener = fgBatchListeners.remove(watchId);
+		}
+		if (coalescingListener != null)
+		{
+			coalescingListener.dispose();
+		}
 		return instance().removeWatch(watchId);
 	}
 
+	private synchronized static ScheduledExecutorService dispatcher()
+	{
+		if (fgDispatcher == null)
+		{
+			fgDispatcher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+			{
+				public Thread newThread(Runnable r)
+				{
+					Thread thread = new Thread(r, "File Watcher Dispatcher"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return fgDispatcher;
+	}
+
+	/**
+	 * Stops delivering batched events.
+	 */
+	/* package */synchronized static void shutdown()
+	{
+		if (fgDispatcher != null)
+		{
+			fgDispatcher.shutdownNow();
+			fgDispatcher = null;
+		}
+	}
+
 	public static synchronized void avoidNotify()
 	{
 		fgNotify = false;
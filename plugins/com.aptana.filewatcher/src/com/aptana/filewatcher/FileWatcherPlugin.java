@@ -47,6 +47,7 @@ public class FileWatcherPlugin extends Plugin
 	 */
 	public void stop(BundleContext context) throws Exception
 	{
+		FileWatcher.shutdown();
 		plugin = null;
 		super.stop(context);
 	}
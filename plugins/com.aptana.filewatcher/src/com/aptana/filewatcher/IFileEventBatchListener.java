@@ -0,0 +1,31 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.filewatcher;
+
+import java.util.List;
+
+/**
+ * Receives the changes of a watch in coalesced batches, one per burst of file system activity, instead of one
+ * callback per raw event.
+ *
+ * @see FileWatcher#addWatch(String, int, boolean, IFileEventBatchListener)
+ */
+public interface IFileEventBatchListener
+{
+
+	/**
+	 * Called on the file watcher dispatch thread once changes have settled. Events for the same file are merged (e.g.
+	 * created then modified is reported as created, created then deleted is dropped) and ordered by their last
+	 * occurrence.
+	 *
+	 * @param events
+	 *            never empty
+	 */
+	public void filesChanged(List<FileEvent> events);
+
+}
@@ -8,132 +8,214 @@
 package com.aptana.filewatcher.poller;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import net.contentobjects.jnotify.IJNotify;
 import net.contentobjects.jnotify.JNotifyException;
 import net.contentobjects.jnotify.JNotifyListener;
 
-import org.eclipse.core.resources.IResource;
-import org.eclipse.core.resources.ResourcesPlugin;
-import org.eclipse.core.runtime.IPath;
-import org.eclipse.core.runtime.Path;
-
-import com.aptana.filewatcher.poller.epl.DirectoryChangeListener;
-import com.aptana.filewatcher.poller.epl.DirectoryWatcher;
+import com.aptana.filewatcher.FileWatcherPlugin;
 
 /**
  * An implementation to fallback to using a 2 second polling mechanism to scan the directories using the Java File API.
+ * All watches are polled from a single thread. Each watch keeps an in-memory snapshot of the last modification times,
+ * taken when the watch is added, so existing files are not reported as created. Names are reported relative to the
+ * watched path, like the native adapters do.
  * 
  * @author cwilliams
  */
 public class PollingNotifier implements IJNotify
 {
 
+	/* package */static final long POLL_FREQUENCY = 2000;
+
 	private int id = 0;
-	private Map<Integer, DirectoryWatcher> watchers = new HashMap<Integer, DirectoryWatcher>();
+	private Map<Integer, Watch> watches = new HashMap<Integer, Watch>();
+	private ScheduledExecutorService poller;
 
-	public int addWatch(String path, final int mask, boolean watchSubtree, final JNotifyListener listener)
+	public synchronized int addWatch(String path, final int mask, boolean watchSubtree, final JNotifyListener listener)
 			throws JNotifyException
 	{
-		DirectoryWatcher watcher = new DirectoryWatcher(new File(path), watchSubtree);
-		watcher.addListener(new DirectoryChangeListener()
+		int thisId = id++;
+		Watch watch = new Watch(thisId, new File(path), mask, watchSubtree, listener);
+		watches.put(thisId, watch);
+		if (poller == null)
 		{
+			poller = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+			{
+				public Thread newThread(Runnable r)
+				{
+					Thread thread = new Thread(r, "Directory Watcher"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			poller.scheduleWithFixedDelay(new Runnable()
+			{
+				public void run()
+				{
+					poll();
+				}
+			}, POLL_FREQUENCY, POLL_FREQUENCY, TimeUnit.MILLISECONDS);
+		}
+		return thisId;
+	}
 
-			private Map<File, Long> files = new HashMap<File, Long>();
+	public synchronized boolean removeWatch(int wd) throws JNotifyException
+	{
+		Watch watch = watches.remove(wd);
+		if (watch == null)
+		{
+			return false;
+		}
+		watch.dispose();
+		if (watches.isEmpty() && poller != null)
+		{
+			poller.shutdown();
+			poller = null;
+		}
+		return true;
+	}
 
-			@Override
-			public void startPoll()
+	private void poll()
+	{
+		List<Watch> toPoll;
+		synchronized (this)
+		{
+			toPoll = new ArrayList<Watch>(watches.values());
+		}
+		for (Watch watch : toPoll)
+		{
+			try
 			{
+				watch.poll();
 			}
-
-			@Override
-			public void stopPoll()
+			catch (Throwable e)
 			{
+				FileWatcherPlugin.log(e);
 			}
+		}
+	}
+
+	private static class Watch
+	{
+
+		private final int wd;
+		private final File root;
+		private final String rootPath;
+		private final int mask;
+		private final boolean watchSubtree;
+		private final JNotifyListener listener;
+		private Map<File, Long> snapshot;
+		private volatile boolean disposed;
+
+		private Watch(int wd, File root, int mask, boolean watchSubtree, JNotifyListener listener)
+		{
+			this.wd = wd;
+			this.root = root;
+			this.rootPath = root.getPath();
+			this.mask = mask;
+			this.watchSubtree = watchSubtree;
+			this.listener = listener;
+			this.snapshot = scan(new HashMap<File, Long>());
+		}
 
-			@Override
-			public boolean added(File file)
+		private Map<File, Long> scan(Map<File, Long> files)
+		{
+			if (root.isDirectory())
 			{
-				files.put(file, file.lastModified());
-				if ((mask & IJNotify.FILE_CREATED) == 0)
-					return false;
-				listener.fileCreated(0, file.getParent(), file.getName());
-				return true;
+				scan(root, files);
 			}
-
-			@Override
-			public boolean removed(File file)
+			else if (root.exists())
 			{
-				files.remove(file);
-				if ((mask & IJNotify.FILE_DELETED) == 0)
-					return false;
-				listener.fileDeleted(0, file.getParent(), file.getName());
-				return true;
+				files.put(root, root.lastModified());
 			}
+			return files;
+		}
 
-			@Override
-			public boolean changed(File file)
+		private void scan(File directory, Map<File, Long> files)
+		{
+			File[] list = directory.listFiles();
+			if (list == null)
 			{
-				files.put(file, file.lastModified());
-				if ((mask & IJNotify.FILE_MODIFIED) == 0)
-					return false;
-				listener.fileModified(0, file.getParent(), file.getName());
-				return true;
+				return;
 			}
-
-			@Override
-			public boolean isInterested(File file)
+			for (File file : list)
 			{
-				return true;
+				files.put(file, file.lastModified());
+				if (watchSubtree && file.isDirectory())
+				{
+					scan(file, files);
+				}
 			}
+		}
 
-			@Override
-			public Long getSeenFile(File file)
+		private void poll()
+		{
+			Map<File, Long> previous = snapshot;
+			Map<File, Long> current = scan(new HashMap<File, Long>(previous.size() * 4 / 3 + 1));
+			snapshot = current;
+			for (Map.Entry<File, Long> entry : current.entrySet())
 			{
-				Long timestamp = files.get(file);
-				IResource resource = null;
-				IPath location = new Path(file.getAbsolutePath());
-				if (file.isDirectory())
+				if (disposed)
 				{
-					resource = ResourcesPlugin.getWorkspace().getRoot().getContainerForLocation(location);
+					return;
 				}
-				else
+				Long oldTimestamp = previous.remove(entry.getKey());
+				if (oldTimestamp == null)
 				{
-					resource = ResourcesPlugin.getWorkspace().getRoot().getFileForLocation(location);
+					if ((mask & IJNotify.FILE_CREATED) != 0)
+					{
+						listener.fileCreated(wd, getRootPath(entry.getKey()), getName(entry.getKey()));
+					}
 				}
-				Long resourceTimestamp = null;
-				if (resource != null && resource.exists())
-					resourceTimestamp = resource.getLocalTimeStamp();
-				if (resourceTimestamp == null && timestamp == null)
+				else if (!oldTimestamp.equals(entry.getValue()))
 				{
-					return null;
+					if ((mask & IJNotify.FILE_MODIFIED) != 0)
+					{
+						listener.fileModified(wd, getRootPath(entry.getKey()), getName(entry.getKey()));
+					}
 				}
-				if (resourceTimestamp != null && (timestamp == null || resourceTimestamp > timestamp))
+			}
+			// whatever is left was not seen anymore
+			if ((mask & IJNotify.FILE_DELETED) != 0)
+			{
+				for (File file : previous.keySet())
 				{
-					files.put(file, resourceTimestamp);
-					return resourceTimestamp;
+					if (disposed)
+					{
+						return;
+					}
+					listener.fileDeleted(wd, getRootPath(file), getName(file));
 				}
-				files.put(file, timestamp);
-				return timestamp;
 			}
-		});
-		int thisId = id;
-		watchers.put(id++, watcher);
-		watcher.start();
-		return thisId;
-	}
+		}
 
-	public boolean removeWatch(int wd) throws JNotifyException
-	{
-		DirectoryWatcher watcher = watchers.remove(wd);
-		if (watcher  == null)
+		private String getRootPath(File file)
 		{
-			return false;
+			return file.equals(root) ? root.getParent() : rootPath;
+		}
+
+		private String getName(File file)
+		{
+			if (file.equals(root))
+			{
+				return root.getName();
+			}
+			return file.getPath().substring(rootPath.length() + 1);
+		}
+
+		private void dispose()
+		{
+			disposed = true;
 		}
-		watcher.dispose();
-		return true;
 	}
 
 }
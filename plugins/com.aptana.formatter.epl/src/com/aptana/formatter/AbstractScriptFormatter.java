@@ -296,19 +296,7 @@ public abstract class AbstractScriptFormatter implements IScriptFormatter
 		List<IRegion> onOffRegions = null;
 		try
 		{
-			IParseRootNode parseResult = null;
-			IParser parser = checkoutParser();
-			try
-			{
-				if (parser != null)
-				{
-					parseResult = parser.parse(parseState);
-				}
-			}
-			finally
-			{
-				checkinParser(parser);
-			}
+			IParseRootNode parseResult = ParserPoolFactory.parse(getMainContentType(), parseState);
 			if (parseResult != null)
 			{
 				IParseNode[] commentNodes = parseResult.getCommentNodes();
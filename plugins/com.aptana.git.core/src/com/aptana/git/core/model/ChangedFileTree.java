@@ -0,0 +1,247 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.git.core.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indexes changed files by their repository relative path, one node per path segment. Every node keeps the number of
+ * changed files at or below it, so asking whether a folder contains changes or looking up a file costs one map lookup
+ * per segment regardless of how many files are changed. Not thread-safe; {@link GitIndex} guards it with the same lock
+ * as its list of changed files.
+ */
+/* package */final class ChangedFileTree
+{
+
+	private static final String[] NO_SEGMENTS = new String[0];
+
+	private final Node root = new Node();
+
+	/* package */ChangedFileTree()
+	{
+	}
+
+	/* package */ChangedFileTree(Collection<ChangedFile> files)
+	{
+		addAll(files);
+	}
+
+	/* package */void addAll(Collection<ChangedFile> files)
+	{
+		if (files == null)
+		{
+			return;
+		}
+		for (ChangedFile file : files)
+		{
+			add(file);
+		}
+	}
+
+	/**
+	 * Adds a changed file, replacing any file already held for the same path.
+	 * 
+	 * @param file
+	 */
+	/* package */void add(ChangedFile file)
+	{
+		String[] segments = segments(file.path);
+		Node existing = find(segments);
+		if (existing != null && existing.file != null)
+		{
+			existing.file = file;
+			return;
+		}
+
+		Node node = root;
+		++node.count;
+		for (String segment : segments)
+		{
+			Node child = node.getChild(segment);
+			if (child == null)
+			{
+				child = node.addChild(segment);
+			}
+			++child.count;
+			node = child;
+		}
+		node.file = file;
+	}
+
+	/**
+	 * Removes the changed file held for the given repository relative path.
+	 * 
+	 * @param path
+	 * @return whether a file was removed
+	 */
+	/* package */boolean remove(String path)
+	{
+		String[] segments = segments(path);
+		Node target = find(segments);
+		if (target == null || target.file == null)
+		{
+			return false;
+		}
+		target.file = null;
+
+		Node node = root;
+		--node.count;
+		for (String segment : segments)
+		{
+			Node child = node.getChild(segment);
+			if (--child.count == 0)
+			{
+				// nothing left below, drop the whole branch
+				node.children.remove(segment);
+				break;
+			}
+			node = child;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the changed file at the given path, or <code>null</code> if that path has no changes.
+	 * 
+	 * @param segments
+	 *            the path segments relative to the working directory
+	 * @return
+	 */
+	/* package */ChangedFile get(String[] segments)
+	{
+		Node node = find(segments);
+		return (node == null) ? null : node.file;
+	}
+
+	/* package */ChangedFile get(String path)
+	{
+		return get(segments(path));
+	}
+
+	/**
+	 * Returns whether the given path is a changed file or a folder that contains changed files.
+	 * 
+	 * @param segments
+	 *            the path segments relative to the working directory; empty for the working directory itself
+	 * @return
+	 */
+	/* package */boolean hasChanges(String[] segments)
+	{
+		Node node = find(segments);
+		return node != null && node.count > 0;
+	}
+
+	/**
+	 * Returns the changed files at or below the given path, in no particular order.
+	 * 
+	 * @param segments
+	 *            the path segments relative to the working directory; empty for the working directory itself
+	 * @return
+	 */
+	/* package */List<ChangedFile> getFiles(String[] segments)
+	{
+		Node node = find(segments);
+		if (node == null || node.count == 0)
+		{
+			return Collections.emptyList();
+		}
+		List<ChangedFile> files = new ArrayList<ChangedFile>(node.count);
+		collect(node, files);
+		return files;
+	}
+
+	/* package */int size()
+	{
+		return root.count;
+	}
+
+	private Node find(String[] segments)
+	{
+		Node node = root;
+		for (int i = 0; i < segments.length && node != null; ++i)
+		{
+			node = node.getChild(segments[i]);
+		}
+		return node;
+	}
+
+	private static void collect(Node node, List<ChangedFile> files)
+	{
+		if (node.file != null)
+		{
+			files.add(node.file);
+		}
+		if (node.children != null)
+		{
+			for (Node child : node.children.values())
+			{
+				collect(child, files);
+			}
+		}
+	}
+
+	/**
+	 * Splits a git path, which always uses '/' as separator, into its segments.
+	 * 
+	 * @param path
+	 * @return
+	 */
+	/* package */static String[] segments(String path)
+	{
+		if (path == null || path.length() == 0)
+		{
+			return NO_SEGMENTS;
+		}
+		List<String> segments = new ArrayList<String>();
+		int start = 0;
+		int length = path.length();
+		while (start < length)
+		{
+			int end = path.indexOf('/', start);
+			if (end == -1)
+			{
+				end = length;
+			}
+			if (end > start)
+			{
+				segments.add(path.substring(start, end));
+			}
+			start = end + 1;
+		}
+		return segments.toArray(new String[segments.size()]);
+	}
+
+	private static final class Node
+	{
+
+		private Map<String, Node> children;
+		private ChangedFile file;
+		private int count;
+
+		private Node getChild(String segment)
+		{
+			return (children == null) ? null : children.get(segment);
+		}
+
+		private Node addChild(String segment)
+		{
+			if (children == null)
+			{
+				children = new HashMap<String, Node>(4);
+			}
+			Node child = new Node();
+			children.put(segment, child);
+			return child;
+		}
+	}
+}
@@ -0,0 +1,275 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.git.core.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+
+import com.aptana.core.util.IOUtil;
+import com.aptana.core.util.StringUtil;
+
+/**
+ * Wraps a long-lived "git cat-file --batch" (or "--batch-check") process for a repository. Object lookups are written
+ * to the process' stdin one per line and answered on its stdout, so we don't pay for forking a new git process on every
+ * query. The process is started lazily and restarted whenever the repository index has been rewritten (we compare the
+ * checksum git writes at its end), since git reads the index only once and lookups like ":0:path" would otherwise be
+ * answered from a stale copy.
+ */
+class GitCatFile
+{
+	/**
+	 * The header and (for "--batch" processes) the contents of an object.
+	 */
+	static class ObjectInfo
+	{
+		final String sha;
+		final String type;
+		final int size;
+		byte[] contents;
+
+		ObjectInfo(String sha, String type, int size)
+		{
+			this.sha = sha;
+			this.type = type;
+			this.size = size;
+		}
+	}
+
+	private static final String MISSING = " missing"; //$NON-NLS-1$
+	private static final String AMBIGUOUS = " ambiguous"; //$NON-NLS-1$
+
+	/**
+	 * The index file ends with the SHA-1 of everything before it.
+	 */
+	private static final int CHECKSUM_LENGTH = 20;
+
+	private final IPath workingDirectory;
+	private final File indexFile;
+	private final boolean readContents;
+
+	private Process process;
+	private OutputStream stdin;
+	private InputStream stdout;
+	private InputStream stderr;
+	private byte[] indexChecksum;
+
+	/**
+	 * @param workingDirectory
+	 *            the working directory of the repository
+	 * @param indexFile
+	 *            the repository's index file, used to tell when the process needs to be restarted
+	 * @param readContents
+	 *            true to run with "--batch" and read the object contents, false to run with "--batch-check" and only
+	 *            read the object headers
+	 */
+	GitCatFile(IPath workingDirectory, File indexFile, boolean readContents)
+	{
+		this.workingDirectory = workingDirectory;
+		this.indexFile = indexFile;
+		this.readContents = readContents;
+	}
+
+	/**
+	 * Looks up an object by any name "git cat-file" understands: a SHA, a ref, "rev:path" or ":stage:path". Returns null
+	 * if the object doesn't exist or the name is ambiguous. If the lookup fails the process is shut down (the next
+	 * lookup starts a new one) and the exception is passed along, so callers can fall back to running a one-off git
+	 * process.
+	 * 
+	 * @param objectName
+	 * @return
+	 * @throws IOException
+	 */
+	synchronized ObjectInfo lookup(String objectName) throws IOException
+	{
+		if (StringUtil.isEmpty(objectName) || objectName.indexOf('\n') != -1 || objectName.indexOf('\r') != -1)
+		{
+			throw new IOException("Object names can't be empty or span lines: " + objectName); //$NON-NLS-1$
+		}
+
+		try
+		{
+			ensureStarted();
+
+			stdin.write((objectName + '\n').getBytes(IOUtil.UTF_8));
+			stdin.flush();
+
+			String header = readLine();
+			if (header.endsWith(MISSING) || header.endsWith(AMBIGUOUS))
+			{
+				return null;
+			}
+
+			// <sha> SP <type> SP <size>
+			String[] parts = header.split(" "); //$NON-NLS-1$
+			if (parts.length != 3)
+			{
+				throw new IOException("Unexpected response from git cat-file: " + header); //$NON-NLS-1$
+			}
+			ObjectInfo info = new ObjectInfo(parts[0], parts[1], Integer.parseInt(parts[2]));
+			if (readContents)
+			{
+				info.contents = readFully(info.size);
+				// contents are followed by a LF
+				if (stdout.read() != '\n')
+				{
+					throw new IOException("Unexpected end of object contents from git cat-file"); //$NON-NLS-1$
+				}
+			}
+			return info;
+		}
+		catch (IOException e)
+		{
+			dispose();
+			throw e;
+		}
+		catch (NumberFormatException e)
+		{
+			dispose();
+			throw new IOException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Shuts down the process, if it's running.
+	 */
+	synchronized void dispose()
+	{
+		if (process == null)
+		{
+			return;
+		}
+		try
+		{
+			// Closing stdin makes git exit normally
+			stdin.close();
+		}
+		catch (IOException e) // $codepro.audit.disable emptyCatchClause
+		{
+			// ignore
+		}
+		process.destroy();
+		process = null;
+		stdin = null;
+		stdout = null;
+		stderr = null;
+	}
+
+	private void ensureStarted() throws IOException
+	{
+		// The modification time and size can stay the same when git rewrites the index quickly, the checksum can't
+		byte[] checksum = readIndexChecksum();
+		if (process != null && !Arrays.equals(checksum, indexChecksum))
+		{
+			dispose();
+		}
+
+		if (process == null)
+		{
+			try
+			{
+				process = GitExecutable.instance().run(workingDirectory, "cat-file", //$NON-NLS-1$
+						readContents ? "--batch" : "--batch-check"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			catch (CoreException e)
+			{
+				throw new IOException(e.getMessage());
+			}
+			stdin = new BufferedOutputStream(process.getOutputStream());
+			stdout = new BufferedInputStream(process.getInputStream());
+			stderr = process.getErrorStream();
+			indexChecksum = checksum;
+		}
+		else
+		{
+			// Nobody reads git's warnings, but don't let them fill up the pipe and block the process.
+			int available = stderr.available();
+			if (available > 0)
+			{
+				stderr.skip(available);
+			}
+		}
+	}
+
+	/**
+	 * Reads the checksum at the end of the index file. Returns null if there's no index (yet).
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	private byte[] readIndexChecksum() throws IOException
+	{
+		RandomAccessFile file;
+		try
+		{
+			file = new RandomAccessFile(indexFile, "r"); //$NON-NLS-1$
+		}
+		catch (FileNotFoundException e)
+		{
+			return null;
+		}
+		try
+		{
+			long length = file.length();
+			if (length < CHECKSUM_LENGTH)
+			{
+				return null;
+			}
+			byte[] checksum = new byte[CHECKSUM_LENGTH];
+			file.seek(length - CHECKSUM_LENGTH);
+			file.readFully(checksum);
+			return checksum;
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	private String readLine() throws IOException
+	{
+		ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+		int b;
+		while ((b = stdout.read()) != '\n')
+		{
+			if (b == -1)
+			{
+				throw new EOFException("git cat-file exited unexpectedly"); //$NON-NLS-1$
+			}
+			line.write(b);
+		}
+		return line.toString(IOUtil.UTF_8);
+	}
+
+	private byte[] readFully(int size) throws IOException
+	{
+		byte[] bytes = new byte[size];
+		int offset = 0;
+		while (offset < size)
+		{
+			int read = stdout.read(bytes, offset, size - offset);
+			if (read == -1)
+			{
+				throw new EOFException("git cat-file exited unexpectedly"); //$NON-NLS-1$
+			}
+			offset += read;
+		}
+		return bytes;
+	}
+}
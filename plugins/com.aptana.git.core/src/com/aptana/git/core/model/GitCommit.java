@@ -7,11 +7,17 @@
  */
 package com.aptana.git.core.model;
 
+import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
+import com.aptana.core.logging.IdeLog;
+import com.aptana.core.util.IOUtil;
+import com.aptana.core.util.StringUtil;
+import com.aptana.git.core.GitPlugin;
+
 /**
  * Represents a commit in the repo.
  * 
@@ -20,6 +26,9 @@ import java.util.List;
 public class GitCommit
 {
 
+	private static final String ISO_8859_1 = "ISO-8859-1"; //$NON-NLS-1$
+	private static final String ENCODING_HEADER = "\nencoding "; //$NON-NLS-1$
+
 	private GitRepository repository;
 	private String sha;
 	private String subject;
@@ -28,6 +37,7 @@ public class GitCommit
 	private String authorEmail;
 	private List<String> parentShas;
 	private String comment;
+	private boolean commentLoaded;
 	private List<Diff> diffs;
 
 	public GitCommit(GitRepository repository, String sha)
@@ -93,7 +103,7 @@ public class GitCommit
 
 	public String getComment()
 	{
-
+		String comment = getBody();
 		if (comment == null)
 		{
 			return getSubject();
@@ -112,9 +122,82 @@ public class GitCommit
 		return builder.toString();
 	}
 
-	void setComment(String comment)
+	synchronized void setComment(String comment)
 	{
 		this.comment = comment;
+		this.commentLoaded = true;
+	}
+
+	/**
+	 * The part of the commit message after the subject. History listings only read subjects, so unless it's been set
+	 * this is read from the commit object the first time it's asked for.
+	 * 
+	 * @return
+	 */
+	private synchronized String getBody()
+	{
+		if (!commentLoaded)
+		{
+			String body = readBody();
+			if (body == null)
+			{
+				// Couldn't read the commit, try again next time
+				return null;
+			}
+			comment = (body.length() == 0) ? null : body;
+			commentLoaded = true;
+		}
+		return comment;
+	}
+
+	/**
+	 * Reads the body of the commit message from the commit object.
+	 * 
+	 * @return the body, an empty string if there is none, or null if the commit couldn't be read
+	 */
+	private String readBody()
+	{
+		GitCatFile.ObjectInfo info = repository.readObject(sha);
+		if (info == null)
+		{
+			return null;
+		}
+		if (!GitRepository.COMMIT.equals(info.type))
+		{
+			return StringUtil.EMPTY;
+		}
+		try
+		{
+			// The headers are ASCII apart from the author/committer names, and end at the first blank line
+			String raw = new String(info.contents, ISO_8859_1);
+			int headersEnd = raw.indexOf("\n\n"); //$NON-NLS-1$
+			if (headersEnd == -1)
+			{
+				return StringUtil.EMPTY;
+			}
+			String encoding = IOUtil.UTF_8;
+			int encodingStart = raw.lastIndexOf(ENCODING_HEADER, headersEnd);
+			if (encodingStart != -1)
+			{
+				encodingStart += ENCODING_HEADER.length();
+				encoding = raw.substring(encodingStart, raw.indexOf('\n', encodingStart)).trim();
+			}
+			String message = new String(info.contents, headersEnd + 2, info.contents.length - headersEnd - 2, encoding);
+
+			// Like git's %b, the body is whatever follows the subject paragraph
+			int subjectEnd = message.indexOf("\n\n"); //$NON-NLS-1$
+			if (subjectEnd == -1)
+			{
+				return StringUtil.EMPTY;
+			}
+			return message.substring(subjectEnd + 2).trim();
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			// Reading it again won't help
+			IdeLog.logWarning(GitPlugin.getDefault(), e);
+			return StringUtil.EMPTY;
+		}
 	}
 
 	public synchronized List<Diff> getDiff()
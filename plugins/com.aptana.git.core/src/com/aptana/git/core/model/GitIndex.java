@@ -9,6 +9,7 @@ package com.aptana.git.core.model;
 
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -65,6 +66,13 @@ public class GitIndex
 	List<ChangedFile> changedFiles;
 	private Object changedFilesLock = new Object();
 
+	/**
+	 * Path index over {@link #changedFiles}, used for the per-resource lookups done by decorators and filters. Guarded
+	 * by changedFilesLock and rebuilt if the list it was built from has been swapped out.
+	 */
+	private ChangedFileTree changedFileTree;
+	private List<ChangedFile> indexedChangedFiles;
+
 	private Job indexRefreshJob;
 	private boolean notify;
 
@@ -156,10 +164,13 @@ public class GitIndex
 					}
 				}));
 
+		// Staged and unstaged changes are worked out from the index file itself where we can, rather than by running git
+		GitIndexFile indexFile = readIndexFile();
+
 		Set<Job> jobs = new HashSet<Job>();
 		jobs.add(new UntrackedFilesRefreshJob(this, filePathStrings));
-		jobs.add(new UnstagedFilesRefreshJob(this, filePathStrings));
-		jobs.add(new StagedFilesRefreshJob(this, filePathStrings));
+		jobs.add(new UnstagedFilesRefreshJob(this, filePathStrings, indexFile));
+		jobs.add(new StagedFilesRefreshJob(this, filePathStrings, indexFile));
 
 		// Last chance to cancel...
 		if (monitor != null && monitor.isCanceled())
@@ -210,12 +221,15 @@ public class GitIndex
 
 			// Now wipe any existing ChangedFile entries for any of the filePaths and add the ones we generated in
 			// dictionary
+			ChangedFileTree tree;
 			if (CollectionsUtil.isEmpty(filePathStrings))
 			{
 				this.changedFiles = new ArrayList<ChangedFile>(this.files.size());
+				tree = new ChangedFileTree();
 			}
 			else
 			{
+				tree = getChangedFileTree();
 				this.changedFiles = CollectionsUtil.filter(this.changedFiles, new IFilter<ChangedFile>()
 				{
 					public boolean include(ChangedFile item)
@@ -223,8 +237,22 @@ public class GitIndex
 						return !filePathStrings.contains(item.path);
 					}
 				});
+				if (tree == null)
+				{
+					tree = new ChangedFileTree(this.changedFiles);
+				}
+				else
+				{
+					for (String path : filePathStrings)
+					{
+						tree.remove(path);
+					}
+				}
 			}
 			this.changedFiles.addAll(this.files);
+			tree.addAll(this.files);
+			this.changedFileTree = tree;
+			this.indexedChangedFiles = this.changedFiles;
 		}
 
 		// Don't hold onto temp list in memory!
@@ -235,6 +263,24 @@ public class GitIndex
 		return Status.OK_STATUS;
 	}
 
+	/**
+	 * Reads the repository's index file. Returns null if we can't, in which case we fall back to asking git.
+	 * 
+	 * @return
+	 */
+	private GitIndexFile readIndexFile()
+	{
+		try
+		{
+			return repository.readIndexFile();
+		}
+		catch (IOException e)
+		{
+			IdeLog.logWarning(GitPlugin.getDefault(), "Failed to read the git index file", e, IDebugScopes.DEBUG); //$NON-NLS-1$
+			return null;
+		}
+	}
+
 	private void postIndexChange(Collection<ChangedFile> preChangeFiles, Collection<ChangedFile> postChangeFiles)
 	{
 		if (this.notify)
@@ -255,6 +301,34 @@ public class GitIndex
 	 * @return
 	 */
 	public List<ChangedFile> changedFiles()
+	{
+		if (!loadChangedFiles())
+		{
+			return Collections.emptyList();
+		}
+
+		synchronized (this.changedFilesLock)
+		{
+			if (this.changedFiles == null)
+			{
+				return Collections.emptyList();
+			}
+
+			List<ChangedFile> copy = new ArrayList<ChangedFile>(this.changedFiles.size());
+			for (ChangedFile file : this.changedFiles)
+			{
+				copy.add(new ChangedFile(file));
+			}
+			return copy;
+		}
+	}
+
+	/**
+	 * Populates the changedFiles collection if this is the first time it's asked for.
+	 * 
+	 * @return false if the initial refresh failed
+	 */
+	private boolean loadChangedFiles()
 	{
 		boolean isNull = false;
 		synchronized (this.changedFilesLock)
@@ -269,24 +343,30 @@ public class GitIndex
 			if (!status.isOK())
 			{
 				IdeLog.logError(GitPlugin.getDefault(), status.getMessage());
-				return Collections.emptyList();
+				return false;
 			}
 		}
+		return true;
+	}
 
-		synchronized (this.changedFilesLock)
+	/**
+	 * Returns the path index over the current changed files, building it if needed. Callers must hold
+	 * changedFilesLock.
+	 * 
+	 * @return the index, or null if the changed files haven't been loaded
+	 */
+	private ChangedFileTree getChangedFileTree()
+	{
+		if (this.changedFiles == null)
 		{
-			if (this.changedFiles == null)
-			{
-				return Collections.emptyList();
-			}
-
-			List<ChangedFile> copy = new ArrayList<ChangedFile>(this.changedFiles.size());
-			for (ChangedFile file : this.changedFiles)
-			{
-				copy.add(new ChangedFile(file));
-			}
-			return copy;
+			return null;
+		}
+		if (this.changedFileTree == null || this.indexedChangedFiles != this.changedFiles)
+		{
+			this.changedFileTree = new ChangedFileTree(this.changedFiles);
+			this.indexedChangedFiles = this.changedFiles;
 		}
+		return this.changedFileTree;
 	}
 
 	public IStatus stageFiles(Collection<ChangedFile> stageFiles)
@@ -324,16 +404,12 @@ public class GitIndex
 			preFiles.add(new ChangedFile(file));
 			synchronized (changedFilesLock)
 			{
-				if (this.changedFiles != null)
+				ChangedFileTree tree = getChangedFileTree();
+				ChangedFile orig = (tree == null) ? null : tree.get(file.path);
+				if (orig != null)
 				{
-					int index = Collections.binarySearch(this.changedFiles, file);
-					if (index >= 0)
-					{
-
-						ChangedFile orig = this.changedFiles.get(index);
-						orig.hasUnstagedChanges = false;
-						orig.hasStagedChanges = true;
-					}
+					orig.hasUnstagedChanges = false;
+					orig.hasStagedChanges = true;
 				}
 			}
 
@@ -381,16 +457,12 @@ public class GitIndex
 
 			synchronized (this.changedFilesLock)
 			{
-				if (this.changedFiles != null)
+				ChangedFileTree tree = getChangedFileTree();
+				ChangedFile orig = (tree == null) ? null : tree.get(file.path);
+				if (orig != null)
 				{
-					int index = Collections.binarySearch(this.changedFiles, file);
-					if (index >= 0)
-					{
-
-						ChangedFile orig = this.changedFiles.get(index);
-						orig.hasUnstagedChanges = true;
-						orig.hasStagedChanges = false;
-					}
+					orig.hasUnstagedChanges = true;
+					orig.hasStagedChanges = false;
 				}
 			}
 
@@ -524,7 +596,7 @@ public class GitIndex
 
 			if (file.status == ChangedFile.Status.NEW)
 			{
-				IStatus status = repository.execute(GitRepository.ReadWrite.READ, "show", indexPath); //$NON-NLS-1$
+				IStatus status = repository.catFile(indexPath);
 				return status.getMessage();
 			}
 
@@ -589,24 +661,17 @@ public class GitIndex
 	 */
 	protected boolean resourceOrChildHasChanges(IResource resource)
 	{
-		List<ChangedFile> changedFiles = changedFiles();
-		if (changedFiles == null || changedFiles.isEmpty())
+		String[] segments = getRelativeSegments(resource);
+		if (segments == null || !loadChangedFiles())
 		{
 			return false;
 		}
 
-		IPath workingDirectory = repository.workingDirectory();
-		IPath resourcePath = resource.getLocation();
-		for (ChangedFile changedFile : changedFiles)
+		synchronized (this.changedFilesLock)
 		{
-			IPath fullPath = workingDirectory.append(changedFile.getPath()).makeAbsolute();
-			if (resourcePath.isPrefixOf(fullPath))
-			{
-				return true;
-			}
+			ChangedFileTree tree = getChangedFileTree();
+			return tree != null && tree.hasChanges(segments);
 		}
-
-		return false;
 	}
 
 	public boolean isDirty()
@@ -654,23 +719,18 @@ public class GitIndex
 
 	protected ChangedFile getChangedFileForResource(IResource resource)
 	{
-		if (resource == null || resource.getLocationURI() == null)
+		String[] segments = getRelativeSegments(resource);
+		if (segments == null || segments.length == 0 || !loadChangedFiles())
 		{
 			return null;
 		}
 
-		IPath resourcePath = resource.getLocation();
-		List<ChangedFile> changedFiles = changedFiles();
-		for (ChangedFile changedFile : changedFiles)
+		synchronized (this.changedFilesLock)
 		{
-			IPath fullPath = workingDirectory().append(changedFile.getPath());
-			if (resourcePath.equals(fullPath))
-			{
-				return changedFile;
-			}
+			ChangedFileTree tree = getChangedFileTree();
+			ChangedFile changedFile = (tree == null) ? null : tree.get(segments);
+			return (changedFile == null) ? null : new ChangedFile(changedFile);
 		}
-
-		return null;
 	}
 
 	private IPath workingDirectory()
@@ -678,6 +738,36 @@ public class GitIndex
 		return repository.workingDirectory();
 	}
 
+	/**
+	 * Returns the segments of the resource's location relative to the working directory. A resource at or above the
+	 * working directory gets no segments, since everything in the repository is underneath it.
+	 * 
+	 * @param resource
+	 * @return the relative segments, or null if the resource has no location or lies outside the working directory
+	 */
+	private String[] getRelativeSegments(IResource resource)
+	{
+		if (resource == null || resource.getLocationURI() == null)
+		{
+			return null;
+		}
+		IPath resourcePath = resource.getLocation();
+		IPath workingDirectory = workingDirectory();
+		if (resourcePath == null || workingDirectory == null)
+		{
+			return null;
+		}
+		if (resourcePath.isPrefixOf(workingDirectory))
+		{
+			return new String[0];
+		}
+		if (!workingDirectory.isPrefixOf(resourcePath))
+		{
+			return null;
+		}
+		return resourcePath.removeFirstSegments(workingDirectory.segmentCount()).segments();
+	}
+
 	/**
 	 * Gets the list of changed files that are underneath the given container.
 	 * 
@@ -686,29 +776,28 @@ public class GitIndex
 	 */
 	protected List<ChangedFile> getChangedFilesForContainer(IContainer container)
 	{
-		if (container == null || container.getLocationURI() == null)
+		String[] segments = getRelativeSegments(container);
+		if (segments == null || !loadChangedFiles())
 		{
 			return Collections.emptyList();
 		}
 
-		List<ChangedFile> changedFiles = changedFiles();
-		if (changedFiles == null || changedFiles.isEmpty())
-		{
-			return Collections.emptyList();
-		}
-
-		IPath resourcePath = container.getLocation();
-		List<ChangedFile> filtered = new ArrayList<ChangedFile>();
-		IPath workingDirectory = repository.workingDirectory();
-		for (ChangedFile changedFile : changedFiles)
+		List<ChangedFile> filtered;
+		synchronized (this.changedFilesLock)
 		{
-			IPath fullPath = workingDirectory.append(changedFile.getPath()).makeAbsolute();
-			if (resourcePath.isPrefixOf(fullPath))
+			ChangedFileTree tree = getChangedFileTree();
+			if (tree == null)
 			{
-				filtered.add(changedFile);
+				return Collections.emptyList();
+			}
+			List<ChangedFile> files = tree.getFiles(segments);
+			filtered = new ArrayList<ChangedFile>(files.size());
+			for (ChangedFile changedFile : files)
+			{
+				filtered.add(new ChangedFile(changedFile));
 			}
 		}
-
+		Collections.sort(filtered);
 		return filtered;
 	}
 
@@ -736,13 +825,20 @@ public class GitIndex
 		protected GitRepository repo;
 		protected GitIndex index;
 		protected Set<String> filePaths;
+		protected GitIndexFile indexFile;
 
 		private FilesRefreshJob(String name, GitIndex index, Set<String> filePaths)
+		{
+			this(name, index, filePaths, null);
+		}
+
+		private FilesRefreshJob(String name, GitIndex index, Set<String> filePaths, GitIndexFile indexFile)
 		{
 			super(name);
 			this.index = index;
 			this.repo = index.repository;
 			this.filePaths = filePaths;
+			this.indexFile = indexFile;
 		}
 
 		protected List<String> linesFromNotification(String string)
@@ -919,14 +1015,21 @@ public class GitIndex
 
 	private static final class StagedFilesRefreshJob extends FilesRefreshJob
 	{
-		private StagedFilesRefreshJob(GitIndex index, Set<String> filePaths)
+		private StagedFilesRefreshJob(GitIndex index, Set<String> filePaths, GitIndexFile indexFile)
 		{
-			super("staged files", index, filePaths); //$NON-NLS-1$
+			super("staged files", index, filePaths, indexFile); //$NON-NLS-1$
 		}
 
 		@Override
 		protected IStatus run(IProgressMonitor monitor)
 		{
+			Map<String, List<String>> dictionary = readStagedChanges();
+			if (dictionary != null)
+			{
+				addFilesFromDictionary(dictionary, true, true);
+				return Status.OK_STATUS;
+			}
+
 			// HEAD vs filesystem
 			List<String> args = CollectionsUtil.newList("diff-index", "--cached", //$NON-NLS-1$ //$NON-NLS-2$
 					"-z", GitRepository.HEAD); //$NON-NLS-1$
@@ -949,18 +1052,57 @@ public class GitIndex
 			Map<String, List<String>> dic = dictionaryForLines(lines);
 			addFilesFromDictionary(dic, true, true);
 		}
+
+		/**
+		 * Compares the index file against the HEAD tree. Returns null if that fails and we need to ask git instead.
+		 * 
+		 * @return
+		 */
+		private Map<String, List<String>> readStagedChanges()
+		{
+			if (indexFile == null || !repo.enterRead())
+			{
+				return null;
+			}
+			try
+			{
+				return indexFile.stagedChanges(repo.objectHeaders(), repo.objectContents(), filePaths);
+			}
+			catch (IOException e)
+			{
+				IdeLog.logWarning(GitPlugin.getDefault(), "Failed to compare the git index against HEAD", e, //$NON-NLS-1$
+						IDebugScopes.DEBUG);
+				return null;
+			}
+			finally
+			{
+				repo.exitRead();
+			}
+		}
 	}
 
 	private static final class UnstagedFilesRefreshJob extends FilesRefreshJob
 	{
-		private UnstagedFilesRefreshJob(GitIndex index, Set<String> filePaths)
+		/**
+		 * The most files we check again with "git diff-files" before running it over everything.
+		 */
+		private static final int MAX_CONFIRMED_FILES = 100;
+
+		private UnstagedFilesRefreshJob(GitIndex index, Set<String> filePaths, GitIndexFile indexFile)
 		{
-			super("unstaged files", index, filePaths); //$NON-NLS-1$
+			super("unstaged files", index, filePaths, indexFile); //$NON-NLS-1$
 		}
 
 		@Override
 		protected IStatus run(IProgressMonitor monitor)
 		{
+			Map<String, List<String>> dictionary = readUnstagedChanges();
+			if (dictionary != null)
+			{
+				addFilesFromDictionary(dictionary, false, true);
+				return Status.OK_STATUS;
+			}
+
 			// index vs filesystem
 			List<String> args = CollectionsUtil.newList("diff-files", "-z"); //$NON-NLS-1$ //$NON-NLS-2$
 			if (!CollectionsUtil.isEmpty(filePaths))
@@ -982,6 +1124,74 @@ public class GitIndex
 			Map<String, List<String>> dic = dictionaryForLines(lines);
 			addFilesFromDictionary(dic, false, true);
 		}
+
+		/**
+		 * Compares the index file against the working tree. Returns null if that fails and we need to ask git instead.
+		 * 
+		 * @return
+		 */
+		private Map<String, List<String>> readUnstagedChanges()
+		{
+			if (indexFile == null)
+			{
+				return null;
+			}
+			Map<String, List<String>> changes;
+			try
+			{
+				changes = indexFile.unstagedChanges(repo.workingDirectory(), filePaths);
+			}
+			catch (IOException e)
+			{
+				IdeLog.logWarning(GitPlugin.getDefault(), "Failed to compare the git index against the working tree", //$NON-NLS-1$
+						e, IDebugScopes.DEBUG);
+				return null;
+			}
+			return confirmModified(changes);
+		}
+
+		/**
+		 * We hash the raw contents of files, git hashes them after converting line endings and running filters. When
+		 * that may happen, ask "git diff-files" about the files we think were modified. Returns null if we should ask
+		 * git about everything instead.
+		 * 
+		 * @param changes
+		 * @return
+		 */
+		private Map<String, List<String>> confirmModified(Map<String, List<String>> changes)
+		{
+			List<String> modified = new ArrayList<String>();
+			for (Map.Entry<String, List<String>> change : changes.entrySet())
+			{
+				if ("M".equals(change.getValue().get(4))) //$NON-NLS-1$
+				{
+					modified.add(change.getKey());
+				}
+			}
+			if (modified.isEmpty() || !repo.mayConvertContents(indexFile))
+			{
+				return changes;
+			}
+			// Past a point one run over the whole tree is cheaper (and keeps the command line short)
+			if (modified.size() > MAX_CONFIRMED_FILES)
+			{
+				return null;
+			}
+
+			List<String> args = CollectionsUtil.newList("diff-files", "-z", "--"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			args.addAll(modified);
+			IStatus result = repo.execute(GitRepository.ReadWrite.READ, args.toArray(new String[args.size()]));
+			if (result == null || !result.isOK())
+			{
+				return null;
+			}
+			for (String path : modified)
+			{
+				changes.remove(path);
+			}
+			changes.putAll(dictionaryForLines(linesFromNotification(result.getMessage())));
+			return changes;
+		}
 	}
 
 	private static final class UntrackedFilesRefreshJob extends FilesRefreshJob
@@ -0,0 +1,749 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.git.core.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.core.runtime.IPath;
+
+import com.aptana.core.util.CollectionsUtil;
+import com.aptana.core.util.IOUtil;
+import com.aptana.core.util.StringUtil;
+
+/**
+ * An in-memory copy of the repository index (.git/index, versions 2 through 4) used to work out the staged and
+ * unstaged changes without running "git diff-index" and "git diff-files". Changes are reported in the same form
+ * {@link GitIndex} builds from the raw output of those commands: a map from the file path to the tokens of its status
+ * line (":srcMode dstMode srcSHA dstSHA status").
+ */
+class GitIndexFile
+{
+	private static final int SIGNATURE = 0x44495243; // "DIRC"
+	private static final int TREE_EXTENSION = 0x54524545; // "TREE"
+	private static final int LINK_EXTENSION = 0x6c696e6b; // "link"
+	private static final int SPARSE_EXTENSION = 0x73646972; // "sdir"
+
+	private static final int ASSUME_VALID = 0x8000;
+	private static final int EXTENDED = 0x4000;
+	private static final int SKIP_WORKTREE = 0x4000;
+	private static final int INTENT_TO_ADD = 0x2000;
+	private static final int NAME_MASK = 0xfff;
+
+	private static final int TYPE_MASK = 0170000;
+	private static final int TYPE_TREE = 0040000;
+	private static final int TYPE_SYMLINK = 0120000;
+	private static final int TYPE_GITLINK = 0160000;
+
+	private static final String NO_MODE = "000000"; //$NON-NLS-1$
+	private static final String NO_SHA = "0000000000000000000000000000000000000000"; //$NON-NLS-1$
+	private static final String ADDED = "A"; //$NON-NLS-1$
+	private static final String DELETED = "D"; //$NON-NLS-1$
+	private static final String MODIFIED = "M"; //$NON-NLS-1$
+	private static final String UNMERGED = "U"; //$NON-NLS-1$
+	private static final String GITATTRIBUTES = ".gitattributes"; //$NON-NLS-1$
+
+	/**
+	 * Below this many entries we check the working tree on the calling thread.
+	 */
+	private static final int PARALLEL_THRESHOLD = 2000;
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+	/**
+	 * A single index entry.
+	 */
+	static class Entry
+	{
+		String path;
+		int mtimeSeconds;
+		int mtimeNanos;
+		int mode;
+		int size;
+		String sha;
+		int stage;
+		boolean assumeValid;
+		boolean skipWorktree;
+		boolean intentToAdd;
+	}
+
+	private final List<Entry> entries;
+
+	/**
+	 * Tree SHAs of the directories recorded as up to date in the index "TREE" extension, keyed by directory path (the
+	 * root is "").
+	 */
+	private final Map<String, String> cacheTree;
+
+	/**
+	 * Modification time of the index file when we read it. Files changed in the same second may have changed after their
+	 * stat data was recorded, so we can't trust it for them.
+	 */
+	private final long timestamp;
+
+	private GitIndexFile(List<Entry> entries, Map<String, String> cacheTree, long timestamp)
+	{
+		this.entries = entries;
+		this.cacheTree = cacheTree;
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * Reads the index file. A missing index file is an empty index (as in a freshly created repository). Throws an
+	 * IOException for index files we can't make sense of (unknown versions, split or sparse indexes).
+	 * 
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	static GitIndexFile read(File file) throws IOException
+	{
+		long timestamp = file.lastModified();
+		if (!file.isFile())
+		{
+			return new GitIndexFile(new ArrayList<Entry>(0), new HashMap<String, String>(0), timestamp);
+		}
+
+		// Read it in one go rather than mapping it: a mapped file stays locked on Windows until the buffer is garbage
+		// collected, which would stop git from replacing the index.
+		ByteBuffer buffer;
+		FileInputStream stream = new FileInputStream(file);
+		try
+		{
+			FileChannel channel = stream.getChannel();
+			buffer = ByteBuffer.allocate((int) channel.size());
+			while (buffer.hasRemaining())
+			{
+				if (channel.read(buffer) == -1)
+				{
+					throw new IOException("Unexpected end of the git index"); //$NON-NLS-1$
+				}
+			}
+			buffer.flip();
+		}
+		finally
+		{
+			stream.close();
+		}
+
+		try
+		{
+			return parse(buffer, timestamp);
+		}
+		catch (RuntimeException e)
+		{
+			// BufferUnderflowException, IllegalArgumentException and the like from a truncated or corrupt file
+			throw new IOException("Failed to read the git index: " + e); //$NON-NLS-1$
+		}
+	}
+
+	private static GitIndexFile parse(ByteBuffer buffer, long timestamp) throws IOException
+	{
+		if (buffer.getInt() != SIGNATURE)
+		{
+			throw new IOException("Not a git index"); //$NON-NLS-1$
+		}
+		int version = buffer.getInt();
+		if (version < 2 || version > 4)
+		{
+			throw new IOException("Unsupported git index version: " + version); //$NON-NLS-1$
+		}
+
+		int count = buffer.getInt();
+		List<Entry> entries = new ArrayList<Entry>(count);
+		byte[] previousPath = new byte[0];
+		for (int i = 0; i < count; i++)
+		{
+			int start = buffer.position();
+			Entry entry = new Entry();
+			buffer.position(start + 8); // skip ctime
+			entry.mtimeSeconds = buffer.getInt();
+			entry.mtimeNanos = buffer.getInt();
+			buffer.position(buffer.position() + 8); // skip dev and ino
+			entry.mode = buffer.getInt();
+			buffer.position(buffer.position() + 8); // skip uid and gid
+			entry.size = buffer.getInt();
+			entry.sha = readSHA(buffer);
+
+			int flags = buffer.getShort() & 0xffff;
+			entry.assumeValid = (flags & ASSUME_VALID) != 0;
+			entry.stage = (flags >> 12) & 0x3;
+			if (version >= 3 && (flags & EXTENDED) != 0)
+			{
+				int extended = buffer.getShort() & 0xffff;
+				entry.skipWorktree = (extended & SKIP_WORKTREE) != 0;
+				entry.intentToAdd = (extended & INTENT_TO_ADD) != 0;
+			}
+
+			byte[] path;
+			if (version == 4)
+			{
+				// The path is stored as the number of bytes to drop from the end of the previous path, followed by the
+				// NUL terminated bytes to append. There's no padding.
+				int strip = readVarInt(buffer);
+				byte[] suffix = readUntil(buffer, (byte) 0);
+				int keep = previousPath.length - strip;
+				path = new byte[keep + suffix.length];
+				System.arraycopy(previousPath, 0, path, 0, keep);
+				System.arraycopy(suffix, 0, path, keep, suffix.length);
+			}
+			else
+			{
+				int headerLength = buffer.position() - start;
+				int nameLength = flags & NAME_MASK;
+				if (nameLength < NAME_MASK)
+				{
+					path = new byte[nameLength];
+					buffer.get(path);
+				}
+				else
+				{
+					path = readUntil(buffer, (byte) 0);
+					nameLength = path.length;
+				}
+				// Entries are padded with 1-8 NULs to a multiple of eight bytes
+				buffer.position(start + ((headerLength + nameLength + 8) & ~7));
+			}
+			entry.path = new String(path, IOUtil.UTF_8);
+			previousPath = path;
+			entries.add(entry);
+		}
+
+		Map<String, String> cacheTree = new HashMap<String, String>();
+		// Extensions follow the entries, the file ends with a 20 byte checksum
+		int end = buffer.limit() - 20;
+		while (buffer.position() < end)
+		{
+			int signature = buffer.getInt();
+			int size = buffer.getInt();
+			int next = buffer.position() + size;
+			if (signature == LINK_EXTENSION || signature == SPARSE_EXTENSION)
+			{
+				throw new IOException("Split and sparse git indexes aren't supported"); //$NON-NLS-1$
+			}
+			if (signature == TREE_EXTENSION)
+			{
+				ByteBuffer tree = buffer.slice();
+				tree.limit(size);
+				readCacheTree(tree, null, cacheTree);
+			}
+			buffer.position(next);
+		}
+
+		return new GitIndexFile(entries, cacheTree, timestamp);
+	}
+
+	/**
+	 * Reads a node of the "TREE" extension and its subtrees (stored depth first).
+	 * 
+	 * @param buffer
+	 * @param parent
+	 *            the path of the parent directory, null for the root node
+	 * @param cacheTree
+	 * @throws IOException
+	 */
+	private static void readCacheTree(ByteBuffer buffer, String parent, Map<String, String> cacheTree)
+			throws IOException
+	{
+		String name = new String(readUntil(buffer, (byte) 0), IOUtil.UTF_8);
+		int entryCount = Integer.parseInt(new String(readUntil(buffer, (byte) ' '), IOUtil.UTF_8));
+		int subtrees = Integer.parseInt(new String(readUntil(buffer, (byte) '\n'), IOUtil.UTF_8));
+
+		String path;
+		if (parent == null)
+		{
+			path = StringUtil.EMPTY;
+		}
+		else
+		{
+			path = (parent.length() == 0) ? name : parent + '/' + name;
+		}
+		// A negative entry count marks an invalidated tree, which has no SHA
+		if (entryCount >= 0)
+		{
+			cacheTree.put(path, readSHA(buffer));
+		}
+		for (int i = 0; i < subtrees; i++)
+		{
+			readCacheTree(buffer, path, cacheTree);
+		}
+	}
+
+	/**
+	 * Does the index track any ".gitattributes" file? Attributes can ask git to convert line endings or run filters on
+	 * the way into the index, so the hash of the raw contents may not match even though the file is unchanged.
+	 * 
+	 * @return
+	 */
+	boolean tracksAttributes()
+	{
+		for (Entry entry : entries)
+		{
+			if (entry.path.equals(GITATTRIBUTES) || entry.path.endsWith('/' + GITATTRIBUTES))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Works out the changes between the index and the working tree, like "git diff-files". Only files whose size or
+	 * modification time differ from the index are read and hashed. Large indexes are checked on several threads. The
+	 * raw contents are hashed as they are, so files git would convert (line endings, filters) may be reported as
+	 * modified when they aren't; see {@link #tracksAttributes()}.
+	 * 
+	 * @param workingDirectory
+	 * @param filePaths
+	 *            limit the check to these files or directories (relative to the working directory). Empty checks
+	 *            everything.
+	 * @return
+	 * @throws IOException
+	 */
+	Map<String, List<String>> unstagedChanges(final IPath workingDirectory, Collection<String> filePaths)
+			throws IOException
+	{
+		final Map<String, List<String>> changes = new HashMap<String, List<String>>();
+		final List<Entry> toCheck = new ArrayList<Entry>();
+		for (Entry entry : entries)
+		{
+			if (!matches(entry.path, filePaths))
+			{
+				continue;
+			}
+			if (entry.stage != 0)
+			{
+				changes.put(entry.path, status(NO_MODE, NO_MODE, NO_SHA, NO_SHA, UNMERGED));
+				continue;
+			}
+			// We can't tell what changed for symlinks or submodules from Java, leave them alone
+			int type = entry.mode & TYPE_MASK;
+			if (entry.assumeValid || entry.skipWorktree || type == TYPE_SYMLINK || type == TYPE_GITLINK)
+			{
+				continue;
+			}
+			toCheck.add(entry);
+		}
+
+		int threads = Runtime.getRuntime().availableProcessors();
+		if (threads < 2 || toCheck.size() < PARALLEL_THRESHOLD)
+		{
+			changes.putAll(checkWorkingTree(workingDirectory, toCheck));
+			return changes;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread thread = new Thread(r, "Git working tree status"); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try
+		{
+			List<Future<Map<String, List<String>>>> results = new ArrayList<Future<Map<String, List<String>>>>(threads);
+			int chunk = (toCheck.size() + threads - 1) / threads;
+			for (int i = 0; i < toCheck.size(); i += chunk)
+			{
+				final List<Entry> slice = toCheck.subList(i, Math.min(i + chunk, toCheck.size()));
+				results.add(executor.submit(new Callable<Map<String, List<String>>>()
+				{
+					public Map<String, List<String>> call() throws IOException
+					{
+						return checkWorkingTree(workingDirectory, slice);
+					}
+				}));
+			}
+			for (Future<Map<String, List<String>>> result : results)
+			{
+				changes.putAll(result.get());
+			}
+		}
+		catch (InterruptedException e)
+		{
+			throw new IOException("Interrupted while checking the working tree"); //$NON-NLS-1$
+		}
+		catch (ExecutionException e)
+		{
+			throw new IOException("Failed to check the working tree: " + e.getCause()); //$NON-NLS-1$
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+		return changes;
+	}
+
+	private Map<String, List<String>> checkWorkingTree(IPath workingDirectory, List<Entry> toCheck)
+			throws IOException
+	{
+		Map<String, List<String>> changes = new HashMap<String, List<String>>();
+		File root = workingDirectory.toFile();
+		for (Entry entry : toCheck)
+		{
+			File file = new File(root, entry.path);
+			// Keep the number of stat calls down, they are most of the cost here
+			long modified = file.lastModified();
+			if (modified != 0 && isUpToDate(entry, modified, file.length()))
+			{
+				continue;
+			}
+
+			String mode = formatMode(entry.mode);
+			if (!file.isFile())
+			{
+				changes.put(entry.path, status(':' + mode, NO_MODE, entry.sha, NO_SHA, DELETED));
+			}
+			else if (!entry.sha.equals(hashFile(file)))
+			{
+				changes.put(entry.path, status(':' + mode, mode, entry.sha, NO_SHA, MODIFIED));
+			}
+		}
+		return changes;
+	}
+
+	/**
+	 * Does the file's stat data match what the index recorded (and can we trust that)?
+	 * 
+	 * @param entry
+	 * @param modified
+	 *            the file's modification time
+	 * @param length
+	 *            the file's size
+	 * @return
+	 */
+	private boolean isUpToDate(Entry entry, long modified, long length)
+	{
+		// The index only keeps the lower 32 bits of the size
+		if ((int) length != entry.size)
+		{
+			return false;
+		}
+
+		if (modified / 1000 != (entry.mtimeSeconds & 0xffffffffL))
+		{
+			return false;
+		}
+		// Only compare the sub-second part if both sides recorded it
+		int millis = (int) (modified % 1000);
+		if (millis != 0 && entry.mtimeNanos != 0 && millis != entry.mtimeNanos / 1000000)
+		{
+			return false;
+		}
+
+		// "Racily clean": the file may have been modified after it was added, within the same second
+		return entry.mtimeSeconds < timestamp / 1000;
+	}
+
+	/**
+	 * Works out the changes between HEAD and the index, like "git diff-index --cached HEAD". The HEAD tree is read through
+	 * the given "git cat-file" processes, skipping any directory whose tree the index records as unchanged.
+	 * 
+	 * @param headers
+	 *            a "git cat-file --batch-check" process
+	 * @param contents
+	 *            a "git cat-file --batch" process
+	 * @param filePaths
+	 *            limit the check to these files or directories (relative to the working directory). Empty checks
+	 *            everything.
+	 * @return
+	 * @throws IOException
+	 */
+	Map<String, List<String>> stagedChanges(GitCatFile headers, GitCatFile contents, Collection<String> filePaths)
+			throws IOException
+	{
+		Map<String, Entry> indexed = new HashMap<String, Entry>();
+		Set<String> unmerged = new HashSet<String>();
+		for (Entry entry : entries)
+		{
+			if (!matches(entry.path, filePaths) || entry.intentToAdd)
+			{
+				continue;
+			}
+			if (entry.stage == 0)
+			{
+				indexed.put(entry.path, entry);
+			}
+			else
+			{
+				unmerged.add(entry.path);
+			}
+		}
+
+		// path -> { mode, sha } of the files in HEAD we had to look at
+		Map<String, String[]> head = new HashMap<String, String[]>();
+		Set<String> unchangedDirectories = new HashSet<String>();
+		if (headers.lookup(GitRepository.HEAD) != null)
+		{
+			GitCatFile.ObjectInfo tree = headers.lookup(GitRepository.HEAD + "^{tree}"); //$NON-NLS-1$
+			if (tree == null)
+			{
+				throw new IOException("Unable to find the tree of HEAD"); //$NON-NLS-1$
+			}
+			readTree(contents, tree.sha, StringUtil.EMPTY, filePaths, head, unchangedDirectories);
+		}
+		// else there are no commits yet, so everything in the index is new
+
+		Map<String, List<String>> changes = new HashMap<String, List<String>>();
+		for (Map.Entry<String, String[]> file : head.entrySet())
+		{
+			String path = file.getKey();
+			String mode = file.getValue()[0];
+			String sha = file.getValue()[1];
+			if (unmerged.contains(path))
+			{
+				changes.put(path, status(':' + mode, NO_MODE, sha, NO_SHA, UNMERGED));
+				continue;
+			}
+
+			Entry entry = indexed.get(path);
+			if (entry == null)
+			{
+				changes.put(path, status(':' + mode, NO_MODE, sha, NO_SHA, DELETED));
+			}
+			else if (!sha.equals(entry.sha) || !mode.equals(formatMode(entry.mode)))
+			{
+				changes.put(path, status(':' + mode, formatMode(entry.mode), sha, entry.sha, MODIFIED));
+			}
+		}
+		for (Entry entry : indexed.values())
+		{
+			if (!head.containsKey(entry.path) && !isInDirectory(entry.path, unchangedDirectories))
+			{
+				changes.put(entry.path, status(':' + NO_MODE, formatMode(entry.mode), NO_SHA, entry.sha, ADDED));
+			}
+		}
+		for (String path : unmerged)
+		{
+			if (!changes.containsKey(path))
+			{
+				changes.put(path, status(':' + NO_MODE, NO_MODE, NO_SHA, NO_SHA, UNMERGED));
+			}
+		}
+		return changes;
+	}
+
+	private void readTree(GitCatFile contents, String treeSHA, String directory, Collection<String> filePaths,
+			Map<String, String[]> head, Set<String> unchangedDirectories) throws IOException
+	{
+		if (treeSHA.equals(cacheTree.get(directory)))
+		{
+			unchangedDirectories.add(directory);
+			return;
+		}
+
+		GitCatFile.ObjectInfo tree = contents.lookup(treeSHA);
+		if (tree == null || tree.contents == null)
+		{
+			throw new IOException("Unable to read tree " + treeSHA); //$NON-NLS-1$
+		}
+
+		// Each entry is "<octal mode> <name>\0<20 byte SHA>"
+		ByteBuffer buffer = ByteBuffer.wrap(tree.contents);
+		while (buffer.hasRemaining())
+		{
+			int mode = Integer.parseInt(new String(readUntil(buffer, (byte) ' '), IOUtil.UTF_8), 8);
+			String name = new String(readUntil(buffer, (byte) 0), IOUtil.UTF_8);
+			String sha = readSHA(buffer);
+			String path = (directory.length() == 0) ? name : directory + '/' + name;
+
+			if ((mode & TYPE_MASK) == TYPE_TREE)
+			{
+				if (matchesDirectory(path, filePaths))
+				{
+					readTree(contents, sha, path, filePaths, head, unchangedDirectories);
+				}
+			}
+			else if (matches(path, filePaths))
+			{
+				head.put(path, new String[] { formatMode(mode), sha });
+			}
+		}
+	}
+
+	/**
+	 * The git object id of the file's contents, without any of the conversions git may apply to them.
+	 * 
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	static String hashFile(File file) throws IOException
+	{
+		MessageDigest digest;
+		try
+		{
+			digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IOException(e.getMessage());
+		}
+
+		InputStream stream = new FileInputStream(file);
+		try
+		{
+			digest.update(("blob " + file.length() + '\0').getBytes(IOUtil.UTF_8)); //$NON-NLS-1$
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = stream.read(buffer)) != -1)
+			{
+				digest.update(buffer, 0, read);
+			}
+		}
+		finally
+		{
+			stream.close();
+		}
+		return toHex(digest.digest());
+	}
+
+	private static boolean matches(String path, Collection<String> filePaths)
+	{
+		if (CollectionsUtil.isEmpty(filePaths))
+		{
+			return true;
+		}
+		for (String filePath : filePaths)
+		{
+			if (filePath.length() == 0 || path.equals(filePath) || path.startsWith(filePath + '/'))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Could the directory hold any of the given files?
+	 * 
+	 * @param directory
+	 * @param filePaths
+	 * @return
+	 */
+	private static boolean matchesDirectory(String directory, Collection<String> filePaths)
+	{
+		if (matches(directory, filePaths))
+		{
+			return true;
+		}
+		for (String filePath : filePaths)
+		{
+			if (filePath.startsWith(directory + '/'))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isInDirectory(String path, Set<String> directories)
+	{
+		if (directories.isEmpty())
+		{
+			return false;
+		}
+		if (directories.contains(StringUtil.EMPTY))
+		{
+			return true;
+		}
+		int slash = path.indexOf('/');
+		while (slash != -1)
+		{
+			if (directories.contains(path.substring(0, slash)))
+			{
+				return true;
+			}
+			slash = path.indexOf('/', slash + 1);
+		}
+		return false;
+	}
+
+	private static List<String> status(String srcMode, String dstMode, String srcSHA, String dstSHA, String status)
+	{
+		List<String> tokens = new ArrayList<String>(5);
+		Collections.addAll(tokens, srcMode, dstMode, srcSHA, dstSHA, status);
+		return tokens;
+	}
+
+	private static String formatMode(int mode)
+	{
+		String octal = Integer.toOctalString(mode);
+		return (octal.length() >= 6) ? octal : NO_MODE.substring(octal.length()) + octal;
+	}
+
+	private static String readSHA(ByteBuffer buffer)
+	{
+		byte[] sha = new byte[20];
+		buffer.get(sha);
+		return toHex(sha);
+	}
+
+	private static String toHex(byte[] bytes)
+	{
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++)
+		{
+			chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+			chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(chars);
+	}
+
+	private static byte[] readUntil(ByteBuffer buffer, byte terminator)
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		byte b;
+		while ((b = buffer.get()) != terminator)
+		{
+			bytes.write(b);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Reads the variable length integers of version 4 indexes (the "offset" encoding git uses in pack files).
+	 * 
+	 * @param buffer
+	 * @return
+	 */
+	private static int readVarInt(ByteBuffer buffer)
+	{
+		int b = buffer.get() & 0xff;
+		int value = b & 0x7f;
+		while ((b & 0x80) != 0)
+		{
+			b = buffer.get() & 0xff;
+			value = ((value + 1) << 7) | (b & 0x7f);
+		}
+		return value;
+	}
+}
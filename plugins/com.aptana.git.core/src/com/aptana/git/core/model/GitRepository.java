@@ -15,6 +15,7 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.text.MessageFormat;
 import java.util.ArrayList;
@@ -38,7 +39,6 @@ import java.util.regex.Pattern;
 import net.contentobjects.jnotify.IJNotify;
 import net.contentobjects.jnotify.JNotifyAdapter;
 import net.contentobjects.jnotify.JNotifyException;
-import net.contentobjects.jnotify.JNotifyListener;
 
 import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFile;
@@ -61,7 +61,9 @@ import com.aptana.core.util.ArrayUtil;
 import com.aptana.core.util.EclipseUtil;
 import com.aptana.core.util.IOUtil;
 import com.aptana.core.util.StringUtil;
+import com.aptana.filewatcher.FileEvent;
 import com.aptana.filewatcher.FileWatcher;
+import com.aptana.filewatcher.IFileEventBatchListener;
 import com.aptana.git.core.GitPlugin;
 import com.aptana.git.core.IDebugScopes;
 import com.aptana.git.core.IPreferenceConstants;
@@ -160,6 +162,11 @@ public class GitRepository
 	 */
 	private static final String INDEX = "index"; //$NON-NLS-1$
 
+	/**
+	 * The repository's own attributes, which apply on top of any ".gitattributes" files.
+	 */
+	private static final String INFO_ATTRIBUTES = "info" + File.separator + "attributes"; //$NON-NLS-1$ //$NON-NLS-2$
+
 	/**
 	 * File created prior to merges (which happen as part of pull, which is just fetch + merge).
 	 */
@@ -182,6 +189,16 @@ public class GitRepository
 
 	public static final String GIT_DIR = ".git"; //$NON-NLS-1$
 
+	/**
+	 * Object type of file contents.
+	 */
+	private static final String BLOB = "blob"; //$NON-NLS-1$
+
+	/**
+	 * Object type of commits.
+	 */
+	static final String COMMIT = "commit"; //$NON-NLS-1$
+
 	/**
 	 * Regexp used to grab list of remote names out of .git/config.
 	 */
@@ -209,6 +226,13 @@ public class GitRepository
 	private int remoteDirCreationWatchId = -1;
 	private Set<IGitRepositoryListener> listeners;
 
+	/**
+	 * Long-lived "git cat-file" processes used to answer object lookups, started on first use.
+	 */
+	private GitCatFile objectHeaders;
+	private GitCatFile objectContents;
+	private final Object catFileLock = new Object();
+
 	GitRepository(URI fileURL)
 	{
 		this.fileURL = fileURL;
@@ -228,82 +252,63 @@ public class GitRepository
 			// index appears to change on commit/stage/unstage/pull
 			// Add listener for changes in HEAD (i.e. switched branches), and index
 			fileWatcherIds.add(FileWatcher.addWatch(gitDirPath().toOSString(), IJNotify.FILE_ANY, false,
-					new JNotifyAdapter()
+					new IFileEventBatchListener()
 					{
 
-						private Set<String> filesToWatch;
-
-						@Override
-						public void fileRenamed(int wd, String rootPath, String oldName, String newName)
+						// A checkout or commit touches these files many times, react once per batch
+						public void filesChanged(List<FileEvent> events)
 						{
-							if (newName == null || !filesToWatch().contains(newName))
-							{
-								return;
-							}
-							if (newName.equals(HEAD))
+							boolean indexChanged = false;
+							boolean headChanged = false;
+							boolean pulled = false;
+							for (FileEvent event : events)
 							{
-								checkForBranchChange();
-							}
-							else if (newName.equals(INDEX) || newName.equals(COMMIT_EDITMSG))
-							{
-								refreshIndex();
-							}
-						}
-
-						@Override
-						public void fileCreated(int wd, String rootPath, String name)
-						{
-							if (name == null)
-							{
-								return;
-							}
-							if (name.equals(INDEX))
-							{
-								refreshIndex();
-							}
-							else if (name.equals(ORIG_HEAD)) // this is done before merges (or pulls, which are just
-																// fetch + merge)
-							{
-								firePullEvent(); // we're conflating the two events here because I don't have the ideas
+								String name = event.getName();
+								if (name == null)
+								{
+									continue;
+								}
+								switch (event.getType())
+								{
+									case IJNotify.FILE_CREATED:
+										if (name.equals(INDEX))
+										{
+											indexChanged = true;
+										}
+										// this is done before merges (or pulls, which are just fetch + merge)
+										else if (name.equals(ORIG_HEAD))
+										{
+											pulled = true;
+										}
+										break;
+									case IJNotify.FILE_DELETED:
+										indexChanged |= name.equals(INDEX);
+										break;
+									default:
+										if (name.equals(HEAD))
+										{
+											headChanged = true;
+										}
+										else if (name.equals(INDEX) || name.equals(COMMIT_EDITMSG))
+										{
+											indexChanged = true;
+										}
+										break;
+								}
 							}
-							// separated in the listeners yet.
-						}
-
-						@Override
-						public void fileDeleted(int wd, String rootPath, String name)
-						{
-							if (name != null && name.equals(INDEX))
+							if (indexChanged)
 							{
 								refreshIndex();
 							}
-						}
-
-						private Set<String> filesToWatch()
-						{
-							if (filesToWatch == null)
-							{
-								filesToWatch = new HashSet<String>();
-								filesToWatch.add(HEAD);
-								filesToWatch.add(INDEX);
-								filesToWatch.add(COMMIT_EDITMSG);
-							}
-							return filesToWatch;
-						}
-
-						@Override
-						public void fileModified(int wd, String rootPath, String name)
-						{
-							if (name == null || !filesToWatch().contains(name))
-							{
-								return;
-							}
-							if (name.equals(HEAD))
+							if (headChanged)
 							{
 								checkForBranchChange();
 							}
-							else if (name.equals(INDEX) || name.equals(COMMIT_EDITMSG))
+							if (pulled)
 							{
-								refreshIndex();
+								// we're conflating the two events here because I don't have the ideas separated in the
+								// listeners yet.
+								firePullEvent();
 							}
 						}
 
@@ -482,113 +487,81 @@ public class GitRepository
 	private void addRemotesFileWatcher() throws JNotifyException
 	{
 		fileWatcherIds.add(FileWatcher.addWatch(gitFile(GitRef.REFS_REMOTES).getAbsolutePath(), IJNotify.FILE_ANY,
-				true, new JNotifyListener()
+				true, new IFileEventBatchListener()
 				{
 
-					public void fileRenamed(int wd, String rootPath, String oldName, String newName)
+					// A fetch or push rewrites many remote refs, fire the events once per batch
+					public void filesChanged(List<FileEvent> events)
 					{
-						if (newName == null)
-						{
-							return;
-						}
-						if (isProbablyBranch(newName))
+						final List<String> added = new ArrayList<String>();
+						final List<String> removed = new ArrayList<String>();
+						boolean updated = false;
+						for (FileEvent event : events)
 						{
-							// FIXME Can't tell if we pushed or pulled unless we look at sha tree/commit list. For
-							// now,
-							// seems harmless to fire both.
-							Job job = new Job("Firing pull and push event") //$NON-NLS-1$
+							String name = event.getName();
+							if (!isProbablyBranch(name))
 							{
-								@Override
-								protected IStatus run(IProgressMonitor monitor)
-								{
-									firePullEvent();
-									firePushEvent();
-									return Status.OK_STATUS;
-								}
-							};
-							job.setSystem(!EclipseUtil.showSystemJobs());
-							job.schedule();
+								continue;
+							}
+							switch (event.getType())
+							{
+								case IJNotify.FILE_CREATED:
+									// if path is longer than one segment, then remote branch was created.
+									addBranch(new GitRevSpecifier(GitRef.refFromString(GitRef.REFS_REMOTES + name)));
+									added.add(name);
+									break;
+								case IJNotify.FILE_DELETED:
+									// if path is longer than one segment, then remote branch was deleted. Means we
+									// probably pulled.
+									synchronized (branches)
+									{
+										branches.remove(new GitRevSpecifier(GitRef.refFromString(GitRef.REFS_REMOTES
+												+ name)));
+									}
+									removed.add(name);
+									break;
+								default:
+									updated = true;
+									break;
+							}
 						}
-					}
-
-					// Determine if filename is referring to a remote branch, and not the remote itself.
-					private boolean isProbablyBranch(String newName)
-					{
-						return newName != null && newName.indexOf(File.separator) != -1 && !newName.endsWith(DOT_LOCK);
-					}
-
-					public void fileModified(int wd, String rootPath, String name)
-					{
-						if (name == null)
+						if (added.isEmpty() && removed.isEmpty() && !updated)
 						{
 							return;
 						}
-						if (isProbablyBranch(name))
+						final boolean pushed = updated;
+						Job job = new Job("Firing remote branch events") //$NON-NLS-1$
 						{
-							// FIXME Can't tell if we pushed or pulled unless we look at sha tree/commit list. For
-							// now,
-							// seems harmless to fire both.
-							Job job = new Job("Firing pull and push event") //$NON-NLS-1$
+							@Override
+							protected IStatus run(IProgressMonitor monitor)
 							{
-								@Override
-								protected IStatus run(IProgressMonitor monitor)
+								for (String name : removed)
 								{
-									firePullEvent();
-									firePushEvent();
-									return Status.OK_STATUS;
+									fireBranchRemovedEvent(name);
 								}
-							};
-							job.setSystem(!EclipseUtil.showSystemJobs());
-							job.schedule();
-						}
-					}
-
-					public void fileDeleted(int wd, String rootPath, final String name)
-					{
-						// if path is longer than one segment, then remote branch was deleted. Means we probably
-						// pulled.
-						if (isProbablyBranch(name))
-						{
-							synchronized (branches)
-							{
-								branches.remove(new GitRevSpecifier(GitRef.refFromString(GitRef.REFS_REMOTES + name)));
-							}
-							Job job = new Job("Firing branch removed and pull event") //$NON-NLS-1$
-							{
-								@Override
-								protected IStatus run(IProgressMonitor monitor)
+								for (String name : added)
 								{
-									fireBranchRemovedEvent(name);
-									firePullEvent();
-									return Status.OK_STATUS;
+									fireBranchAddedEvent(name);
 								}
-							};
-							job.setSystem(!EclipseUtil.showSystemJobs());
-							job.schedule();
-						}
+								// Since remote branches changed, we probably pulled.
+								firePullEvent();
+								// FIXME Can't tell if we pushed or pulled unless we look at sha tree/commit list. For
+								// now, seems harmless to fire both.
+								if (pushed)
+								{
+									firePushEvent();
+								}
+								return Status.OK_STATUS;
+							}
+						};
+						job.setSystem(!EclipseUtil.showSystemJobs());
+						job.schedule();
 					}
 
-					public void fileCreated(int wd, String rootPath, final String name)
+					// Determine if filename is referring to a remote branch, and not the remote itself.
+					private boolean isProbablyBranch(String newName)
 					{
-						if (isProbablyBranch(name))
-						{
-							// if path is longer than one segment, then remote branch was created.
-							addBranch(new GitRevSpecifier(GitRef.refFromString(GitRef.REFS_REMOTES + name)));
-							// Since we suddenly know about a new remote branch, we probably pulled.
-
-							Job job = new Job("Firing branch added and pull event") //$NON-NLS-1$
-							{
-								@Override
-								protected IStatus run(IProgressMonitor monitor)
-								{
-									fireBranchAddedEvent(name);
-									firePullEvent();
-									return Status.OK_STATUS;
-								}
-							};
-							job.setSystem(!EclipseUtil.showSystemJobs());
-							job.schedule();
-						}
+						return newName != null && newName.indexOf(File.separator) != -1 && !newName.endsWith(DOT_LOCK);
 					}
 				}));
 	}
@@ -845,37 +818,15 @@ public class GitRepository
 			return Collections.emptySet();
 		}
 
-		// Now do a batch check against all the projects underneath our repo
+		// Now check for the project files of all the projects underneath our repo on the destination branch
 		Set<IProject> projectsNotExistingOnNewBranch = new HashSet<IProject>();
-		StringBuilder input = new StringBuilder();
 		for (IProject project : beneathRepo)
 		{
-			input.append(branchName).append(':')
-					.append(relativePath(project).append(IProjectDescription.DESCRIPTION_FILE_NAME).toPortableString())
-					.append('\n');
-		}
-
-		if (!enterRead())
-		{
-			IdeLog.logError(GitPlugin.getDefault(), Messages.GitRepository_FailedAcquireReadLock);
-			return Collections.emptySet();
-		}
-
-		IStatus result = GitExecutable.instance().runInBackground(input.toString(), workingDir,
-				"cat-file", "--batch-check"); //$NON-NLS-1$ //$NON-NLS-2$
-		exitRead();
-		if (result.isOK())
-		{
-			String output = result.getMessage();
-			String[] lines = output.split("\r?\n|\r"); //$NON-NLS-1$ // $codepro.audit.disable platformSpecificLineSeparator
-			int lineNum = 0;
-			for (String line : lines)
+			String objectName = branchName + ':'
+					+ relativePath(project).append(IProjectDescription.DESCRIPTION_FILE_NAME).toPortableString();
+			if (objectInfo(objectName) == null)
 			{
-				if (line.endsWith(" missing")) //$NON-NLS-1$
-				{
-					projectsNotExistingOnNewBranch.add(beneathRepo.get(lineNum));
-				}
-				lineNum++;
+				projectsNotExistingOnNewBranch.add(project);
 			}
 		}
 		// APSTUD-3399 We need to see if the projects that don't exist are untracked and therefore ok (we don't need to
@@ -884,7 +835,7 @@ public class GitRepository
 		for (IProject project : projectsNotExistingOnNewBranch)
 		{
 			String path = relativePath(project).append(IProjectDescription.DESCRIPTION_FILE_NAME).toPortableString();
-			result = execute(GitRepository.ReadWrite.READ, "ls-files", "--others", //$NON-NLS-1$ //$NON-NLS-2$
+			IStatus result = execute(GitRepository.ReadWrite.READ, "ls-files", "--others", //$NON-NLS-1$ //$NON-NLS-2$
 					"--exclude-standard", "-z", "--", path); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 			if (result.isOK() && result.getMessage().trim().equals(path))
 			{
@@ -1610,6 +1561,19 @@ public class GitRepository
 				listeners = null;
 			}
 		}
+		synchronized (catFileLock)
+		{
+			if (objectHeaders != null)
+			{
+				objectHeaders.dispose();
+				objectHeaders = null;
+			}
+			if (objectContents != null)
+			{
+				objectContents.dispose();
+				objectContents = null;
+			}
+		}
 		_headRef = null;
 		hasChanged = false;
 		index = null;
@@ -2171,9 +2135,193 @@ public class GitRepository
 	 */
 	public IStatus revParse(String ref)
 	{
+		GitCatFile.ObjectInfo info = objectInfo(ref);
+		if (info != null)
+		{
+			return new Status(IStatus.OK, GitPlugin.getPluginId(), info.sha);
+		}
+		// Let git tell us what's wrong with the ref
 		return execute(GitRepository.ReadWrite.READ, "rev-parse", "--verify", ref); //$NON-NLS-1$ //$NON-NLS-2$
 	}
 
+	/**
+	 * Looks up the SHA, type and size of an object through a long-lived "git cat-file --batch-check" process. Accepts
+	 * anything git does to name an object, i.e. "HEAD", "refs/heads/master:path/to/file" or ":0:path/to/file". Returns
+	 * null if the object doesn't exist (or the lookup failed).
+	 * 
+	 * @param objectName
+	 * @return
+	 */
+	GitCatFile.ObjectInfo objectInfo(String objectName)
+	{
+		return lookup(objectHeaders(), objectName);
+	}
+
+	/**
+	 * Reads an object (i.e. a commit) through a long-lived "git cat-file --batch" process. Returns null if the object
+	 * doesn't exist (or the lookup failed).
+	 * 
+	 * @param objectName
+	 * @return
+	 */
+	GitCatFile.ObjectInfo readObject(String objectName)
+	{
+		return lookup(objectContents(), objectName);
+	}
+
+	/**
+	 * The long-lived "git cat-file --batch-check" process of this repository.
+	 * 
+	 * @return
+	 */
+	GitCatFile objectHeaders()
+	{
+		synchronized (catFileLock)
+		{
+			if (objectHeaders == null)
+			{
+				objectHeaders = new GitCatFile(workingDirectory(), gitFile(INDEX), false);
+			}
+			return objectHeaders;
+		}
+	}
+
+	/**
+	 * The long-lived "git cat-file --batch" process of this repository.
+	 * 
+	 * @return
+	 */
+	GitCatFile objectContents()
+	{
+		synchronized (catFileLock)
+		{
+			if (objectContents == null)
+			{
+				objectContents = new GitCatFile(workingDirectory(), gitFile(INDEX), true);
+			}
+			return objectContents;
+		}
+	}
+
+	/**
+	 * Reads the index file of this repository.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	GitIndexFile readIndexFile() throws IOException
+	{
+		return GitIndexFile.read(gitFile(INDEX));
+	}
+
+	/**
+	 * Could git convert files on their way from the working tree into the index (core.autocrlf, or the text, eol and
+	 * filter attributes)? If so, hashing a file's raw contents doesn't tell us whether it changed. Errs on the side of
+	 * "yes" when we can't tell.
+	 * 
+	 * @param indexFile
+	 * @return
+	 */
+	boolean mayConvertContents(GitIndexFile indexFile)
+	{
+		if (indexFile.tracksAttributes() || gitFile(INFO_ATTRIBUTES).isFile())
+		{
+			return true;
+		}
+
+		IStatus status = execute(ReadWrite.READ, "config", "--get-regexp", "^core\\.(autocrlf|attributesfile)$"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		if (status == null)
+		{
+			return true;
+		}
+		if (status.isOK())
+		{
+			// One "key value" line per setting, from the system config down to the repository's. The last one wins.
+			boolean autocrlf = false;
+			for (String line : StringUtil.LINE_SPLITTER.split(status.getMessage()))
+			{
+				String[] setting = line.trim().split("\\s+", 2); //$NON-NLS-1$
+				if (setting[0].equals("core.autocrlf")) //$NON-NLS-1$
+				{
+					autocrlf = setting.length < 2 || !isFalse(setting[1]);
+				}
+				else if (setting[0].length() != 0)
+				{
+					return true;
+				}
+			}
+			if (autocrlf)
+			{
+				return true;
+			}
+		}
+		// git config exits with 1 when nothing matches
+		else if (status.getCode() != 1)
+		{
+			return true;
+		}
+
+		// The user's attributes file when core.attributesfile isn't set
+		String configHome = System.getenv("XDG_CONFIG_HOME"); //$NON-NLS-1$
+		File config = StringUtil.isEmpty(configHome) ? new File(System.getProperty("user.home"), ".config") //$NON-NLS-1$ //$NON-NLS-2$
+				: new File(configHome);
+		return new File(config, "git" + File.separator + "attributes").isFile(); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private static boolean isFalse(String value)
+	{
+		return "false".equalsIgnoreCase(value) || "no".equalsIgnoreCase(value) || "off".equalsIgnoreCase(value) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				|| "0".equals(value); //$NON-NLS-1$
+	}
+
+	/**
+	 * Reads the contents of a file through a long-lived "git cat-file --batch" process, falling back to "git show" if
+	 * that fails or the object isn't a file. The status message holds the contents decoded as UTF-8.
+	 * 
+	 * @param objectName
+	 *            anything git accepts to name an object, i.e. "sha:path/to/file" or ":0:path/to/file"
+	 * @return
+	 */
+	public IStatus catFile(String objectName)
+	{
+		GitCatFile.ObjectInfo info = lookup(objectContents(), objectName);
+		if (info == null || !BLOB.equals(info.type))
+		{
+			return execute(GitRepository.ReadWrite.READ, "show", objectName); //$NON-NLS-1$
+		}
+		try
+		{
+			return new Status(IStatus.OK, GitPlugin.getPluginId(), new String(info.contents, IOUtil.UTF_8));
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			return new Status(IStatus.OK, GitPlugin.getPluginId(), new String(info.contents));
+		}
+	}
+
+	private GitCatFile.ObjectInfo lookup(GitCatFile catFile, String objectName)
+	{
+		if (!enterRead())
+		{
+			IdeLog.logError(GitPlugin.getDefault(), Messages.GitRepository_FailedAcquireReadLock);
+			return null;
+		}
+		try
+		{
+			return catFile.lookup(objectName);
+		}
+		catch (IOException e)
+		{
+			IdeLog.logWarning(GitPlugin.getDefault(),
+					MessageFormat.format("Failed to look up {0} with git cat-file", objectName), e, IDebugScopes.DEBUG); //$NON-NLS-1$
+			return null;
+		}
+		finally
+		{
+			exitRead();
+		}
+	}
+
 	/**
 	 * Used solely for testing so we can force the subsequent command to block until we acquire the write lock.
 	 */
@@ -7,13 +7,15 @@
  */
 package com.aptana.git.core.model;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -22,6 +24,7 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 
 import com.aptana.core.logging.IdeLog;
+import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.IOUtil;
 import com.aptana.git.core.GitPlugin;
 import com.aptana.git.core.IDebugScopes;
@@ -33,6 +36,15 @@ public class GitRevList
 
 	private static final int NO_LIMIT = -1;
 
+	/**
+	 * How many commits we hand to a listener at a time.
+	 */
+	private static final int PAGE_SIZE = 500;
+
+	private static final char FIELD_SEPARATOR = '\1';
+	private static final char RECORD_SEPARATOR = '\0';
+	private static final Set<String> SIGNS = CollectionsUtil.newSet(">", "<", "^", "-"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
 	public GitRevList(GitRepository repo)
 	{
 		repository = repo;
@@ -57,6 +69,35 @@ public class GitRevList
 	 *            Maximum number of results to return. {@link #NO_LIMIT} represent no limit.
 	 */
 	public IStatus walkRevisionListWithSpecifier(GitRevSpecifier rev, int max, IProgressMonitor monitor)
+	{
+		final ArrayList<GitCommit> revisions = new ArrayList<GitCommit>();
+		IStatus status = walkRevisionListWithSpecifier(rev, max, new IGitRevListListener()
+		{
+			public void commitsLoaded(List<GitCommit> page)
+			{
+				revisions.addAll(page);
+			}
+		}, monitor);
+		revisions.trimToSize();
+		this.commits = revisions;
+		return status;
+	}
+
+	/**
+	 * Walks a revision in reverse chronological order, limited to value of max results, handing the commits to the
+	 * listener in pages as git lists them. The commits are not collected, so {@link #getCommits()} isn't updated; this
+	 * lets callers show the start of a long history right away and keep only what they need. The commit bodies aren't
+	 * read up front, {@link GitCommit#getComment()} loads them on demand.
+	 * 
+	 * @param rev
+	 * @param max
+	 *            Maximum number of results to return. {@link #NO_LIMIT} represent no limit.
+	 * @param listener
+	 * @param monitor
+	 * @return
+	 */
+	public IStatus walkRevisionListWithSpecifier(GitRevSpecifier rev, int max, IGitRevListListener listener,
+			IProgressMonitor monitor)
 	{
 		int units = max;
 		if (units == -1)
@@ -66,9 +107,8 @@ public class GitRevList
 		}
 		SubMonitor subMonitor = SubMonitor.convert(monitor, units);
 		long start = System.currentTimeMillis();
-		List<GitCommit> revisions = new ArrayList<GitCommit>();
 
-		String formatString = "--pretty=format:%H\01%e\01%an\01%ae\01%s\01%b\01%P\01%at"; //$NON-NLS-1$
+		String formatString = "--pretty=format:%H\01%an\01%ae\01%s\01%P\01%at"; //$NON-NLS-1$
 		boolean showSign = ((rev == null) ? false : rev.hasLeftRight());
 		if (showSign)
 			formatString += "\01%m"; //$NON-NLS-1$
@@ -76,9 +116,10 @@ public class GitRevList
 		List<String> arguments = new ArrayList<String>();
 		arguments.add("log"); //$NON-NLS-1$
 		arguments.add("-z"); //$NON-NLS-1$
-		arguments.add("--early-output"); //$NON-NLS-1$
 		arguments.add("--topo-order"); //$NON-NLS-1$
 		arguments.add("--children"); //$NON-NLS-1$
+		// git re-encodes messages for output, so ask for what we decode rather than trusting each commit's encoding
+		arguments.add("--encoding=" + IOUtil.UTF_8); //$NON-NLS-1$
 		if (max > 0)
 		{
 			arguments.add("-" + max); // only last N revs //$NON-NLS-1$
@@ -110,13 +151,15 @@ public class GitRevList
 					"Failed to acquire read lock on the git repository. A long-running operation that writes to the repo is running (i.e. pull). Please ensure that has finished before trying again.");
 		}
 
+		Process p = null;
 		try
 		{
 			// FIXME Move this into GitRepository, so we can set up lock/monitor on it!
-			Process p = GitExecutable.instance().run(directory, arguments.toArray(new String[arguments.size()]));
-			InputStream stream = p.getInputStream();
+			p = GitExecutable.instance().run(directory, arguments.toArray(new String[arguments.size()]));
+			FieldReader reader = new FieldReader(p.getInputStream());
 
 			int num = 0;
+			List<GitCommit> page = new ArrayList<GitCommit>(PAGE_SIZE);
 			while (true)
 			{
 				if (subMonitor.isCanceled())
@@ -124,40 +167,32 @@ public class GitRevList
 					return Status.CANCEL_STATUS;
 				}
 
-				String sha = getline(stream, '\1');
+				String sha = reader.next();
 				if (sha == null)
 				{
 					break;
 				}
 
-				// We reached the end of some temporary output. Show what we have
-				// until now, and then start again. The sha of the next thing is still
-				// in this buffer. So, we use a substring of current input.
-				if (sha.charAt(1) == 'i') // Matches 'Final output'
+				String author = reader.next();
+				String authorEmail = reader.next();
+				String subject = reader.next();
+				String parentString = reader.next();
+				String time = reader.next();
+				String sign = showSign ? reader.next() : null;
+				if (time == null || (showSign && sign == null))
 				{
-					num = 0;
-					setCommits(revisions);
-					revisions = new ArrayList<GitCommit>();
-
-					// If the length is < 40, then there are no commits.. quit now
-					if (sha.length() < 40)
-					{
-						break;
-					}
+					IdeLog.logError(GitPlugin.getDefault(),
+							MessageFormat.format("Error loading commits: truncated output for {0}", sha), IDebugScopes.DEBUG); //$NON-NLS-1$
+					break;
+				}
 
-					int startIndex = sha.length() - 40;
-					sha = sha.substring(startIndex, startIndex + 40);
+				if (sign != null && !SIGNS.contains(sign))
+				{
+					IdeLog.logError(GitPlugin.getDefault(), "Error loading commits: sign not correct", IDebugScopes.DEBUG); //$NON-NLS-1$
 				}
 
-				String encoding = getline(stream, '\1', IOUtil.UTF_8);
 				GitCommit newCommit = new GitCommit(repository, sha);
-
-				String author = getline(stream, '\1', encoding);
-				String authorEmail = getline(stream, '\1', encoding);
-				String subject = getline(stream, '\1', encoding);
-				String body = getline(stream, '\1', encoding);
-				String parentString = getline(stream, '\1');
-				if (parentString != null && parentString.length() != 0)
+				if (parentString.length() != 0)
 				{
 					if (((parentString.length() + 1) % 41) != 0)
 					{
@@ -176,53 +211,29 @@ public class GitRevList
 					newCommit.setParents(parents);
 				}
 
-				long time = readLong(stream); // read 10 chars as a string and parse into a long
-
 				newCommit.setSubject(subject);
-				newCommit.setComment(body);
 				newCommit.setAuthor(author);
 				newCommit.setAuthorEmail(authorEmail);
-				newCommit.setTimestamp(time);
-
-				if (showSign)
-				{
-					stream.read(); // Remove separator
-					char c = (char) stream.read();
-					if (c != '>' && c != '<' && c != '^' && c != '-')
-					{
-						IdeLog.logError(GitPlugin.getDefault(),
-								"Error loading commits: sign not correct", IDebugScopes.DEBUG); //$NON-NLS-1$
-						// newCommit.setSign(c);
-					}
-
-				}
-
-				int read = stream.read();
-				if (read != 0 && read != -1)
-				{
-					IdeLog.logError(GitPlugin.getDefault(), "Error", IDebugScopes.DEBUG); //$NON-NLS-1$
-				}
-
-				revisions.add(newCommit);
+				newCommit.setTimestamp(toTimestamp(time));
 
+				page.add(newCommit);
+				num++;
 				subMonitor.worked(1);
 
-				if (read == -1)
-				{
-					break;
-				}
-
-				if (++num % 1000 == 0)
+				if (page.size() == PAGE_SIZE)
 				{
-					setCommits(revisions);
+					listener.commitsLoaded(page);
+					page = new ArrayList<GitCommit>(PAGE_SIZE);
 				}
 			}
 
+			if (!page.isEmpty())
+			{
+				listener.commitsLoaded(page);
+			}
+			p.waitFor();
 			long duration = System.currentTimeMillis() - start;
 			logInfo(MessageFormat.format("Loaded {0} commits in {1} ms", num, duration)); //$NON-NLS-1$
-			// Make sure the commits are stored before exiting.
-			setCommits(revisions, true);
-			p.waitFor();
 		}
 		catch (Exception e)
 		{
@@ -230,6 +241,11 @@ public class GitRevList
 		}
 		finally
 		{
+			if (p != null)
+			{
+				// When we stop early (cancelled, or an error) git may still be writing; don't leave it running.
+				p.destroy();
+			}
 			repository.exitRead();
 			subMonitor.done();
 		}
@@ -248,109 +264,58 @@ public class GitRevList
 		}
 	}
 
-	private long readLong(InputStream stream)
+	private long toTimestamp(String seconds)
 	{
-		StringBuilder builder = new StringBuilder();
-		while (true)
-		{
-			try
-			{
-				int read = stream.read();
-				if (read == -1)
-				{
-					break;
-				}
-				builder.append((char) read);
-				if (builder.length() == 10)
-				{
-					break;
-				}
-			}
-			catch (IOException e)
-			{
-				break;
-			}
-		}
 		// Since we get time in seconds since epoch, not ms we need to multiply by 1000
-		long time = Long.parseLong(builder.toString()) * 1000;
+		long time = Long.parseLong(seconds) * 1000;
 		// HACK for some reason my times are 5 minutes off the console/GitX. Adjust 5 mins
 		return time + (5 * 60 * 1000);
 	}
 
-	private void setCommits(List<GitCommit> revisions)
-	{
-		setCommits(revisions, false);
-	}
-
-	private void setCommits(List<GitCommit> revisions, boolean trimToSize)
-	{
-		if (trimToSize)
-		{
-			if (revisions instanceof ArrayList<?>)
-			{
-				((ArrayList<?>) revisions).trimToSize();
-			}
-			this.commits = new ArrayList<GitCommit>(revisions);
-			revisions.clear();
-			revisions = null;
-		}
-		else
-		{
-			this.commits = revisions;
-		}
-	}
-
-	private String getline(InputStream stream, char c)
+	/**
+	 * Splits the output of "git log -z" with our format into fields. Fields end at a \01 (between fields of a commit),
+	 * a NUL (between commits) or the end of the output.
+	 */
+	private static class FieldReader
 	{
-		byte[] bytes = read(stream, c);
-		if (bytes == null || bytes.length == 0)
-		{
-			return null;
-		}
-		return new String(bytes);
-	}
+		private final InputStream stream;
+		private final ByteArrayOutputStream field = new ByteArrayOutputStream(128);
+		private boolean eof;
 
-	private String getline(InputStream stream, char c, String encoding) throws UnsupportedEncodingException
-	{
-		if (encoding == null || encoding.length() == 0)
+		FieldReader(InputStream stream)
 		{
-			return getline(stream, c);
+			this.stream = new BufferedInputStream(stream, 8192);
 		}
-		byte[] bytes = read(stream, c);
-		return new String(bytes, encoding);
-	}
 
-	private byte[] read(InputStream stream, char c)
-	{
-		List<Byte> list = new ArrayList<Byte>();
-		while (true)
+		/**
+		 * Reads the next field, or returns null if the output has ended.
+		 * 
+		 * @return
+		 * @throws IOException
+		 */
+		String next() throws IOException
 		{
-			try
+			if (eof)
+			{
+				return null;
+			}
+			field.reset();
+			int read;
+			while ((read = stream.read()) != FIELD_SEPARATOR && read != RECORD_SEPARATOR)
 			{
-				int read = stream.read();
 				if (read == -1)
 				{
+					eof = true;
+					if (field.size() == 0)
+					{
+						return null;
+					}
 					break;
 				}
-				char readC = (char) read;
-				if (readC == c)
-				{
-					break;
-				}
-				list.add((byte) read);
-			}
-			catch (IOException e)
-			{
-				break;
+				field.write(read);
 			}
+			return field.toString(IOUtil.UTF_8);
 		}
-		byte[] bytes = new byte[list.size()];
-		int i = 0;
-		for (Byte by : list)
-		{
-			bytes[i++] = by.byteValue();
-		}
-		return bytes;
 	}
 
 	public List<GitCommit> getCommits()
@@ -0,0 +1,29 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.git.core.model;
+
+import java.util.List;
+
+/**
+ * Receives the commits of a revision walk a page at a time, while git is still producing the rest of the history.
+ * 
+ * @see GitRevList#walkRevisionListWithSpecifier(GitRevSpecifier, int, IGitRevListListener,
+ *      org.eclipse.core.runtime.IProgressMonitor)
+ */
+public interface IGitRevListListener
+{
+
+	/**
+	 * The next page of commits has been read. Pages arrive in the order git lists the commits, on the thread running
+	 * the walk.
+	 * 
+	 * @param commits
+	 *            the commits in this page. The walk doesn't hold on to or modify the list after this call.
+	 */
+	public void commitsLoaded(List<GitCommit> commits);
+}
@@ -27,7 +27,6 @@ import com.aptana.core.util.ArrayUtil;
 import com.aptana.core.util.IOUtil;
 import com.aptana.git.core.model.GitCommit;
 import com.aptana.git.core.model.GitRef;
-import com.aptana.git.core.model.GitRepository;
 
 public class CommitFileRevision extends FileRevision
 {
@@ -74,8 +73,7 @@ public class CommitFileRevision extends FileRevision
 				{
 					return new ByteArrayInputStream(ArrayUtil.NO_BYTES); // $codepro.audit.disable closeWhereCreated
 				}
-				IStatus result = commit.repository().execute(GitRepository.ReadWrite.READ,
-						"show", commit.sha() + ":" + path); //$NON-NLS-1$ //$NON-NLS-2$
+				IStatus result = commit.repository().catFile(commit.sha() + ":" + path); //$NON-NLS-1$
 
 				// Encode using UTF-8, otherwise use default character set for platform
 				try
@@ -24,6 +24,7 @@ import com.aptana.git.core.model.GitRepository;
 import com.aptana.git.core.model.GitRevList;
 import com.aptana.git.core.model.GitRevSpecifier;
 import com.aptana.git.core.model.IGitRepositoryManager;
+import com.aptana.git.core.model.IGitRevListListener;
 
 public class GitFileHistory extends FileHistory
 {
@@ -55,7 +56,8 @@ public class GitFileHistory extends FileHistory
 			}
 			// Need the repo relative path
 			IPath resourcePath = repo.relativePath(resource);
-			List<IFileRevision> revisions = new ArrayList<IFileRevision>();
+			final List<IFileRevision> revisions = new ArrayList<IFileRevision>();
+			final IPath projectRelativePath = resource.getProjectRelativePath();
 			GitRevList list = new GitRevList(repo);
 			int max = -1;
 			if ((flags & IFileHistoryProvider.SINGLE_REVISION) == IFileHistoryProvider.SINGLE_REVISION)
@@ -63,12 +65,16 @@ public class GitFileHistory extends FileHistory
 				max = 1;
 			}
 			list.walkRevisionListWithSpecifier(new GitRevSpecifier(resourcePath.toOSString()), max,
-					subMonitor.newChild(95));
-			List<GitCommit> commits = list.getCommits();
-			for (GitCommit gitCommit : commits)
-			{
-				revisions.add(new CommitFileRevision(gitCommit, resource.getProjectRelativePath()));
-			}
+					new IGitRevListListener()
+					{
+						public void commitsLoaded(List<GitCommit> commits)
+						{
+							for (GitCommit gitCommit : commits)
+							{
+								revisions.add(new CommitFileRevision(gitCommit, projectRelativePath));
+							}
+						}
+					}, subMonitor.newChild(95));
 			return revisions.toArray(new CommitFileRevision[revisions.size()]);
 		}
 		finally
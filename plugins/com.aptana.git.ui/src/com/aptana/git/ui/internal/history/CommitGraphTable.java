@@ -14,6 +14,7 @@ import java.util.Map;
 import org.eclipse.jface.viewers.ArrayContentProvider;
 import org.eclipse.jface.viewers.BaseLabelProvider;
 import org.eclipse.jface.viewers.ColumnWeightData;
+import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.jface.viewers.ITableLabelProvider;
 import org.eclipse.jface.viewers.StructuredSelection;
 import org.eclipse.jface.viewers.TableLayout;
@@ -110,8 +111,11 @@ class CommitGraphTable extends TableViewer
 	{
 		this.commits = commits;
 		decorations = new GitGrapher().decorateCommits(commits);
+		// History is shown a page at a time as it loads; don't take away what the user picked from an earlier page
+		IStructuredSelection selection = (IStructuredSelection) getSelection();
+		boolean selected = !selection.isEmpty() && commits.containsAll(selection.toList());
 		setInput(commits);
-		if (!commits.isEmpty())
+		if (!commits.isEmpty() && !selected)
 		{
 			setSelection(new StructuredSelection(commits.get(0)));
 		}
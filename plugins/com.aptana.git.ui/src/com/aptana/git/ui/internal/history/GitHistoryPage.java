@@ -11,6 +11,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -62,6 +63,7 @@ import com.aptana.git.core.model.GitRepository;
 import com.aptana.git.core.model.GitRevList;
 import com.aptana.git.core.model.GitRevSpecifier;
 import com.aptana.git.core.model.IGitRepositoryManager;
+import com.aptana.git.core.model.IGitRevListListener;
 import com.aptana.git.ui.GitUIPlugin;
 import com.aptana.theme.ThemePlugin;
 import com.aptana.ui.util.UIUtils;
@@ -139,22 +141,23 @@ public class GitHistoryPage extends HistoryPage
 				}
 				repo.lazyReload();
 				subMonitor.worked(5);
-				revList.walkRevisionListWithSpecifier(new GitRevSpecifier(ref, "--", resourcePath.toOSString()), //$NON-NLS-1$
-						subMonitor.newChild(95));
-				final List<GitCommit> commits = revList.getCommits();
-				Display.getDefault().asyncExec(new Runnable()
+				// Show the first page of commits as soon as it's read, rather than waiting on the whole history
+				final List<GitCommit> commits = new ArrayList<GitCommit>();
+				IGitRevListListener listener = new IGitRevListListener()
 				{
-
-					public void run()
+					public void commitsLoaded(List<GitCommit> page)
 					{
-						graph.setCommits(commits);
-						if (getControl() != null && !getControl().isDisposed())
+						boolean first = commits.isEmpty();
+						commits.addAll(page);
+						if (first)
 						{
-							getSite().getPage().activate((IWorkbenchPart) getHistoryView());
-							((IViewPart) getHistoryView()).getViewSite().getActionBars().updateActionBars();
+							showCommits(new ArrayList<GitCommit>(commits));
 						}
 					}
-				});
+				};
+				revList.walkRevisionListWithSpecifier(new GitRevSpecifier(ref, "--", resourcePath.toOSString()), -1, //$NON-NLS-1$
+						listener, subMonitor.newChild(95));
+				showCommits(commits);
 				subMonitor.done();
 				return Status.OK_STATUS;
 			}
@@ -164,6 +167,23 @@ public class GitHistoryPage extends HistoryPage
 		schedule(job);
 	}
 
+	private void showCommits(final List<GitCommit> commits)
+	{
+		Display.getDefault().asyncExec(new Runnable()
+		{
+
+			public void run()
+			{
+				graph.setCommits(commits);
+				if (getControl() != null && !getControl().isDisposed())
+				{
+					getSite().getPage().activate((IWorkbenchPart) getHistoryView());
+					((IViewPart) getHistoryView()).getViewSite().getActionBars().updateActionBars();
+				}
+			}
+		});
+	}
+
 	private IGitRepositoryManager getGitRepositoryManager()
 	{
 		return GitPlugin.getDefault().getGitRepositoryManager();
@@ -17,6 +17,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Pattern;
@@ -27,13 +29,19 @@ import org.eclipse.core.runtime.IPath;
 
 import com.aptana.core.logging.IdeLog;
 import com.aptana.internal.index.core.DiskIndex;
+import com.aptana.internal.index.core.DocumentManifest;
 import com.aptana.internal.index.core.MemoryIndex;
 
 public class Index
 {
 	private static final int MATCH_RULE_INDEX_MASK = SearchPattern.EXACT_MATCH | SearchPattern.PREFIX_MATCH
 			| SearchPattern.PATTERN_MATCH | SearchPattern.CASE_SENSITIVE | SearchPattern.REGEX_MATCH;
-	private static final Map<String, Pattern> PATTERNS = new HashMap<String, Pattern>();
+	/**
+	 * Compiled query patterns, shared by the threads querying concurrently. Keys are prefixed with the kind of pattern
+	 * so a word pattern, a case sensitive and a case insensitive regex with the same text don't collide.
+	 */
+	private static final ConcurrentMap<String, Pattern> PATTERNS = new ConcurrentHashMap<String, Pattern>();
+	private static final int MAX_CACHED_PATTERNS = 256;
 	// Separator to use after the container path
 	public static final char DEFAULT_SEPARATOR = '/';
 
@@ -241,7 +249,8 @@ public class Index
 		}
 
 		// see if we've cached a regex for this pattern already
-		Pattern p = PATTERNS.get(pattern);
+		String key = 'p' + pattern;
+		Pattern p = PATTERNS.get(key);
 
 		// nope, so try and create one
 		if (p == null)
@@ -265,7 +274,7 @@ public class Index
 
 			p = Pattern.compile(regex);
 
-			PATTERNS.put(pattern, p);
+			cachePattern(key, p);
 		}
 
 		return (p != null) ? p.matcher(word).find() : false;
@@ -280,7 +289,8 @@ public class Index
 	 */
 	private static boolean regexPatternMatch(String regex, String word, boolean caseSensitive)
 	{
-		Pattern pattern = PATTERNS.get(regex);
+		String key = (caseSensitive ? 'R' : 'r') + regex;
+		Pattern pattern = PATTERNS.get(key);
 
 		if (pattern == null)
 		{
@@ -290,7 +300,7 @@ public class Index
 				pattern = (caseSensitive) ? Pattern.compile(regex) : Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
 
 				// cache for later
-				PATTERNS.put(regex, pattern);
+				cachePattern(key, pattern);
 			}
 			catch (PatternSyntaxException e)
 			{
@@ -300,10 +310,27 @@ public class Index
 		return (pattern != null) ? pattern.matcher(word).find() : false;
 	}
 
+	/**
+	 * Caches a compiled pattern, starting over once the cache is full so patterns of past queries don't pile up.
+	 * 
+	 * @param key
+	 * @param pattern
+	 */
+	private static void cachePattern(String key, Pattern pattern)
+	{
+		if (PATTERNS.size() >= MAX_CACHED_PATTERNS)
+		{
+			PATTERNS.clear();
+		}
+		PATTERNS.put(key, pattern);
+	}
+
 	private MemoryIndex memoryIndex;
 	private DiskIndex diskIndex;
+	private DocumentManifest manifest;
 	private ReadWriteLock monitor;
 	private URI containerURI;
+	private Index parent;
 
 	/**
 	 * Index
@@ -332,6 +359,16 @@ public class Index
 		{
 			this.diskIndex = new DiskIndex(diskIndexPathString);
 			this.diskIndex.initialize(reuseExistingFile);
+
+			this.manifest = new DocumentManifest(new File(diskIndexPathString + ".manifest")); //$NON-NLS-1$
+			if (reuseExistingFile)
+			{
+				loadManifest();
+			}
+			else
+			{
+				this.manifest.delete();
+			}
 		}
 		finally
 		{
@@ -339,6 +376,22 @@ public class Index
 		}
 	}
 
+	/**
+	 * Creates an index which only lives in memory. These are filled by parallel indexing workers and then folded into
+	 * the real index via {@link #merge(Index)}. Queries fall through to the parent index for documents the staging
+	 * index has no changes for.
+	 * 
+	 * @param containerURI
+	 * @param parent
+	 */
+	private Index(URI containerURI, Index parent)
+	{
+		this.containerURI = containerURI;
+		this.parent = parent;
+		this.memoryIndex = new MemoryIndex();
+		this.monitor = new ReentrantReadWriteLock();
+	}
+
 	/**
 	 * addEntry
 	 * 
@@ -359,6 +412,19 @@ public class Index
 		}
 	}
 
+	/**
+	 * Create an empty, memory-only index for the same container as this index. Entries added to it are not visible to
+	 * queries against this index until the staging index is {@link #merge(Index) merged} into it. Queries against the
+	 * staging index do see the entries of this index, so participants looking up other documents of the container get
+	 * the same answers as when indexing into this index directly.
+	 * 
+	 * @return
+	 */
+	Index createStagingIndex()
+	{
+		return new Index(this.containerURI, this);
+	}
+
 	/**
 	 * deleteIndexFile
 	 */
@@ -376,6 +442,11 @@ public class Index
 		{
 			indexFile.delete();
 		}
+
+		if (this.manifest != null)
+		{
+			this.manifest.delete();
+		}
 	}
 
 	protected static void logTrace(String msg)
@@ -468,7 +539,10 @@ public class Index
 		try
 		{
 			categories.addAll(this.memoryIndex.getCategories());
-			categories.addAll(this.diskIndex.getCategories());
+			if (this.diskIndex != null)
+			{
+				categories.addAll(this.diskIndex.getCategories());
+			}
 		}
 		finally
 		{
@@ -477,6 +551,17 @@ public class Index
 		return new ArrayList<String>(categories);
 	}
 
+	/**
+	 * Returns the manifest recording the size, timestamp and checksum of each document at the time it was indexed. This
+	 * is null for staging indices.
+	 * 
+	 * @return
+	 */
+	public DocumentManifest getManifest()
+	{
+		return this.manifest;
+	}
+
 	/**
 	 * getIndexFile
 	 * 
@@ -507,6 +592,42 @@ public class Index
 		return memoryIndex.hasChanged();
 	}
 
+	/**
+	 * Load the document manifest. If it can't be read, we start with an empty one which means all documents will be
+	 * considered changed the next time the container is indexed.
+	 */
+	private void loadManifest()
+	{
+		try
+		{
+			this.manifest.load();
+		}
+		catch (IOException e)
+		{
+			IdeLog.logWarning(IndexPlugin.getDefault(),
+					MessageFormat.format("Unable to read the document manifest of ''{0}''", this), e); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Move all document changes recorded in the given staging index into this index. Documents contained in the staging
+	 * index replace any pending changes to the same documents in this index.
+	 * 
+	 * @param stagingIndex
+	 */
+	void merge(Index stagingIndex)
+	{
+		this.enterWrite();
+		try
+		{
+			this.memoryIndex.addEntries(stagingIndex.memoryIndex);
+		}
+		finally
+		{
+			this.exitWrite();
+		}
+	}
+
 	/**
 	 * query
 	 * 
@@ -518,6 +639,11 @@ public class Index
 	 */
 	public List<QueryResult> query(String[] categories, String key, int matchRule)
 	{
+		if (this.parent != null)
+		{
+			return this.queryStaging(categories, key, matchRule);
+		}
+
 		Map<String, QueryResult> results = null;
 
 		try
@@ -527,7 +653,7 @@ public class Index
 			// the call to exitReadEnterWrite below
 			this.enterRead();
 
-			if (this.memoryIndex.shouldMerge() && this.exitReadEnterWrite())
+			if (this.diskIndex != null && this.memoryIndex.shouldMerge() && this.exitReadEnterWrite())
 			{
 				// in write...
 				try
@@ -542,7 +668,12 @@ public class Index
 			// We're in read mode for monitor here now matter what...
 			int rule = matchRule & MATCH_RULE_INDEX_MASK;
 
-			if (this.memoryIndex.hasChanged())
+			if (this.diskIndex == null)
+			{
+				// staging indices only live in memory
+				results = this.memoryIndex.addQueryResults(categories, key, rule, null);
+			}
+			else if (this.memoryIndex.hasChanged())
 			{
 				results = this.diskIndex.addQueryResults(categories, key, rule, this.memoryIndex);
 				results = this.memoryIndex.addQueryResults(categories, key, rule, results);
@@ -563,24 +694,93 @@ public class Index
 		finally
 		{
 			this.exitRead();
-
-			// clear any cached regexes or patterns we might have used during the query
-			PATTERNS.clear();
 		}
 
 		return (results == null) ? null : new ArrayList<QueryResult>(results.values());
 	}
 
+	/**
+	 * Queries a staging index: the results of the parent index, minus the documents this index has changes for, plus
+	 * the results of this index. The parent is queried first, under its own lock, so the two locks are never held at
+	 * the same time.
+	 * 
+	 * @param categories
+	 * @param key
+	 * @param matchRule
+	 * @return
+	 */
+	private List<QueryResult> queryStaging(String[] categories, String key, int matchRule)
+	{
+		List<QueryResult> parentResults = this.parent.query(categories, key, matchRule);
+		Map<String, QueryResult> results = new HashMap<String, QueryResult>();
+
+		this.enterRead();
+		try
+		{
+			if (parentResults != null)
+			{
+				for (QueryResult parentResult : parentResults)
+				{
+					QueryResult result = null;
+
+					for (String documentName : parentResult.getDocuments())
+					{
+						// documents indexed or removed in this staging index replace those of the parent
+						if (!this.memoryIndex.hasChanges(documentName))
+						{
+							if (result == null)
+							{
+								result = new QueryResult(parentResult.getWord());
+							}
+							result.addDocumentName(documentName);
+						}
+					}
+
+					if (result != null)
+					{
+						results.put(result.getWord(), result);
+					}
+				}
+			}
+
+			results = this.memoryIndex.addQueryResults(categories, key, matchRule & MATCH_RULE_INDEX_MASK, results);
+		}
+		finally
+		{
+			this.exitRead();
+		}
+
+		return new ArrayList<QueryResult>(results.values());
+	}
+
 	/**
 	 * Returns the document names that contain the given substring, if null then returns all of them.
 	 */
 	public Set<String> queryDocumentNames(String substring) throws IOException
 	{
 		Set<String> results;
+		// a staging index queries its parent first, under the parent's own lock
+		Set<String> parentResults = (this.parent != null) ? this.parent.queryDocumentNames(substring) : null;
 		this.enterRead();
 		try
 		{
-			if (this.memoryIndex.hasChanged())
+			if (parentResults != null)
+			{
+				results = new HashSet<String>();
+				for (String documentName : parentResults)
+				{
+					if (!this.memoryIndex.hasChanges(documentName))
+					{
+						results.add(documentName);
+					}
+				}
+				results.addAll(this.memoryIndex.addDocumentNames(substring));
+			}
+			else if (this.diskIndex == null)
+			{
+				results = this.memoryIndex.addDocumentNames(substring);
+			}
+			else if (this.memoryIndex.hasChanged())
 			{
 				results = this.diskIndex.addDocumentNames(substring, this.memoryIndex);
 				results.addAll(this.memoryIndex.addDocumentNames(substring));
@@ -626,6 +826,11 @@ public class Index
 		try
 		{
 			this.memoryIndex.remove(documentName);
+
+			if (this.manifest != null)
+			{
+				this.manifest.remove(documentName);
+			}
 		}
 		finally
 		{
@@ -688,19 +893,24 @@ public class Index
 				this.enterWrite();
 			}
 
-			// no need to do anything if the memory index hasn't changed
-			if (!hasChanged())
+			// no need to merge if the memory index hasn't changed or if there's no disk index to write to
+			if (hasChanged() && this.diskIndex != null)
 			{
-				return;
-			}
+				int numberOfChanges = this.memoryIndex.numberOfChanges();
+				this.diskIndex = this.diskIndex.mergeWith(this.memoryIndex);
+				this.memoryIndex = new MemoryIndex();
 
-			int numberOfChanges = this.memoryIndex.numberOfChanges();
-			this.diskIndex = this.diskIndex.mergeWith(this.memoryIndex);
-			this.memoryIndex = new MemoryIndex();
+				if (numberOfChanges > 1000)
+				{
+					System.gc(); // reclaim space if the MemoryIndex was very BIG
+				}
+			}
 
-			if (numberOfChanges > 1000)
+			// The manifest may have changed even if no document did, i.e. when touched files turned out to be
+			// unchanged. Write it after the index so it never describes content the index doesn't have yet.
+			if (this.manifest != null)
 			{
-				System.gc(); // reclaim space if the MemoryIndex was very BIG
+				this.manifest.save();
 			}
 		}
 		finally
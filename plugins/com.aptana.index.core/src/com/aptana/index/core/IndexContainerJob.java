@@ -10,9 +10,13 @@ package com.aptana.index.core;
 import java.io.IOException;
 import java.net.URI;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileInfo;
@@ -20,6 +24,7 @@ import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 
@@ -28,6 +33,7 @@ import com.aptana.core.IMap;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.ArrayUtil;
 import com.aptana.core.util.CollectionsUtil;
+import com.aptana.internal.index.core.DocumentManifest;
 
 public class IndexContainerJob extends IndexRequestJob
 {
@@ -87,21 +93,12 @@ public class IndexContainerJob extends IndexRequestJob
 				return Status.OK_STATUS;
 			}
 
-			// Should check timestamp of index versus timestamps of files, only index files that are out of date
-			// (for Ruby)!
-			long timestamp = 0L;
-			if (!CollectionsUtil.isEmpty(documents))
-			{
-				// If there's nothing in the index, index everything; otherwise use last modified time of index to
-				// filter...
-				timestamp = index.getIndexFile().lastModified();
-			}
-
+			// Only index files whose content changed since they were last indexed
 			if (sub.isCanceled())
 			{
 				return Status.CANCEL_STATUS;
 			}
-			files = filterFilesByTimestamp(timestamp, files);
+			files = filterUnchangedFiles(index, documents, files);
 			sub.worked(50);
 
 			if (!CollectionsUtil.isEmpty(files))
@@ -138,8 +135,9 @@ public class IndexContainerJob extends IndexRequestJob
 	}
 
 	/**
-	 * Given an {@link IFileStore}, we traverse to add all files underneath it. This method is recursive, traversing
-	 * into sub-directories. TODO Combine with logic from EFSUtils in core.io!
+	 * Given an {@link IFileStore}, we traverse to add all files underneath it. The tree is walked one level at a time,
+	 * listing the directories of each level in parallel when there are enough of them. TODO Combine with logic from
+	 * EFSUtils in core.io!
 	 * 
 	 * @param file
 	 * @param monitor
@@ -149,8 +147,9 @@ public class IndexContainerJob extends IndexRequestJob
 	{
 		// TODO We should likely call IFileSystem.fetchTree and use that if it doesn't return null (because that is more
 		// efficient in some schemes)!
-		SubMonitor sub = SubMonitor.convert(monitor, 10);
+		SubMonitor sub = SubMonitor.convert(monitor, 100);
 		Set<IFileStore> files = new HashSet<IFileStore>();
+		ExecutorService pool = null;
 		try
 		{
 			if (file == null)
@@ -162,39 +161,69 @@ public class IndexContainerJob extends IndexRequestJob
 			{
 				return files;
 			}
-			// We know it exists...
-			if (info.isDirectory())
+			if (!info.isDirectory())
+			{
+				// it's a file that exists, base case, add it.
+				files.add(file);
+				return files;
+			}
+
+			List<IFileStore> directories = Collections.singletonList(file);
+			while (!directories.isEmpty())
 			{
-				try
+				if (sub.isCanceled())
+				{
+					break;
+				}
+				sub.setWorkRemaining(100);
+
+				List<DirectoryListing> listings = new ArrayList<DirectoryListing>(directories.size());
+				for (IFileStore directory : directories)
+				{
+					listings.add(new DirectoryListing(directory));
+				}
+
+				int workers = getWorkerCount(listings.size());
+				if (workers > 1)
 				{
-					// Now try to dive into directory and add all children recursively
-					IFileStore[] fileList = file.childStores(EFS.NONE, sub.newChild(2));
-					if (ArrayUtil.isEmpty(fileList))
+					if (pool == null)
 					{
-						return files;
+						pool = createWorkerPool(workers);
 					}
-					for (IFileStore child : fileList)
+					pool.invokeAll(new ArrayList<Callable<DirectoryListing>>(listings));
+				}
+				else
+				{
+					for (DirectoryListing listing : listings)
 					{
-						files.addAll(addFiles(child, sub.newChild(7)));
+						listing.call();
 					}
 				}
-				catch (CoreException e)
+
+				List<IFileStore> nextLevel = new ArrayList<IFileStore>();
+				for (DirectoryListing listing : listings)
 				{
-					IdeLog.logError(IndexPlugin.getDefault(), e);
+					files.addAll(listing.files);
+					nextLevel.addAll(listing.directories);
 				}
-			}
-			else
-			{
-				// it's a file that exists, base case, add it.
-				files.add(file);
+				directories = nextLevel;
+				sub.worked(10);
 			}
 		}
 		catch (CoreException e)
 		{
 			IdeLog.logError(IndexPlugin.getDefault(), e);
 		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
 		finally
 		{
+			if (pool != null)
+			{
+				pool.shutdownNow();
+			}
 			sub.done();
 		}
 		return files;
@@ -234,23 +263,85 @@ public class IndexContainerJob extends IndexRequestJob
 	}
 
 	/**
-	 * Filters the set of {@link IFileStore}s to those whose lastMod is at or after the passed in mod timestamp.
+	 * Filters the set of {@link IFileStore}s to those which aren't in the index yet or whose content differs from what
+	 * the index's document manifest recorded when they were last indexed. Files that were only touched keep their
+	 * existing index entries.
 	 * 
-	 * @param indexLastModified
+	 * @param index
+	 * @param documents
+	 *            The names of the documents currently in the index
 	 * @param files
 	 * @return
 	 */
-	protected Set<IFileStore> filterFilesByTimestamp(final long indexLastModified, Set<IFileStore> files)
+	protected Set<IFileStore> filterUnchangedFiles(Index index, final Set<String> documents, Set<IFileStore> files)
 	{
+		final DocumentManifest manifest = index.getManifest();
+		if (manifest == null || CollectionsUtil.isEmpty(documents))
+		{
+			return files;
+		}
+
 		Set<IFileStore> filtered = new HashSet<IFileStore>(files.size());
 		CollectionsUtil.filter(files, filtered, new IFilter<IFileStore>()
 		{
 			public boolean include(IFileStore item)
 			{
-				return item.fetchInfo().getLastModified() >= indexLastModified;
+				String documentName = item.toURI().toString();
+
+				return !documents.contains(documentName) || manifest.hasChanged(documentName, item);
 			}
 		});
 		return filtered;
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Lists the immediate children of a directory, splitting them into files and sub-directories. A single
+	 * {@link IFileStore#childInfos(int, IProgressMonitor)} call provides the info for every child, so we don't need
+	 * to fetch it per child.
+	 */
+	private static class DirectoryListing implements Callable<DirectoryListing>
+	{
+		private final IFileStore directory;
+		private final List<IFileStore> files;
+		private final List<IFileStore> directories;
+
+		private DirectoryListing(IFileStore directory)
+		{
+			this.directory = directory;
+			this.files = new ArrayList<IFileStore>();
+			this.directories = new ArrayList<IFileStore>();
+		}
+
+		public DirectoryListing call()
+		{
+			try
+			{
+				IFileInfo[] children = directory.childInfos(EFS.NONE, new NullProgressMonitor());
+				if (ArrayUtil.isEmpty(children))
+				{
+					return this;
+				}
+				for (IFileInfo child : children)
+				{
+					if (!child.exists())
+					{
+						continue;
+					}
+					if (child.isDirectory())
+					{
+						directories.add(directory.getChild(child.getName()));
+					}
+					else
+					{
+						files.add(directory.getChild(child.getName()));
+					}
+				}
+			}
+			catch (CoreException e)
+			{
+				IdeLog.logError(IndexPlugin.getDefault(), e);
+			}
+			return this;
+		}
+	}
+}
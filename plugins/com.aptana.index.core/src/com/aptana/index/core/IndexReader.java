@@ -154,7 +154,7 @@ public abstract class IndexReader
 	{
 		if (item != null && element != null)
 		{
-			this.populateElement(element, item.getWord(), item.getDocuments());
+			this.populateElement(element, item.getWord(), 0, item.getDocuments());
 		}
 
 		return element;
@@ -174,11 +174,24 @@ public abstract class IndexReader
 		if (item != null && element != null && 0 <= columnIndex)
 		{
 			String key = item.getWord();
-			String[] columns = this.getDelimiterPattern().split(key);
+			String delimiter = this.getDelimiter();
+			int offset = 0;
 
-			if (columnIndex < columns.length)
+			// find the start of the column without splitting the whole word, a record in the last column may contain the
+			// delimiter
+			for (int i = 0; i < columnIndex && offset != -1; i++)
 			{
-				this.populateElement(element, columns[columnIndex], item.getDocuments());
+				offset = key.indexOf(delimiter, offset);
+
+				if (offset != -1)
+				{
+					offset += delimiter.length();
+				}
+			}
+
+			if (offset != -1)
+			{
+				this.populateElement(element, key, offset, item.getDocuments());
 			}
 		}
 
@@ -186,21 +199,39 @@ public abstract class IndexReader
 	}
 
 	/**
-	 * populateElement
+	 * Populate an element from the column starting at the specified offset of an index word. The column either holds a
+	 * record written by {@link IndexRecord} or, for older indexes, a JSON string.
 	 * 
 	 * @param <T>
 	 * @param element
-	 * @param value
+	 * @param word
+	 * @param offset
+	 * @param documents
 	 * @return
 	 */
 	@SuppressWarnings("rawtypes")
-	private <T extends Convertible & IndexDocument> T populateElement(T element, String value, Set<String> documents)
+	private <T extends Convertible & IndexDocument> T populateElement(T element, String word, int offset,
+			Set<String> documents)
 	{
-		if (element != null && value != null)
+		if (element != null && word != null)
 		{
+			String value = null;
+
 			try
 			{
-				Object m = JSON.parse(value);
+				Object m;
+
+				if (IndexRecord.isRecord(word, offset))
+				{
+					m = IndexRecord.decode(word, offset);
+				}
+				else
+				{
+					int end = word.indexOf(this.getDelimiter(), offset);
+
+					value = (end == -1) ? word.substring(offset) : word.substring(offset, end);
+					m = JSON.parse(value);
+				}
 
 				if (m instanceof Map)
 				{
@@ -216,8 +247,8 @@ public abstract class IndexReader
 			{
 				// @formatter:off
 				String message = MessageFormat.format(
-					"An error occurred while processing the following JSON string\n{0}", // //$NON-NLS-1$
-					value
+					"An error occurred while processing the following index entry\n{0}", // //$NON-NLS-1$
+					(value != null) ? value : word
 				);
 				// @formatter:on
 
@@ -0,0 +1,392 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core;
+
+import java.lang.reflect.Array;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.aptana.jetty.util.epl.ajax.JSON.Convertible;
+import com.aptana.jetty.util.epl.ajax.JSON.Output;
+
+/**
+ * A compact, typed encoding of the values that model elements write through {@link Convertible#toJSON(Output)}. A
+ * record is stored inside an index word, so it is encoded as characters. Every value starts with a type tag and
+ * strings, arrays and objects are prefixed with their length, so decoding never has to scan for delimiters, unescape
+ * text or parse numbers.
+ * <p>
+ * Decoding produces the same structure {@link com.aptana.jetty.util.epl.ajax.JSON#parse(String)} would for the JSON
+ * form of the value: maps for objects, Object[] for arrays, Long or Double for numbers, the Boolean constants and
+ * strings. That lets elements populate themselves with their existing {@link Convertible#fromJSON(Map)} methods.
+ */
+public final class IndexRecord
+{
+	/**
+	 * The first character of every record. JSON text never starts with it, so readers can tell records and JSON apart
+	 */
+	public static final char RECORD_MARKER = '\u0001';
+
+	private static final char NULL = 'n';
+	private static final char TRUE = 't';
+	private static final char FALSE = 'f';
+	private static final char LONG = 'l';
+	private static final char DOUBLE = 'd';
+	private static final char STRING = 's';
+	private static final char ARRAY = 'a';
+	private static final char OBJECT = 'o';
+
+	// lengths are written 6 bits at a time, so every character of a small length is stored as a single byte on disk
+	private static final int LENGTH_BITS = 6;
+	private static final int LENGTH_MASK = (1 << LENGTH_BITS) - 1;
+	private static final int MORE_FLAG = 1 << LENGTH_BITS;
+
+	/**
+	 * Collects the name/value pairs a Convertible writes, so the object can be written with its size up front
+	 */
+	private static class RecordOutput implements Output
+	{
+		List<String> names = new ArrayList<String>();
+		List<Object> values = new ArrayList<Object>();
+		Object replacement;
+		boolean replaced;
+
+		public void add(Object obj)
+		{
+			replacement = obj;
+			replaced = true;
+		}
+
+		public void add(String name, boolean value)
+		{
+			add(name, Boolean.valueOf(value));
+		}
+
+		public void add(String name, double value)
+		{
+			add(name, new Double(value));
+		}
+
+		public void add(String name, long value)
+		{
+			add(name, new Long(value));
+		}
+
+		public void add(String name, Object value)
+		{
+			names.add(name);
+			values.add(value);
+		}
+
+		@SuppressWarnings("rawtypes")
+		public void addClass(Class c)
+		{
+			// records are always decoded into maps, the class is kept for information only
+			add("class", c.getName()); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Reads values from a record, starting at a given offset
+	 */
+	private static class RecordInput
+	{
+		final String source;
+		int position;
+
+		RecordInput(String source, int position)
+		{
+			this.source = source;
+			this.position = position;
+		}
+
+		Object readValue()
+		{
+			char tag = source.charAt(position++);
+
+			switch (tag)
+			{
+				case NULL:
+					return null;
+
+				case TRUE:
+					return Boolean.TRUE;
+
+				case FALSE:
+					return Boolean.FALSE;
+
+				case LONG:
+				{
+					long value = readLength();
+
+					// undo the zig-zag encoding
+					return Long.valueOf((value >>> 1) ^ -(value & 1));
+				}
+
+				case DOUBLE:
+					return Double.valueOf(readString());
+
+				case STRING:
+					return readString();
+
+				case ARRAY:
+				{
+					int size = (int) readLength();
+					Object[] result = new Object[size];
+
+					for (int i = 0; i < size; i++)
+					{
+						result[i] = readValue();
+					}
+
+					return result;
+				}
+
+				case OBJECT:
+				{
+					int size = (int) readLength();
+					Map<String, Object> result = new HashMap<String, Object>(size * 4 / 3 + 1);
+
+					for (int i = 0; i < size; i++)
+					{
+						String name = readString();
+
+						result.put(name, readValue());
+					}
+
+					return result;
+				}
+
+				default:
+					throw new IllegalArgumentException(MessageFormat.format(
+							"Unknown record tag {0} at offset {1}", (int) tag, position - 1)); //$NON-NLS-1$
+			}
+		}
+
+		long readLength()
+		{
+			long result = 0;
+			int shift = 0;
+			char c;
+
+			do
+			{
+				c = source.charAt(position++);
+				result |= ((long) (c & LENGTH_MASK)) << shift;
+				shift += LENGTH_BITS;
+			}
+			while ((c & MORE_FLAG) != 0);
+
+			return result;
+		}
+
+		String readString()
+		{
+			int length = (int) readLength();
+			String result = source.substring(position, position + length);
+
+			position += length;
+
+			return result;
+		}
+	}
+
+	/**
+	 * Decode the record that starts at the specified offset of a string, typically the offset of a column in an index
+	 * word. Anything following the record is ignored.
+	 * 
+	 * @param source
+	 * @param offset
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if the source does not contain a record at the specified offset
+	 */
+	public static Object decode(String source, int offset)
+	{
+		if (!isRecord(source, offset))
+		{
+			throw new IllegalArgumentException("No record found at offset " + offset); //$NON-NLS-1$
+		}
+
+		try
+		{
+			return new RecordInput(source, offset + 1).readValue();
+		}
+		catch (IndexOutOfBoundsException e)
+		{
+			IllegalArgumentException iae = new IllegalArgumentException("Truncated record at offset " + offset); //$NON-NLS-1$
+
+			iae.initCause(e);
+
+			throw iae;
+		}
+	}
+
+	/**
+	 * Encode a value as a record. Convertible objects are written through their toJSON method, maps, collections and
+	 * arrays are written recursively and everything else that isn't a number or boolean is written as a string.
+	 * 
+	 * @param value
+	 * @return
+	 */
+	public static String encode(Object value)
+	{
+		StringBuilder builder = new StringBuilder();
+
+		builder.append(RECORD_MARKER);
+		writeValue(builder, value);
+
+		return builder.toString();
+	}
+
+	/**
+	 * Determine if a record starts at the specified offset of a string
+	 * 
+	 * @param source
+	 * @param offset
+	 * @return
+	 */
+	public static boolean isRecord(String source, int offset)
+	{
+		return source != null && 0 <= offset && offset < source.length() && source.charAt(offset) == RECORD_MARKER;
+	}
+
+	/**
+	 * writeLength
+	 * 
+	 * @param builder
+	 * @param value
+	 */
+	private static void writeLength(StringBuilder builder, long value)
+	{
+		while ((value & ~LENGTH_MASK) != 0)
+		{
+			builder.append((char) (MORE_FLAG | (value & LENGTH_MASK)));
+			value >>>= LENGTH_BITS;
+		}
+
+		builder.append((char) value);
+	}
+
+	/**
+	 * writeString
+	 * 
+	 * @param builder
+	 * @param value
+	 */
+	private static void writeString(StringBuilder builder, String value)
+	{
+		writeLength(builder, value.length());
+		builder.append(value);
+	}
+
+	/**
+	 * writeValue
+	 * 
+	 * @param builder
+	 * @param value
+	 */
+	@SuppressWarnings("rawtypes")
+	private static void writeValue(StringBuilder builder, Object value)
+	{
+		if (value == null)
+		{
+			builder.append(NULL);
+		}
+		else if (value instanceof Convertible)
+		{
+			RecordOutput output = new RecordOutput();
+
+			((Convertible) value).toJSON(output);
+
+			if (output.replaced)
+			{
+				writeValue(builder, output.replacement);
+			}
+			else
+			{
+				int size = output.names.size();
+
+				builder.append(OBJECT);
+				writeLength(builder, size);
+
+				for (int i = 0; i < size; i++)
+				{
+					writeString(builder, output.names.get(i));
+					writeValue(builder, output.values.get(i));
+				}
+			}
+		}
+		else if (value instanceof Map)
+		{
+			Map<?, ?> map = (Map<?, ?>) value;
+
+			builder.append(OBJECT);
+			writeLength(builder, map.size());
+
+			for (Map.Entry<?, ?> entry : map.entrySet())
+			{
+				writeString(builder, String.valueOf(entry.getKey()));
+				writeValue(builder, entry.getValue());
+			}
+		}
+		else if (value instanceof Collection)
+		{
+			Collection collection = (Collection) value;
+
+			builder.append(ARRAY);
+			writeLength(builder, collection.size());
+
+			for (Object item : collection)
+			{
+				writeValue(builder, item);
+			}
+		}
+		else if (value.getClass().isArray())
+		{
+			int length = Array.getLength(value);
+
+			builder.append(ARRAY);
+			writeLength(builder, length);
+
+			for (int i = 0; i < length; i++)
+			{
+				writeValue(builder, Array.get(value, i));
+			}
+		}
+		else if (value instanceof Boolean)
+		{
+			builder.append(((Boolean) value).booleanValue() ? TRUE : FALSE);
+		}
+		else if (value instanceof Double || value instanceof Float)
+		{
+			builder.append(DOUBLE);
+			writeString(builder, value.toString());
+		}
+		else if (value instanceof Number)
+		{
+			long number = ((Number) value).longValue();
+
+			// zig-zag encode so small negative numbers stay short
+			builder.append(LONG);
+			writeLength(builder, (number << 1) ^ (number >> 63));
+		}
+		else
+		{
+			builder.append(STRING);
+			writeString(builder, value.toString());
+		}
+	}
+
+	private IndexRecord()
+	{
+	}
+}
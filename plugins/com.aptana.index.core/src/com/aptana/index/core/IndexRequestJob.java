@@ -10,13 +10,25 @@ package com.aptana.index.core;
 import java.net.URI;
 import java.text.MessageFormat;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.jobs.Job;
@@ -25,11 +37,27 @@ import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.index.core.build.BuildContext;
 import com.aptana.index.core.filter.IIndexFilterParticipant;
+import com.aptana.internal.index.core.DocumentManifest;
 
 abstract class IndexRequestJob extends Job
 {
 	public static final String INDEX_REQUEST_JOB_FAMILY = "index-request-job-family";
 
+	/**
+	 * Work is only spread across multiple threads when each of them gets at least this many units to process
+	 */
+	private static final int MIN_UNITS_PER_WORKER = 25;
+
+	/**
+	 * How many files a worker indexes into its staging index before merging it into the real index
+	 */
+	private static final int FILES_PER_MERGE = 100;
+
+	/**
+	 * Interval, in milliseconds, at which progress and cancellation of the workers is checked
+	 */
+	private static final long PROGRESS_INTERVAL = 100;
+
 	private URI containerURI;
 
 	/**
@@ -153,7 +181,8 @@ abstract class IndexRequestJob extends Job
 
 	/**
 	 * Indexes a set of {@link IFileStore}s with the appropriate {@link IFileStoreIndexingParticipant}s that apply to
-	 * the content types (matching is done via filename/extension).
+	 * the content types (matching is done via filename/extension). Large sets of files are split across a pool of
+	 * worker threads, see {@link #getWorkerCount(int)}.
 	 * 
 	 * @param index
 	 * @param fileStores
@@ -174,6 +203,14 @@ abstract class IndexRequestJob extends Job
 			return;
 		}
 
+		DocumentManifest manifest = index.getManifest();
+		int workers = getWorkerCount(fileStores.size());
+		if (workers > 1)
+		{
+			indexFileStores(index, manifest, fileStores, workers, monitor);
+			return;
+		}
+
 		int remaining = fileStores.size();
 		SubMonitor sub = SubMonitor.convert(monitor, remaining * 11);
 		try
@@ -184,32 +221,12 @@ abstract class IndexRequestJob extends Job
 				{
 					throw new CoreException(Status.CANCEL_STATUS);
 				}
-				// First cleanup old index entries for file
-				index.remove(file.toURI());
-				sub.worked(1);
-
-				// Now run indexers on file
-				List<IFileStoreIndexingParticipant> indexers = getIndexParticipants(file);
-				if (!CollectionsUtil.isEmpty(indexers))
+				DocumentManifest.Entry entry = indexFileStore(index, manifest, file, sub);
+				if (entry != null)
 				{
-					int work = 10 / indexers.size();
-					BuildContext context = new FileStoreBuildContext(file);
-					for (IFileStoreIndexingParticipant indexer : indexers)
-					{
-						if (sub.isCanceled())
-						{
-							throw new CoreException(Status.CANCEL_STATUS);
-						}
-						try
-						{
-							indexer.index(context, index, sub.newChild(work));
-						}
-						catch (CoreException e)
-						{
-							IdeLog.logError(IndexPlugin.getDefault(), e);
-						}
-					}
+					manifest.put(file.toURI().toString(), entry);
 				}
+
 				// Update remaining units
 				remaining--;
 				sub.setWorkRemaining(remaining * 11);
@@ -221,6 +238,169 @@ abstract class IndexRequestJob extends Job
 		}
 	}
 
+	/**
+	 * Indexes the files using a pool of worker threads. Each worker records its results in its own staging index which
+	 * is merged into the real index in batches, so workers only contend for the index's write lock once per batch.
+	 * 
+	 * @param index
+	 * @param manifest
+	 * @param fileStores
+	 * @param workers
+	 * @param monitor
+	 * @throws CoreException
+	 */
+	private void indexFileStores(Index index, DocumentManifest manifest, Set<IFileStore> fileStores, int workers,
+			IProgressMonitor monitor) throws CoreException
+	{
+		int total = fileStores.size();
+		SubMonitor sub = SubMonitor.convert(monitor, total);
+		Queue<IFileStore> queue = new ConcurrentLinkedQueue<IFileStore>(fileStores);
+		AtomicInteger completed = new AtomicInteger();
+		final AtomicBoolean canceled = new AtomicBoolean();
+		IProgressMonitor workerMonitor = new NullProgressMonitor()
+		{
+			@Override
+			public boolean isCanceled()
+			{
+				return canceled.get();
+			}
+		};
+
+		ExecutorService pool = createWorkerPool(workers);
+		try
+		{
+			for (int i = 0; i < workers; i++)
+			{
+				pool.execute(new IndexingWorker(index, manifest, queue, completed, workerMonitor));
+			}
+			pool.shutdown();
+
+			int reported = 0;
+			while (!pool.awaitTermination(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS))
+			{
+				if (sub.isCanceled())
+				{
+					canceled.set(true);
+				}
+
+				int done = completed.get();
+				sub.worked(done - reported);
+				reported = done;
+			}
+		}
+		catch (InterruptedException e)
+		{
+			canceled.set(true);
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			pool.shutdownNow();
+			sub.done();
+		}
+
+		if (canceled.get())
+		{
+			throw new CoreException(Status.CANCEL_STATUS);
+		}
+	}
+
+	/**
+	 * Removes the existing entries for a file and then runs all applicable indexers on it. If a manifest is passed in,
+	 * the state of the file before it got indexed is returned. Callers record it in the manifest once the index
+	 * contains the new entries, so the file won't be indexed again until its content changes.
+	 * 
+	 * @param index
+	 * @param manifest
+	 * @param file
+	 * @param sub
+	 * @return
+	 * @throws CoreException
+	 */
+	private DocumentManifest.Entry indexFileStore(Index index, DocumentManifest manifest, IFileStore file,
+			SubMonitor sub) throws CoreException
+	{
+		// First cleanup old index entries for file
+		URI uri = file.toURI();
+		index.remove(uri);
+		sub.worked(1);
+
+		// Grab the state of the file before indexing it, so a change made while indexing is picked up next time
+		DocumentManifest.Entry entry = null;
+		if (manifest != null)
+		{
+			try
+			{
+				entry = DocumentManifest.createEntry(file);
+			}
+			catch (CoreException e)
+			{
+				IdeLog.logError(IndexPlugin.getDefault(), e);
+			}
+		}
+
+		// Now run indexers on file
+		List<IFileStoreIndexingParticipant> indexers = getIndexParticipants(file);
+		if (!CollectionsUtil.isEmpty(indexers))
+		{
+			int work = 10 / indexers.size();
+			BuildContext context = new FileStoreBuildContext(file);
+			for (IFileStoreIndexingParticipant indexer : indexers)
+			{
+				if (sub.isCanceled())
+				{
+					throw new CoreException(Status.CANCEL_STATUS);
+				}
+				try
+				{
+					indexer.index(context, index, sub.newChild(work));
+				}
+				catch (CoreException e)
+				{
+					IdeLog.logError(IndexPlugin.getDefault(), e);
+				}
+			}
+		}
+
+		return entry;
+	}
+
+	/**
+	 * Returns the number of worker threads to use for a unit of work of the given size. A result of one or less means
+	 * the work should be done on the calling thread.
+	 * 
+	 * @param units
+	 * @return
+	 */
+	protected int getWorkerCount(int units)
+	{
+		return Math.min(Runtime.getRuntime().availableProcessors(), units / MIN_UNITS_PER_WORKER);
+	}
+
+	/**
+	 * Creates a fixed size pool of daemon threads used to parallelize indexing.
+	 * 
+	 * @param size
+	 * @return
+	 */
+	protected ExecutorService createWorkerPool(int size)
+	{
+		final String name = getName();
+
+		return Executors.newFixedThreadPool(size, new ThreadFactory()
+		{
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, MessageFormat.format("{0} - worker {1}", name, //$NON-NLS-1$
+						count.incrementAndGet()));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
 	protected List<IFileStoreIndexingParticipant> getIndexParticipants(IFileStore file)
 	{
 		IndexManager indexManager = getIndexManager();
@@ -232,4 +412,90 @@ abstract class IndexRequestJob extends Job
 		return Collections.emptyList();
 	}
 
+	/**
+	 * Pulls files off a shared queue and indexes them into a private staging index, merging that into the real index
+	 * every {@link IndexRequestJob#FILES_PER_MERGE} files and once the queue has been drained.
+	 */
+	private class IndexingWorker implements Runnable
+	{
+		private final Index index;
+		private final DocumentManifest manifest;
+		private final Queue<IFileStore> queue;
+		private final AtomicInteger completed;
+		private final IProgressMonitor monitor;
+
+		private IndexingWorker(Index index, DocumentManifest manifest, Queue<IFileStore> queue, AtomicInteger completed,
+				IProgressMonitor monitor)
+		{
+			this.index = index;
+			this.manifest = manifest;
+			this.queue = queue;
+			this.completed = completed;
+			this.monitor = monitor;
+		}
+
+		public void run()
+		{
+			Index staging = index.createStagingIndex();
+			Map<String, DocumentManifest.Entry> entries = new HashMap<String, DocumentManifest.Entry>();
+			int staged = 0;
+			try
+			{
+				IFileStore file;
+				while (!monitor.isCanceled() && (file = queue.poll()) != null)
+				{
+					try
+					{
+						DocumentManifest.Entry entry = indexFileStore(staging, manifest, file,
+								SubMonitor.convert(monitor, 11));
+						if (entry != null)
+						{
+							entries.put(file.toURI().toString(), entry);
+						}
+					}
+					catch (CoreException e)
+					{
+						if (e.getStatus().getSeverity() == IStatus.CANCEL)
+						{
+							break;
+						}
+						IdeLog.logError(IndexPlugin.getDefault(), e);
+					}
+					catch (RuntimeException e)
+					{
+						// don't let a single bad file take down the worker and everything left on the queue
+						IdeLog.logError(IndexPlugin.getDefault(), e);
+					}
+					completed.incrementAndGet();
+
+					if (++staged >= FILES_PER_MERGE)
+					{
+						merge(staging, entries);
+						staging = index.createStagingIndex();
+						entries.clear();
+						staged = 0;
+					}
+				}
+			}
+			finally
+			{
+				// keep what has been indexed so far, even when canceled
+				if (staged > 0)
+				{
+					merge(staging, entries);
+				}
+			}
+		}
+
+		private void merge(Index staging, Map<String, DocumentManifest.Entry> entries)
+		{
+			index.merge(staging);
+
+			// only record the files once the index holds their new entries
+			for (Map.Entry<String, DocumentManifest.Entry> entry : entries.entrySet())
+			{
+				manifest.put(entry.getKey(), entry.getValue());
+			}
+		}
+	}
 }
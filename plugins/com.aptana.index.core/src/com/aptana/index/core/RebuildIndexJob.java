@@ -13,7 +13,7 @@ import java.util.Set;
 import org.eclipse.core.filesystem.IFileStore;
 
 /**
- * Special subclass of IndexContainerJob that ignores the index timestamp and forces all files to be re-indexed.
+ * Special subclass of IndexContainerJob that ignores the document manifest and forces all files to be re-indexed.
  * 
  * @author cwilliams
  */
@@ -26,7 +26,7 @@ public class RebuildIndexJob extends IndexContainerJob
 	}
 
 	@Override
-	protected Set<IFileStore> filterFilesByTimestamp(long indexLastModified, Set<IFileStore> files)
+	protected Set<IFileStore> filterUnchangedFiles(Index index, Set<String> documents, Set<IFileStore> files)
 	{
 		return files;
 	}
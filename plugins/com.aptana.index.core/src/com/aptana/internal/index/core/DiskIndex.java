@@ -7,16 +7,17 @@
  */
 package com.aptana.internal.index.core;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.io.UTFDataFormatException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -26,6 +27,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import com.aptana.core.util.StringUtil;
 import com.aptana.index.core.Index;
@@ -36,6 +39,9 @@ import com.aptana.index.core.SearchPattern;
  * Yuck this needs to be a random access file that stores the index of documents, category names, and the relationship
  * between them. We need to be careful to allow for quick access into the categories when reading, and to keep filesize
  * down if possible.
+ * <p>
+ * Reads are served from a read-only memory mapping of the index file which is created on first access. Each read works
+ * on its own view of that mapping at an absolute offset, so concurrent queries never need to lock or re-open the file.
  * 
  * @author cwilliams
  */
@@ -49,7 +55,6 @@ public class DiskIndex
 
 	public File indexFile;
 	private int headerInfoOffset;
-	private int streamRead;
 	private int numberOfChunks;
 	private int sizeOfLastChunk;
 	private int documentReferenceSize;
@@ -62,10 +67,15 @@ public class DiskIndex
 	// pointer to long array)
 	// FIXME YUCK!! This "usually a list of integers, sometimes one integer that acts as a pointer" stuff is killing me!
 	private Map<String, Map<String, Object>> categoryTables;
+	// category tables that have been read from disk, shared by concurrent readers
+	private final Map<String, Map<String, Object>> cachedCategoryTables;
+	// sorted dictionaries of the words in the category tables that have been read from disk
+	private final Map<String, TermDictionary> cachedDictionaries;
 
 	private int streamEnd;
-	private String[][] cachedChunks;
+	private volatile AtomicReferenceArray<String[]> cachedChunks;
 	private String[] categoriesToDiscard;
+	private volatile ByteBuffer mappedIndex;
 
 	/**
 	 * DiskIndex
@@ -83,6 +93,8 @@ public class DiskIndex
 		this.chunkOffsets = null;
 		this.documentReferenceSize = -1;
 		this.categoryTables = null;
+		this.cachedCategoryTables = new ConcurrentHashMap<String, Map<String, Object>>(3);
+		this.cachedDictionaries = new ConcurrentHashMap<String, TermDictionary>(3);
 		this.categoryOffsets = null;
 		this.categoryEnds = null;
 		this.categoriesToDiscard = null;
@@ -297,37 +309,20 @@ public class DiskIndex
 					}
 					break;
 
-				case SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE:
-					for (int i = 0, l = categories.length; i < l; i++)
-					{
-						Map<String, Object> wordsToDocNumbers = readCategoryTable(categories[i], false);
-
-						if (wordsToDocNumbers != null)
-						{
-							for (String word : wordsToDocNumbers.keySet())
-							{
-								if (word != null && word.startsWith(key))
-								{
-									results = addQueryResult(results, word, wordsToDocNumbers, memoryIndex);
-								}
-							}
-						}
-					}
-					break;
-
 				default:
+					// everything else is answered from the sorted dictionary, which only visits matching words for
+					// exact and prefix queries
 					for (int i = 0, l = categories.length; i < l; i++)
 					{
 						Map<String, Object> wordsToDocNumbers = readCategoryTable(categories[i], false);
 
 						if (wordsToDocNumbers != null)
 						{
-							for (String word : wordsToDocNumbers.keySet())
+							TermDictionary dictionary = getDictionary(categories[i], wordsToDocNumbers);
+
+							for (String word : dictionary.getMatches(key, matchRule))
 							{
-								if (word != null && Index.isMatch(key, word, matchRule))
-								{
-									results = addQueryResult(results, word, wordsToDocNumbers, memoryIndex);
-								}
+								results = addQueryResult(results, word, wordsToDocNumbers, memoryIndex);
 							}
 						}
 					}
@@ -345,34 +340,26 @@ public class DiskIndex
 	private void cacheDocumentNames() throws IOException
 	{
 		// will need all document names so get them now
-		this.cachedChunks = new String[this.numberOfChunks][];
-
-		InputStream stream = new BufferedInputStream(new FileInputStream(this.indexFile));
+		AtomicReferenceArray<String[]> chunks = new AtomicReferenceArray<String[]>(this.numberOfChunks);
+		ByteBuffer buffer = getBuffer(this.chunkOffsets[0]);
 
 		try
 		{
-			// if (this.numberOfChunks > 5)
-			// BUFFER_READ_SIZE <<= 1;
-			int offset = this.chunkOffsets[0];
-
-			skip(stream, offset);
-
 			for (int i = 0; i < this.numberOfChunks; i++)
 			{
 				int size = i == this.numberOfChunks - 1 ? this.sizeOfLastChunk : CHUNK_SIZE;
+				String[] chunk = new String[size];
 
-				readChunk(this.cachedChunks[i] = new String[size], stream, 0, size);
+				readChunk(chunk, buffer, 0, size);
+				chunks.set(i, chunk);
 			}
 		}
-		catch (IOException e)
+		catch (BufferUnderflowException e)
 		{
-			this.cachedChunks = null;
-			throw e;
-		}
-		finally
-		{
-			stream.close();
+			throw corruptIndex(e);
 		}
+
+		this.cachedChunks = chunks;
 	}
 
 	/**
@@ -584,6 +571,81 @@ public class DiskIndex
 		}
 	}
 
+	/**
+	 * corruptIndex
+	 * 
+	 * @param e
+	 * @return
+	 */
+	private IOException corruptIndex(RuntimeException e)
+	{
+		IOException ioe = new EOFException(MessageFormat.format("Corrupt index file {0}", this.indexFile)); //$NON-NLS-1$
+
+		ioe.initCause(e);
+
+		return ioe;
+	}
+
+	/**
+	 * deleteIndexFile
+	 * 
+	 * @return
+	 */
+	private boolean deleteIndexFile()
+	{
+		releaseMapping();
+
+		if (this.indexFile.delete())
+		{
+			return true;
+		}
+
+		// Some platforms refuse to delete a file while a mapping of it is still reachable, and a mapping is only
+		// released once it has been garbage collected
+		System.gc();
+		System.runFinalization();
+
+		return this.indexFile.delete();
+	}
+
+	/**
+	 * Return a view of the memory mapped index file, positioned at the specified absolute offset. Each caller gets its
+	 * own view so reads don't interfere with each other.
+	 * 
+	 * @param offset
+	 * @return
+	 * @throws IOException
+	 */
+	private ByteBuffer getBuffer(int offset) throws IOException
+	{
+		ByteBuffer mapping = this.mappedIndex;
+
+		if (mapping == null)
+		{
+			synchronized (this)
+			{
+				mapping = this.mappedIndex;
+
+				if (mapping == null)
+				{
+					mapping = this.mappedIndex = mapIndexFile();
+				}
+			}
+		}
+
+		if (offset < 0 || offset > mapping.limit())
+		{
+			throw new EOFException(MessageFormat.format(
+					"Offset {0} is outside of index file {1}", offset, this.indexFile)); //$NON-NLS-1$
+		}
+
+		ByteBuffer buffer = mapping.duplicate();
+
+		buffer.position(offset);
+
+		return buffer;
+	}
+
 	/**
 	 * getCategories
 	 * 
@@ -625,6 +687,27 @@ public class DiskIndex
 		return result;
 	}
 
+	/**
+	 * Returns the sorted dictionary of the words in a category table. The dictionary is normally built while the table
+	 * is read from disk, this only has to build one if the cached dictionary was flushed in the meantime.
+	 * 
+	 * @param categoryName
+	 * @param wordsToDocNumbers
+	 * @return
+	 */
+	private TermDictionary getDictionary(String categoryName, Map<String, Object> wordsToDocNumbers)
+	{
+		TermDictionary dictionary = this.cachedDictionaries.get(categoryName);
+
+		if (dictionary == null)
+		{
+			dictionary = new TermDictionary(wordsToDocNumbers.keySet());
+			this.cachedDictionaries.put(categoryName, dictionary);
+		}
+
+		return dictionary;
+	}
+
 	/**
 	 * initialize
 	 * 
@@ -637,37 +720,33 @@ public class DiskIndex
 			if (reuseExistingFile)
 			{
 				// read it in!
-				InputStream stream = new BufferedInputStream(new FileInputStream(this.indexFile));
+				ByteBuffer buffer = getBuffer(0);
 
 				try
 				{
-					streamRead = 0;
-
-					String signature = readString(stream);
+					String signature = readString(buffer);
 
 					if (!signature.equals(SIGNATURE))
 					{
 						throw new IOException(Messages.DiskIndex_Wrong_Format);
 					}
 
-					this.headerInfoOffset = readStreamInt(stream);
+					// a new, empty index only has a single byte after the signature
+					this.headerInfoOffset = (buffer.remaining() >= 4) ? buffer.getInt() : -1;
 
 					if (this.headerInfoOffset > 0)
 					{ // file is empty if its not set
-						skip(stream, this.headerInfoOffset - this.streamRead); // assume that the header info offset is
-						// over
-						// current buffer end
-						readHeaderInfo(stream);
+						readHeaderInfo(getBuffer(this.headerInfoOffset));
 					}
 				}
-				finally
+				catch (BufferUnderflowException e)
 				{
-					stream.close();
+					throw corruptIndex(e);
 				}
 				return;
 			}
 
-			if (!this.indexFile.delete())
+			if (!deleteIndexFile())
 			{
 				if (DEBUG)
 				{
@@ -738,6 +817,29 @@ public class DiskIndex
 		this.categoriesToDiscard = diskIndex.categoriesToDiscard;
 	}
 
+	/**
+	 * mapIndexFile
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	private ByteBuffer mapIndexFile() throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(this.indexFile, "r"); //$NON-NLS-1$
+
+		try
+		{
+			FileChannel channel = file.getChannel();
+
+			// the mapping remains valid after the channel has been closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
 	/**
 	 * mergeCategories
 	 * 
@@ -847,7 +949,8 @@ public class DiskIndex
 				}
 			}
 
-			onDisk.categoryTables.put(categoryName, null); // flush cached table
+			onDisk.cachedCategoryTables.remove(categoryName); // flush cached table
+			onDisk.cachedDictionaries.remove(categoryName);
 		}
 
 		writeCategoryTable(categoryName, wordsToDocs, stream);
@@ -881,6 +984,7 @@ public class DiskIndex
 			}
 
 			// index is now empty since all the saved documents were removed
+			releaseMapping();
 			DiskIndex newDiskIndex = new DiskIndex(this.indexFile.getPath());
 			newDiskIndex.initialize(false);
 
@@ -941,7 +1045,7 @@ public class DiskIndex
 			newDiskIndex.writeOffsetToHeader(offsetToHeader);
 
 			// rename file by deleting previous index file & renaming temp one
-			if (this.indexFile.exists() && !this.indexFile.delete())
+			if (this.indexFile.exists() && !deleteIndexFile())
 			{
 				throw new IOException("Failed to delete index file " + this.indexFile); //$NON-NLS-1$
 			}
@@ -969,58 +1073,36 @@ public class DiskIndex
 		return newDiskIndex;
 	}
 
-	/**
-	 * read
-	 * 
-	 * @param stream
-	 * @return
-	 * @throws IOException
-	 */
-	private int read(InputStream stream) throws IOException
-	{
-		int val = stream.read();
-
-		streamRead++;
-
-		return val;
-	}
-
 	/**
 	 * readAllDocumentNames
 	 * 
 	 * @return
 	 * @throws IOException
 	 */
-	private synchronized List<String> readAllDocumentNames() throws IOException
+	private List<String> readAllDocumentNames() throws IOException
 	{
 		if (this.numberOfChunks <= 0)
 		{
 			return Collections.emptyList();
 		}
 
-		InputStream stream = new BufferedInputStream(new FileInputStream(this.indexFile));
+		ByteBuffer buffer = getBuffer(this.chunkOffsets[0]);
+		int lastIndex = this.numberOfChunks - 1;
+		String[] docNames = new String[lastIndex * CHUNK_SIZE + sizeOfLastChunk];
 
 		try
 		{
-			int offset = this.chunkOffsets[0];
-
-			skip(stream, offset);
-
-			int lastIndex = this.numberOfChunks - 1;
-
-			String[] docNames = new String[lastIndex * CHUNK_SIZE + sizeOfLastChunk];
-
 			for (int i = 0; i < this.numberOfChunks; i++)
 			{
-				readChunk(docNames, stream, i * CHUNK_SIZE, i < lastIndex ? CHUNK_SIZE : sizeOfLastChunk);
+				readChunk(docNames, buffer, i * CHUNK_SIZE, i < lastIndex ? CHUNK_SIZE : sizeOfLastChunk);
 			}
-
-			return Arrays.asList(docNames);
 		}
-		finally
+		catch (BufferUnderflowException e)
 		{
-			stream.close();
+			throw corruptIndex(e);
 		}
+
+		return Arrays.asList(docNames);
 	}
 
 	/**
@@ -1031,8 +1113,7 @@ public class DiskIndex
 	 * @return
 	 * @throws IOException
 	 */
-	private synchronized Map<String, Object> readCategoryTable(String categoryName, boolean readDocNumbers)
-			throws IOException
+	private Map<String, Object> readCategoryTable(String categoryName, boolean readDocNumbers) throws IOException
 	{
 		// result will be null if categoryName is unknown
 		Integer offset = this.categoryOffsets.get(categoryName);
@@ -1042,48 +1123,40 @@ public class DiskIndex
 			return null;
 		}
 
-		if (this.categoryTables == null)
-		{
-			this.categoryTables = new HashMap<String, Map<String, Object>>(3);
-		}
-		else
+		Map<String, Object> cachedTable = this.cachedCategoryTables.get(categoryName);
+
+		if (cachedTable != null)
 		{
-			Map<String, Object> cachedTable = this.categoryTables.get(categoryName);
+			if (readDocNumbers)
+			{ // must cache remaining document number arrays
+				Map<String, Object> copy = new HashMap<String, Object>(cachedTable);
 
-			if (cachedTable != null)
-			{
-				if (readDocNumbers)
-				{ // must cache remaining document number arrays
-					Map<String, Object> copy = new HashMap<String, Object>(cachedTable);
+				for (Map.Entry<String, Object> entry : cachedTable.entrySet())
+				{
+					Object arrayOffset = entry.getValue();
 
-					for (Map.Entry<String, Object> entry : cachedTable.entrySet())
+					if (arrayOffset instanceof Integer)
 					{
-						Object arrayOffset = entry.getValue();
-
-						if (arrayOffset instanceof Integer)
-						{
-							copy.put(entry.getKey(), readDocumentNumbers(arrayOffset));
-						}
+						copy.put(entry.getKey(), readDocumentNumbers(arrayOffset));
 					}
-
-					cachedTable = copy;
 				}
 
-				return cachedTable;
+				cachedTable = copy;
 			}
+
+			return cachedTable;
 		}
 
-		InputStream stream = new BufferedInputStream(new FileInputStream(this.indexFile));
+		ByteBuffer buffer = getBuffer(offset);
 		Map<String, Object> categoryTable = null;
+		String[] words = null;
 		String[] matchingWords = null;
 		int count = 0;
 		int firstOffset = -1;
 
 		try
 		{
-			skip(stream, offset);
-
-			int size = readStreamInt(stream);
+			int size = buffer.getInt();
 
 			try
 			{
@@ -1112,10 +1185,14 @@ public class DiskIndex
 
 			int largeArraySize = 256;
 
+			words = new String[size];
+
 			for (int i = 0; i < size; i++)
 			{
-				String word = readString(stream);
-				int arrayOffset = readStreamInt(stream);
+				String word = readString(buffer);
+				int arrayOffset = buffer.getInt();
+
+				words[i] = word;
 
 				// if arrayOffset is:
 				// <= 0 then the array size == 1 with the value -> -arrayOffset
@@ -1132,12 +1209,12 @@ public class DiskIndex
 				}
 				else if (arrayOffset < largeArraySize)
 				{
-					categoryTable.put(word, readStreamDocumentArray(stream, arrayOffset)); // read in-lined array
+					categoryTable.put(word, readDocumentArray(buffer, arrayOffset)); // read in-lined array
 					// providing size
 				}
 				else
 				{
-					arrayOffset = readStreamInt(stream); // read actual offset
+					arrayOffset = buffer.getInt(); // read actual offset
 
 					if (readDocNumbers)
 					{
@@ -1158,39 +1235,26 @@ public class DiskIndex
 				}
 			}
 
-			this.categoryTables.put(categoryName, categoryTable);
-		}
-		catch (IOException ioe)
-		{
-			throw ioe;
-		}
-		finally
-		{
-			stream.close();
-		}
-
-		if (matchingWords != null && count > 0)
-		{
-			stream = new BufferedInputStream(new FileInputStream(this.indexFile));
-
-			try
+			if (matchingWords != null && count > 0)
 			{
-				skip(stream, firstOffset);
+				buffer = getBuffer(firstOffset);
 
 				for (int i = 0; i < count; i++)
 				{ // each array follows the previous one
-					categoryTable.put(matchingWords[i], readStreamDocumentArray(stream, readStreamInt(stream)));
+					categoryTable.put(matchingWords[i], readDocumentArray(buffer, buffer.getInt()));
 				}
 			}
-			catch (IOException ioe)
-			{
-				throw ioe;
-			}
-			finally
-			{
-				stream.close();
-			}
 		}
+		catch (BufferUnderflowException e)
+		{
+			throw corruptIndex(e);
+		}
+
+		// words are written in dictionary order, so this doesn't need to sort unless the file predates that
+		this.cachedDictionaries.put(categoryName, new TermDictionary(words));
+
+		// only publish the table once it is complete, other readers may pick it up right away
+		this.cachedCategoryTables.put(categoryName, categoryTable);
 
 		return categoryTable;
 	}
@@ -1199,22 +1263,22 @@ public class DiskIndex
 	 * readChunk
 	 * 
 	 * @param docNames
-	 * @param stream
+	 * @param buffer
 	 * @param index
 	 * @param size
 	 * @throws IOException
 	 */
-	private void readChunk(String[] docNames, InputStream stream, int index, int size) throws IOException
+	private void readChunk(String[] docNames, ByteBuffer buffer, int index, int size) throws IOException
 	{
-		String current = readString(stream);
+		String current = readString(buffer);
 
 		docNames[index++] = current;
 
 		for (int i = 1; i < size; i++)
 		{
-			int start = read(stream) & 0xFF;
-			int end = read(stream) & 0xFF;
-			String next = readString(stream);
+			int start = buffer.get() & 0xFF;
+			int end = buffer.get() & 0xFF;
+			String next = readString(buffer);
 
 			if (start > 0)
 			{
@@ -1248,15 +1312,18 @@ public class DiskIndex
 	 * @return
 	 * @throws IOException
 	 */
-	private synchronized String readDocumentName(int docNumber) throws IOException
+	private String readDocumentName(int docNumber) throws IOException
 	{
-		if (this.cachedChunks == null)
+		AtomicReferenceArray<String[]> chunks = this.cachedChunks;
+
+		if (chunks == null)
 		{
-			this.cachedChunks = new String[this.numberOfChunks][];
+			chunks = new AtomicReferenceArray<String[]>(this.numberOfChunks);
+			this.cachedChunks = chunks;
 		}
 
 		int chunkNumber = docNumber / CHUNK_SIZE;
-		String[] chunk = this.cachedChunks[chunkNumber];
+		String[] chunk = chunks.get(chunkNumber);
 
 		if (chunk == null)
 		{
@@ -1269,27 +1336,21 @@ public class DiskIndex
 				throw new IllegalArgumentException();
 			}
 
-			InputStream file = new BufferedInputStream(new FileInputStream(this.indexFile));
-
-			try
-			{
-				skip(file, start);
+			int numberOfNames = isLastChunk ? this.sizeOfLastChunk : CHUNK_SIZE;
 
-				int numberOfNames = isLastChunk ? this.sizeOfLastChunk : CHUNK_SIZE;
+			chunk = new String[numberOfNames];
 
-				chunk = new String[numberOfNames];
-				readChunk(chunk, file, 0, numberOfNames);
-			}
-			catch (IOException ioe)
+			try
 			{
-				throw ioe;
+				readChunk(chunk, getBuffer(start), 0, numberOfNames);
 			}
-			finally
+			catch (BufferUnderflowException e)
 			{
-				file.close();
+				throw corruptIndex(e);
 			}
 
-			this.cachedChunks[chunkNumber] = chunk;
+			// concurrent readers may decode the same chunk, either copy is fine to keep
+			chunks.set(chunkNumber, chunk);
 		}
 
 		return chunk[docNumber - (chunkNumber * CHUNK_SIZE)];
@@ -1302,8 +1363,8 @@ public class DiskIndex
 	 * @return
 	 * @throws IOException
 	 */
-	private @SuppressWarnings("unchecked")
-	synchronized List<Integer> readDocumentNumbers(Object arrayOffset) throws IOException
+	@SuppressWarnings("unchecked")
+	private List<Integer> readDocumentNumbers(Object arrayOffset) throws IOException
 	{
 		// arrayOffset is either a cached array of docNumbers or an Integer offset in the file
 		if (arrayOffset instanceof List<?>)
@@ -1311,49 +1372,45 @@ public class DiskIndex
 			return (List<Integer>) arrayOffset;
 		}
 
-		InputStream stream = new BufferedInputStream(new FileInputStream(this.indexFile));
+		ByteBuffer buffer = getBuffer(((Integer) arrayOffset).intValue());
 
 		try
 		{
-			int offset = ((Integer) arrayOffset).intValue();
-
-			skip(stream, offset);
-
-			return readStreamDocumentArray(stream, readStreamInt(stream));
+			return readDocumentArray(buffer, buffer.getInt());
 		}
-		finally
+		catch (BufferUnderflowException e)
 		{
-			stream.close();
+			throw corruptIndex(e);
 		}
 	}
 
 	/**
 	 * readHeaderInfo
 	 * 
-	 * @param stream
+	 * @param buffer
 	 * @throws IOException
 	 */
-	private void readHeaderInfo(InputStream stream) throws IOException
+	private void readHeaderInfo(ByteBuffer buffer) throws IOException
 	{
 		// must be same order as writeHeaderInfo()
-		this.numberOfChunks = readStreamInt(stream);
+		this.numberOfChunks = buffer.getInt();
 		if (this.numberOfChunks < 0)
 		{
 			throw new IOException(MessageFormat.format("Corrupt index file, reported {0} chunks", numberOfChunks)); //$NON-NLS-1$
 		}
-		this.sizeOfLastChunk = read(stream) & 0xFF;
-		this.documentReferenceSize = read(stream) & 0xFF;
-		this.separator = (char) (read(stream) & 0xFF);
+		this.sizeOfLastChunk = buffer.get() & 0xFF;
+		this.documentReferenceSize = buffer.get() & 0xFF;
+		this.separator = (char) (buffer.get() & 0xFF);
 
 		this.chunkOffsets = new int[this.numberOfChunks];
 		for (int i = 0; i < this.numberOfChunks; i++)
 		{
-			this.chunkOffsets[i] = readStreamInt(stream);
+			this.chunkOffsets[i] = buffer.getInt();
 		}
 
-		this.startOfCategoryTables = readStreamInt(stream);
+		this.startOfCategoryTables = buffer.getInt();
 
-		int size = readStreamInt(stream);
+		int size = buffer.getInt();
 		this.categoryOffsets = new HashMap<String, Integer>(size);
 		this.categoryEnds = new HashMap<String, Integer>(size);
 		String previousCategory = null;
@@ -1361,9 +1418,9 @@ public class DiskIndex
 
 		for (int i = 0; i < size; i++)
 		{
-			String categoryName = readString(stream);
+			String categoryName = readString(buffer);
 
-			offset = readStreamInt(stream);
+			offset = buffer.getInt();
 			this.categoryOffsets.put(categoryName, offset); // cache offset to category table
 
 			if (previousCategory != null)
@@ -1379,25 +1436,26 @@ public class DiskIndex
 			this.categoryEnds.put(previousCategory, this.headerInfoOffset); // cache end of the category table
 		}
 
-		this.categoryTables = new HashMap<String, Map<String, Object>>(3);
+		this.cachedCategoryTables.clear();
+		this.cachedDictionaries.clear();
 	}
 
 	/**
-	 * readStreamDocumentArray
+	 * readDocumentArray
 	 * 
-	 * @param stream
+	 * @param buffer
 	 * @param arraySize
 	 * @return
 	 * @throws IOException
 	 */
-	private List<Integer> readStreamDocumentArray(InputStream stream, int arraySize) throws IOException
+	private List<Integer> readDocumentArray(ByteBuffer buffer, int arraySize) throws IOException
 	{
 		if (arraySize == 0)
 		{
 			return Collections.emptyList();
 		}
 
-		List<Integer> indexes = new ArrayList<Integer>();
+		List<Integer> indexes = new ArrayList<Integer>(arraySize);
 
 		for (int i = 0; i < arraySize; i++)
 		{
@@ -1406,16 +1464,15 @@ public class DiskIndex
 			switch (this.documentReferenceSize)
 			{
 				case 1:
-					value = read(stream) & 0xFF;
+					value = buffer.get() & 0xFF;
 					break;
 
 				case 2:
-					value = (read(stream) & 0xFF) << 8;
-					value = value + (read(stream) & 0xFF);
+					value = buffer.getShort() & 0xFFFF;
 					break;
 
 				default:
-					value = readStreamInt(stream);
+					value = buffer.getInt();
 					break;
 			}
 
@@ -1425,34 +1482,16 @@ public class DiskIndex
 		return indexes;
 	}
 
-	/**
-	 * readStreamInt
-	 * 
-	 * @param stream
-	 * @return
-	 * @throws IOException
-	 */
-	private int readStreamInt(InputStream stream) throws IOException
-	{
-		int val = (read(stream) & 0xFF) << 24;
-
-		val += (read(stream) & 0xFF) << 16;
-		val += (read(stream) & 0xFF) << 8;
-
-		return val + (read(stream) & 0xFF);
-	}
-
 	/**
 	 * readString
 	 * 
-	 * @param stream
+	 * @param buffer
 	 * @return
 	 * @throws IOException
 	 */
-	private String readString(InputStream stream) throws IOException
+	private String readString(ByteBuffer buffer) throws IOException
 	{
-		int length = (read(stream) & 0xFF) << 8;
-		length += read(stream) & 0xFF;
+		int length = buffer.getShort() & 0xFFFF;
 
 		// fill the chars from bytes buffer
 		char[] word = new char[length];
@@ -1460,7 +1499,7 @@ public class DiskIndex
 
 		while (i < length)
 		{
-			byte b = (byte) read(stream);
+			byte b = buffer.get();
 
 			switch (b & 0xF0)
 			{
@@ -1477,7 +1516,7 @@ public class DiskIndex
 
 				case 0xC0:
 				case 0xD0:
-					char next = (char) read(stream);
+					char next = (char) (buffer.get() & 0xFF);
 
 					if ((next & 0xC0) != 0x80)
 					{
@@ -1491,8 +1530,8 @@ public class DiskIndex
 					break;
 
 				case 0xE0:
-					char first = (char) read(stream);
-					char second = (char) read(stream);
+					char first = (char) (buffer.get() & 0xFF);
+					char second = (char) (buffer.get() & 0xFF);
 
 					if ((first & second & 0xC0) != 0x80)
 					{
@@ -1513,6 +1552,15 @@ public class DiskIndex
 		return new String(word);
 	}
 
+	/**
+	 * releaseMapping
+	 */
+	private synchronized void releaseMapping()
+	{
+		// the mapping stays valid until it is garbage collected, but this index no longer hands out views of it
+		this.mappedIndex = null;
+	}
+
 	/**
 	 * removeCategories
 	 * 
@@ -1542,45 +1590,6 @@ public class DiskIndex
 		return newIndex;
 	}
 
-	/**
-	 * skip
-	 * 
-	 * @param stream
-	 * @param n
-	 * @return
-	 * @throws IOException
-	 */
-	private long skip(InputStream stream, long n) throws IOException
-	{
-		final long wantToSkip = n;
-		long actuallySkipped = 0;
-
-		while (n > 0)
-		{
-			long skipped = stream.skip(n);
-
-			actuallySkipped += skipped;
-			n = n - skipped;
-
-			if (actuallySkipped == wantToSkip)
-			{
-				return actuallySkipped;
-			}
-
-			int read = stream.read();
-
-			if (read == -1)
-			{
-				return actuallySkipped;
-			}
-
-			n--;
-			actuallySkipped++;
-		}
-
-		return actuallySkipped;
-	}
-
 	/**
 	 * writeCategories
 	 * 
@@ -1653,19 +1662,20 @@ public class DiskIndex
 		this.categoryTables.put(categoryName, null); // flush cached table
 		writeStreamInt(stream, wordsToDocs.size());
 
-		for (Map.Entry<String, Object> entry : wordsToDocs.entrySet())
+		// write the words in dictionary order so readers can build their dictionary without sorting
+		for (String word : new TermDictionary(wordsToDocs.keySet()).getWords())
 		{
-			writeString(stream, entry.getKey());
+			writeString(stream, word);
 
-			if (longArrays.containsKey(entry.getKey()))
+			if (longArrays.containsKey(word))
 			{
 				writeStreamInt(stream, largeArraySize); // mark to identify that an offset follows
-				writeStreamInt(stream, longArrays.get(entry.getKey()).intValue()); // offset in the file of the array of
+				writeStreamInt(stream, longArrays.get(word).intValue()); // offset in the file of the array of
 				// document numbers
 			}
 			else
 			{
-				List<Integer> documentNumbers = (List<Integer>) entry.getValue();
+				List<Integer> documentNumbers = (List<Integer>) wordsToDocs.get(word);
 
 				if (documentNumbers.size() == 1)
 				{
@@ -0,0 +1,370 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+import com.aptana.index.core.IndexPlugin;
+
+/**
+ * Records the size, last modification time and a content checksum of every document that has been indexed. This lets
+ * the indexer tell documents whose content really changed from ones that were merely touched, for example by a VCS
+ * checkout. The manifest is persisted next to the index file it describes.
+ */
+public class DocumentManifest
+{
+	private static final String SIGNATURE = "MANIFEST VERSION 0.2"; //$NON-NLS-1$
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * The recorded state of a single document.
+	 */
+	public static class Entry
+	{
+		public final long size;
+		public final long lastModified;
+		public final long checksum;
+
+		public Entry(long size, long lastModified, long checksum)
+		{
+			this.size = size;
+			this.lastModified = lastModified;
+			this.checksum = checksum;
+		}
+	}
+
+	/**
+	 * Computes a checksum of the content of a file store: the first 64 bits of its SHA-1 digest. A file only gets
+	 * checksummed when its size is unchanged, so a weak 32 bit checksum would let too many real edits go unnoticed.
+	 * 
+	 * @param store
+	 * @return
+	 * @throws CoreException
+	 */
+	public static long computeChecksum(IFileStore store) throws CoreException
+	{
+		MessageDigest digest;
+
+		try
+		{
+			digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new CoreException(new Status(IStatus.ERROR, IndexPlugin.PLUGIN_ID, e.getMessage(), e));
+		}
+
+		InputStream stream = store.openInputStream(EFS.NONE, null);
+
+		try
+		{
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+
+			while ((read = stream.read(buffer)) != -1)
+			{
+				digest.update(buffer, 0, read);
+			}
+		}
+		catch (IOException e)
+		{
+			throw new CoreException(new Status(IStatus.ERROR, IndexPlugin.PLUGIN_ID, e.getMessage(), e));
+		}
+		finally
+		{
+			try
+			{
+				stream.close();
+			}
+			catch (IOException e)
+			{
+				// ignore
+			}
+		}
+
+		byte[] bytes = digest.digest();
+		long checksum = 0;
+
+		for (int i = 0; i < 8; i++)
+		{
+			checksum = (checksum << 8) | (bytes[i] & 0xff);
+		}
+
+		return checksum;
+	}
+
+	/**
+	 * Computes the manifest entry describing the current state of a file store.
+	 * 
+	 * @param store
+	 * @return
+	 * @throws CoreException
+	 */
+	public static Entry createEntry(IFileStore store) throws CoreException
+	{
+		IFileInfo info = store.fetchInfo();
+
+		return new Entry(info.getLength(), info.getLastModified(), computeChecksum(store));
+	}
+
+	private final File manifestFile;
+	private final Map<String, Entry> entries;
+	private volatile boolean dirty;
+
+	/**
+	 * DocumentManifest
+	 * 
+	 * @param manifestFile
+	 */
+	public DocumentManifest(File manifestFile)
+	{
+		this.manifestFile = manifestFile;
+		this.entries = new ConcurrentHashMap<String, Entry>();
+	}
+
+	/**
+	 * Delete the manifest's file and forget about all recorded documents.
+	 */
+	public void delete()
+	{
+		this.entries.clear();
+		this.dirty = false;
+
+		if (this.manifestFile != null && this.manifestFile.exists())
+		{
+			this.manifestFile.delete();
+		}
+	}
+
+	/**
+	 * Returns the recorded state of a document, or null if the document has not been recorded.
+	 * 
+	 * @param documentName
+	 * @return
+	 */
+	public Entry get(String documentName)
+	{
+		return this.entries.get(documentName);
+	}
+
+	/**
+	 * Determines if the given file store's content differs from what was recorded. Only if size matches but the
+	 * modification time does not is the content checksummed. When the checksum shows the content is unchanged, the
+	 * new modification time is recorded so the next check is cheap again.
+	 * 
+	 * @param documentName
+	 * @param store
+	 * @return
+	 */
+	public boolean hasChanged(String documentName, IFileStore store)
+	{
+		Entry entry = this.entries.get(documentName);
+
+		if (entry == null)
+		{
+			return true;
+		}
+
+		IFileInfo info = store.fetchInfo();
+
+		if (!info.exists() || info.getLength() != entry.size)
+		{
+			return true;
+		}
+
+		if (info.getLastModified() == entry.lastModified)
+		{
+			return false;
+		}
+
+		try
+		{
+			if (computeChecksum(store) != entry.checksum)
+			{
+				return true;
+			}
+		}
+		catch (CoreException e)
+		{
+			return true;
+		}
+
+		put(documentName, new Entry(entry.size, info.getLastModified(), entry.checksum));
+
+		return false;
+	}
+
+	/**
+	 * Loads previously recorded entries from disk. A missing or unreadable manifest leaves this manifest empty, which
+	 * simply causes all documents to be treated as changed.
+	 * 
+	 * @throws IOException
+	 */
+	public void load() throws IOException
+	{
+		this.entries.clear();
+
+		if (this.manifestFile == null || !this.manifestFile.exists())
+		{
+			return;
+		}
+
+		DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(this.manifestFile)));
+
+		try
+		{
+			if (!SIGNATURE.equals(stream.readUTF()))
+			{
+				throw new IOException(Messages.DiskIndex_Wrong_Format);
+			}
+
+			int size = stream.readInt();
+
+			for (int i = 0; i < size; i++)
+			{
+				String documentName = stream.readUTF();
+				long length = stream.readLong();
+				long lastModified = stream.readLong();
+				long checksum = stream.readLong();
+
+				this.entries.put(documentName, new Entry(length, lastModified, checksum));
+			}
+		}
+		catch (IOException e)
+		{
+			this.entries.clear();
+			throw e;
+		}
+		finally
+		{
+			stream.close();
+		}
+
+		this.dirty = false;
+	}
+
+	/**
+	 * Record the state of a document.
+	 * 
+	 * @param documentName
+	 * @param entry
+	 */
+	public void put(String documentName, Entry entry)
+	{
+		this.entries.put(documentName, entry);
+		this.dirty = true;
+	}
+
+	/**
+	 * Forget the state of a document.
+	 * 
+	 * @param documentName
+	 */
+	public void remove(String documentName)
+	{
+		if (this.entries.remove(documentName) != null)
+		{
+			this.dirty = true;
+		}
+	}
+
+	/**
+	 * Write the manifest to disk if anything has changed since it was last loaded or saved.
+	 * 
+	 * @throws IOException
+	 */
+	public void save() throws IOException
+	{
+		if (!this.dirty || this.manifestFile == null)
+		{
+			return;
+		}
+
+		// clear the flag first, so changes made while we're writing will get written next time
+		this.dirty = false;
+
+		// write to a temporary file first so an interrupted save doesn't leave a truncated manifest behind
+		File tempFile = new File(this.manifestFile.getPath() + ".tmp"); //$NON-NLS-1$
+		DataOutputStream stream = null;
+
+		try
+		{
+			stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile, false)));
+
+			// take a snapshot since other threads may be recording documents as we write
+			Map<String, Entry> snapshot = new HashMap<String, Entry>(this.entries);
+
+			stream.writeUTF(SIGNATURE);
+			stream.writeInt(snapshot.size());
+
+			for (Map.Entry<String, Entry> mapEntry : snapshot.entrySet())
+			{
+				Entry entry = mapEntry.getValue();
+
+				stream.writeUTF(mapEntry.getKey());
+				stream.writeLong(entry.size);
+				stream.writeLong(entry.lastModified);
+				stream.writeLong(entry.checksum);
+			}
+
+			stream.close();
+			stream = null;
+
+			if (this.manifestFile.exists() && !this.manifestFile.delete())
+			{
+				throw new IOException("Unable to replace " + this.manifestFile); //$NON-NLS-1$
+			}
+
+			if (!tempFile.renameTo(this.manifestFile))
+			{
+				throw new IOException("Unable to rename " + tempFile + " to " + this.manifestFile); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+		catch (IOException e)
+		{
+			this.dirty = true;
+			throw e;
+		}
+		finally
+		{
+			if (stream != null)
+			{
+				try
+				{
+					stream.close();
+				}
+				catch (IOException e)
+				{
+					// ignore
+				}
+
+				tempFile.delete();
+			}
+		}
+	}
+}
@@ -14,15 +14,165 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
+import com.aptana.core.util.StringUtil;
 import com.aptana.index.core.Index;
 import com.aptana.index.core.QueryResult;
 import com.aptana.index.core.SearchPattern;
 
 public class MemoryIndex
 {
+	/**
+	 * The words of a single category across all documents in this index, inverted to point at the documents that
+	 * contain them. Unlike a {@link TermDictionary}, which is built once, the words are kept sorted by their case-folded
+	 * form as they are added and removed, so a query after each change doesn't have to sort the whole category again.
+	 */
+	private static class CategoryTerms
+	{
+		final Map<String, Set<String>> wordsToDocuments = new HashMap<String, Set<String>>();
+		final SortedMap<String, Set<String>> keysToWords = new TreeMap<String, Set<String>>();
+
+		void add(String word, String documentName)
+		{
+			Set<String> documents = wordsToDocuments.get(word);
+
+			if (documents == null)
+			{
+				documents = new HashSet<String>();
+				wordsToDocuments.put(word, documents);
+
+				String key = TermDictionary.fold(word);
+				Set<String> words = keysToWords.get(key);
+
+				if (words == null)
+				{
+					words = new HashSet<String>();
+					keysToWords.put(key, words);
+				}
+
+				words.add(word);
+			}
+
+			documents.add(documentName);
+		}
+
+		void remove(String word, String documentName)
+		{
+			Set<String> documents = wordsToDocuments.get(word);
+
+			if (documents == null || !documents.remove(documentName) || !documents.isEmpty())
+			{
+				return;
+			}
+
+			wordsToDocuments.remove(word);
+
+			String key = TermDictionary.fold(word);
+			Set<String> words = keysToWords.get(key);
+
+			words.remove(word);
+
+			if (words.isEmpty())
+			{
+				keysToWords.remove(key);
+			}
+		}
+
+		/**
+		 * Returns the words that match the specified key using the specified match rule, the same way
+		 * {@link TermDictionary#getMatches(String, int)} does
+		 * 
+		 * @param key
+		 * @param matchRule
+		 * @return
+		 */
+		List<String> getMatches(String key, int matchRule)
+		{
+			if (StringUtil.isEmpty(key))
+			{
+				// a missing or empty key either matches every word or none of them
+				if (Index.isMatch(key, StringUtil.EMPTY, matchRule))
+				{
+					return new ArrayList<String>(wordsToDocuments.keySet());
+				}
+
+				return Collections.emptyList();
+			}
+
+			List<String> result = new ArrayList<String>();
+			String foldedKey = TermDictionary.fold(key);
+
+			switch (matchRule)
+			{
+				case SearchPattern.EXACT_MATCH:
+				case SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE:
+					Set<String> words = keysToWords.get(foldedKey);
+
+					if (words != null)
+					{
+						for (String word : words)
+						{
+							if (matchRule == SearchPattern.EXACT_MATCH || word.equals(key))
+							{
+								result.add(word);
+							}
+						}
+					}
+					break;
+
+				case SearchPattern.PREFIX_MATCH:
+				case SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE:
+					for (Map.Entry<String, Set<String>> entry : keysToWords.tailMap(foldedKey).entrySet())
+					{
+						if (!entry.getKey().startsWith(foldedKey))
+						{
+							break;
+						}
+
+						for (String word : entry.getValue())
+						{
+							if (matchRule == SearchPattern.PREFIX_MATCH || word.startsWith(key))
+							{
+								result.add(word);
+							}
+						}
+					}
+					break;
+
+				case SearchPattern.PATTERN_MATCH:
+					// both sides are already folded, so a case sensitive match does the job
+					for (Map.Entry<String, Set<String>> entry : keysToWords.entrySet())
+					{
+						if (Index.isMatch(foldedKey, entry.getKey(), SearchPattern.PATTERN_MATCH
+								| SearchPattern.CASE_SENSITIVE))
+						{
+							result.addAll(entry.getValue());
+						}
+					}
+					break;
+
+				default:
+					for (String word : wordsToDocuments.keySet())
+					{
+						if (Index.isMatch(key, word, matchRule))
+						{
+							result.add(word);
+						}
+					}
+					break;
+			}
+
+			return result;
+		}
+	}
+
 	private static final int MERGE_THRESHOLD = 100;
 	private HashMap<String, Map<String, Set<String>>> documentsToTable;
+	// built on demand by queries, which may run concurrently, then kept up to date as the index changes
+	private final Map<String, CategoryTerms> categoryTerms;
 
 	/**
 	 * MemoryIndex
@@ -30,6 +180,7 @@ public class MemoryIndex
 	public MemoryIndex()
 	{
 		documentsToTable = new HashMap<String, Map<String, Set<String>>>();
+		categoryTerms = new ConcurrentHashMap<String, CategoryTerms>();
 	}
 
 	/**
@@ -64,6 +215,40 @@ public class MemoryIndex
 		return results;
 	}
 
+	/**
+	 * Copy the document tables of another memory index into this one. Documents in the other index, including
+	 * removals, replace any existing table for the same document. The other index should not be modified afterwards.
+	 * 
+	 * @param other
+	 */
+	public void addEntries(MemoryIndex other)
+	{
+		for (Map.Entry<String, Map<String, Set<String>>> entry : other.documentsToTable.entrySet())
+		{
+			String documentName = entry.getKey();
+			Map<String, Set<String>> categoriesToWords = entry.getValue();
+
+			removeTerms(documentName, documentsToTable.get(documentName));
+			documentsToTable.put(documentName, categoriesToWords);
+
+			if (categoriesToWords != null)
+			{
+				for (Map.Entry<String, Set<String>> category : categoriesToWords.entrySet())
+				{
+					CategoryTerms terms = categoryTerms.get(category.getKey());
+
+					if (terms != null)
+					{
+						for (String word : category.getValue())
+						{
+							terms.add(word, documentName);
+						}
+					}
+				}
+			}
+		}
+	}
+
 	/**
 	 * addEntry
 	 * 
@@ -90,6 +275,13 @@ public class MemoryIndex
 		}
 
 		words.add(key);
+
+		CategoryTerms terms = categoryTerms.get(category);
+
+		if (terms != null)
+		{
+			terms.add(key, filePath);
+		}
 	}
 
 	/**
@@ -109,58 +301,43 @@ public class MemoryIndex
 			results = new HashMap<String, QueryResult>();
 		}
 
-		for (Map.Entry<String, Map<String, Set<String>>> entry : documentsToTable.entrySet())
+		for (String category : categories)
 		{
-			Map<String, Set<String>> categoriesToWords = entry.getValue();
+			CategoryTerms terms = getCategoryTerms(category);
+			List<String> words;
 
-			if (categoriesToWords == null)
+			// When we're looking for exact matches, case sensitive, just ask the inverted table if it contains key!
+			if (matchRules == (SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE))
+			{
+				if (terms.wordsToDocuments.containsKey(key))
+				{
+					words = Collections.singletonList(key);
+				}
+				else
+				{
+					words = Collections.emptyList();
+				}
+			}
+			else
 			{
-				continue;
+				words = terms.getMatches(key, matchRules);
 			}
 
-			for (String category : categories)
+			for (String word : words)
 			{
-				Set<String> words = categoriesToWords.get(category);
-				if (words == null)
+				QueryResult result = results.get(word);
+
+				if (result == null)
 				{
-					continue;
+					result = new QueryResult(word);
 				}
 
-				// When we're looking for exact matches, case sensitive, just ask wordset if it contains key!
-				if (matchRules == (SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE))
+				for (String documentName : terms.wordsToDocuments.get(word))
 				{
-					if (words.contains(key))
-					{
-						QueryResult result = results.get(key);
-
-						if (result == null)
-						{
-							result = new QueryResult(key);
-						}
-
-						result.addDocumentName(entry.getKey());
-						results.put(key, result);
-					}
+					result.addDocumentName(documentName);
 				}
-				else
-				{
-					// Otherwise we need to check each word individually
-					for (String word : words)
-					{
-						if (Index.isMatch(key, word, matchRules))
-						{
-							QueryResult result = results.get(word);
-
-							if (result == null)
-							{
-								result = new QueryResult(word);
-							}
 
-							result.addDocumentName(entry.getKey());
-							results.put(word, result);
-						}
-					}
-				}
+				results.put(word, result);
 			}
 		}
 
@@ -187,6 +364,43 @@ public class MemoryIndex
 		return new ArrayList<String>(categories);
 	}
 
+	/**
+	 * Returns the words of a category, along with the documents containing them. This is computed by the first query
+	 * for the category and then updated as entries are added and removed.
+	 * 
+	 * @param category
+	 * @return
+	 */
+	private CategoryTerms getCategoryTerms(String category)
+	{
+		CategoryTerms terms = categoryTerms.get(category);
+
+		if (terms == null)
+		{
+			terms = new CategoryTerms();
+
+			for (Map.Entry<String, Map<String, Set<String>>> entry : documentsToTable.entrySet())
+			{
+				Map<String, Set<String>> categoriesToWords = entry.getValue();
+				Set<String> words = (categoriesToWords == null) ? null : categoriesToWords.get(category);
+
+				if (words == null)
+				{
+					continue;
+				}
+
+				for (String word : words)
+				{
+					terms.add(word, entry.getKey());
+				}
+			}
+
+			categoryTerms.put(category, terms);
+		}
+
+		return terms;
+	}
+
 	/**
 	 * getCategoriesForDocument
 	 * 
@@ -229,6 +443,18 @@ public class MemoryIndex
 		return documentsToTable.get(documentName) != null;
 	}
 
+	/**
+	 * Determines if this index records the given document as added, changed or removed, i.e. whether its entries
+	 * replace any entries another index holds for it.
+	 * 
+	 * @param documentName
+	 * @return
+	 */
+	public boolean hasChanges(String documentName)
+	{
+		return documentsToTable.containsKey(documentName);
+	}
+
 	/**
 	 * numberOfChanges
 	 * 
@@ -246,9 +472,38 @@ public class MemoryIndex
 	 */
 	public void remove(String documentName)
 	{
+		removeTerms(documentName, this.documentsToTable.get(documentName));
 		this.documentsToTable.put(documentName, null);
 	}
 
+	/**
+	 * Removes a document's words from the terms of the categories queried so far
+	 * 
+	 * @param documentName
+	 * @param categoriesToWords
+	 *            the document's current table, may be null
+	 */
+	private void removeTerms(String documentName, Map<String, Set<String>> categoriesToWords)
+	{
+		if (categoriesToWords == null || categoryTerms.isEmpty())
+		{
+			return;
+		}
+
+		for (Map.Entry<String, Set<String>> category : categoriesToWords.entrySet())
+		{
+			CategoryTerms terms = categoryTerms.get(category.getKey());
+
+			if (terms != null)
+			{
+				for (String word : category.getValue())
+				{
+					terms.remove(word, documentName);
+				}
+			}
+		}
+	}
+
 	/**
 	 * removeCategories
 	 * 
@@ -266,6 +521,11 @@ public class MemoryIndex
 				}
 			}
 		}
+
+		for (String category : categoryNames)
+		{
+			categoryTerms.remove(category);
+		}
 	}
 
 	/**
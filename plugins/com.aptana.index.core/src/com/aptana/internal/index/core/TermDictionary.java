@@ -0,0 +1,247 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import com.aptana.core.util.StringUtil;
+import com.aptana.index.core.Index;
+import com.aptana.index.core.SearchPattern;
+
+/**
+ * An immutable dictionary of the words in a single category, sorted by their case-folded form. Exact and prefix
+ * queries, whether case sensitive or not, binary search to the start of the matching range and only visit the words
+ * inside it. Pattern queries still have to visit every word, but they match against the pre-folded keys so no word is
+ * lowercased during a query.
+ */
+public class TermDictionary
+{
+	/**
+	 * A word together with its case-folded key
+	 */
+	private static class Term implements Comparable<Term>
+	{
+		final String word;
+		final String key;
+
+		Term(String word)
+		{
+			this.word = word;
+			this.key = fold(word);
+		}
+
+		public int compareTo(Term o)
+		{
+			int result = key.compareTo(o.key);
+
+			return (result != 0) ? result : word.compareTo(o.word);
+		}
+	}
+
+	/**
+	 * Returns the case-folded form of a word. Characters are folded one at a time, the same way
+	 * {@link String#equalsIgnoreCase(String)} compares them, so the folded word always has the same length as the
+	 * original.
+	 * 
+	 * @param word
+	 * @return
+	 */
+	public static String fold(String word)
+	{
+		int length = word.length();
+		char[] chars = null;
+
+		for (int i = 0; i < length; i++)
+		{
+			char c = word.charAt(i);
+			char folded = Character.toLowerCase(Character.toUpperCase(c));
+
+			if (folded != c)
+			{
+				if (chars == null)
+				{
+					chars = word.toCharArray();
+				}
+
+				chars[i] = folded;
+			}
+		}
+
+		return (chars == null) ? word : new String(chars);
+	}
+
+	private final String[] words;
+	private final String[] keys;
+
+	/**
+	 * TermDictionary
+	 * 
+	 * @param words
+	 */
+	public TermDictionary(Collection<String> words)
+	{
+		this(words.toArray(new String[words.size()]));
+	}
+
+	/**
+	 * Create a dictionary for the specified words. Words that are already in dictionary order, as they are when read
+	 * back from an index file, are used as is; anything else is sorted first.
+	 * 
+	 * @param words
+	 */
+	public TermDictionary(String[] words)
+	{
+		int size = words.length;
+		Term[] terms = new Term[size];
+		boolean sorted = true;
+
+		for (int i = 0; i < size; i++)
+		{
+			terms[i] = new Term(words[i]);
+
+			if (sorted && i > 0 && terms[i - 1].compareTo(terms[i]) > 0)
+			{
+				sorted = false;
+			}
+		}
+
+		if (!sorted)
+		{
+			Arrays.sort(terms);
+		}
+
+		this.words = new String[size];
+		this.keys = new String[size];
+
+		for (int i = 0; i < size; i++)
+		{
+			this.words[i] = terms[i].word;
+			this.keys[i] = terms[i].key;
+		}
+	}
+
+	/**
+	 * Returns the words in this dictionary that match the specified key using the specified match rule. The words are
+	 * returned in dictionary order.
+	 * 
+	 * @param key
+	 * @param matchRule
+	 * @return
+	 */
+	public List<String> getMatches(String key, int matchRule)
+	{
+		if (StringUtil.isEmpty(key))
+		{
+			// a missing or empty key either matches every word or none of them
+			return Index.isMatch(key, StringUtil.EMPTY, matchRule) ? getWords() : Collections.<String> emptyList();
+		}
+
+		List<String> result = new ArrayList<String>();
+		String foldedKey = fold(key);
+
+		switch (matchRule)
+		{
+			case SearchPattern.EXACT_MATCH:
+			case SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE:
+				for (int i = lowerBound(foldedKey); i < keys.length && keys[i].equals(foldedKey); i++)
+				{
+					if (matchRule == SearchPattern.EXACT_MATCH || words[i].equals(key))
+					{
+						result.add(words[i]);
+					}
+				}
+				break;
+
+			case SearchPattern.PREFIX_MATCH:
+			case SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE:
+				for (int i = lowerBound(foldedKey); i < keys.length && keys[i].startsWith(foldedKey); i++)
+				{
+					if (matchRule == SearchPattern.PREFIX_MATCH || words[i].startsWith(key))
+					{
+						result.add(words[i]);
+					}
+				}
+				break;
+
+			case SearchPattern.PATTERN_MATCH:
+				// both sides are already folded, so a case sensitive match does the job
+				for (int i = 0; i < keys.length; i++)
+				{
+					if (Index.isMatch(foldedKey, keys[i], SearchPattern.PATTERN_MATCH | SearchPattern.CASE_SENSITIVE))
+					{
+						result.add(words[i]);
+					}
+				}
+				break;
+
+			default:
+				for (int i = 0; i < words.length; i++)
+				{
+					if (Index.isMatch(key, words[i], matchRule))
+					{
+						result.add(words[i]);
+					}
+				}
+				break;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns all words in this dictionary, in dictionary order
+	 * 
+	 * @return
+	 */
+	public List<String> getWords()
+	{
+		return Collections.unmodifiableList(Arrays.asList(words));
+	}
+
+	/**
+	 * Returns the index of the first key that is greater than or equal to the specified folded key
+	 * 
+	 * @param foldedKey
+	 * @return
+	 */
+	private int lowerBound(String foldedKey)
+	{
+		int low = 0;
+		int high = keys.length;
+
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+
+			if (keys[middle].compareTo(foldedKey) < 0)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+
+	/**
+	 * Returns the number of words in this dictionary
+	 * 
+	 * @return
+	 */
+	public int size()
+	{
+		return words.length;
+	}
+}
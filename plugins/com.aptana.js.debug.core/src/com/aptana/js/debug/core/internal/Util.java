@@ -10,6 +10,8 @@ package com.aptana.js.debug.core.internal;
 import java.io.File;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Pattern;
 
 /**
@@ -46,6 +48,9 @@ public final class Util {
 	 * @return String
 	 */
 	public static String encodeData(String data) {
+		if (data.indexOf('#') == -1 && data.indexOf('|') == -1 && data.indexOf('*') == -1) {
+			return data;
+		}
 		return data.replaceAll("#", "#0").replaceAll("\\|", "#1").replaceAll("\\*", "#2"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
 	}
 
@@ -56,6 +61,9 @@ public final class Util {
 	 * @return String
 	 */
 	public static String decodeData(String data) {
+		if (data.indexOf('#') == -1) {
+			return data;
+		}
 		return data.replaceAll("#2", "*").replaceAll("#1", "|").replaceAll("#0", "#"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
 	}
 
@@ -69,6 +77,34 @@ public final class Util {
 		return CHECK_VARIABLE.matcher(variableName).matches();
 	}
 
+	/**
+	 * Splits the string around the separator the way {@link String#split(String)} does, dropping trailing empty
+	 * strings, but without compiling a regular expression for each call.
+	 * 
+	 * @param string
+	 * @param separator
+	 * @return String[]
+	 */
+	public static String[] split(String string, char separator) {
+		int index = string.indexOf(separator);
+		if (index == -1) {
+			return new String[] { string };
+		}
+		List<String> list = new ArrayList<String>();
+		int start = 0;
+		while (index != -1) {
+			list.add(string.substring(start, index));
+			start = index + 1;
+			index = string.indexOf(separator, start);
+		}
+		list.add(string.substring(start));
+		int size = list.size();
+		while (size > 0 && list.get(size - 1).length() == 0) {
+			--size;
+		}
+		return list.subList(0, size).toArray(new String[size]);
+	}
+
 	public static String[] removeArrayElement(String[] array, int index) {
 		if (array.length == 0 || index >= array.length) {
 			return array;
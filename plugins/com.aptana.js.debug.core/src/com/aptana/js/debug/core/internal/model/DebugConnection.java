@@ -7,17 +7,27 @@
  */
 package com.aptana.js.debug.core.internal.model;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
+import java.net.ProtocolException;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
-import java.text.MessageFormat;
-import java.util.Hashtable;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -25,6 +35,7 @@ import org.eclipse.debug.core.DebugException;
 
 import com.aptana.js.debug.core.JSDebugPlugin;
 import com.aptana.js.debug.core.internal.ProtocolLogger;
+import com.aptana.js.debug.core.internal.Util;
 
 /**
  * @author Max Stepanov
@@ -32,7 +43,13 @@ import com.aptana.js.debug.core.internal.ProtocolLogger;
 public class DebugConnection {
 
 	public interface IHandler {
-		void handleMessage(String message);
+		/**
+		 * Handles a message that is not a response to a pending command
+		 * 
+		 * @param args
+		 *            the message split into its '*' separated arguments
+		 */
+		void handleMessage(String[] args);
 
 		void handleShutdown();
 	}
@@ -42,7 +59,12 @@ public class DebugConnection {
 	 */
 	protected static final int COMMAND_TIMEOUT = 20000;
 
-	private static final String ARGS_SPLIT = "\\*"; //$NON-NLS-1$
+	/**
+	 * MAX_MESSAGE_SIZE, larger sizes mean the stream is corrupt or out of step
+	 */
+	protected static final int MAX_MESSAGE_SIZE = 32 * 1024 * 1024;
+
+	private static final char ARGS_SEPARATOR = '*';
 
 	private Socket socket;
 	private Reader reader;
@@ -51,8 +73,9 @@ public class DebugConnection {
 	private boolean terminated = false;
 	private final ProtocolLogger logger;
 
-	private Map<String, Object> locks = new Hashtable<String, Object>(); // synchronized get/put required
-	private volatile long lastReqId = System.currentTimeMillis();
+	private final Object writeLock = new Object();
+	private final ConcurrentMap<String, PendingCommand> pendingCommands = new ConcurrentHashMap<String, PendingCommand>();
+	private final AtomicLong lastReqId = new AtomicLong(System.currentTimeMillis());
 
 	private IHandler handler;
 
@@ -78,7 +101,7 @@ public class DebugConnection {
 
 	protected DebugConnection(Socket socket, Reader reader, Writer writer, ProtocolLogger logger) {
 		this.socket = socket;
-		this.reader = reader;
+		this.reader = (reader instanceof BufferedReader) ? reader : new BufferedReader(reader);
 		this.writer = writer;
 		this.logger = logger;
 	}
@@ -108,6 +131,9 @@ public class DebugConnection {
 						handleMessage(message);
 					} catch (SocketException e) {
 						break;
+					} catch (ProtocolException e) {
+						JSDebugPlugin.log(e);
+						break;
 					} catch (Exception e) {
 						JSDebugPlugin.log(e);
 					}
@@ -126,16 +152,9 @@ public class DebugConnection {
 			return;
 		}
 		connected = false;
-		synchronized (locks) {
-			Object[] list = locks.values().toArray();
-			locks.clear();
-			for (Object lock : list) {
-				synchronized (lock) {
-					lock.notify();
-				}
-			}
+		for (PendingCommand command : pendingCommands.values()) {
+			command.cancel(false);
 		}
-
 	}
 
 	public void dispose() throws IOException {
@@ -155,22 +174,17 @@ public class DebugConnection {
 		if (message.endsWith("*")) { //$NON-NLS-1$
 			message += "* "; //$NON-NLS-1$
 		}
-		handler.handleMessage(message);
+		String[] args = Util.split(message, ARGS_SEPARATOR);
 
-		if (!connected) {
-			return;
-		}
 		/* check if action comes to waiting commands */
-		String[] args = message.split(ARGS_SPLIT);
-		String action = args[0];
-		Object lock = locks.get(action);
-		if (lock != null) {
-			locks.put(action, args);
-			synchronized (lock) {
-				lock.notify();
+		if (connected && args.length > 0) {
+			PendingCommand command = pendingCommands.remove(args[0]);
+			if (command != null) {
+				command.set(args);
+				return;
 			}
-			return;
 		}
+		handler.handleMessage(args);
 	}
 
 	/**
@@ -210,17 +224,68 @@ public class DebugConnection {
 	 * @throws DebugException
 	 */
 	protected void sendCommand(String reqid, String command) throws DebugException {
-		try {
-			String message = MessageFormat.format("{0}*{1}*{2}", //$NON-NLS-1$
-					Integer.toString(command.length() + reqid.length() + 1), reqid, command);
-			if (logger != null) {
-				logger.log(false, message);
+		synchronized (writeLock) {
+			try {
+				writeCommand(reqid, command);
+				writer.flush();
+			} catch (IOException e) {
+				throwDebugException(e);
+			}
+		}
+	}
+
+	/**
+	 * Send command and return a future for its response. Any number of commands may be outstanding at once; the
+	 * responses are matched to them by request id.
+	 * 
+	 * @param command
+	 * @return Future holding the response arguments, or <code>null</code> on timeout or disconnect
+	 * @throws DebugException
+	 */
+	protected Future<String[]> sendCommandAsync(String command) throws DebugException {
+		return sendCommandsAsync(Collections.singletonList(command)).get(0);
+	}
+
+	/**
+	 * Send several commands at once and return futures for their responses, in the same order. The commands are
+	 * written with a single flush, so the host can answer them back-to-back.
+	 * 
+	 * @param commands
+	 * @return List of futures
+	 * @throws DebugException
+	 */
+	protected List<Future<String[]>> sendCommandsAsync(List<String> commands) throws DebugException {
+		List<Future<String[]>> futures = new ArrayList<Future<String[]>>(commands.size());
+		if (!connected) {
+			for (int i = 0; i < commands.size(); ++i) {
+				PendingCommand pending = new PendingCommand();
+				pending.cancel(false);
+				futures.add(pending);
+			}
+			return futures;
+		}
+		List<String> reqids = new ArrayList<String>(commands.size());
+		for (int i = 0; i < commands.size(); ++i) {
+			String reqid = Long.toString(lastReqId.incrementAndGet());
+			PendingCommand pending = new PendingCommand();
+			pendingCommands.put(reqid, pending);
+			reqids.add(reqid);
+			futures.add(pending);
+		}
+		synchronized (writeLock) {
+			try {
+				for (int i = 0; i < commands.size(); ++i) {
+					writeCommand(reqids.get(i), commands.get(i));
+				}
+				writer.flush();
+			} catch (IOException e) {
+				for (String reqid : reqids) {
+					pendingCommands.remove(reqid);
+				}
+				throwDebugException(e);
 			}
-			writer.write(message);
-			writer.flush();
-		} catch (IOException e) {
-			throwDebugException(e);
 		}
+		return futures;
 	}
 
 	/**
@@ -231,8 +296,7 @@ public class DebugConnection {
 	 * @throws DebugException
 	 */
 	protected String[] sendCommandAndWait(String command) throws DebugException {
-		long reqid = ++lastReqId;
-		return sendCommandAndWait(command, Long.toString(reqid));
+		return getResponse(sendCommandAsync(command));
 	}
 
 	/**
@@ -247,31 +311,73 @@ public class DebugConnection {
 		if (!connected) {
 			return null;
 		}
-		Object lock = new Object();
-		synchronized (lock) {
-			try {
-				locks.put(reqid, lock);
-				sendCommand(reqid, command);
-				lock.wait(COMMAND_TIMEOUT);
-			} catch (InterruptedException e) {
-				throwDebugException(e);
-			}
+		PendingCommand pending = new PendingCommand();
+		pendingCommands.put(reqid, pending);
+		try {
+			sendCommand(reqid, command);
+		} catch (DebugException e) {
+			pendingCommands.remove(reqid);
+			throw e;
 		}
-		lock = locks.remove(reqid);
-		if (lock instanceof String[]) {
-			return (String[]) lock;
+		return getResponse(pending);
+	}
+
+	/**
+	 * Send several commands at once and wait for all the responses
+	 * 
+	 * @param commands
+	 * @return List of responses, in command order; an element is <code>null</code> when its command timed out
+	 * @throws DebugException
+	 */
+	protected List<String[]> sendCommandsAndWait(List<String> commands) throws DebugException {
+		List<String[]> result = new ArrayList<String[]>(commands.size());
+		for (Future<String[]> future : sendCommandsAsync(commands)) {
+			result.add(getResponse(future));
+		}
+		return result;
+	}
+
+	/**
+	 * Wait for the response of a command sent with {@link #sendCommandAsync(String)}
+	 * 
+	 * @param future
+	 * @return String[], or <code>null</code> on timeout or disconnect
+	 * @throws DebugException
+	 */
+	protected String[] getResponse(Future<String[]> future) throws DebugException {
+		try {
+			return future.get(COMMAND_TIMEOUT, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			future.cancel(false);
+			throwDebugException(e);
+		} catch (TimeoutException e) {
+			future.cancel(false);
+		} catch (ExecutionException e) {
+			throwDebugException(e);
 		}
 		return null;
 	}
 
+	private void writeCommand(String reqid, String command) throws IOException {
+		String message = new StringBuilder(command.length() + reqid.length() + 8)
+				.append(command.length() + reqid.length() + 1).append(ARGS_SEPARATOR).append(reqid)
+				.append(ARGS_SEPARATOR).append(command).toString();
+		if (logger != null) {
+			logger.log(false, message);
+		}
+		writer.write(message);
+	}
+
 	/**
 	 * readMessage
 	 * 
 	 * @return String
+	 * @throws ProtocolException
+	 *             if the announced size exceeds {@link #MAX_MESSAGE_SIZE}
 	 * @throws IOException
 	 */
 	protected String readMessage() throws IOException {
-		StringBuffer sb = new StringBuffer();
+		StringBuilder sb = new StringBuilder();
 		int messageSize = 0;
 		int i;
 		char ch;
@@ -293,18 +399,21 @@ public class DebugConnection {
 		if (i == -1) {
 			return null;
 		}
+		if (messageSize > MAX_MESSAGE_SIZE) {
+			throw new ProtocolException("Message size " + messageSize + " exceeds the limit of " + MAX_MESSAGE_SIZE); //$NON-NLS-1$ //$NON-NLS-2$
+		}
 
-		char[] buffer = new char[1024];
-		sb.setLength(0); // clear the buffer
+		char[] buffer = new char[messageSize];
+		int length = 0;
 		int n;
-		while (messageSize > sb.length()) {
-			n = reader.read(buffer, 0, Math.min(messageSize - sb.length(), buffer.length));
+		while (messageSize > length) {
+			n = reader.read(buffer, length, messageSize - length);
 			if (n == -1) {
 				return null;
 			}
-			sb.append(buffer, 0, n);
+			length += n;
 		}
-		return sb.toString();
+		return new String(buffer);
 	}
 
 	/**
@@ -318,4 +427,49 @@ public class DebugConnection {
 				DebugException.TARGET_REQUEST_FAILED, "", exception)); //$NON-NLS-1$
 	}
 
+	/**
+	 * Response of a command that is waiting for the host to answer
+	 */
+	private final class PendingCommand implements Future<String[]> {
+
+		private final CountDownLatch done = new CountDownLatch(1);
+		private volatile String[] response;
+		private volatile boolean cancelled;
+
+		private void set(String[] args) {
+			response = args;
+			done.countDown();
+		}
+
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			if (done.getCount() == 0) {
+				return false;
+			}
+			cancelled = true;
+			pendingCommands.values().remove(this);
+			done.countDown();
+			return true;
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		public boolean isDone() {
+			return done.getCount() == 0;
+		}
+
+		public String[] get() throws InterruptedException {
+			done.await();
+			return response;
+		}
+
+		public String[] get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+			if (!done.await(timeout, unit)) {
+				throw new TimeoutException();
+			}
+			return response;
+		}
+	}
+
 }
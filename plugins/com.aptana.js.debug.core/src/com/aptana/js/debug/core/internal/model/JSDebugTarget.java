@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
@@ -118,8 +119,7 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 	private static final String CREATE = "create"; //$NON-NLS-1$
 	private static final String RESOLVED = "resolved"; //$NON-NLS-1$
 	private static final String DESTROYED = "destroyed"; //$NON-NLS-1$
-	private static final String ARGS_SPLIT = "\\*"; //$NON-NLS-1$
-	private static final String SUBARGS_SPLIT = "\\|"; //$NON-NLS-1$
+	private static final char SUBARGS_SEPARATOR = '|';
 	private static final String CREATED = "created"; //$NON-NLS-1$
 	private static final String TERMINATE = "terminate"; //$NON-NLS-1$
 	private static final String SUSPEND = "suspend"; //$NON-NLS-1$
@@ -352,7 +352,7 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 			} else if (TRACE.equals(type)) {
 				sb.append('\n');
 				for (int i = 4; i < args.length; ++i) {
-					String[] subargs = args[i].split(SUBARGS_SPLIT);
+					String[] subargs = Util.split(args[i], SUBARGS_SEPARATOR);
 					if (subargs[0].length() == 0) {
 						subargs[0] = MessageFormat.format("[{0}]", //$NON-NLS-1$
 								i == args.length - 1 ? Messages.JSDebugTarget_TopLevelScript
@@ -524,7 +524,7 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 		if (CREATED.equals(action)) {
 			for (int i = 2; i < args.length; ++i) {
 				int j = 0;
-				String[] subargs = args[i].split(SUBARGS_SPLIT);
+				String[] subargs = Util.split(args[i], SUBARGS_SEPARATOR);
 				if (subargs.length < 5) {
 					JSDebugPlugin.log(MessageFormat.format("Missing fields in response: <{0}>", args[i])); //$NON-NLS-1$
 					continue;
@@ -568,7 +568,7 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 			;
 		} else if (DESTROYED.equals(action)) {
 			int j = 0;
-			String[] subargs = args[2].split(SUBARGS_SPLIT);
+			String[] subargs = Util.split(args[2], SUBARGS_SEPARATOR);
 			int scriptTag = -1;
 			try {
 				scriptTag = Integer.parseInt(subargs[j++]);
@@ -585,7 +585,7 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 		} else if (RESOLVED.equals(action)) {
 			for (int i = 2; i < args.length; ++i) {
 				int j = 0;
-				String[] subargs = args[i].split(SUBARGS_SPLIT);
+				String[] subargs = Util.split(args[i], SUBARGS_SEPARATOR);
 				int scriptTag = -1;
 				try {
 					scriptTag = Integer.parseInt(subargs[j++]);
@@ -1204,8 +1204,19 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 			return new IVariable[0];
 		}
 		List<IVariable> list = new ArrayList<IVariable>();
-		String[] args = connection.sendCommandAndWait(MessageFormat.format(protocolVersion >= 2 ? VARIABLES_0_V2
-				: VARIABLES_0, threadId, Util.encodeData(qualifier)));
+		JSDebugThread thread = threads.get(threadId);
+		String[] args = null;
+		if (thread != null) {
+			/* use the response requested up front when the thread suspended, if there is one */
+			Future<String[]> prefetched = thread.takePrefetchedVariables(qualifier);
+			if (prefetched != null) {
+				args = connection.getResponse(prefetched);
+			}
+			thread.variablesLoaded(qualifier);
+		}
+		if (args == null) {
+			args = connection.sendCommandAndWait(getVariablesCommand(threadId, qualifier));
+		}
 		if (args != null) {
 			for (int i = 1; i < args.length; ++i) {
 				String varData = args[i];
@@ -1217,7 +1228,7 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 				{
 					varData += "| "; //$NON-NLS-1$
 				}
-				String[] subargs = varData.split(SUBARGS_SPLIT);
+				String[] subargs = Util.split(varData, SUBARGS_SEPARATOR);
 				String name = Util.decodeData(subargs[j++]);
 				String type = Util.decodeData(subargs[j++]);
 				String flags = subargs[j++];
@@ -1234,6 +1245,31 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 		return (IVariable[]) list.toArray(new IVariable[list.size()]);
 	}
 
+	/**
+	 * getVariablesCommand
+	 * 
+	 * @param threadId
+	 * @param qualifier
+	 * @return String
+	 */
+	/* package */String getVariablesCommand(String threadId, String qualifier) {
+		return MessageFormat.format(protocolVersion >= 2 ? VARIABLES_0_V2 : VARIABLES_0, threadId,
+				Util.encodeData(qualifier));
+	}
+
+	/**
+	 * Drops the responses the thread requested up front when it suspended, before sending a request that may change
+	 * the program state
+	 * 
+	 * @param threadId
+	 */
+	private void discardPrefetched(String threadId) {
+		JSDebugThread thread = threads.get(threadId);
+		if (thread != null) {
+			thread.discardPrefetched();
+		}
+	}
+
 	/**
 	 * evaluateExpression
 	 * 
@@ -1259,6 +1295,8 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 		if (!isThreadSuspended(threadId)) {
 			return null;
 		}
+		/* the expression may have side effects */
+		discardPrefetched(threadId);
 		String command = MessageFormat.format(protocolVersion >= 2 ? EVAL_0_1_V2 : EVAL_0_1, threadId,
 				Util.encodeData(qualifier), Util.encodeData(expression));
 		String[] args = connection.sendCommandAndWait(command);
@@ -1270,7 +1308,7 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 			{
 				varData += "| "; //$NON-NLS-1$
 			}
-			String[] subargs = varData.split(SUBARGS_SPLIT);
+			String[] subargs = Util.split(varData, SUBARGS_SEPARATOR);
 			int j = 0;
 			String type = subargs[j++];
 			String flags = subargs[j++];
@@ -1310,13 +1348,14 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 		if (!isThreadSuspended(threadId)) {
 			return null;
 		}
+		discardPrefetched(threadId);
 		String command = MessageFormat.format(protocolVersion >= 2 ? SET_VALUE_0_1_V2 : SET_VALUE_0_1, threadId,
 				Util.encodeData(qualifier), vqualifier);
 		String[] args = connection.sendCommandAndWait(command);
 		if (args != null && args.length >= 3) {
 			String status = args[1];
 			if (RESULT.equals(status)) {
-				String[] subargs = args[2].split(SUBARGS_SPLIT);
+				String[] subargs = Util.split(args[2], SUBARGS_SEPARATOR);
 				int j = 0;
 				String type = subargs[j++];
 				String flags = subargs[j++];
@@ -1760,10 +1799,9 @@ public class JSDebugTarget extends JSDebugElement implements IJSDebugTarget, IBr
 
 		/*
 		 * (non-Javadoc)
-		 * @see com.aptana.js.debug.core.internal.model.DebugConnection.IHandler#handleMessage(java.lang.String)
+		 * @see com.aptana.js.debug.core.internal.model.DebugConnection.IHandler#handleMessage(java.lang.String[])
 		 */
-		public void handleMessage(String message) {
-			String[] args = message.split(ARGS_SPLIT);
+		public void handleMessage(String[] args) {
 			int j = 0;
 			String action = args[j++];
 			if (LOG.equals(action)) {
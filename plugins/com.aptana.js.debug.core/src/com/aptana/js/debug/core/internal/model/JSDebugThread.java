@@ -9,7 +9,14 @@ package com.aptana.js.debug.core.internal.model;
 
 import java.net.URI;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.debug.core.DebugEvent;
@@ -52,7 +59,7 @@ public class JSDebugThread extends JSDebugElement implements IThread {
 	private static final String STEP = "step"; //$NON-NLS-1$
 	private static final String FRAMES = "frames"; //$NON-NLS-1$
 	private static final String FRAMES_V2 = "frames*{0}"; //$NON-NLS-1$
-	private static final String SUBARGS_SPLIT = "\\|"; //$NON-NLS-1$
+	private static final char SUBARGS_SEPARATOR = '|';
 	private static final String STEP_TO_FRAME_0 = "stepToFrame*{1,number,integer}"; //$NON-NLS-1$
 	private static final String STEP_TO_FRAME_0_V2 = "stepToFrame*{0}*{1,number,integer}"; //$NON-NLS-1$
 
@@ -60,6 +67,11 @@ public class JSDebugThread extends JSDebugElement implements IThread {
 		STARTING, RUNNING, SUSPENDED, SUSPENDING, STEPPPING
 	}
 
+	/**
+	 * Limit of variables requested up front on suspend
+	 */
+	private static final int MAX_PREFETCHED_VARIABLES = 32;
+
 	private static final IStackFrame[] emptyStack = new IStackFrame[0];
 	private static final IBreakpoint[] emptyBreakpoints = new IBreakpoint[0];
 
@@ -70,6 +82,11 @@ public class JSDebugThread extends JSDebugElement implements IThread {
 	private State runningState = State.STARTING;
 	private boolean validateFrames = false;
 
+	private final Object prefetchLock = new Object();
+	private Future<String[]> prefetchedFrames;
+	private final Map<String, Future<String[]>> prefetchedVariables = new HashMap<String, Future<String[]>>();
+	private final Set<String> loadedQualifiers = new LinkedHashSet<String>();
+
 	/**
 	 * JSDebugThread
 	 * 
@@ -286,6 +303,7 @@ public class JSDebugThread extends JSDebugElement implements IThread {
 		if (SUSPENDED.equals(action)) {
 			invalidateStackFrames();
 			runningState = State.SUSPENDED;
+			prefetch();
 			breakpoints = null;
 			String reason = args[1];
 			if (BREAKPOINT.equals(reason) || KEYWORD.equals(reason) || FIRST_LINE.equals(reason)
@@ -322,6 +340,7 @@ public class JSDebugThread extends JSDebugElement implements IThread {
 			fireSuspendEvent(details);
 			fireChangeEvent(DebugEvent.STATE);
 		} else if (RESUMED.equals(action)) {
+			discardPrefetched();
 			String reason = args[1];
 			if (STEP_INTO.equals(reason)) {
 				details = DebugEvent.STEP_INTO;
@@ -399,14 +418,24 @@ public class JSDebugThread extends JSDebugElement implements IThread {
 			return;
 		}
 		JSDebugTarget target = getJSDebugTarget();
-		String command = MessageFormat.format(target.getProtocolVersion() >= 2 ? FRAMES_V2 : FRAMES, threadId);
-		String[] args = target.getConnection().sendCommandAndWait(command);
+		String[] args = null;
+		Future<String[]> prefetched;
+		synchronized (prefetchLock) {
+			prefetched = prefetchedFrames;
+			prefetchedFrames = null;
+		}
+		if (prefetched != null) {
+			args = target.getConnection().getResponse(prefetched);
+		}
+		if (args == null) {
+			args = target.getConnection().sendCommandAndWait(getFramesCommand());
+		}
 		if (args != null) {
 			Vector<IStackFrame> frames = new Vector<IStackFrame>();
 			int frameIndex = (stackFrames != null) ? stackFrames.length - 1 : -1;
 			for (int i = args.length - 1; i >= 1; --i) {
 				int j = 0;
-				String[] subargs = args[i].split(SUBARGS_SPLIT);
+				String[] subargs = Util.split(args[i], SUBARGS_SEPARATOR);
 				int depth = Integer.parseInt(subargs[j++]);
 				String function = Util.decodeData(subargs[j++]);
 				String arguments = Util.decodeData(subargs[j++]);
@@ -448,6 +477,82 @@ public class JSDebugThread extends JSDebugElement implements IThread {
 		}
 	}
 
+	private String getFramesCommand() {
+		return MessageFormat.format(getJSDebugTarget().getProtocolVersion() >= 2 ? FRAMES_V2 : FRAMES, threadId);
+	}
+
+	/**
+	 * Requests the stack frames, and the variables that were loaded while the thread was last suspended, in one
+	 * batch. The debug views ask for the same data after every step, so the responses are usually on their way by
+	 * the time they are needed.
+	 */
+	private void prefetch() {
+		List<String> qualifiers;
+		synchronized (prefetchLock) {
+			qualifiers = new ArrayList<String>(loadedQualifiers);
+			loadedQualifiers.clear();
+		}
+		JSDebugTarget target = getJSDebugTarget();
+		List<String> commands = new ArrayList<String>(qualifiers.size() + 1);
+		commands.add(getFramesCommand());
+		for (String qualifier : qualifiers) {
+			commands.add(target.getVariablesCommand(threadId, qualifier));
+		}
+		try {
+			List<Future<String[]>> responses = target.getConnection().sendCommandsAsync(commands);
+			synchronized (prefetchLock) {
+				prefetchedFrames = responses.get(0);
+				for (int i = 0; i < qualifiers.size(); ++i) {
+					prefetchedVariables.put(qualifiers.get(i), responses.get(i + 1));
+				}
+			}
+		} catch (DebugException e) {
+			JSDebugPlugin.log(e);
+		}
+	}
+
+	/**
+	 * Drops the responses requested when the thread suspended, they are stale once the program state changes
+	 */
+	/* package */void discardPrefetched() {
+		synchronized (prefetchLock) {
+			if (prefetchedFrames != null) {
+				prefetchedFrames.cancel(false);
+				prefetchedFrames = null;
+			}
+			for (Future<String[]> response : prefetchedVariables.values()) {
+				response.cancel(false);
+			}
+			prefetchedVariables.clear();
+		}
+	}
+
+	/**
+	 * Returns the response of a variables request sent when the thread suspended, if there is one
+	 * 
+	 * @param qualifier
+	 * @return Future
+	 */
+	/* package */Future<String[]> takePrefetchedVariables(String qualifier) {
+		synchronized (prefetchLock) {
+			return prefetchedVariables.remove(qualifier);
+		}
+	}
+
+	/**
+	 * Remembers that the variables of the qualifier were loaded, so that they can be requested up front next time
+	 * the thread suspends
+	 * 
+	 * @param qualifier
+	 */
+	/* package */void variablesLoaded(String qualifier) {
+		synchronized (prefetchLock) {
+			if (loadedQualifiers.size() < MAX_PREFETCHED_VARIABLES) {
+				loadedQualifiers.add(qualifier);
+			}
+		}
+	}
+
 	private synchronized void invalidateStackFrames() {
 		if (stackFrames != null) {
 			for (IStackFrame stackFrame : stackFrames) {
@@ -0,0 +1,412 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.IParseRootNode;
+
+/**
+ * A least-recently-used cache of parse results whose budget is expressed in the approximate number of bytes and AST
+ * nodes it retains, rather than in a number of entries. This lets a handful of large files, or many small ones, stay
+ * cached so that the editor, the outline, the formatter and the build participants share a single AST for the same
+ * content.
+ * <p>
+ * This class is not thread-safe, callers are expected to synchronize access to it.
+ * 
+ * @param <V>
+ *            the type of the cached values
+ */
+public class ParseCache<V>
+{
+	/**
+	 * A rough estimate of the memory retained by a single AST node (the node itself, its child array and its
+	 * offsets).
+	 */
+	static final int BYTES_PER_NODE = 96;
+
+	/**
+	 * Default budget for the approximate memory retained by cached ASTs
+	 */
+	public static final long DEFAULT_BYTE_LIMIT = 32L * 1024 * 1024;
+
+	/**
+	 * Default budget for the number of AST nodes retained by cached ASTs
+	 */
+	public static final int DEFAULT_NODE_LIMIT = 250000;
+
+	/**
+	 * Hit, miss and eviction counts for a single content type
+	 */
+	public static class Statistics
+	{
+		private long hits;
+		private long misses;
+		private long evictions;
+
+		Statistics()
+		{
+		}
+
+		Statistics(Statistics other)
+		{
+			hits = other.hits;
+			misses = other.misses;
+			evictions = other.evictions;
+		}
+
+		/**
+		 * getEvictions
+		 * 
+		 * @return
+		 */
+		public long getEvictions()
+		{
+			return evictions;
+		}
+
+		/**
+		 * getHits
+		 * 
+		 * @return
+		 */
+		public long getHits()
+		{
+			return hits;
+		}
+
+		/**
+		 * getMisses
+		 * 
+		 * @return
+		 */
+		public long getMisses()
+		{
+			return misses;
+		}
+
+		public String toString()
+		{
+			return "hits=" + hits + ", misses=" + misses + ", evictions=" + evictions; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+	}
+
+	/**
+	 * A cached value together with its footprint. The footprint stays at zero until the parse result is known.
+	 */
+	private static class Entry<V>
+	{
+		final String contentTypeId;
+		final V value;
+		long bytes;
+		int nodes;
+
+		Entry(String contentTypeId, V value)
+		{
+			this.contentTypeId = contentTypeId;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Estimate the memory retained by a parse result. Source text is counted once since nodes typically hold on to
+	 * substrings of it (identifiers, literals, comments).
+	 * 
+	 * @param sourceLength
+	 * @param nodeCount
+	 * @return
+	 */
+	public static long estimateBytes(int sourceLength, int nodeCount)
+	{
+		return 2L * sourceLength + (long) BYTES_PER_NODE * nodeCount;
+	}
+
+	/**
+	 * Count the nodes of an AST, including its comment nodes
+	 * 
+	 * @param root
+	 * @return
+	 */
+	public static int countNodes(IParseRootNode root)
+	{
+		if (root == null)
+		{
+			return 0;
+		}
+
+		int count = 0;
+		List<IParseNode> stack = new ArrayList<IParseNode>();
+
+		stack.add(root);
+
+		while (!stack.isEmpty())
+		{
+			IParseNode node = stack.remove(stack.size() - 1);
+			int childCount = node.getChildCount();
+
+			count++;
+
+			for (int i = 0; i < childCount; i++)
+			{
+				IParseNode child = node.getChild(i);
+
+				if (child != null)
+				{
+					stack.add(child);
+				}
+			}
+		}
+
+		IParseNode[] comments = root.getCommentNodes();
+
+		if (comments != null)
+		{
+			count += comments.length;
+		}
+
+		return count;
+	}
+
+	private final LinkedHashMap<IParseStateCacheKey, Entry<V>> entries;
+	private final Map<String, Statistics> statistics;
+	private final long byteLimit;
+	private final int nodeLimit;
+	private long currentBytes;
+	private int currentNodes;
+
+	/**
+	 * ParseCache
+	 */
+	public ParseCache()
+	{
+		this(DEFAULT_BYTE_LIMIT, DEFAULT_NODE_LIMIT);
+	}
+
+	/**
+	 * ParseCache
+	 * 
+	 * @param byteLimit
+	 * @param nodeLimit
+	 */
+	public ParseCache(long byteLimit, int nodeLimit)
+	{
+		this.entries = new LinkedHashMap<IParseStateCacheKey, Entry<V>>(16, 0.75f, true);
+		this.statistics = new HashMap<String, Statistics>();
+		this.byteLimit = byteLimit;
+		this.nodeLimit = nodeLimit;
+	}
+
+	/**
+	 * Remove all entries. Statistics are kept.
+	 */
+	public void clear()
+	{
+		entries.clear();
+		currentBytes = 0;
+		currentNodes = 0;
+	}
+
+	/**
+	 * Look up the value for a key and record a hit or a miss for the key's content type. A value that exists but is
+	 * rejected by the caller (for instance because it was parsed with fewer options than requested) should be reported
+	 * through {@link #recordMiss(String)}, so use {@link #get(IParseStateCacheKey)} to look such values up.
+	 * 
+	 * @param contentTypeId
+	 * @param key
+	 * @return
+	 */
+	public V get(String contentTypeId, IParseStateCacheKey key)
+	{
+		V result = get(key);
+
+		if (result == null)
+		{
+			recordMiss(contentTypeId);
+		}
+		else
+		{
+			recordHit(contentTypeId);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Look up the value for a key without updating the counters
+	 * 
+	 * @param key
+	 * @return
+	 */
+	public V get(IParseStateCacheKey key)
+	{
+		Entry<V> entry = entries.get(key);
+
+		return (entry != null) ? entry.value : null;
+	}
+
+	/**
+	 * getByteCount
+	 * 
+	 * @return
+	 */
+	public long getByteCount()
+	{
+		return currentBytes;
+	}
+
+	/**
+	 * getNodeCount
+	 * 
+	 * @return
+	 */
+	public int getNodeCount()
+	{
+		return currentNodes;
+	}
+
+	/**
+	 * Returns a snapshot of the counters for the given content type
+	 * 
+	 * @param contentTypeId
+	 * @return
+	 */
+	public Statistics getStatistics(String contentTypeId)
+	{
+		return new Statistics(getMutableStatistics(contentTypeId));
+	}
+
+	/**
+	 * getMutableStatistics
+	 * 
+	 * @param contentTypeId
+	 * @return
+	 */
+	private Statistics getMutableStatistics(String contentTypeId)
+	{
+		Statistics result = statistics.get(contentTypeId);
+
+		if (result == null)
+		{
+			result = new Statistics();
+			statistics.put(contentTypeId, result);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns a snapshot of the counters of every content type that has been seen by this cache
+	 * 
+	 * @return
+	 */
+	public Map<String, Statistics> getAllStatistics()
+	{
+		Map<String, Statistics> result = new HashMap<String, Statistics>();
+
+		for (Map.Entry<String, Statistics> entry : statistics.entrySet())
+		{
+			result.put(entry.getKey(), new Statistics(entry.getValue()));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Add a value, replacing any value with an equal key. The new value takes no space until its footprint is set with
+	 * {@link #setFootprint(IParseStateCacheKey, Object, long, int)}.
+	 * 
+	 * @param contentTypeId
+	 * @param key
+	 * @param value
+	 */
+	public void put(String contentTypeId, IParseStateCacheKey key, V value)
+	{
+		Entry<V> old = entries.remove(key);
+
+		if (old != null)
+		{
+			currentBytes -= old.bytes;
+			currentNodes -= old.nodes;
+		}
+
+		entries.put(key, new Entry<V>(contentTypeId, value));
+	}
+
+	/**
+	 * Record a lookup that was satisfied by the cache
+	 * 
+	 * @param contentTypeId
+	 */
+	public void recordHit(String contentTypeId)
+	{
+		getMutableStatistics(contentTypeId).hits++;
+	}
+
+	/**
+	 * Record a lookup that could not be satisfied by the cache
+	 * 
+	 * @param contentTypeId
+	 */
+	public void recordMiss(String contentTypeId)
+	{
+		getMutableStatistics(contentTypeId).misses++;
+	}
+
+	/**
+	 * Record the footprint of a value once its parse result is known, then evict least recently used entries until the
+	 * cache is within budget again. The most recently used entry is never evicted, so the last AST is always available
+	 * even if it's larger than the whole budget. Nothing happens if the value was replaced or evicted in the meantime.
+	 * 
+	 * @param key
+	 * @param value
+	 * @param bytes
+	 * @param nodes
+	 */
+	public void setFootprint(IParseStateCacheKey key, V value, long bytes, int nodes)
+	{
+		Entry<V> entry = entries.get(key);
+
+		if (entry == null || entry.value != value)
+		{
+			return;
+		}
+
+		currentBytes += bytes - entry.bytes;
+		currentNodes += nodes - entry.nodes;
+		entry.bytes = bytes;
+		entry.nodes = nodes;
+
+		Iterator<Entry<V>> iterator = entries.values().iterator();
+
+		while ((currentBytes > byteLimit || currentNodes > nodeLimit) && entries.size() > 1)
+		{
+			Entry<V> eldest = iterator.next();
+
+			iterator.remove();
+			currentBytes -= eldest.bytes;
+			currentNodes -= eldest.nodes;
+			getMutableStatistics(eldest.contentTypeId).evictions++;
+		}
+	}
+
+	/**
+	 * Returns the number of cached values
+	 * 
+	 * @return
+	 */
+	public int size()
+	{
+		return entries.size();
+	}
+}
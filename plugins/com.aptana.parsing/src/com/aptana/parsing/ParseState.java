@@ -7,6 +7,8 @@
  */
 package com.aptana.parsing;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -15,6 +17,7 @@ import java.util.Map;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 
+import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.ImmutableTupleN;
 import com.aptana.core.util.StringUtil;
 import com.aptana.parsing.ast.IParseError;
@@ -36,9 +39,23 @@ public class ParseState implements IParseState
 	private IParseRootNode fParseResult;
 	private IProgressMonitor fProgressMonitor;
 
+	// the result of parsing an earlier version of the source, which parsers may update instead of starting over
+	private IParseRootNode fPreviousParseResult;
+	private String fPreviousSource;
+
+	/**
+	 * Sources at most this long are kept in the cache key as is, longer ones are replaced by a digest.
+	 */
+	private static final int MAX_INLINE_KEY_LENGTH = 64;
+
+	/**
+	 * Number of chars fed to the digest at a time.
+	 */
+	private static final int DIGEST_CHUNK_SIZE = 4096;
+
 	/**
 	 * Used for determining if we need to re-parse or cache is valid. If 2 objects have the same cache-key, their parse
-	 * results should be considered equal.
+	 * results should be considered equal. Computed lazily, since digesting the source is not free.
 	 */
 	private ImmutableTupleN fCacheKey;
 
@@ -59,37 +76,14 @@ public class ParseState implements IParseState
 		fSource = (source != null) ? source : StringUtil.EMPTY;
 		fStartingOffset = startingOffset;
 		fSkippedRanges = ranges;
-
-		int length = fSource.length();
-		if (length < 11)
-		{
-			// If it's a small string, just keep it instead of using the hashCode().
-			fCacheKey = new ImmutableTupleN(length, fSource, fStartingOffset);
-		}
-		else
-		{
-			// Note: we currently use the fSource.hashCode() in order to decide if the contents of this parse equal
-			// the contents of another parse. Conflicts may still arise in this situation -- an md5 would be more
-			// accurate. As an attempt to make this just a bit better we also get 5 chars from the string from
-			// many locations of the string and add them to our result too, so that the chance of a collision is even
-			// lower.
-			char[] chars = new char[5];
-			double factor = length / 4.0;
-
-			chars[0] = fSource.charAt(0); // first char
-			chars[1] = fSource.charAt((int) factor);
-			chars[2] = fSource.charAt((int) (2 * factor));
-			chars[3] = fSource.charAt((int) (3 * factor));
-			chars[4] = fSource.charAt(length - 1); // last char
-
-			fCacheKey = new ImmutableTupleN(length, fSource.hashCode(), new String(chars), fStartingOffset);
-		}
 	}
 
 	public void clearEditState()
 	{
 		fSource = null;
 		fSkippedRanges = null;
+		fPreviousParseResult = null;
+		fPreviousSource = null;
 	}
 
 	public IParseRootNode getParseResult()
@@ -97,6 +91,26 @@ public class ParseState implements IParseState
 		return fParseResult;
 	}
 
+	/**
+	 * Returns the result of parsing an earlier version of this state's source, if one was provided.
+	 * 
+	 * @return
+	 */
+	public IParseRootNode getPreviousParseResult()
+	{
+		return fPreviousParseResult;
+	}
+
+	/**
+	 * Returns the earlier version of the source that {@link #getPreviousParseResult()} was parsed from.
+	 * 
+	 * @return
+	 */
+	public String getPreviousSource()
+	{
+		return fPreviousSource;
+	}
+
 	public String getSource()
 	{
 		return fSource;
@@ -140,6 +154,21 @@ public class ParseState implements IParseState
 		return fProgressMonitor;
 	}
 
+	/**
+	 * Provide the result of parsing an earlier version of the source, typically the content of the same editor before
+	 * the latest edits. Parsers that support it may re-parse only the part of the source that changed, starting from a
+	 * copy of the previous result. That result must therefore be free of errors and parsed with the same options. It
+	 * is not modified, so it may still be in use elsewhere.
+	 * 
+	 * @param previousSource
+	 * @param previousResult
+	 */
+	public void setPreviousParseResult(String previousSource, IParseRootNode previousResult)
+	{
+		fPreviousSource = previousSource;
+		fPreviousParseResult = previousResult;
+	}
+
 	public void setProgressMonitor(IProgressMonitor monitor)
 	{
 		fProgressMonitor = monitor;
@@ -188,7 +217,78 @@ public class ParseState implements IParseState
 
 	public IParseStateCacheKey getCacheKey(String contentTypeId)
 	{
+		if (fCacheKey == null)
+		{
+			fCacheKey = createCacheKey(fSource, fStartingOffset);
+		}
 		return new ParseStateCacheKey(contentTypeId, fCacheKey);
 	}
 
+	/**
+	 * Create the content part of a cache key. Small sources are used as is, larger ones are identified by their length
+	 * and SHA-1 digest so that two different sources practically never share a key (and an AST).
+	 * 
+	 * @param source
+	 * @param startingOffset
+	 * @return
+	 */
+	private static ImmutableTupleN createCacheKey(String source, int startingOffset)
+	{
+		if (source == null)
+		{
+			source = StringUtil.EMPTY;
+		}
+		int length = source.length();
+		if (length <= MAX_INLINE_KEY_LENGTH)
+		{
+			return new ImmutableTupleN(length, source, startingOffset);
+		}
+		return new ImmutableTupleN(length, digest(source), startingOffset);
+	}
+
+	/**
+	 * Computes the SHA-1 digest of the chars of a string, without encoding the whole string into a byte array first.
+	 * 
+	 * @param source
+	 * @return
+	 */
+	private static String digest(String source)
+	{
+		MessageDigest digest;
+		try
+		{
+			digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			// Every JRE is required to provide SHA-1, but fall back to the (much weaker) hash code just in case.
+			IdeLog.logError(ParsingPlugin.getDefault(), e);
+			return Integer.toString(source.hashCode());
+		}
+
+		int length = source.length();
+		char[] chars = new char[Math.min(length, DIGEST_CHUNK_SIZE)];
+		byte[] bytes = new byte[chars.length * 2];
+		for (int start = 0; start < length; start += chars.length)
+		{
+			int count = Math.min(chars.length, length - start);
+			source.getChars(start, start + count, chars, 0);
+			for (int i = 0; i < count; i++)
+			{
+				bytes[2 * i] = (byte) (chars[i] >> 8);
+				bytes[2 * i + 1] = (byte) chars[i];
+			}
+			digest.update(bytes, 0, 2 * count);
+		}
+
+		byte[] result = digest.digest();
+		StringBuilder text = new StringBuilder(result.length * 2);
+		for (byte b : result)
+		{
+			text.append(Character.forDigit((b >> 4) & 0xF, 16));
+			text.append(Character.forDigit(b & 0xF, 16));
+		}
+		return text.toString();
+	}
+
 }
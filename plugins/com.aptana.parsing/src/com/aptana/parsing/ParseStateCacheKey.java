@@ -20,8 +20,36 @@ public class ParseStateCacheKey extends ImmutableTupleN implements IParseStateCa
 		super(tuple);
 	}
 
+	/**
+	 * A key that doesn't say anything about comments is equal to a key with comments for the same content, so that an
+	 * AST parsed for either can be found in the cache using the other.
+	 */
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (obj instanceof ParseStateCacheKeyWithComments)
+		{
+			return obj.equals(this);
+		}
+		return super.equals(obj);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return super.hashCode();
+	}
+
+	/**
+	 * A parse state that doesn't restrict comments gets them all, so its result can be reused for any parse of the
+	 * same content, with or without comments.
+	 */
 	public boolean requiresReparse(IParseStateCacheKey newCacheKey)
 	{
+		if (newCacheKey instanceof ParseStateCacheKeyWithComments)
+		{
+			return !newCacheKey.equals(this);
+		}
 		return !this.equals(newCacheKey);
 	}
 }
@@ -10,7 +10,8 @@ package com.aptana.parsing;
 /**
  * A cache key which has options to attach and collect comments. It's done in a way where the equals/hashCode don't use
  * the information on comments, but the requiresReparse does, so that if the current (cached) parse has comments it may
- * be reused if the parse is asked without comments (and the other way requires a new parse).
+ * be reused if the parse is asked without comments (and the other way requires a new parse). A plain
+ * {@link ParseStateCacheKey} for the same content is considered equal, and is treated as asking for all comments.
  * 
  * @author Fabio
  */
@@ -32,6 +33,10 @@ public class ParseStateCacheKeyWithComments implements IParseStateCacheKey
 	@Override
 	public boolean equals(Object obj)
 	{
+		if (obj instanceof ParseStateCacheKey)
+		{
+			return fParentCacheKey.equals(obj);
+		}
 		if (!(obj instanceof ParseStateCacheKeyWithComments))
 		{
 			return false;
@@ -48,6 +53,11 @@ public class ParseStateCacheKeyWithComments implements IParseStateCacheKey
 
 	public boolean requiresReparse(IParseStateCacheKey newCacheKey)
 	{
+		if (newCacheKey instanceof ParseStateCacheKey)
+		{
+			// A plain parse state gets all comments, so only reuse our result if it has them too.
+			return !fAttachComments || !fCollectComments || fParentCacheKey.requiresReparse(newCacheKey);
+		}
 		if (!(newCacheKey instanceof ParseStateCacheKeyWithComments))
 		{
 			return true;
@@ -8,15 +8,17 @@
 package com.aptana.parsing;
 
 import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.Map;
 
-import com.aptana.core.epl.util.LRUCache;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.parsing.ast.IParseRootNode;
 
 /**
  * This class is responsible for actually calling the parsing. It'll use the ParseState#getCacheKey() to know if an
  * ongoing parse can be used for a new requestor (and if so, that requestor will be blocked until the end of the parse
- * rather than doing the parse itself).
+ * rather than doing the parse itself). Finished results are kept in a {@link ParseCache} bounded by the approximate
+ * memory and number of nodes the cached ASTs retain, so any client asking for the same content gets the same AST.
  * 
  * @author Fabio
  */
@@ -53,6 +55,11 @@ public class ParsingEngine
 		 */
 		private volatile boolean fResultGotten = false;
 
+		/**
+		 * Length of the source that was parsed (the source itself is cleared from the parse state after the parse).
+		 */
+		private final int fSourceLength;
+
 		/**
 		 * @param parseStateKey
 		 *            the key for which the parse will be done.
@@ -63,6 +70,7 @@ public class ParsingEngine
 		{
 			fCachedParseStateKey = parseStateKey;
 			fCachedParseState = parseState;
+			fSourceLength = parseState.getSource().length();
 		}
 
 		/**
@@ -114,10 +122,10 @@ public class ParsingEngine
 	}
 
 	/**
-	 * A parse cache. Keyed by combo of content type and source hash, holds IParseRootNode result. Retains most recently
-	 * used ASTs.
+	 * A parse cache. Keyed by combo of content type and source digest, holds IParseRootNode result. Retains most
+	 * recently used ASTs within its memory and node budget.
 	 */
-	private LRUCache<IParseStateCacheKey, CacheValue> fParseCache;
+	private ParseCache<CacheValue> fParseCache;
 
 	/**
 	 * Object providing access to the pool provider.
@@ -131,7 +139,20 @@ public class ParsingEngine
 
 	public ParsingEngine(IParserPoolProvider parserPoolProvider)
 	{
-		fParseCache = new LRUCache<IParseStateCacheKey, CacheValue>(3);
+		this(parserPoolProvider, ParseCache.DEFAULT_BYTE_LIMIT, ParseCache.DEFAULT_NODE_LIMIT);
+	}
+
+	/**
+	 * @param parserPoolProvider
+	 *            provides the parsers used for each content type.
+	 * @param byteLimit
+	 *            budget for the approximate memory retained by cached ASTs.
+	 * @param nodeLimit
+	 *            budget for the number of nodes of the cached ASTs.
+	 */
+	public ParsingEngine(IParserPoolProvider parserPoolProvider, long byteLimit, int nodeLimit)
+	{
+		fParseCache = new ParseCache<CacheValue>(byteLimit, nodeLimit);
 		fParserPoolProvider = parserPoolProvider;
 	}
 
@@ -145,11 +166,31 @@ public class ParsingEngine
 	 */
 	public void clearCache()
 	{
-		if (fParseCache == null) // already disposed.
+		ParseCache<CacheValue> parseCache = fParseCache;
+		if (parseCache == null) // already disposed.
 		{
 			return;
 		}
-		fParseCache.flush();
+		synchronized (fParseCacheLock)
+		{
+			parseCache.clear();
+		}
+	}
+
+	/**
+	 * @return the cache hit, miss and eviction counts, by content type.
+	 */
+	public Map<String, ParseCache.Statistics> getCacheStatistics()
+	{
+		ParseCache<CacheValue> parseCache = fParseCache;
+		if (parseCache == null) // already disposed.
+		{
+			return Collections.emptyMap();
+		}
+		synchronized (fParseCacheLock)
+		{
+			return parseCache.getAllStatistics();
+		}
 	}
 
 	public IParseRootNode parse(String contentTypeId, IParseState parseState) throws Exception // $codepro.audit.disable
@@ -172,7 +213,7 @@ public class ParsingEngine
 			}
 			IParseStateCacheKey newParseStateKey = parseState.getCacheKey(contentTypeId);
 			CacheValue cacheValue = null;
-			LRUCache<IParseStateCacheKey, CacheValue> parseCache = fParseCache;
+			ParseCache<CacheValue> parseCache = fParseCache;
 			if (parseCache == null)
 			{
 				return null; // already disposed.
@@ -189,6 +230,8 @@ public class ParsingEngine
 					cacheValue = parseCache.get(newParseStateKey);
 					if (cacheValue != null && !cacheValue.requiresReparse(newParseStateKey))
 					{
+						parseCache.recordHit(contentTypeId);
+
 						// Cache hit... it may still be in progress, but the cacheValue.getResult should handle that
 						// (but we'll get out of the synchronized block to actually do that).
 						getResultFromCache = true;
@@ -196,6 +239,7 @@ public class ParsingEngine
 					else
 					{
 						// No cache-hit, we'll do the parsing here.
+						parseCache.recordMiss(contentTypeId);
 						pool = fParserPoolProvider.getParserPool(contentTypeId);
 
 						// If we won't be able to do the parsing because we're unable to get the pool or the
@@ -224,7 +268,7 @@ public class ParsingEngine
 						// not match the one in the cache for this key (i.e.: parse without comments and later with
 						// comments).
 						cacheValue = new CacheValue(newParseStateKey, parseState);
-						parseCache.put(newParseStateKey, cacheValue);
+						parseCache.put(contentTypeId, newParseStateKey, cacheValue);
 						// Important: after we put it here (in the situation getResultFromCache), we MUST have a result
 						// cacheValue.setResult(), otherwise we may end up with a listener waiting eternally for a
 						// result.
@@ -282,6 +326,14 @@ public class ParsingEngine
 					// deadlocks because of that).
 					cacheValue.setResult(ast);
 				}
+
+				// Now that we know how big the AST is, charge it against the cache budget.
+				int nodes = ParseCache.countNodes(ast);
+				synchronized (fParseCacheLock)
+				{
+					parseCache.setFootprint(newParseStateKey, cacheValue,
+							ParseCache.estimateBytes(cacheValue.fSourceLength, nodes), nodes);
+				}
 				return ast;
 			}
 		}
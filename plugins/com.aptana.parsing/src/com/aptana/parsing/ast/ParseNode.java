@@ -21,7 +21,7 @@ import com.aptana.parsing.ParsingPlugin;
 import com.aptana.parsing.lexer.IRange;
 import com.aptana.parsing.lexer.Range;
 
-public class ParseNode extends Node implements IParseNode
+public class ParseNode extends Node implements IParseNode, Cloneable
 {
 	protected static final class NameNode implements INameNode
 	{
@@ -120,6 +120,55 @@ public class ParseNode extends Node implements IParseNode
 		return this.getStartingOffset() <= offset && offset <= this.getEndingOffset();
 	}
 
+	/**
+	 * Returns a copy of this node and of all its descendants, without a parent. The copy can be modified without
+	 * affecting this node. Sub-classes that keep references to other nodes must override this method so the copy
+	 * refers to the copied nodes.
+	 * 
+	 * @return
+	 */
+	public ParseNode deepCopy()
+	{
+		IParseNode[] children = new IParseNode[fChildrenCount];
+
+		for (int i = 0; i < fChildrenCount; i++)
+		{
+			IParseNode child = fChildren[i];
+
+			children[i] = (child instanceof ParseNode) ? ((ParseNode) child).deepCopy() : child;
+		}
+
+		return copy(children);
+	}
+
+	/**
+	 * Returns a copy of this node, without a parent, that has the specified children instead of this node's. This lets
+	 * a changed version of a tree reuse the subtrees that didn't change. Note the children become children of the copy,
+	 * so their parent is the copy from then on.
+	 * 
+	 * @param children
+	 * @return
+	 */
+	public ParseNode copy(IParseNode[] children)
+	{
+		ParseNode copy;
+
+		try
+		{
+			copy = (ParseNode) clone();
+		}
+		catch (CloneNotSupportedException e)
+		{
+			// we are Cloneable
+			throw new IllegalStateException(e);
+		}
+
+		copy.fParent = null;
+		copy.setChildren(children);
+
+		return copy;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see java.lang.Object#equals(java.lang.Object)
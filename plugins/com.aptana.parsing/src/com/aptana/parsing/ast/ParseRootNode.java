@@ -35,6 +35,32 @@ public class ParseRootNode extends ParseNode implements IParseRootNode
 		fComments = NO_CHILDREN;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#deepCopy()
+	 */
+	@Override
+	public ParseNode deepCopy()
+	{
+		ParseRootNode copy = (ParseRootNode) super.deepCopy();
+
+		if (fComments != null && fComments.length > 0)
+		{
+			IParseNode[] comments = new IParseNode[fComments.length];
+
+			for (int i = 0; i < fComments.length; i++)
+			{
+				IParseNode comment = fComments[i];
+
+				comments[i] = (comment instanceof ParseNode) ? ((ParseNode) comment).deepCopy() : comment;
+			}
+
+			copy.fComments = comments;
+		}
+
+		return copy;
+	}
+
 	public IParseNode[] getCommentNodes()
 	{
 		return fComments;
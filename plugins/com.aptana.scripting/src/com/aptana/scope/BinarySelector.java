@@ -7,14 +7,10 @@
  */
 package com.aptana.scope;
 
-import java.util.Collections;
-import java.util.List;
-
 public abstract class BinarySelector extends SelectorNode
 {
 	protected ISelectorNode _left;
 	protected ISelectorNode _right;
-	protected List<Integer> matchResults;
 
 	/**
 	 * NegativeLookaheadSelector
@@ -38,19 +34,6 @@ public abstract class BinarySelector extends SelectorNode
 		return this._left;
 	}
 
-	/**
-	 * matchResults
-	 */
-	public List<Integer> getMatchResults()
-	{
-		if (matchResults == null)
-		{
-			return Collections.emptyList();
-		}
-
-		return matchResults;
-	}
-
 	/**
 	 * getOperator
 	 */
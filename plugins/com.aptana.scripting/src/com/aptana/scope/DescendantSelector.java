@@ -8,6 +8,7 @@
 package com.aptana.scope;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import com.aptana.core.util.StringUtil;
 
@@ -39,7 +40,6 @@ public class DescendantSelector extends BinarySelector
 	 */
 	public boolean matches(MatchContext context)
 	{
-		matchResults = null;
 		boolean result = false;
 
 		if (context != null && this._left != null && this._right != null)
@@ -48,19 +48,15 @@ public class DescendantSelector extends BinarySelector
 
 			if (this._left.matches(context))
 			{
-				matchResults = this._left.getMatchResults();
-
-				if (matchResults.isEmpty())
-				{
-					matchResults = new ArrayList<Integer>();
-				}
+				List<Integer> matchResults = new ArrayList<Integer>(context.getMatchResults());
 
 				while (true)
 				{
 					if (this._right.matches(context))
 					{
 						// matched at current step, append match results
-						matchResults.addAll(this._right.getMatchResults());
+						matchResults.addAll(context.getMatchResults());
+						context.setMatchResults(matchResults);
 						result = true;
 						break;
 					}
@@ -7,8 +7,6 @@
  */
 package com.aptana.scope;
 
-import java.util.List;
-
 import com.aptana.core.util.StringUtil;
 
 /**
@@ -38,16 +36,6 @@ public class GroupSelector extends SelectorNode
 		return child;
 	}
 
-	/*
-	 * (non-Javadoc)
-	 * @see com.aptana.scope.SelectorNode#matchResults()
-	 */
-	@Override
-	public List<Integer> getMatchResults()
-	{
-		return (child != null) ? child.getMatchResults() : super.getMatchResults();
-	}
-
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.scope.SelectorNode#matches(com.aptana.scope.MatchContext)
@@ -25,6 +25,16 @@ public interface IScopeSelector extends Comparable<IScopeSelector>
 	 */
 	List<Integer> getMatchResults();
 
+	/**
+	 * Matches this selector against the specified scope and returns the match results as described in
+	 * {@link #getMatchResults()}. Unlike {@link #matches(String)} nothing is remembered on the selector, so this is safe
+	 * to call on a selector shared between threads.
+	 * 
+	 * @param scope
+	 * @return the match results, or null if this selector doesn't match the scope
+	 */
+	List<Integer> match(String scope);
+
 	/**
 	 * Determines if this selector matches the specified scope
 	 * 
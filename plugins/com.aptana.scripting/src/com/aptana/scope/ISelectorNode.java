@@ -7,20 +7,15 @@
  */
 package com.aptana.scope;
 
-import java.util.List;
-
+/**
+ * A node of a parsed scope selector. Nodes hold no matching state so a selector can be shared between threads; the
+ * results of a match are handed back through the {@link MatchContext} instead.
+ */
 public interface ISelectorNode
 {
 	/**
-	 * See {@link IScopeSelector#getMatchResults()}. Should never return null, if there are no matches, return an empty
-	 * List.
-	 * 
-	 * @return
-	 */
-	List<Integer> getMatchResults();
-
-	/**
-	 * Determines if this selector node matches the current scope as encapsulated in the MatchContext
+	 * Determines if this selector node matches the current scope as encapsulated in the MatchContext. On success the
+	 * node records its match results on the context, see {@link MatchContext#getMatchResults()}.
 	 * 
 	 * @param context
 	 * @return
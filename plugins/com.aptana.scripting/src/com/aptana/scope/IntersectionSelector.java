@@ -8,6 +8,7 @@
 package com.aptana.scope;
 
 import java.util.ArrayList;
+import java.util.List;
 
 public class IntersectionSelector extends BinarySelector
 {
@@ -37,7 +38,6 @@ public class IntersectionSelector extends BinarySelector
 	 */
 	public boolean matches(MatchContext context)
 	{
-		matchResults = null;
 		boolean result = false;
 
 		if (context != null && this._left != null && this._right != null)
@@ -46,23 +46,15 @@ public class IntersectionSelector extends BinarySelector
 
 			if (this._left.matches(context))
 			{
-				matchResults = this._left.getMatchResults();
-
-				if (matchResults.isEmpty())
-				{
-					matchResults = new ArrayList<Integer>();
-				}
+				List<Integer> matchResults = new ArrayList<Integer>(context.getMatchResults());
 
 				if (this._right.matches(context))
 				{
 					// matched at current step, append match results
-					matchResults.addAll(this._right.getMatchResults());
+					matchResults.addAll(context.getMatchResults());
+					context.setMatchResults(matchResults);
 					result = true;
 				}
-				else
-				{
-					matchResults = null;
-				}
 			}
 
 			context.popCurrentStep(!result);
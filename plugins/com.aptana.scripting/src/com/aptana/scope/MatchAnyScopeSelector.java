@@ -56,6 +56,15 @@ public class MatchAnyScopeSelector implements IScopeSelector
 		return Collections.emptyList();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.scope.IScopeSelector#match(java.lang.String)
+	 */
+	public List<Integer> match(String scope)
+	{
+		return Collections.emptyList();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.scope.IScopeSelector#matches(java.lang.String)
@@ -7,9 +7,15 @@
  */
 package com.aptana.scope;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Stack;
 import java.util.regex.Pattern;
 
+/**
+ * The state of a single match of a scope selector against a scope. A context is only ever used by one thread, which is
+ * what allows the selector nodes themselves to be shared.
+ */
 public class MatchContext
 {
 	private static final Pattern spaces = Pattern.compile("\\s+"); //$NON-NLS-1$
@@ -17,6 +23,7 @@ public class MatchContext
 	private String[] _steps;
 	private int _currentIndex;
 	private Stack<Integer> _savedPositions;
+	private List<Integer> _matchResults;
 
 	/**
 	 * MatchContext
@@ -25,9 +32,31 @@ public class MatchContext
 	 */
 	MatchContext(String scope)
 	{
-		this._steps = (scope != null) ? spaces.split(scope) : new String[0];
-		this._currentIndex = this._steps.length - 1;
+		this(split(scope));
+	}
+
+	/**
+	 * MatchContext
+	 * 
+	 * @param steps
+	 *            the space-delimited parts of the scope, see {@link #split(String)}
+	 */
+	MatchContext(String[] steps)
+	{
+		this._steps = steps;
 		this._savedPositions = new Stack<Integer>();
+		this.reset();
+	}
+
+	/**
+	 * Breaks a scope into its space-delimited parts.
+	 * 
+	 * @param scope
+	 * @return
+	 */
+	static String[] split(String scope)
+	{
+		return (scope != null) ? spaces.split(scope) : new String[0];
 	}
 
 	/**
@@ -73,6 +102,32 @@ public class MatchContext
 		return result;
 	}
 
+	/**
+	 * Returns the match results recorded by the last selector node that matched. Never null.
+	 * 
+	 * @return
+	 */
+	public List<Integer> getMatchResults()
+	{
+		if (this._matchResults == null)
+		{
+			return Collections.emptyList();
+		}
+
+		return this._matchResults;
+	}
+
+	/**
+	 * Records the match results of a selector node that matched, see {@link IScopeSelector#getMatchResults()}. Nodes
+	 * that combine the results of their children must pass in a new list rather than modify a child's list.
+	 * 
+	 * @param matchResults
+	 */
+	public void setMatchResults(List<Integer> matchResults)
+	{
+		this._matchResults = matchResults;
+	}
+
 	/**
 	 * Return the number of steps within this context
 	 * 
@@ -119,6 +174,17 @@ public class MatchContext
 		this._savedPositions.push(this._currentIndex);
 	}
 
+	/**
+	 * Move back to the last step and forget any saved positions and match results, so this context can be reused to
+	 * match another selector against the same scope.
+	 */
+	void reset()
+	{
+		this._currentIndex = this._steps.length - 1;
+		this._savedPositions.clear();
+		this._matchResults = null;
+	}
+
 	public String toString()
 	{
 		return this.getCurrentStep();
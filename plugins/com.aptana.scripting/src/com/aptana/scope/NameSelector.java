@@ -7,15 +7,12 @@
  */
 package com.aptana.scope;
 
-import java.util.List;
-
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.StringUtil;
 
 public class NameSelector extends SelectorNode
 {
 	private String _name;
-	private int matchLength = 0;
 
 	/**
 	 * NameSelector
@@ -27,19 +24,12 @@ public class NameSelector extends SelectorNode
 		this._name = name;
 	}
 
-	public List<Integer> getMatchResults()
-	{
-		// This is always just one segment, so only one value, and it is the length of this match
-		return CollectionsUtil.newList(matchLength);
-	}
-
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.scope.ISelectorNode#matches(com.aptana.scope.MatchContext)
 	 */
 	public boolean matches(MatchContext context)
 	{
-		matchLength = 0;
 		boolean result = false;
 
 		if (context != null && !StringUtil.isEmpty(this._name))
@@ -56,7 +46,8 @@ public class NameSelector extends SelectorNode
 				if (scopeLength == nameLength || step.charAt(nameLength) == '.')
 				{
 					result = true;
-					matchLength = nameLength;
+					// This is always just one segment, so only one value, and it is the length of this match
+					context.setMatchResults(CollectionsUtil.newList(nameLength));
 					context.advance();
 				}
 			}
@@ -7,6 +7,8 @@
  */
 package com.aptana.scope;
 
+import java.util.List;
+
 public class NegativeLookaheadSelector extends BinarySelector
 {
 	/**
@@ -35,7 +37,6 @@ public class NegativeLookaheadSelector extends BinarySelector
 	 */
 	public boolean matches(MatchContext context)
 	{
-		matchResults = null;
 		boolean result = true;
 
 		if (context != null && this._left != null && this._right != null)
@@ -45,6 +46,7 @@ public class NegativeLookaheadSelector extends BinarySelector
 
 			// we have to match the left-hand side
 			result = this._left.matches(context);
+			List<Integer> matchResults = context.getMatchResults();
 
 			// if we've matched so far, we have to make sure nothing to the right of the current position matches the
 			// rhs, our lookahead
@@ -76,7 +78,6 @@ public class NegativeLookaheadSelector extends BinarySelector
 					else
 					{
 						// oops, we got a match, so this selector fails
-						matchResults = null;
 						break;
 					}
 				}
@@ -87,7 +88,8 @@ public class NegativeLookaheadSelector extends BinarySelector
 
 			if (result)
 			{
-				matchResults = this._left.getMatchResults();
+				// the lookahead may have replaced them
+				context.setMatchResults(matchResults);
 			}
 
 			// restore original context position if matching failed
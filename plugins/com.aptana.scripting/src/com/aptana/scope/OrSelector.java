@@ -56,7 +56,6 @@ public class OrSelector extends BinarySelector
 	 */
 	public boolean matches(MatchContext context)
 	{
-		matchResults = null;
 		boolean result = false;
 
 		if (context != null)
@@ -65,21 +64,12 @@ public class OrSelector extends BinarySelector
 
 			if (this._left != null)
 			{
+				// the matching side leaves its results on the context
 				result = this._left.matches(context);
 
-				if (result)
-				{
-					matchResults = this._left.getMatchResults();
-				}
-
 				if (result == false && this._right != null)
 				{
 					result = this._right.matches(context);
-
-					if (result)
-					{
-						matchResults = this._right.getMatchResults();
-					}
 				}
 			}
 
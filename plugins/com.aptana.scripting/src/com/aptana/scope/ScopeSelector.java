@@ -12,7 +12,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import beaver.Symbol;
 
@@ -45,22 +47,25 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 
 		if (!CollectionsUtil.isEmpty(selectors))
 		{
-			List<IScopeSelector> reversed = new ArrayList<IScopeSelector>(selectors);
-
-			Collections.reverse(reversed);
+			// the scope is split once and the context reused for every selector
+			MatchContext context = new MatchContext(scope);
+			List<Integer> bestResults = null;
 
-			for (IScopeSelector selector : reversed)
+			for (IScopeSelector selector : selectors)
 			{
-				if (selector != null && selector.matches(scope))
+				if (selector == null)
+				{
+					continue;
+				}
+
+				List<Integer> results = (selector instanceof ScopeSelector) ? ((ScopeSelector) selector)
+						.match(context) : selector.match(scope);
+
+				// ties go to the selector that comes last
+				if (results != null && (bestMatch == null || compare(selector, results, bestMatch, bestResults) >= 0))
 				{
-					if (bestMatch == null)
-					{
-						bestMatch = selector;
-					}
-					else if (selector.compareTo(bestMatch) > 0)
-					{
-						bestMatch = selector;
-					}
+					bestMatch = selector;
+					bestResults = results;
 				}
 			}
 		}
@@ -68,6 +73,22 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 		return bestMatch;
 	}
 
+	/**
+	 * Compares the results of two selectors that matched the same scope, following the rules of
+	 * {@link #bestMatch(Collection, String)}.
+	 * 
+	 * @return a positive value if the first selector is the better match, negative if the second one is, 0 for a tie
+	 */
+	static int compare(IScopeSelector selector, List<Integer> results, IScopeSelector other, List<Integer> otherResults)
+	{
+		if (selector instanceof MatchAnyScopeSelector)
+		{
+			return (other instanceof MatchAnyScopeSelector) ? 0 : -1;
+		}
+
+		return compare(results, otherResults);
+	}
+
 	private static int compare(List<Integer> results, List<Integer> matchResults)
 	{
 		// offset in list is offset of space-delimited part
@@ -75,32 +96,15 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 		// winner is the one with longest deepest match
 		// so first look for highest offset with a non-zero value
 
-		// if lists are not of same length, expand smaller one to match by filling with zeros
-		while (results.size() > matchResults.size())
-		{
-			if (matchResults.isEmpty())
-			{
-				matchResults = new ArrayList<Integer>();
-			}
-
-			matchResults.add(0);
-		}
-
-		while (matchResults.size() > results.size())
-		{
-			if (results.isEmpty())
-			{
-				results = new ArrayList<Integer>();
-			}
-
-			results.add(0);
-		}
+		// if lists are not of same length, the shorter one counts as filled up with zeros
+		int resultsSize = results.size();
+		int matchResultsSize = matchResults.size();
 
 		// So starting at the end of the lists, look for the highest match length, ties go back an offset to be broken
-		for (int i = results.size() - 1; i >= 0; i--)
+		for (int i = Math.max(resultsSize, matchResultsSize) - 1; i >= 0; i--)
 		{
-			int firstVal = results.get(i);
-			int secondVal = matchResults.get(i);
+			int firstVal = (i < resultsSize) ? results.get(i) : 0;
+			int secondVal = (i < matchResultsSize) ? matchResults.get(i) : 0;
 
 			// If one of the two has a longer match at the offset, it wins
 			if (firstVal != secondVal)
@@ -113,7 +117,8 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 	}
 
 	/**
-	 * Sorts the matching bundle elements from "worst" match to "best" match.
+	 * Sorts the matching bundle elements from "worst" match to "best" match. This relies on the results of the last
+	 * call to {@link #matches(String)} on each element's selector; prefer {@link #sort(List, String)}.
 	 * 
 	 * @param bundleElements
 	 */
@@ -131,8 +136,55 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 		}
 	}
 
+	/**
+	 * Sorts the bundle elements from "worst" match to "best" match against the given scope. Each selector is matched
+	 * once and nothing is stored on the selectors, so this is safe to use on shared elements.
+	 * 
+	 * @param bundleElements
+	 * @param scope
+	 */
+	public static void sort(List<? extends AbstractBundleElement> bundleElements, String scope)
+	{
+		if (!CollectionsUtil.isEmpty(bundleElements))
+		{
+			final MatchContext context = new MatchContext(scope);
+			final Map<AbstractBundleElement, List<Integer>> results = new IdentityHashMap<AbstractBundleElement, List<Integer>>();
+
+			for (AbstractBundleElement element : bundleElements)
+			{
+				IScopeSelector selector = element.getScopeSelector();
+				List<Integer> elementResults = null;
+
+				if (selector instanceof ScopeSelector)
+				{
+					elementResults = ((ScopeSelector) selector).match(context);
+				}
+				else if (selector != null)
+				{
+					elementResults = selector.match(scope);
+				}
+
+				results.put(element, (elementResults != null) ? elementResults : Collections.<Integer> emptyList());
+			}
+
+			Collections.sort(bundleElements, new Comparator<AbstractBundleElement>()
+			{
+				public int compare(AbstractBundleElement o1, AbstractBundleElement o2)
+				{
+					return ScopeSelector.compare(o1.getScopeSelector(), results.get(o1), o2.getScopeSelector(),
+							results.get(o2));
+				}
+			});
+		}
+	}
+
 	private ISelectorNode _root;
-	private List<Integer> matchResults;
+
+	/**
+	 * Results of the last call to {@link #matches(String)}, only kept for {@link #getMatchResults()}. Matching itself
+	 * doesn't depend on it.
+	 */
+	private volatile List<Integer> matchResults;
 
 	/**
 	 * Lazily cache the toString() value solely for performance reasons. We call toString() in equals(), hashCode(),
@@ -162,7 +214,7 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 
 	public int compareTo(IScopeSelector o)
 	{
-		return compare(matchResults, o.getMatchResults());
+		return compare(getMatchResults(), o.getMatchResults());
 	}
 
 	@Override
@@ -178,12 +230,14 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 
 	public List<Integer> getMatchResults()
 	{
-		if (matchResults == null)
+		List<Integer> results = matchResults;
+
+		if (results == null)
 		{
 			return Collections.emptyList();
 		}
 
-		return matchResults;
+		return results;
 	}
 
 	/**
@@ -208,49 +262,80 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 	 */
 	public boolean matches(String scope)
 	{
-		matchResults = new ArrayList<Integer>();
-		boolean result = false;
+		List<Integer> results = match(scope);
+
+		matchResults = results;
 
-		if (this._root != null && scope != null)
+		return results != null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.scope.IScopeSelector#match(java.lang.String)
+	 */
+	public List<Integer> match(String scope)
+	{
+		if (this._root == null || scope == null)
 		{
-			MatchContext context = new MatchContext(scope);
+			return null;
+		}
+
+		return match(new MatchContext(scope));
+	}
+
+	/**
+	 * Matches against the scope held by the given context, which is reset first so one context can be used for several
+	 * selectors.
+	 * 
+	 * @param context
+	 * @return the match results, or null if this selector doesn't match
+	 */
+	List<Integer> match(MatchContext context)
+	{
+		if (this._root == null)
+		{
+			return null;
+		}
 
-			for (int i = 0; i < context.getLength(); i++)
+		context.reset();
+
+		int length = context.getLength();
+		List<Integer> results = new ArrayList<Integer>(length);
+
+		for (int i = 0; i < length; i++)
+		{
+			// save current position so we can advance later
+			context.pushCurrentStep();
+
+			// see if we match at this point within the context
+			if (this._root.matches(context))
 			{
-				// save current position so we can advance later
-				context.pushCurrentStep();
+				// Add match results. If more than one value, we need to replace existing zeros in our list...
+				List<Integer> tmpResults = context.getMatchResults();
+				int toRemove = tmpResults.size() - 1;
+				for (int x = 0; x < toRemove; x++)
+				{
+					results.remove(0);
+				}
+				results.addAll(0, tmpResults);
 
-				// see if we match at this point within the context
-				if (this._root.matches(context))
+				// Fill with preceding zeros.
+				while (results.size() < length)
 				{
-					// Add match results. If more than one value, we need to replace existing zeros in our list...
-					Collection<Integer> tmpResults = this._root.getMatchResults();
-					int toRemove = tmpResults.size() - 1;
-					for (int x = 0; x < toRemove; x++)
-					{
-						matchResults.remove(0);
-					}
-					matchResults.addAll(0, tmpResults);
-
-					// Fill with preceding zeros.
-					while (matchResults.size() < context.getLength())
-					{
-						matchResults.add(0, 0);
-					}
-
-					// we matched, so report success and stop looking for a match
-					result = true;
-					break;
+					results.add(0, 0);
 				}
-				matchResults.add(0, 0); // Add a non-match
 
-				// restore position where we started and move forward one
-				context.popCurrentStep();
-				context.backup();
+				// we matched, so report success and stop looking for a match
+				return results;
 			}
+			results.add(0, 0); // Add a non-match
+
+			// restore position where we started and move forward one
+			context.popCurrentStep();
+			context.backup();
 		}
 
-		return result;
+		return null;
 	}
 
 	/*
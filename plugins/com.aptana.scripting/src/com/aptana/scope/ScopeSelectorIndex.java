@@ -0,0 +1,303 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.scope;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.aptana.core.util.StringUtil;
+
+/**
+ * An immutable index from scope selectors to values that resolves a scope to the value of its best matching selector,
+ * using the same rules as {@link ScopeSelector#bestMatch(java.util.Collection, String)}.
+ * <p>
+ * Every name in a scope selector can only match a scope part with the same first segment ("string.quoted" only
+ * matches parts starting with "string"). Selectors are therefore filed under the first segments they need, and only
+ * the selectors filed under the first segments of the scope's parts are tried. Results are memoized per scope.
+ * </p>
+ * 
+ * @param <T>
+ *            the type of the values
+ */
+public class ScopeSelectorIndex<T>
+{
+	private static final int MAX_MEMOIZED_SCOPES = 500;
+
+	/**
+	 * Memoized marker for a scope no selector matches.
+	 */
+	private static final Object NO_MATCH = new Object();
+
+	private final List<Entry<T>> entries;
+	private final Map<String, List<Entry<T>>> entriesByName;
+	private final List<Entry<T>> unindexedEntries;
+	private final Map<String, Object> bestMatches;
+
+	/**
+	 * Builds the index. Ties between equally good selectors go to the one that comes last in the map's iteration order,
+	 * like they do for {@link ScopeSelector#bestMatch(java.util.Collection, String)} on its key set.
+	 * 
+	 * @param elements
+	 */
+	public ScopeSelectorIndex(Map<? extends IScopeSelector, T> elements)
+	{
+		this.entries = new ArrayList<Entry<T>>(elements.size());
+		this.entriesByName = new HashMap<String, List<Entry<T>>>();
+		this.unindexedEntries = new ArrayList<Entry<T>>();
+		this.bestMatches = new LinkedHashMap<String, Object>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Object> eldest)
+			{
+				return size() > MAX_MEMOIZED_SCOPES;
+			}
+		};
+
+		for (Map.Entry<? extends IScopeSelector, T> element : elements.entrySet())
+		{
+			IScopeSelector selector = element.getKey();
+
+			if (selector == null)
+			{
+				continue;
+			}
+
+			Entry<T> entry = new Entry<T>(entries.size(), selector, element.getValue());
+			Set<String> names = (selector instanceof ScopeSelector) ? getRequiredNames(((ScopeSelector) selector)
+					.getRoot()) : null;
+
+			entries.add(entry);
+
+			if (names == null)
+			{
+				unindexedEntries.add(entry);
+			}
+			else
+			{
+				for (String name : names)
+				{
+					List<Entry<T>> list = entriesByName.get(name);
+
+					if (list == null)
+					{
+						list = new ArrayList<Entry<T>>(2);
+						entriesByName.put(name, list);
+					}
+
+					list.add(entry);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the value of the selector best matching the given scope, or null if none matches.
+	 * 
+	 * @param scope
+	 * @return
+	 */
+	public T getBestMatch(String scope)
+	{
+		Entry<T> entry = getBestMatchingEntry(scope);
+
+		return (entry != null) ? entry.value : null;
+	}
+
+	/**
+	 * Returns the selector best matching the given scope, or null if none matches.
+	 * 
+	 * @param scope
+	 * @return
+	 */
+	public IScopeSelector getBestMatchingSelector(String scope)
+	{
+		Entry<T> entry = getBestMatchingEntry(scope);
+
+		return (entry != null) ? entry.selector : null;
+	}
+
+	public boolean isEmpty()
+	{
+		return entries.isEmpty();
+	}
+
+	public int size()
+	{
+		return entries.size();
+	}
+
+	@SuppressWarnings("unchecked")
+	private Entry<T> getBestMatchingEntry(String scope)
+	{
+		if (entries.isEmpty())
+		{
+			return null;
+		}
+
+		Object memoized;
+
+		synchronized (bestMatches)
+		{
+			memoized = bestMatches.get(scope);
+		}
+
+		if (memoized == null)
+		{
+			Entry<T> entry = findBestMatch(scope);
+
+			memoized = (entry != null) ? entry : NO_MATCH;
+
+			synchronized (bestMatches)
+			{
+				bestMatches.put(scope, memoized);
+			}
+		}
+
+		return (memoized == NO_MATCH) ? null : (Entry<T>) memoized;
+	}
+
+	private Entry<T> findBestMatch(String scope)
+	{
+		String[] steps = MatchContext.split(scope);
+		MatchContext context = new MatchContext(steps);
+		boolean[] tried = new boolean[entries.size()];
+		Entry<T> bestMatch = null;
+		List<Integer> bestResults = null;
+
+		for (int i = 0; i <= steps.length; i++)
+		{
+			// the unindexed selectors are tried along with the parts of the scope
+			List<Entry<T>> candidates = (i < steps.length) ? entriesByName.get(getFirstSegment(steps[i]))
+					: unindexedEntries;
+
+			if (candidates == null)
+			{
+				continue;
+			}
+
+			for (Entry<T> candidate : candidates)
+			{
+				if (tried[candidate.ordinal])
+				{
+					continue;
+				}
+				tried[candidate.ordinal] = true;
+
+				IScopeSelector selector = candidate.selector;
+				List<Integer> results = (selector instanceof ScopeSelector) ? ((ScopeSelector) selector)
+						.match(context) : selector.match(scope);
+
+				if (results == null)
+				{
+					continue;
+				}
+
+				if (bestMatch == null)
+				{
+					bestMatch = candidate;
+					bestResults = results;
+				}
+				else
+				{
+					int comparison = ScopeSelector.compare(selector, results, bestMatch.selector, bestResults);
+
+					// ties go to the selector that comes last
+					if (comparison > 0 || (comparison == 0 && candidate.ordinal > bestMatch.ordinal))
+					{
+						bestMatch = candidate;
+						bestResults = results;
+					}
+				}
+			}
+		}
+
+		return bestMatch;
+	}
+
+	/**
+	 * Returns the first segments of names of which at least one has to be present in a scope for the node to match it,
+	 * or null if no such set can be given.
+	 * 
+	 * @param node
+	 * @return
+	 */
+	private static Set<String> getRequiredNames(ISelectorNode node)
+	{
+		if (node instanceof NameSelector)
+		{
+			String name = getFirstSegment(node.toString());
+
+			return (name.length() > 0) ? Collections.singleton(name) : null;
+		}
+		if (node instanceof GroupSelector)
+		{
+			return getRequiredNames(((GroupSelector) node).getChild());
+		}
+		if (node instanceof OrSelector)
+		{
+			Set<String> left = getRequiredNames(((OrSelector) node).getLeftChild());
+			Set<String> right = getRequiredNames(((OrSelector) node).getRightChild());
+
+			if (left == null || right == null)
+			{
+				return null;
+			}
+
+			Set<String> names = new HashSet<String>(left);
+			names.addAll(right);
+			return names;
+		}
+		if (node instanceof NegativeLookaheadSelector)
+		{
+			return getRequiredNames(((BinarySelector) node).getLeftChild());
+		}
+		if (node instanceof DescendantSelector || node instanceof IntersectionSelector)
+		{
+			// both sides have to match, prefer the deepest one
+			Set<String> names = getRequiredNames(((BinarySelector) node).getRightChild());
+
+			return (names != null) ? names : getRequiredNames(((BinarySelector) node).getLeftChild());
+		}
+
+		return null;
+	}
+
+	private static String getFirstSegment(String name)
+	{
+		if (name == null)
+		{
+			return StringUtil.EMPTY;
+		}
+
+		int index = name.indexOf('.');
+
+		return (index == -1) ? name : name.substring(0, index);
+	}
+
+	private static final class Entry<T>
+	{
+		private final int ordinal;
+		private final IScopeSelector selector;
+		private final T value;
+
+		private Entry(int ordinal, IScopeSelector selector, T value)
+		{
+			this.ordinal = ordinal;
+			this.selector = selector;
+			this.value = value;
+		}
+	}
+}
@@ -7,9 +7,6 @@
  */
 package com.aptana.scope;
 
-import java.util.Collections;
-import java.util.List;
-
 import beaver.Symbol;
 
 /**
@@ -17,15 +14,6 @@ import beaver.Symbol;
  */
 public class SelectorNode extends Symbol implements ISelectorNode
 {
-	/*
-	 * (non-Javadoc)
-	 * @see com.aptana.scope.ISelectorNode#matchResults()
-	 */
-	public List<Integer> getMatchResults()
-	{
-		return Collections.emptyList();
-	}
-
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.scope.ISelectorNode#matches(com.aptana.scope.MatchContext)
@@ -11,15 +11,17 @@ import java.io.File;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import net.contentobjects.jnotify.IJNotify;
 import net.contentobjects.jnotify.JNotifyException;
-import net.contentobjects.jnotify.JNotifyListener;
 
 import com.aptana.core.logging.IdeLog;
+import com.aptana.filewatcher.FileEvent;
 import com.aptana.filewatcher.FileWatcher;
+import com.aptana.filewatcher.IFileEventBatchListener;
 import com.aptana.scripting.ScriptingActivator;
 import com.aptana.scripting.model.AbstractElement;
 import com.aptana.scripting.model.BundleManager;
@@ -31,7 +33,7 @@ import com.aptana.scripting.model.TriggerType;
 /**
  * FileWatcherRegistrant
  */
-public class FileWatcherRegistrant implements ElementVisibilityListener, JNotifyListener
+public class FileWatcherRegistrant implements ElementVisibilityListener, IFileEventBatchListener
 {
 	private static FileWatcherRegistrant INSTANCE;
 
@@ -192,100 +194,72 @@ public class FileWatcherRegistrant implements ElementVisibilityListener, JNotify
 	}
 
 	/**
-	 * execute
+	 * createPropertyMap
 	 * 
-	 * @param wd
-	 * @param type
-	 * @param properties
+	 * @param event
+	 * @return
 	 */
-	private void execute(int wd, String type, String... properties)
+	/* package */static Map<String, String> createPropertyMap(FileEvent event)
 	{
-		// create property map
 		Map<String, String> propertyMap = new HashMap<String, String>();
 
-		// add type
-		propertyMap.put("type", type); //$NON-NLS-1$
+		propertyMap.put("rootPath", event.getRootPath()); //$NON-NLS-1$
 
-		// add optional key/values
-		int length = properties.length & ~0x01;
-
-		for (int i = 0; i < length; i += 2)
+		switch (event.getType())
 		{
-			String name = properties[i];
-			String value = properties[i + 1];
-
-			propertyMap.put(name, value);
+			case IJNotify.FILE_CREATED:
+				propertyMap.put("type", "created"); //$NON-NLS-1$ //$NON-NLS-2$
+				propertyMap.put("name", event.getName()); //$NON-NLS-1$
+				break;
+
+			case IJNotify.FILE_DELETED:
+				propertyMap.put("type", "deleted"); //$NON-NLS-1$ //$NON-NLS-2$
+				propertyMap.put("name", event.getName()); //$NON-NLS-1$
+				break;
+
+			case IJNotify.FILE_MODIFIED:
+				propertyMap.put("type", "modified"); //$NON-NLS-1$ //$NON-NLS-2$
+				propertyMap.put("name", event.getName()); //$NON-NLS-1$
+				break;
+
+			default:
+				propertyMap.put("type", "deleted"); //$NON-NLS-1$ //$NON-NLS-2$
+				propertyMap.put("oldName", event.getOldName()); //$NON-NLS-1$
+				propertyMap.put("newName", event.getName()); //$NON-NLS-1$
+				break;
 		}
 
-		// get commands for this watch id
-		Set<CommandElement> commands = this.getCommandsByWatchId(wd);
-
-		// and execute each
-		for (CommandElement command : commands)
-		{
-			CommandContext context = command.createCommandContext();
-
-			context.put(TriggerType.FILE_WATCHER.getName(), propertyMap);
-			command.execute(context);
-		}
+		return propertyMap;
 	}
 
 	/*
 	 * (non-Javadoc)
-	 * @see net.contentobjects.jnotify.JNotifyListener#fileCreated(int, java.lang.String, java.lang.String)
+	 * @see com.aptana.filewatcher.IFileEventBatchListener#filesChanged(java.util.List)
 	 */
-	public void fileCreated(int wd, String rootPath, String name)
+	public void filesChanged(List<FileEvent> events)
 	{
-		this.execute( //
-			wd, //
-			"created", // //$NON-NLS-1$
-			"rootPath", rootPath, // //$NON-NLS-1$
-			"name", name // //$NON-NLS-1$
-		);
-	}
+		// the batch holds at most one event per file, each still runs the commands on its own
+		for (FileEvent event : events)
+		{
+			// get commands for this watch id
+			Set<CommandElement> commands = this.getCommandsByWatchId(event.getWatchId());
 
-	/*
-	 * (non-Javadoc)
-	 * @see net.contentobjects.jnotify.JNotifyListener#fileDeleted(int, java.lang.String, java.lang.String)
-	 */
-	public void fileDeleted(int wd, String rootPath, String name)
-	{
-		this.execute( //
-			wd, //
-			"deleted", // //$NON-NLS-1$
-			"rootPath", rootPath, // //$NON-NLS-1$
-			"name", name // //$NON-NLS-1$
-		);
-	}
+			if (commands.isEmpty())
+			{
+				continue;
+			}
 
-	/*
-	 * (non-Javadoc)
-	 * @see net.contentobjects.jnotify.JNotifyListener#fileModified(int, java.lang.String, java.lang.String)
-	 */
-	public void fileModified(int wd, String rootPath, String name)
-	{
-		this.execute( //
-			wd, //
-			"modified", // //$NON-NLS-1$
-			"rootPath", rootPath, // //$NON-NLS-1$
-			"name", name // //$NON-NLS-1$
-		);
-	}
+			Map<String, String> propertyMap = createPropertyMap(event);
 
-	/*
-	 * (non-Javadoc)
-	 * @see net.contentobjects.jnotify.JNotifyListener#fileRenamed(int, java.lang.String, java.lang.String,
-	 * java.lang.String)
-	 */
-	public void fileRenamed(int wd, String rootPath, String oldName, String newName)
-	{
-		this.execute( //
-			wd, //
-			"deleted", // //$NON-NLS-1$
-			"rootPath", rootPath, // //$NON-NLS-1$
-			"oldName", oldName, // //$NON-NLS-1$
-			"newName", newName // //$NON-NLS-1$
-		);
+			// and execute each
+			for (CommandElement command : commands)
+			{
+				CommandContext context = command.createCommandContext();
+
+				context.put(TriggerType.FILE_WATCHER.getName(), propertyMap);
+				command.execute(context);
+			}
+		}
 	}
 
 	/**
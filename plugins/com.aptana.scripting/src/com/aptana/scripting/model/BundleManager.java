@@ -45,8 +45,8 @@ import com.aptana.core.util.EclipseUtil;
 import com.aptana.core.util.IConfigurationElementProcessor;
 import com.aptana.core.util.ResourceUtil;
 import com.aptana.core.util.StringUtil;
-import com.aptana.scope.IScopeSelector;
 import com.aptana.scope.ScopeSelector;
+import com.aptana.scope.ScopeSelectorIndex;
 import com.aptana.scripting.IDebugScopes;
 import com.aptana.scripting.IScriptingSystemProperties;
 import com.aptana.scripting.ScriptLogger;
@@ -218,6 +218,43 @@ public class BundleManager
 	}
 
 	// split patterns
+	/**
+	 * The kinds of regular expressions bundles register per scope selector
+	 */
+	private enum MarkerType
+	{
+		DECREASE_INDENT
+		{
+			Map<ScopeSelector, RubyRegexp> getMarkers(BundleEntry entry)
+			{
+				return entry.getDecreaseIndentMarkers();
+			}
+		},
+		INCREASE_INDENT
+		{
+			Map<ScopeSelector, RubyRegexp> getMarkers(BundleEntry entry)
+			{
+				return entry.getIncreaseIndentMarkers();
+			}
+		},
+		FOLDING_START
+		{
+			Map<ScopeSelector, RubyRegexp> getMarkers(BundleEntry entry)
+			{
+				return entry.getFoldingStartMarkers();
+			}
+		},
+		FOLDING_STOP
+		{
+			Map<ScopeSelector, RubyRegexp> getMarkers(BundleEntry entry)
+			{
+				return entry.getFoldingStopMarkers();
+			}
+		};
+
+		abstract Map<ScopeSelector, RubyRegexp> getMarkers(BundleEntry entry);
+	}
+
 	private static final Pattern DOT_PATTERN = Pattern.compile("\\."); //$NON-NLS-1$
 	private static final Pattern STAR_PATTERN = Pattern.compile("\\*"); //$NON-NLS-1$
 
@@ -485,6 +522,14 @@ public class BundleManager
 	private List<ElementVisibilityListener> _elementVisibilityListeners;
 	private List<LoadCycleListener> _loadCycleListeners;
 
+	/**
+	 * Selector indexes over the markers of all bundles, built on first use. They're dropped whenever a bundle or script
+	 * is loaded or changes visibility, and the generation makes sure an index built concurrently with such a change
+	 * isn't kept.
+	 */
+	private Map<MarkerType, ScopeSelectorIndex<RubyRegexp>> _markerIndexes;
+	private int _markerIndexGeneration;
+
 	/**
 	 * This is a pool to reduce duplicated string values eating up RAM. This happens most often with paths (like say in
 	 * MenuElements)
@@ -509,6 +554,7 @@ public class BundleManager
 		this._entriesByName = new HashMap<String, BundleEntry>();
 
 		this._stringPool = new HashMap<String, String>();
+		this._markerIndexes = new HashMap<MarkerType, ScopeSelectorIndex<RubyRegexp>>();
 
 		// NOTE: similar logic for these guys too
 		this._bundleVisibilityListeners = new ArrayList<BundleVisibilityListener>();
@@ -641,6 +687,8 @@ public class BundleManager
 	 */
 	void fireBundleBecameHiddenEvent(BundleEntry entry)
 	{
+		this.clearMarkerIndexes();
+
 		if (entry != null)
 		{
 			for (BundleVisibilityListener listener : this.getBundleVisibilityListeners())
@@ -667,6 +715,8 @@ public class BundleManager
 	 */
 	void fireBundleBecameVisibleEvent(BundleEntry entry)
 	{
+		this.clearMarkerIndexes();
+
 		if (entry != null)
 		{
 			for (BundleVisibilityListener listener : this.getBundleVisibilityListeners())
@@ -745,6 +795,8 @@ public class BundleManager
 	 */
 	void fireScriptLoadedEvent(File script)
 	{
+		this.clearMarkerIndexes();
+
 		if (script != null)
 		{
 			for (LoadCycleListener listener : this.getLoadCycleListeners())
@@ -771,6 +823,8 @@ public class BundleManager
 	 */
 	void fireScriptReloadedEvent(File script)
 	{
+		this.clearMarkerIndexes();
+
 		if (script != null)
 		{
 			for (LoadCycleListener listener : this.getLoadCycleListeners())
@@ -797,6 +851,8 @@ public class BundleManager
 	 */
 	void fireScriptUnloadedEvent(File script)
 	{
+		this.clearMarkerIndexes();
+
 		if (script != null)
 		{
 			for (LoadCycleListener listener : this.getLoadCycleListeners())
@@ -1431,22 +1487,66 @@ public class BundleManager
 	 */
 	public RubyRegexp getDecreaseIndentRegexp(String scope)
 	{
-		Map<IScopeSelector, RubyRegexp> map = new HashMap<IScopeSelector, RubyRegexp>();
-		for (String bundleName : this.getBundleNames())
+		return getMarker(MarkerType.DECREASE_INDENT, scope);
+	}
+
+	/**
+	 * Returns the marker registered by any bundle for the scope selector best matching the given scope
+	 * 
+	 * @param type
+	 * @param scope
+	 * @return
+	 */
+	private RubyRegexp getMarker(MarkerType type, String scope)
+	{
+		ScopeSelectorIndex<RubyRegexp> index;
+		int generation;
+
+		synchronized (this._markerIndexes)
 		{
-			BundleEntry bundleEntry = this.getBundleEntry(bundleName);
-			map.putAll(bundleEntry.getDecreaseIndentMarkers());
+			index = this._markerIndexes.get(type);
+			generation = this._markerIndexGeneration;
 		}
-		if (map.isEmpty())
+
+		if (index == null)
 		{
-			return null;
+			// build outside of the lock, collecting the markers takes the bundle locks
+			Map<ScopeSelector, RubyRegexp> map = new HashMap<ScopeSelector, RubyRegexp>();
+
+			for (String bundleName : this.getBundleNames())
+			{
+				BundleEntry bundleEntry = this.getBundleEntry(bundleName);
+
+				if (bundleEntry != null)
+				{
+					map.putAll(type.getMarkers(bundleEntry));
+				}
+			}
+
+			index = new ScopeSelectorIndex<RubyRegexp>(map);
+
+			synchronized (this._markerIndexes)
+			{
+				if (generation == this._markerIndexGeneration)
+				{
+					this._markerIndexes.put(type, index);
+				}
+			}
 		}
-		IScopeSelector bestMatch = ScopeSelector.bestMatch(map.keySet(), scope);
-		if (bestMatch == null)
+
+		return index.getBestMatch(scope);
+	}
+
+	/**
+	 * Drop the marker indexes, so they get rebuilt with the current bundles
+	 */
+	private void clearMarkerIndexes()
+	{
+		synchronized (this._markerIndexes)
 		{
-			return null;
+			this._markerIndexes.clear();
+			this._markerIndexGeneration++;
 		}
-		return map.get(bestMatch);
 	}
 
 	/**
@@ -1514,22 +1614,7 @@ public class BundleManager
 	 */
 	public RubyRegexp getFoldingStartRegexp(String scope)
 	{
-		Map<IScopeSelector, RubyRegexp> map = new HashMap<IScopeSelector, RubyRegexp>();
-		for (String bundleName : this.getBundleNames())
-		{
-			BundleEntry bundleEntry = this.getBundleEntry(bundleName);
-			map.putAll(bundleEntry.getFoldingStartMarkers());
-		}
-		if (map.isEmpty())
-		{
-			return null;
-		}
-		IScopeSelector bestMatch = ScopeSelector.bestMatch(map.keySet(), scope);
-		if (bestMatch == null)
-		{
-			return null;
-		}
-		return map.get(bestMatch);
+		return getMarker(MarkerType.FOLDING_START, scope);
 	}
 
 	/**
@@ -1540,22 +1625,7 @@ public class BundleManager
 	 */
 	public RubyRegexp getFoldingStopRegexp(String scope)
 	{
-		Map<IScopeSelector, RubyRegexp> map = new HashMap<IScopeSelector, RubyRegexp>();
-		for (String bundleName : this.getBundleNames())
-		{
-			BundleEntry bundleEntry = this.getBundleEntry(bundleName);
-			map.putAll(bundleEntry.getFoldingStopMarkers());
-		}
-		if (map.isEmpty())
-		{
-			return null;
-		}
-		IScopeSelector bestMatch = ScopeSelector.bestMatch(map.keySet(), scope);
-		if (bestMatch == null)
-		{
-			return null;
-		}
-		return map.get(bestMatch);
+		return getMarker(MarkerType.FOLDING_STOP, scope);
 	}
 
 	/**
@@ -1566,22 +1636,7 @@ public class BundleManager
 	 */
 	public RubyRegexp getIncreaseIndentRegexp(String scope)
 	{
-		Map<IScopeSelector, RubyRegexp> map = new HashMap<IScopeSelector, RubyRegexp>();
-		for (String bundleName : this.getBundleNames())
-		{
-			BundleEntry bundleEntry = this.getBundleEntry(bundleName);
-			map.putAll(bundleEntry.getIncreaseIndentMarkers());
-		}
-		if (map.isEmpty())
-		{
-			return null;
-		}
-		IScopeSelector bestMatch = ScopeSelector.bestMatch(map.keySet(), scope);
-		if (bestMatch == null)
-		{
-			return null;
-		}
-		return map.get(bestMatch);
+		return getMarker(MarkerType.INCREASE_INDENT, scope);
 	}
 
 	/**
@@ -2312,6 +2367,8 @@ public class BundleManager
 		{
 			this._entriesByName.clear();
 		}
+
+		this.clearMarkerIndexes();
 	}
 
 	/**
@@ -111,9 +111,10 @@ public class CommandBlockRunner extends AbstractCommandRunner
 			hash.putAll(this.getContributedEnvironment());
 
 			// Grab all the matching env objects contributed via bundles that have scope matching!
-			IModelFilter filter = new ScopeFilter((String) hash.get("TM_CURRENT_SCOPE")); //$NON-NLS-1$
+			String scope = (String) hash.get("TM_CURRENT_SCOPE"); //$NON-NLS-1$
+			IModelFilter filter = new ScopeFilter(scope);
 			List<EnvironmentElement> envs = BundleManager.getInstance().getEnvs(filter);
-			ScopeSelector.sort(envs);
+			ScopeSelector.sort(envs, scope);
 			for (EnvironmentElement e : envs)
 			{
 				RubyProc invoke = e.getInvokeBlock();
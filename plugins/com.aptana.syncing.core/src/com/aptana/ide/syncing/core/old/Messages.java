@@ -107,6 +107,8 @@ public final class Messages extends NLS
 
 	public static String Synchronizer_Listing_Complete;
 
+	public static String Synchronizer_Manifest_Outdated;
+
 	/**
 	 * Synchronizer_ServerFileManagerCannotBeNull
 	 */
@@ -125,6 +127,10 @@ public final class Messages extends NLS
 
 	public static String Synchronizer_Times_Modified;
 
+	public static String Synchronizer_Transfer_Progress;
+
+	public static String Synchronizer_Transfer_Summary;
+
 	/**
 	 * Synchronizer_Uploading
 	 */
@@ -132,6 +138,8 @@ public final class Messages extends NLS
 
 	public static String Synchronizer_Uploading_Files;
 
+	public static String Synchronizer_Using_Manifest;
+
 	public static String VirtualFileSyncPair_DestFileInfoErrror;
 
 	public static String VirtualFileSyncPair_SourceFileInfoError;
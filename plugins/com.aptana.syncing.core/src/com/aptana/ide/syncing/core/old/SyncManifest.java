@@ -0,0 +1,336 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.syncing.core.old;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.filesystem.provider.FileInfo;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.core.util.StringUtil;
+import com.aptana.ide.syncing.core.SyncingPlugin;
+
+/**
+ * Remembers what the destination of a synchronization looked like after the last sync: the relative path, type, size
+ * and modification time of every remote file. With it the remote tree does not have to be listed again for every sync,
+ * the changes to push can be computed from the local files and the manifest alone.
+ * <p>
+ * A manifest is only {@link #isComplete() complete} once it has been filled from a full listing of the remote root;
+ * afterwards it is kept current with the transfers and deletions the {@link Synchronizer} performs.
+ * </p>
+ */
+public class SyncManifest
+{
+
+	private static final String MANIFESTS_FOLDER = "manifests"; //$NON-NLS-1$
+	private static final String MANIFEST_EXTENSION = ".manifest"; //$NON-NLS-1$
+	private static final int VERSION = 1;
+
+	private final File file;
+	private final String key;
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+	private boolean complete;
+	private boolean dirty;
+
+	/**
+	 * Creates a manifest stored in the given file, loading what it already holds.
+	 * 
+	 * @param file
+	 *            where the manifest is stored
+	 * @param key
+	 *            identifies the pair of roots the manifest describes
+	 */
+	public SyncManifest(File file, String key)
+	{
+		this.file = file;
+		this.key = key;
+		load();
+	}
+
+	/**
+	 * Returns the manifest kept in the plug-in state location for synchronizing the given client root with the given
+	 * server root.
+	 * 
+	 * @param clientRoot
+	 * @param serverRoot
+	 * @return
+	 */
+	public static SyncManifest getManifest(IFileStore clientRoot, IFileStore serverRoot)
+	{
+		String key = clientRoot.toURI() + " -> " + serverRoot.toURI(); //$NON-NLS-1$
+		File folder = SyncingPlugin.getDefault().getStateLocation().append(MANIFESTS_FOLDER).toFile();
+		return new SyncManifest(new File(folder, StringUtil.md5(key) + MANIFEST_EXTENSION), key);
+	}
+
+	/**
+	 * Returns whether the manifest describes the whole remote tree, i.e. whether it can stand in for a listing of it.
+	 * 
+	 * @return
+	 */
+	public synchronized boolean isComplete()
+	{
+		return complete;
+	}
+
+	/**
+	 * Marks the manifest as describing the whole remote tree, once it has been filled from a full listing.
+	 */
+	public synchronized void markComplete()
+	{
+		complete = true;
+		dirty = true;
+	}
+
+	/**
+	 * Forgets everything, the next synchronization has to list the remote tree again.
+	 */
+	public synchronized void invalidate()
+	{
+		entries.clear();
+		complete = false;
+		dirty = true;
+	}
+
+	/**
+	 * Returns the recorded state of the remote file at the given relative path, or <code>null</code> if there is none.
+	 * 
+	 * @param relativePath
+	 * @return
+	 */
+	public synchronized IFileInfo get(String relativePath)
+	{
+		Entry entry = entries.get(relativePath);
+		return (entry == null) ? null : entry.toFileInfo(relativePath);
+	}
+
+	/**
+	 * Records the state of the remote file at the given relative path.
+	 * 
+	 * @param relativePath
+	 * @param info
+	 */
+	public synchronized void put(String relativePath, IFileInfo info)
+	{
+		if (relativePath == null || info == null || !info.exists())
+		{
+			return;
+		}
+		entries.put(relativePath, new Entry(info.isDirectory(), info.getLength(), info.getLastModified()));
+		dirty = true;
+	}
+
+	/**
+	 * Forgets the remote file at the given relative path and, if it is a directory, everything below it.
+	 * 
+	 * @param relativePath
+	 */
+	public synchronized void remove(String relativePath)
+	{
+		if (relativePath == null)
+		{
+			return;
+		}
+		Entry entry = entries.remove(relativePath);
+		if (entry != null && entry.directory)
+		{
+			String prefix = relativePath + '/';
+			for (Iterator<String> i = entries.keySet().iterator(); i.hasNext();)
+			{
+				if (i.next().startsWith(prefix))
+				{
+					i.remove();
+				}
+			}
+		}
+		dirty = true;
+	}
+
+	/**
+	 * Returns the relative paths of all recorded remote files and directories.
+	 * 
+	 * @return
+	 */
+	public synchronized List<String> getPaths()
+	{
+		return new ArrayList<String>(entries.keySet());
+	}
+
+	/**
+	 * Returns the relative paths of the recorded remote files, without the directories.
+	 * 
+	 * @return
+	 */
+	public synchronized List<String> getFilePaths()
+	{
+		List<String> paths = new ArrayList<String>();
+		for (Map.Entry<String, Entry> entry : entries.entrySet())
+		{
+			if (!entry.getValue().directory)
+			{
+				paths.add(entry.getKey());
+			}
+		}
+		return paths;
+	}
+
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * Writes the manifest to its file if it changed since it was loaded or last saved.
+	 */
+	public synchronized void save()
+	{
+		if (!dirty)
+		{
+			return;
+		}
+		File folder = file.getParentFile();
+		if (folder != null && !folder.exists() && !folder.mkdirs())
+		{
+			IdeLog.logError(SyncingPlugin.getDefault(), "Unable to create " + folder); //$NON-NLS-1$
+			return;
+		}
+		// writes to a temporary file first so an interrupted save doesn't leave a truncated manifest behind
+		File tempFile = new File(file.getPath() + ".tmp"); //$NON-NLS-1$
+		DataOutputStream out = null;
+		try
+		{
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			out.writeInt(VERSION);
+			out.writeUTF(key);
+			out.writeBoolean(complete);
+			out.writeInt(entries.size());
+			for (Map.Entry<String, Entry> entry : entries.entrySet())
+			{
+				Entry value = entry.getValue();
+				out.writeUTF(entry.getKey());
+				out.writeBoolean(value.directory);
+				out.writeLong(value.length);
+				out.writeLong(value.lastModified);
+			}
+			out.close();
+			out = null;
+			if (file.exists() && !file.delete())
+			{
+				throw new IOException("Unable to replace " + file); //$NON-NLS-1$
+			}
+			if (!tempFile.renameTo(file))
+			{
+				throw new IOException("Unable to rename " + tempFile + " to " + file); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			dirty = false;
+		}
+		catch (IOException e)
+		{
+			IdeLog.logError(SyncingPlugin.getDefault(), e.getMessage(), e);
+		}
+		finally
+		{
+			if (out != null)
+			{
+				try
+				{
+					out.close();
+				}
+				catch (IOException e)
+				{
+					// ignores
+				}
+				tempFile.delete();
+			}
+		}
+	}
+
+	private void load()
+	{
+		if (!file.isFile())
+		{
+			return;
+		}
+		DataInputStream in = null;
+		try
+		{
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (in.readInt() != VERSION || !key.equals(in.readUTF()))
+			{
+				// written by another version or for other roots, starts over
+				return;
+			}
+			boolean isComplete = in.readBoolean();
+			int count = in.readInt();
+			for (int i = 0; i < count; ++i)
+			{
+				String path = in.readUTF();
+				entries.put(path, new Entry(in.readBoolean(), in.readLong(), in.readLong()));
+			}
+			complete = isComplete;
+		}
+		catch (IOException e)
+		{
+			IdeLog.logWarning(SyncingPlugin.getDefault(), "Discarding unreadable sync manifest " + file, e); //$NON-NLS-1$
+			entries.clear();
+			complete = false;
+		}
+		finally
+		{
+			if (in != null)
+			{
+				try
+				{
+					in.close();
+				}
+				catch (IOException e)
+				{
+					// ignores
+				}
+			}
+		}
+	}
+
+	private static final class Entry
+	{
+
+		private final boolean directory;
+		private final long length;
+		private final long lastModified;
+
+		private Entry(boolean directory, long length, long lastModified)
+		{
+			this.directory = directory;
+			this.length = length;
+			this.lastModified = lastModified;
+		}
+
+		private IFileInfo toFileInfo(String relativePath)
+		{
+			FileInfo info = new FileInfo(relativePath.substring(relativePath.lastIndexOf('/') + 1));
+			info.setExists(true);
+			info.setDirectory(directory);
+			info.setLength(length);
+			info.setLastModified(lastModified);
+			return info;
+		}
+	}
+}
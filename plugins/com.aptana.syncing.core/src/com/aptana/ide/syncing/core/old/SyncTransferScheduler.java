@@ -0,0 +1,348 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.syncing.core.old;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+
+import com.aptana.core.io.efs.SyncUtils;
+import com.aptana.ide.syncing.core.SyncingPlugin;
+
+/**
+ * Runs the file copies of a synchronization on a number of worker threads. Transfers are queued while the caller walks
+ * the sync pairs (creating directories and deleting items in order), then started smallest first so that round trips
+ * rather than bandwidth are overlapped. Completed transfers are handed back to the calling thread through
+ * {@link #take()}, which keeps event handlers, counters and progress reporting single-threaded.
+ */
+/* package */class SyncTransferScheduler
+{
+
+	private static final Comparator<Transfer> SMALLEST_FIRST = new Comparator<Transfer>()
+	{
+		public int compare(Transfer t1, Transfer t2)
+		{
+			long l1 = t1.getLength();
+			long l2 = t2.getLength();
+			return (l1 < l2) ? -1 : ((l1 == l2) ? 0 : 1);
+		}
+	};
+
+	private final int concurrency;
+	private final IProgressMonitor monitor;
+	private final List<Transfer> queue = new ArrayList<Transfer>();
+	private final BlockingQueue<Transfer> completed = new LinkedBlockingQueue<Transfer>();
+	private final IProgressMonitor transferMonitor = new NullProgressMonitor()
+	{
+		@Override
+		public boolean isCanceled()
+		{
+			return monitor.isCanceled();
+		}
+	};
+
+	private volatile boolean stopped;
+	private int next;
+	private int outstanding;
+	private long startTime;
+	private long bytesTransferred;
+
+	/**
+	 * @param concurrency
+	 *            maximum number of simultaneous transfers
+	 * @param monitor
+	 *            the monitor of the synchronization, polled for cancellation
+	 */
+	/* package */SyncTransferScheduler(int concurrency, IProgressMonitor monitor)
+	{
+		this.concurrency = Math.max(1, concurrency);
+		this.monitor = (monitor == null) ? new NullProgressMonitor() : monitor;
+	}
+
+	/**
+	 * Queues a file copy. Must be called before {@link #start()}.
+	 * 
+	 * @param item
+	 * @param source
+	 * @param sourceInfo
+	 * @param destination
+	 * @param upload
+	 *            whether the copy goes from the client to the server
+	 * @param newFile
+	 *            whether the destination did not exist before
+	 */
+	/* package */void add(VirtualFileSyncPair item, IFileStore source, IFileInfo sourceInfo, IFileStore destination,
+			boolean upload, boolean newFile)
+	{
+		queue.add(new Transfer(item, source, sourceInfo, destination, upload, newFile));
+	}
+
+	/* package */int size()
+	{
+		return queue.size();
+	}
+
+	/**
+	 * Starts the queued transfers, smallest files first.
+	 */
+	/* package */void start()
+	{
+		Collections.sort(queue, SMALLEST_FIRST);
+		startTime = System.currentTimeMillis();
+		outstanding = queue.size();
+		int workers = Math.min(concurrency, queue.size());
+		for (int i = 0; i < workers; ++i)
+		{
+			Thread thread = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					Transfer transfer;
+					while ((transfer = poll()) != null)
+					{
+						try
+						{
+							transfer.run(transferMonitor);
+						}
+						catch (Throwable t)
+						{
+							// keeps the worker going, every transfer has to be handed back or take() waits forever
+							transfer.fail(t);
+						}
+						finally
+						{
+							completed.add(transfer);
+						}
+					}
+				}
+			}, "Sync Transfer " + (i + 1)); //$NON-NLS-1$
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Waits for the next finished transfer. Transfers that were never started because of {@link #stop()} or
+	 * cancellation are not returned.
+	 * 
+	 * @return the next finished transfer, or <code>null</code> once all transfers are accounted for
+	 */
+	/* package */Transfer take()
+	{
+		while (true)
+		{
+			synchronized (this)
+			{
+				if (outstanding <= 0)
+				{
+					return null;
+				}
+			}
+			Transfer transfer;
+			try
+			{
+				transfer = completed.take();
+			}
+			catch (InterruptedException e)
+			{
+				stop();
+				Thread.currentThread().interrupt();
+				return null;
+			}
+			synchronized (this)
+			{
+				--outstanding;
+				if (transfer.isCompleted())
+				{
+					bytesTransferred += transfer.getLength();
+				}
+			}
+			if (!transfer.isSkipped())
+			{
+				return transfer;
+			}
+		}
+	}
+
+	/**
+	 * Stops starting new transfers; running ones are left to complete.
+	 */
+	/* package */void stop()
+	{
+		stopped = true;
+	}
+
+	/* package */synchronized long getBytesTransferred()
+	{
+		return bytesTransferred;
+	}
+
+	/**
+	 * Returns the time elapsed since {@link #start()}, in milliseconds.
+	 * 
+	 * @return
+	 */
+	/* package */long getElapsedTime()
+	{
+		return System.currentTimeMillis() - startTime;
+	}
+
+	/**
+	 * Returns the average throughput since {@link #start()} in bytes per second.
+	 * 
+	 * @return
+	 */
+	/* package */long getThroughput()
+	{
+		long elapsed = Math.max(getElapsedTime(), 1);
+		return getBytesTransferred() * 1000 / elapsed;
+	}
+
+	private synchronized Transfer poll()
+	{
+		if (next >= queue.size())
+		{
+			return null;
+		}
+		Transfer transfer = queue.get(next++);
+		if (stopped || monitor.isCanceled())
+		{
+			transfer.skip();
+		}
+		return transfer;
+	}
+
+	/**
+	 * A single file copy and its outcome.
+	 */
+	/* package */static class Transfer
+	{
+
+		private final VirtualFileSyncPair item;
+		private final IFileStore source;
+		private final IFileInfo sourceInfo;
+		private final IFileStore destination;
+		private final boolean upload;
+		private final boolean newFile;
+
+		private volatile boolean skipped;
+		private volatile boolean completed;
+		private volatile Exception error;
+
+		private Transfer(VirtualFileSyncPair item, IFileStore source, IFileInfo sourceInfo, IFileStore destination,
+				boolean upload, boolean newFile)
+		{
+			this.item = item;
+			this.source = source;
+			this.sourceInfo = sourceInfo;
+			this.destination = destination;
+			this.upload = upload;
+			this.newFile = newFile;
+		}
+
+		private void run(IProgressMonitor monitor)
+		{
+			if (skipped)
+			{
+				return;
+			}
+			try
+			{
+				SyncUtils.copy(source, sourceInfo, destination, EFS.NONE, monitor);
+				completed = true;
+			}
+			catch (OperationCanceledException e)
+			{
+				skipped = true;
+			}
+			catch (Exception e)
+			{
+				error = e;
+			}
+		}
+
+		private void skip()
+		{
+			skipped = true;
+		}
+
+		private void fail(Throwable t)
+		{
+			error = (t instanceof Exception) ? (Exception) t : new CoreException(new Status(IStatus.ERROR,
+					SyncingPlugin.PLUGIN_ID, t.toString(), t));
+		}
+
+		public VirtualFileSyncPair getItem()
+		{
+			return item;
+		}
+
+		public IFileStore getSource()
+		{
+			return source;
+		}
+
+		public IFileInfo getSourceInfo()
+		{
+			return sourceInfo;
+		}
+
+		public IFileStore getDestination()
+		{
+			return destination;
+		}
+
+		public boolean isUpload()
+		{
+			return upload;
+		}
+
+		public boolean isNewFile()
+		{
+			return newFile;
+		}
+
+		public boolean isCompleted()
+		{
+			return completed;
+		}
+
+		public boolean isSkipped()
+		{
+			return skipped;
+		}
+
+		/**
+		 * Returns the exception the copy failed with, or <code>null</code>.
+		 * 
+		 * @return
+		 */
+		public Exception getError()
+		{
+			return error;
+		}
+
+		private long getLength()
+		{
+			return (sourceInfo != null) ? Math.max(sourceInfo.getLength(), 0) : 0;
+		}
+	}
+}
@@ -13,6 +13,7 @@ import java.text.DateFormat;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -27,18 +28,22 @@ import org.eclipse.core.internal.filesystem.Policy;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.QualifiedName;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 
 import com.aptana.core.io.efs.EFSUtils;
-import com.aptana.core.io.efs.SyncUtils;
+import com.aptana.core.io.vfs.IConcurrentConnectionFileManager;
+import com.aptana.core.io.vfs.IConnectionFileManager;
 import com.aptana.core.io.vfs.IExtendedFileStore;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.FileUtil;
 import com.aptana.core.util.StringUtil;
 import com.aptana.filewatcher.FileWatcher;
 import com.aptana.ide.core.io.IConnectionPoint;
+import com.aptana.ide.core.io.LocalConnectionPoint;
+import com.aptana.ide.core.io.WorkspaceConnectionPoint;
 import com.aptana.ide.syncing.core.SyncingPlugin;
 
 /**
@@ -52,10 +57,13 @@ public class Synchronizer implements ILoggable
 			"SYNC_IN_PROGRESS"); //$NON-NLS-1$
 
 	private static final int DEFAULT_TIME_TOLERANCE = 1000;
+	private static final int LOCAL_CONCURRENT_TRANSFERS = 4;
+	private static final int MANIFEST_SPOT_CHECKS = 5;
 
 	private boolean _useCRC;
 	private boolean _includeCloakedFiles = false;
 	private long _timeTolerance;
+	private int _maxConcurrentTransfers;
 
 	private int _clientDirectoryCreatedCount;
 	private int _clientDirectoryDeletedCount;
@@ -71,6 +79,8 @@ public class Synchronizer implements ILoggable
 	private IFileStore _clientFileRoot;
 	private IFileStore _serverFileRoot;
 	private ISyncEventHandler _eventHandler;
+	private SyncManifest _manifest;
+	private boolean _listFromManifest;
 	private ILogger logger;
 
 	private List<IFileStore> _newFilesDownloaded;
@@ -306,6 +316,38 @@ public class Synchronizer implements ILoggable
 		_serverFileRoot = server;
 	}
 
+	/**
+	 * Sets the manifest recording the server files of the client and server roots this synchronizer works on. Full
+	 * listings of the server refill it, transfers and deletions keep it current. It only stands in for a listing of the
+	 * server once {@link #setListFromManifest(boolean)} allows it. Invalidate the manifest to have the server listed
+	 * again.
+	 * 
+	 * @param manifest
+	 *            the manifest, or null to always list the server
+	 */
+	public void setManifest(SyncManifest manifest)
+	{
+		_manifest = manifest;
+	}
+
+	public SyncManifest getManifest()
+	{
+		return _manifest;
+	}
+
+	/**
+	 * Sets whether {@link #getSyncItems} may take the server files from a complete manifest instead of listing the
+	 * server, as long as a few of the recorded files still match the server. Only safe when changed files are uploaded:
+	 * the manifest doesn't know about what others changed on the server, so downloads and two-way syncs have to list
+	 * it.
+	 * 
+	 * @param listFromManifest
+	 */
+	public void setListFromManifest(boolean listFromManifest)
+	{
+		_listFromManifest = listFromManifest;
+	}
+
 	/**
 	 * Gets the list of items to sync.
 	 * 
@@ -330,6 +372,8 @@ public class Synchronizer implements ILoggable
 
 		IFileStore[] clientFiles = new IFileStore[0];
 		IFileStore[] serverFiles = new IFileStore[0];
+		IFileInfo[] serverInfos = null;
+		boolean updateManifest = false;
 		IFileInfo clientInfo = client.fetchInfo();
 		if (!clientInfo.exists())
 		{
@@ -370,9 +414,32 @@ public class Synchronizer implements ILoggable
 
 				start = System.currentTimeMillis();
 				log(FileUtil.NEW_LINE);
-				log(MessageFormat.format(Messages.Synchronizer_Gathering_Destination,
-						new Object[] { server.toString() }));
-				serverFiles = EFSUtils.getFiles(server, true, _includeCloakedFiles, monitor);
+				if (canUseManifest(server, monitor))
+				{
+					// the manifest stands in for the listing of the destination
+					log(MessageFormat.format(Messages.Synchronizer_Using_Manifest, _manifest.size(), server.toString()));
+					List<String> paths = _manifest.getPaths();
+					serverFiles = new IFileStore[paths.size()];
+					serverInfos = new IFileInfo[paths.size()];
+					for (int i = 0; i < serverFiles.length; i++)
+					{
+						String path = paths.get(i);
+						serverFiles[i] = server.getFileStore(new Path(path));
+						serverInfos[i] = _manifest.get(path);
+					}
+				}
+				else
+				{
+					log(MessageFormat.format(Messages.Synchronizer_Gathering_Destination,
+							new Object[] { server.toString() }));
+					serverFiles = EFSUtils.getFiles(server, true, _includeCloakedFiles, monitor);
+					if (_manifest != null)
+					{
+						// refills the manifest from the listing
+						_manifest.invalidate();
+						updateManifest = true;
+					}
+				}
 				log(MessageFormat.format(Messages.Synchronizer_Completed, System.currentTimeMillis() - start));
 
 				log(FileUtil.NEW_LINE);
@@ -390,7 +457,49 @@ public class Synchronizer implements ILoggable
 			return null;
 		}
 
-		return createSyncItems(clientFiles, serverFiles, monitor);
+		return createSyncItems(clientFiles, serverFiles, serverInfos, updateManifest, monitor);
+	}
+
+	/**
+	 * Determines if the manifest can be used in place of a listing of the server. A few of the recorded files are
+	 * picked at random and compared with the server, a single mismatch means the server was changed behind our back. A
+	 * manifest without files can't be checked that way, so the server is listed instead.
+	 * 
+	 * @param server
+	 * @param monitor
+	 * @return
+	 * @throws CoreException
+	 */
+	private boolean canUseManifest(IFileStore server, IProgressMonitor monitor) throws CoreException
+	{
+		if (!_listFromManifest || _manifest == null || !_manifest.isComplete())
+		{
+			return false;
+		}
+		monitor = Policy.monitorFor(monitor);
+		List<String> paths = _manifest.getFilePaths();
+		if (paths.isEmpty())
+		{
+			return false;
+		}
+		Collections.shuffle(paths);
+		int count = Math.min(MANIFEST_SPOT_CHECKS, paths.size());
+		for (int i = 0; i < count; i++)
+		{
+			Policy.checkCanceled(monitor);
+
+			String path = paths.get(i);
+			IFileInfo recorded = _manifest.get(path);
+			IFileInfo actual = server.getFileStore(new Path(path)).fetchInfo(IExtendedFileStore.DETAILED, monitor);
+			long timeDiff = actual.getLastModified() - recorded.getLastModified();
+			if (!actual.exists() || actual.isDirectory() || actual.getLength() != recorded.getLength()
+					|| timeDiff < -_timeTolerance || timeDiff > _timeTolerance)
+			{
+				log(MessageFormat.format(Messages.Synchronizer_Manifest_Outdated, path));
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/**
@@ -406,6 +515,23 @@ public class Synchronizer implements ILoggable
 	 */
 	public VirtualFileSyncPair[] createSyncItems(IFileStore[] clientFiles, IFileStore[] serverFiles,
 			IProgressMonitor monitor) throws CoreException
+	{
+		return createSyncItems(clientFiles, serverFiles, null, false, monitor);
+	}
+
+	/**
+	 * @param clientFiles
+	 * @param serverFiles
+	 * @param serverInfos
+	 *            the already known infos of the server files, or null to fetch them
+	 * @param updateManifest
+	 *            whether the server files are a full listing the manifest should be refilled from
+	 * @param monitor
+	 * @return VirtualFileSyncPair[]
+	 * @throws CoreException
+	 */
+	private VirtualFileSyncPair[] createSyncItems(IFileStore[] clientFiles, IFileStore[] serverFiles,
+			IFileInfo[] serverInfos, boolean updateManifest, IProgressMonitor monitor) throws CoreException
 	{
 		log(FileUtil.NEW_LINE + Messages.Synchronizer_Generating_Comparison);
 
@@ -447,8 +573,13 @@ public class Synchronizer implements ILoggable
 			monitor.worked(1);
 
 			IFileStore serverFile = serverFiles[i];
-			IFileInfo serverFileInfo = serverFile.fetchInfo(IExtendedFileStore.DETAILED, null);
+			IFileInfo serverFileInfo = (serverInfos != null) ? serverInfos[i] : serverFile.fetchInfo(
+					IExtendedFileStore.DETAILED, null);
 			String relativePath = getCanonicalPath(_serverFileRoot, serverFile);
+			if (updateManifest && !serverFileInfo.getAttribute(EFS.ATTRIBUTE_SYMLINK))
+			{
+				_manifest.put(relativePath, serverFileInfo);
+			}
 
 			logDebug(FileUtil.NEW_LINE);
 			logDebug(MessageFormat.format(Messages.Synchronizer_Comparing_Files, new Object[] { relativePath }));
@@ -458,8 +589,9 @@ public class Synchronizer implements ILoggable
 				if (serverFileInfo.getAttribute(EFS.ATTRIBUTE_SYMLINK))
 					continue;
 
-				VirtualFileSyncPair item = new VirtualFileSyncPair(null, serverFile, relativePath,
+				VirtualFileSyncPair item = new VirtualFileSyncPair(null, null, relativePath,
 						SyncState.ServerItemOnly);
+				item.setDestinationFile(serverFile, serverFileInfo);
 				fileList.put(relativePath, item);
 				logDebug(Messages.Synchronizer_Item_Not_On_Destination);
 				continue;
@@ -470,7 +602,7 @@ public class Synchronizer implements ILoggable
 			VirtualFileSyncPair item = fileList.get(relativePath);
 
 			// associate this server file with that sync item
-			item.setDestinationFile(serverFile);
+			item.setDestinationFile(serverFile, serverFileInfo);
 
 			IFileInfo clientFileInfo = item.getSourceFileInfo(monitor);
 			if (clientFileInfo == null && item.getSyncState() == SyncState.ServerItemOnly)
@@ -534,6 +666,12 @@ public class Synchronizer implements ILoggable
 			}
 		}
 
+		if (updateManifest)
+		{
+			_manifest.markComplete();
+			_manifest.save();
+		}
+
 		// sort items
 		Set<String> keySet = fileList.keySet();
 		String[] keys = keySet.toArray(new String[keySet.size()]);
@@ -750,9 +888,11 @@ public class Synchronizer implements ILoggable
 
 			this.reset();
 
+			// the second half of the work is left for the file transfers
 			SubMonitor subMonitor = SubMonitor.convert(monitor, Messages.Synchronizer_Downloading_Files,
-					fileList.length);
+					2 * fileList.length);
 			Policy.checkCanceled(subMonitor);
+			SyncTransferScheduler transfers = new SyncTransferScheduler(getConcurrentTransfers(), subMonitor);
 
 			FILE_LOOP: for (int i = 0; i < fileList.length; i++)
 			{
@@ -820,35 +960,16 @@ public class Synchronizer implements ILoggable
 							}
 							else
 							{
-								logDownloading(serverFile);
-								try
-								{
-									SyncUtils
-											.copy(serverFile, serverFileInfo, targetClientFile, EFS.NONE, childMonitor);
-									Synchronizer.this._serverFileTransferedCount++;
-									_newFilesDownloaded.add(targetClientFile);
-
-									logSuccess();
-									syncDone(item, childMonitor);
-								}
-								catch (CoreException e)
-								{
-									logError(e);
-									if (!syncError(item, e, childMonitor))
-									{
-										result = false;
-										break FILE_LOOP;
-									}
-								}
+								transfers.add(item, serverFile, serverFileInfo, targetClientFile, false, true);
 							}
 							break;
 
 						case SyncState.ServerItemIsNewer:
 						case SyncState.CRCMismatch:
 							// exists on both sides, but the server item is newer
-							logDownloading(serverFile);
 							if (serverFileInfo.isDirectory())
 							{
+								logDownloading(serverFile);
 								try
 								{
 									EFSUtils.setModificationTime(serverFileInfo.getLastModified(), clientFile);
@@ -863,22 +984,7 @@ public class Synchronizer implements ILoggable
 							}
 							else
 							{
-								try
-								{
-									SyncUtils.copy(serverFile, serverFileInfo, clientFile, EFS.NONE, childMonitor);
-									Synchronizer.this._serverFileTransferedCount++;
-									logSuccess();
-									syncDone(item, childMonitor);
-								}
-								catch (CoreException e)
-								{
-									logError(e);
-									if (!syncError(item, e, childMonitor))
-									{
-										result = false;
-										break FILE_LOOP;
-									}
-								}
+								transfers.add(item, serverFile, serverFileInfo, clientFile, false, false);
 							}
 							break;
 
@@ -899,10 +1005,11 @@ public class Synchronizer implements ILoggable
 				}
 			}
 
-			return result;
+			return runTransfers(transfers, subMonitor) && result;
 		}
 		finally
 		{
+			saveManifest();
 			FileWatcher.resumeNotify();
 		}
 	}
@@ -970,8 +1077,11 @@ public class Synchronizer implements ILoggable
 			// reset stats
 			this.reset();
 
-			SubMonitor subMonitor = SubMonitor.convert(monitor, Messages.Synchronizer_Synchronizing, fileList.length);
+			// the second half of the work is left for the file transfers
+			SubMonitor subMonitor = SubMonitor.convert(monitor, Messages.Synchronizer_Synchronizing,
+					2 * fileList.length);
 			Policy.checkCanceled(subMonitor);
+			SyncTransferScheduler transfers = new SyncTransferScheduler(getConcurrentTransfers(), subMonitor);
 
 			// process all items in our list
 			FILE_LOOP: for (int i = 0; i < fileList.length; i++)
@@ -1003,33 +1113,16 @@ public class Synchronizer implements ILoggable
 					{
 						case SyncState.ClientItemIsNewer:
 							// item exists on both ends, but the client one is newer
-							logUploading(serverFile);
 							if (clientFileInfo.isDirectory())
 							{
+								logUploading(serverFile);
 								EFSUtils.setModificationTime(clientFileInfo.getLastModified(), serverFile);
 								logSuccess();
 								syncDone(item, childMonitor);
 							}
 							else
 							{
-								try
-								{
-									SyncUtils.copy(clientFile, clientFileInfo, serverFile, EFS.NONE, childMonitor);
-									Synchronizer.this._clientFileTransferedCount++;
-									logSuccess();
-									syncDone(item, childMonitor);
-								}
-								catch (CoreException e)
-								{
-									logError(e);
-
-									if (!syncError(item, e, childMonitor))
-									{
-										result = false;
-										break FILE_LOOP;
-									}
-								}
-
+								transfers.add(item, clientFile, clientFileInfo, serverFile, true, false);
 							}
 							break;
 
@@ -1068,6 +1161,7 @@ public class Synchronizer implements ILoggable
 										this._serverDirectoryCreatedCount++;
 										_newFilesUploaded.add(targetServerFile);
 									}
+									recordServerFile(item, clientFileInfo);
 
 									logSuccess();
 									syncDone(item, childMonitor);
@@ -1075,35 +1169,16 @@ public class Synchronizer implements ILoggable
 								else
 								{
 									// targetServerFile = server.createVirtualFile(serverPath);
-									logUploading(clientFile);
-									try
-									{
-										SyncUtils.copy(clientFile, clientFileInfo, targetServerFile, EFS.NONE,
-												childMonitor);
-										Synchronizer.this._clientFileTransferedCount++;
-										_newFilesUploaded.add(targetServerFile);
-										logSuccess();
-										syncDone(item, childMonitor);
-									}
-									catch (CoreException e)
-									{
-										logError(e);
-
-										if (!syncError(item, e, childMonitor))
-										{
-											result = false;
-											break FILE_LOOP;
-										}
-									}
+									transfers.add(item, clientFile, clientFileInfo, targetServerFile, true, true);
 								}
 							}
 							break;
 
 						case SyncState.ServerItemIsNewer:
 							// item exists on both ends, but the server one is newer
-							logDownloading(clientFile);
 							if (serverFileInfo.isDirectory())
 							{
+								logDownloading(clientFile);
 								// just needs to set the modification time for directory
 								EFSUtils.setModificationTime(serverFileInfo.getLastModified(), clientFile);
 
@@ -1112,24 +1187,7 @@ public class Synchronizer implements ILoggable
 							}
 							else
 							{
-								try
-								{
-									SyncUtils.copy(serverFile, serverFileInfo, clientFile, EFS.NONE, childMonitor);
-									Synchronizer.this._serverFileTransferedCount++;
-									logSuccess();
-									syncDone(item, childMonitor);
-								}
-								catch (CoreException e)
-								{
-									logError(e);
-
-									if (!syncError(item, e, childMonitor))
-									{
-										result = false;
-										break FILE_LOOP;
-									}
-								}
-
+								transfers.add(item, serverFile, serverFileInfo, clientFile, false, false);
 							}
 							break;
 
@@ -1141,6 +1199,7 @@ public class Synchronizer implements ILoggable
 								boolean wasDirectory = serverFileInfo.isDirectory();
 								// deletes the item
 								serverFile.delete(EFS.NONE, null); // server.deleteFile(serverFile);
+								forgetServerFile(item);
 								if (wasDirectory)
 								{
 									this._serverDirectoryDeletedCount++;
@@ -1177,27 +1236,7 @@ public class Synchronizer implements ILoggable
 								else
 								{
 									// targetClientFile = client.createVirtualFile(clientPath);
-									logDownloading(targetClientFile);
-
-									try
-									{
-										SyncUtils.copy(serverFile, serverFileInfo, targetClientFile, EFS.NONE,
-												childMonitor);
-										Synchronizer.this._serverFileTransferedCount++;
-										_newFilesDownloaded.add(targetClientFile);
-										logSuccess();
-										syncDone(item, childMonitor);
-									}
-									catch (CoreException e)
-									{
-										logError(e);
-
-										if (!syncError(item, e, childMonitor))
-										{
-											result = false;
-											break FILE_LOOP;
-										}
-									}
+									transfers.add(item, serverFile, serverFileInfo, targetClientFile, false, true);
 								}
 							}
 							break;
@@ -1234,10 +1273,11 @@ public class Synchronizer implements ILoggable
 				}
 			}
 
-			return result;
+			return runTransfers(transfers, subMonitor) && result;
 		}
 		finally
 		{
+			saveManifest();
 			FileWatcher.resumeNotify();
 		}
 	}
@@ -1311,8 +1351,11 @@ public class Synchronizer implements ILoggable
 
 			this.reset();
 
-			SubMonitor subMonitor = SubMonitor.convert(monitor, Messages.Synchronizer_Uploading_Files, fileList.length);
+			// the second half of the work is left for the file transfers
+			SubMonitor subMonitor = SubMonitor.convert(monitor, Messages.Synchronizer_Uploading_Files,
+					2 * fileList.length);
 			Policy.checkCanceled(subMonitor);
+			SyncTransferScheduler transfers = new SyncTransferScheduler(getConcurrentTransfers(), subMonitor);
 
 			FILE_LOOP: for (int i = 0; i < fileList.length; i++)
 			{
@@ -1357,33 +1400,13 @@ public class Synchronizer implements ILoggable
 									this._serverDirectoryCreatedCount++;
 									_newFilesUploaded.add(targetServerFile);
 								}
+								recordServerFile(item, clientFileInfo);
 
 								syncDone(item, childMonitor);
 							}
 							else
 							{
-								logUploading(clientFile);
-
-								try
-								{
-									SyncUtils
-											.copy(clientFile, clientFileInfo, targetServerFile, EFS.NONE, childMonitor);
-									Synchronizer.this._clientFileTransferedCount++;
-									_newFilesUploaded.add(targetServerFile);
-									logSuccess();
-									syncDone(item, childMonitor);
-								}
-								catch (CoreException e)
-								{
-									logError(e);
-
-									if (!syncError(item, e, childMonitor))
-									{
-										result = false;
-										break FILE_LOOP;
-									}
-								}
-
+								transfers.add(item, clientFile, clientFileInfo, targetServerFile, true, true);
 							}
 							break;
 
@@ -1395,6 +1418,7 @@ public class Synchronizer implements ILoggable
 								// false.
 								boolean wasDirectory = serverFileInfo.isDirectory();
 								serverFile.delete(EFS.NONE, childMonitor);
+								forgetServerFile(item);
 								if (wasDirectory)
 								{
 									this._serverDirectoryDeletedCount++;
@@ -1410,9 +1434,9 @@ public class Synchronizer implements ILoggable
 						case SyncState.ClientItemIsNewer:
 						case SyncState.CRCMismatch:
 							// exists on both sides, but the client item is newer
-							logUploading(clientFile);
 							if (clientFileInfo.isDirectory())
 							{
+								logUploading(clientFile);
 								// just needs to set the modification time for directory
 								try
 								{
@@ -1434,24 +1458,7 @@ public class Synchronizer implements ILoggable
 							}
 							else
 							{
-								try
-								{
-									SyncUtils.copy(clientFile, clientFileInfo, serverFile, EFS.NONE, childMonitor);
-									Synchronizer.this._clientFileTransferedCount++;
-									logSuccess();
-									syncDone(item, childMonitor);
-								}
-								catch (CoreException e)
-								{
-									logError(e);
-
-									if (!syncError(item, e, childMonitor))
-									{
-										result = false;
-										break FILE_LOOP;
-									}
-								}
-
+								transfers.add(item, clientFile, clientFileInfo, serverFile, true, false);
 							}
 							break;
 
@@ -1472,10 +1479,11 @@ public class Synchronizer implements ILoggable
 				}
 			}
 
-			return result;
+			return runTransfers(transfers, subMonitor) && result;
 		}
 		finally
 		{
+			saveManifest();
 			FileWatcher.resumeNotify();
 		}
 	}
@@ -1552,6 +1560,152 @@ public class Synchronizer implements ILoggable
 		this._serverFileManager = fileManager;
 	}
 
+	/**
+	 * Sets how many files may be transferred at the same time. A value of 0 (the default) picks the limit supported by
+	 * both connection points.
+	 * 
+	 * @param maxConcurrentTransfers
+	 */
+	public void setMaxConcurrentTransfers(int maxConcurrentTransfers)
+	{
+		this._maxConcurrentTransfers = Math.max(0, maxConcurrentTransfers);
+	}
+
+	private int getConcurrentTransfers()
+	{
+		if (_maxConcurrentTransfers > 0)
+		{
+			return _maxConcurrentTransfers;
+		}
+		return Math.min(getConcurrentTransfers(_clientFileManager), getConcurrentTransfers(_serverFileManager));
+	}
+
+	private static int getConcurrentTransfers(IConnectionPoint connectionPoint)
+	{
+		if (connectionPoint instanceof LocalConnectionPoint || connectionPoint instanceof WorkspaceConnectionPoint)
+		{
+			return LOCAL_CONCURRENT_TRANSFERS;
+		}
+		if (connectionPoint != null)
+		{
+			Object fileManager = connectionPoint.getAdapter(IConnectionFileManager.class);
+			if (fileManager instanceof IConcurrentConnectionFileManager)
+			{
+				return Math.max(1, ((IConcurrentConnectionFileManager) fileManager).getMaxConcurrentTransfers());
+			}
+		}
+		// streams of other connections may share a single session
+		return 1;
+	}
+
+	/**
+	 * Runs the queued file transfers and reports each of them once it completes.
+	 * 
+	 * @param transfers
+	 * @param subMonitor
+	 * @return false if a transfer failed in a way that should fail the synchronization
+	 */
+	private boolean runTransfers(SyncTransferScheduler transfers, SubMonitor subMonitor)
+	{
+		boolean result = true;
+		int total = transfers.size();
+		subMonitor.setWorkRemaining(total);
+		if (total == 0)
+		{
+			return result;
+		}
+		transfers.start();
+		int count = 0;
+		SyncTransferScheduler.Transfer transfer;
+		while ((transfer = transfers.take()) != null)
+		{
+			VirtualFileSyncPair item = transfer.getItem();
+			SubMonitor childMonitor = subMonitor.newChild(1);
+			childMonitor.setTaskName(getSyncStatus(item));
+			subMonitor.subTask(MessageFormat.format(Messages.Synchronizer_Transfer_Progress, ++count, total,
+					transfers.getThroughput() / 1024));
+			if (transfer.isUpload())
+			{
+				logUploading(transfer.getSource());
+			}
+			else
+			{
+				logDownloading(transfer.getSource());
+			}
+
+			Exception e = transfer.getError();
+			if (e == null)
+			{
+				// the copy carries the modification time over, both ends now match the source
+				recordServerFile(item, transfer.getSourceInfo());
+				if (transfer.isUpload())
+				{
+					this._clientFileTransferedCount++;
+					if (transfer.isNewFile())
+					{
+						_newFilesUploaded.add(transfer.getDestination());
+					}
+				}
+				else
+				{
+					this._serverFileTransferedCount++;
+					if (transfer.isNewFile())
+					{
+						_newFilesDownloaded.add(transfer.getDestination());
+					}
+				}
+				logSuccess();
+				syncDone(item, childMonitor);
+			}
+			else if (e instanceof CoreException)
+			{
+				logError(e);
+				if (!syncError(item, e, childMonitor))
+				{
+					result = false;
+					transfers.stop();
+				}
+			}
+			else
+			{
+				IdeLog.logError(SyncingPlugin.getDefault(), Messages.Synchronizer_ErrorDuringSync, e);
+				result = false;
+				if (!syncError(item, e, childMonitor))
+				{
+					transfers.stop();
+				}
+			}
+		}
+		log(FileUtil.NEW_LINE
+				+ MessageFormat.format(Messages.Synchronizer_Transfer_Summary, count, transfers.getBytesTransferred() / 1024,
+						transfers.getElapsedTime(), transfers.getThroughput() / 1024));
+		return result && !subMonitor.isCanceled();
+	}
+
+	private void recordServerFile(VirtualFileSyncPair item, IFileInfo info)
+	{
+		if (_manifest != null)
+		{
+			_manifest.put(item.getRelativePath(), info);
+		}
+	}
+
+	private void forgetServerFile(VirtualFileSyncPair item)
+	{
+		if (_manifest != null)
+		{
+			_manifest.remove(item.getRelativePath());
+		}
+	}
+
+	private void saveManifest()
+	{
+		if (_manifest != null)
+		{
+			_manifest.save();
+		}
+	}
+
 	/**
 	 * Resets time tolerance.
 	 */
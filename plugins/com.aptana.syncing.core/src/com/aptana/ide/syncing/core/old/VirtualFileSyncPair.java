@@ -211,6 +211,18 @@ public class VirtualFileSyncPair
 		this._destinationFileInfo = null;
 	}
 
+	/**
+	 * Sets the server file along with its already known info, so it doesn't have to be fetched again.
+	 * 
+	 * @param destinationFile
+	 * @param destinationFileInfo
+	 */
+	public void setDestinationFile(IFileStore destinationFile, IFileInfo destinationFileInfo)
+	{
+		this._destinationFile = destinationFile;
+		this._destinationFileInfo = destinationFileInfo;
+	}
+
 	/**
 	 * getRelativePath
 	 * 
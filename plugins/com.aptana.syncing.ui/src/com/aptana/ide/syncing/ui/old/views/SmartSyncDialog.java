@@ -96,6 +96,7 @@ import com.aptana.ide.syncing.core.old.ISyncResource;
 import com.aptana.ide.syncing.core.old.SyncFile;
 import com.aptana.ide.syncing.core.old.SyncFolder;
 import com.aptana.ide.syncing.core.old.SyncJob;
+import com.aptana.ide.syncing.core.old.SyncManifest;
 import com.aptana.ide.syncing.core.old.SyncModelBuilder;
 import com.aptana.ide.syncing.core.old.SyncState;
 import com.aptana.ide.syncing.core.old.Synchronizer;
@@ -189,6 +190,10 @@ public class SmartSyncDialog extends TitleAreaDialog implements SelectionListene
 	private int skipped;
 
 	private Job buildSmartSync;
+	/**
+	 * Whether the current list was loaded for uploading changed files, i.e. possibly from the sync manifest
+	 */
+	private boolean loadedForUpload;
 
 	private IFileStore[] sourceFilesToBeSynced;
 	private IFileStore[] destFilesToBeSynced;
@@ -242,6 +247,10 @@ public class SmartSyncDialog extends TitleAreaDialog implements SelectionListene
 			this.syncer.setServerFileManager(destManager);
 			this.syncer.setServerFileRoot(dest);
 		}
+		if (source != null && dest != null)
+		{
+			this.syncer.setManifest(SyncManifest.getManifest(source, dest));
+		}
 		this.syncer.setLogger(new ILogger()
 		{
 			public void logWarning(String message, Throwable th)
@@ -1186,6 +1195,9 @@ public class SmartSyncDialog extends TitleAreaDialog implements SelectionListene
 				: (directionBar.getSelection() == DirectionToolBar.FORCE_UPLOAD);
 		final boolean forceDown = compareInBackground ? false
 				: (directionBar.getSelection() == DirectionToolBar.FORCE_DOWNLOAD);
+		// only an upload can trust the manifest, it knows nothing about changes made on the server by others
+		final boolean upload = (directionBar.getSelection() == DirectionToolBar.UPLOAD);
+		loadedForUpload = upload;
 
 		if (buildSmartSync != null)
 		{
@@ -1284,6 +1296,7 @@ public class SmartSyncDialog extends TitleAreaDialog implements SelectionListene
 					{
 						if (sourceFilesToBeSynced == null && destFilesToBeSynced == null)
 						{
+							syncer.setListFromManifest(upload);
 							items = syncer.getSyncItems(sourceConnectionPoint, destConnectionPoint, source, dest,
 									monitor);
 						}
@@ -1544,6 +1557,12 @@ public class SmartSyncDialog extends TitleAreaDialog implements SelectionListene
 		}
 		else if (source == retryLink)
 		{
+			// lists the destination again instead of trusting what was recorded at the last sync
+			SyncManifest manifest = syncer.getManifest();
+			if (manifest != null)
+			{
+				manifest.invalidate();
+			}
 			load(true);
 		}
 		else if (source == startSync)
@@ -1612,7 +1631,8 @@ public class SmartSyncDialog extends TitleAreaDialog implements SelectionListene
 		updateSyncArrows(directionBar.getSelection());
 		syncViewer.setSyncDirection(directionBar.getSelection());
 		saveDirectionPref(direction);
-		if (reload)
+		// a list taken from the manifest may miss server changes a download or two-way sync needs to see
+		if (reload || (loadedForUpload && directionBar.getSelection() != DirectionToolBar.UPLOAD))
 		{
 			load(false);
 		}
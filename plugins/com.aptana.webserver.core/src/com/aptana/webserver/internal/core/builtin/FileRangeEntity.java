@@ -0,0 +1,203 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+// $codepro.audit.disable closeWhereCreated
+
+package com.aptana.webserver.internal.core.builtin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.FileContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.ProducingNHttpEntity;
+
+/**
+ * Non-blocking entity streaming a byte range of a file, used for <code>206 Partial Content</code> responses.
+ */
+/* package */class FileRangeEntity extends AbstractHttpEntity implements ProducingNHttpEntity
+{
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final File file;
+	private final long offset;
+	private final long length;
+
+	private FileChannel channel;
+	private long position;
+	private ByteBuffer buffer;
+
+	/**
+	 * @param file
+	 * @param offset
+	 *            first byte to send
+	 * @param length
+	 *            number of bytes to send
+	 * @param contentType
+	 */
+	public FileRangeEntity(File file, long offset, long length, String contentType)
+	{
+		this.file = file;
+		this.offset = offset;
+		this.length = length;
+		setContentType(contentType);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.http.nio.entity.ProducingNHttpEntity#produceContent(org.apache.http.nio.ContentEncoder,
+	 * org.apache.http.nio.IOControl)
+	 */
+	public void produceContent(ContentEncoder encoder, IOControl ioctrl) throws IOException
+	{
+		if (channel == null)
+		{
+			channel = new RandomAccessFile(file, "r").getChannel(); //$NON-NLS-1$
+			position = offset;
+		}
+		long remaining = offset + length - position;
+		long transferred;
+		if (encoder instanceof FileContentEncoder)
+		{
+			transferred = ((FileContentEncoder) encoder).transfer(channel, position, remaining);
+		}
+		else
+		{
+			if (buffer == null)
+			{
+				buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			}
+			if (buffer.position() == 0)
+			{
+				buffer.limit((int) Math.min(remaining, BUFFER_SIZE));
+				if (channel.read(buffer, position) < 0)
+				{
+					throw new IOException("Unexpected end of file " + file); //$NON-NLS-1$
+				}
+			}
+			buffer.flip();
+			transferred = encoder.write(buffer);
+			buffer.compact();
+		}
+		if (transferred > 0)
+		{
+			position += transferred;
+		}
+		if (position >= offset + length)
+		{
+			encoder.complete();
+			finish();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.http.nio.entity.ProducingNHttpEntity#finish()
+	 */
+	public void finish()
+	{
+		if (channel != null)
+		{
+			try
+			{
+				channel.close();
+			}
+			catch (IOException ignore)
+			{
+				// ignore
+			}
+			channel = null;
+		}
+		buffer = null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.http.HttpEntity#getContentLength()
+	 */
+	public long getContentLength()
+	{
+		return length;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.http.HttpEntity#isRepeatable()
+	 */
+	public boolean isRepeatable()
+	{
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.http.HttpEntity#isStreaming()
+	 */
+	public boolean isStreaming()
+	{
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.http.HttpEntity#getContent()
+	 */
+	public InputStream getContent() throws IOException
+	{
+		InputStream in = new FileInputStream(file);
+		long skipped = 0;
+		while (skipped < offset)
+		{
+			long n = in.skip(offset - skipped);
+			if (n <= 0)
+			{
+				break;
+			}
+			skipped += n;
+		}
+		return in;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.http.HttpEntity#writeTo(java.io.OutputStream)
+	 */
+	public void writeTo(OutputStream outstream) throws IOException
+	{
+		InputStream in = getContent();
+		try
+		{
+			byte[] bytes = new byte[BUFFER_SIZE];
+			long remaining = length;
+			while (remaining > 0)
+			{
+				int n = in.read(bytes, 0, (int) Math.min(remaining, bytes.length));
+				if (n < 0)
+				{
+					break;
+				}
+				outstream.write(bytes, 0, n);
+				remaining -= n;
+			}
+			outstream.flush();
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+}
@@ -72,6 +72,7 @@ public class LocalWebServer extends SimpleWebServer
 	private static final int WORKER_COUNT = 2;
 
 	private Thread thread;
+	private LocalWebServerHttpRequestHandler requestHandler;
 	private ListeningIOReactor reactor;
 
 	protected int port;
@@ -141,12 +142,13 @@ public class LocalWebServer extends SimpleWebServer
 	private void startServer(final InetAddress host, final int port)
 	{
 		updateState(State.STARTING);
+		requestHandler = new LocalWebServerHttpRequestHandler(this);
 		thread = new Thread()
 		{
 			@Override
 			public void run()
 			{
-				runServer(new InetSocketAddress(host, port), new LocalWebServerHttpRequestHandler(LocalWebServer.this));
+				runServer(new InetSocketAddress(host, port), requestHandler);
 			}
 		};
 		thread.setDaemon(true);
@@ -243,6 +245,10 @@ public class LocalWebServer extends SimpleWebServer
 				// ignore
 			}
 		}
+		if (requestHandler != null)
+		{
+			requestHandler.dispose();
+		}
 		return Status.OK_STATUS;
 	}
 
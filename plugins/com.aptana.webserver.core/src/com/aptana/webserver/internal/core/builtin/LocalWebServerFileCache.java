@@ -0,0 +1,320 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.aptana.webserver.internal.core.builtin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+/**
+ * Bounded LRU cache of request URIs resolved to served files. Each entry remembers the resolved {@link IFileStore}, its
+ * validator metadata, the local file used to serve it (a cached copy for non-local stores), an optional precompressed
+ * sibling and lazily gzipped content. Entries are re-validated against the store on every hit.
+ */
+/* package */class LocalWebServerFileCache
+{
+
+	private static final int MAX_ENTRIES = 128;
+	private static final String GZIP_EXTENSION = ".gz"; //$NON-NLS-1$
+
+	private final Map<URI, CachedFile> entries = new LinkedHashMap<URI, CachedFile>(16, 0.75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<URI, CachedFile> eldest)
+		{
+			if (size() > MAX_ENTRIES)
+			{
+				eldest.getValue().evict();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	/**
+	 * Returns a still valid cached entry for the uri, acquired for the caller, or <code>null</code>. Callers must
+	 * {@link CachedFile#release()} the returned entry when done with it.
+	 * 
+	 * @param uri
+	 * @return
+	 */
+	public CachedFile acquire(URI uri)
+	{
+		CachedFile cachedFile;
+		synchronized (entries)
+		{
+			cachedFile = entries.get(uri);
+			if (cachedFile == null)
+			{
+				return null;
+			}
+			cachedFile.acquire();
+		}
+		if (cachedFile.isValid())
+		{
+			return cachedFile;
+		}
+		cachedFile.release();
+		synchronized (entries)
+		{
+			if (entries.get(uri) == cachedFile)
+			{
+				entries.remove(uri);
+				cachedFile.evict();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Creates an entry for the resolved file store, caches it under the uri and returns it acquired for the caller.
+	 * 
+	 * @param uri
+	 * @param fileStore
+	 * @param fileInfo
+	 * @param mimeType
+	 * @return
+	 */
+	public CachedFile put(URI uri, IFileStore fileStore, IFileInfo fileInfo, String mimeType)
+	{
+		CachedFile cachedFile = new CachedFile(fileStore, fileInfo, mimeType);
+		cachedFile.acquire();
+		synchronized (entries)
+		{
+			CachedFile previous = entries.put(uri, cachedFile);
+			if (previous != null && previous != cachedFile)
+			{
+				previous.evict();
+			}
+		}
+		return cachedFile;
+	}
+
+	/**
+	 * Drops all entries, deleting temporary copies that are no longer in use.
+	 */
+	public void clear()
+	{
+		List<CachedFile> evicted;
+		synchronized (entries)
+		{
+			evicted = new ArrayList<CachedFile>(entries.values());
+			entries.clear();
+		}
+		for (Iterator<CachedFile> i = evicted.iterator(); i.hasNext();)
+		{
+			i.next().evict();
+		}
+	}
+
+	/**
+	 * A resolved file with its validators. Reference counted so that temporary copies of non-local stores outlive
+	 * eviction while a response is still reading them.
+	 */
+	/* package */static class CachedFile
+	{
+
+		private final IFileStore fileStore;
+		private final long lastModified;
+		private final long length;
+		private final String mimeType;
+		private final String eTag;
+		private final IFileStore gzipStore;
+		private final long gzipLastModified;
+		private final File gzipFile;
+
+		private File file;
+		private boolean temporary;
+		private byte[] gzipContent;
+		private int references;
+		private boolean evicted;
+
+		private CachedFile(IFileStore fileStore, IFileInfo fileInfo, String mimeType)
+		{
+			this.fileStore = fileStore;
+			this.lastModified = fileInfo.getLastModified();
+			this.length = fileInfo.getLength();
+			this.mimeType = mimeType;
+			this.eTag = Long.toHexString(lastModified) + '-' + Long.toHexString(length);
+			IFileStore gzipStore = null;
+			long gzipLastModified = EFS.NONE;
+			File gzipFile = null;
+			IFileStore parent = fileStore.getParent();
+			if (parent != null)
+			{
+				gzipStore = parent.getChild(fileStore.getName() + GZIP_EXTENSION);
+				IFileInfo gzipInfo = gzipStore.fetchInfo();
+				gzipLastModified = gzipInfo.getLastModified();
+				if (gzipInfo.exists() && !gzipInfo.isDirectory() && gzipLastModified >= lastModified)
+				{
+					try
+					{
+						// only precompressed files that can be served without copying are worth it
+						gzipFile = gzipStore.toLocalFile(EFS.NONE, new NullProgressMonitor());
+					}
+					catch (CoreException e)
+					{
+						gzipFile = null;
+					}
+				}
+			}
+			this.gzipStore = gzipStore;
+			this.gzipLastModified = gzipLastModified;
+			this.gzipFile = gzipFile;
+		}
+
+		public long getLastModified()
+		{
+			return lastModified;
+		}
+
+		public long getLength()
+		{
+			return length;
+		}
+
+		public String getMimeType()
+		{
+			return mimeType;
+		}
+
+		/**
+		 * Returns the entity tag, without quotes, of the identity or gzip encoded representation.
+		 * 
+		 * @param gzip
+		 * @return
+		 */
+		public String getETag(boolean gzip)
+		{
+			return gzip ? eTag + "-gzip" : eTag; //$NON-NLS-1$
+		}
+
+		/**
+		 * Returns a local file with the contents, copying non-local stores into the EFS cache only once per entry.
+		 * 
+		 * @return
+		 * @throws CoreException
+		 */
+		public synchronized File getFile() throws CoreException
+		{
+			if (file == null)
+			{
+				file = fileStore.toLocalFile(EFS.NONE, new NullProgressMonitor());
+				if (file == null)
+				{
+					file = fileStore.toLocalFile(EFS.CACHE, new NullProgressMonitor());
+					temporary = true;
+				}
+			}
+			return file;
+		}
+
+		/**
+		 * Returns the local, up to date <code>.gz</code> sibling, or <code>null</code> if there is none.
+		 * 
+		 * @return
+		 */
+		public File getPrecompressedFile()
+		{
+			return gzipFile;
+		}
+
+		/**
+		 * Returns the gzip compressed contents, compressing them on first use.
+		 * 
+		 * @return
+		 * @throws IOException
+		 * @throws CoreException
+		 */
+		public synchronized byte[] getGzipContent() throws IOException, CoreException
+		{
+			if (gzipContent == null)
+			{
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) Math.max(length / 4, 64));
+				InputStream in = new FileInputStream(getFile());
+				try
+				{
+					GZIPOutputStream out = new GZIPOutputStream(bytes);
+					byte[] buffer = new byte[8192];
+					int n;
+					while ((n = in.read(buffer)) > 0)
+					{
+						out.write(buffer, 0, n);
+					}
+					out.close();
+				}
+				finally
+				{
+					in.close();
+				}
+				gzipContent = bytes.toByteArray();
+			}
+			return gzipContent;
+		}
+
+		private boolean isValid()
+		{
+			IFileInfo fileInfo = fileStore.fetchInfo();
+			if (!fileInfo.exists() || fileInfo.isDirectory() || fileInfo.getLastModified() != lastModified
+					|| fileInfo.getLength() != length)
+			{
+				return false;
+			}
+			// a .gz sibling that appeared, changed or went away invalidates the entry too
+			return gzipStore == null || gzipStore.fetchInfo().getLastModified() == gzipLastModified;
+		}
+
+		private synchronized void acquire()
+		{
+			++references;
+		}
+
+		public synchronized void release()
+		{
+			--references;
+			deleteIfUnused();
+		}
+
+		private synchronized void evict()
+		{
+			evicted = true;
+			gzipContent = null;
+			deleteIfUnused();
+		}
+
+		private void deleteIfUnused()
+		{
+			if (evicted && references <= 0 && temporary && file != null)
+			{
+				if (!file.delete())
+				{
+					file.deleteOnExit();
+				}
+				file = null;
+			}
+		}
+	}
+}
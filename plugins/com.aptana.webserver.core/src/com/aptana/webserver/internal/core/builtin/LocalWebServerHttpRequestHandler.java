@@ -14,16 +14,28 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URLDecoder;
+import java.text.DateFormat;
 import java.text.MessageFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.Locale;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpException;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.MethodNotSupportedException;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.nio.entity.NByteArrayEntity;
 import org.apache.http.nio.entity.NFileEntity;
 import org.apache.http.nio.entity.NStringEntity;
 import org.apache.http.protocol.HTTP;
@@ -40,6 +52,7 @@ import org.eclipse.core.runtime.URIUtil;
 import com.aptana.core.IURIMapper;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.webserver.core.WebServerCorePlugin;
+import com.aptana.webserver.internal.core.builtin.LocalWebServerFileCache.CachedFile;
 
 /**
  * @author Max Stepanov
@@ -54,8 +67,40 @@ import com.aptana.webserver.core.WebServerCorePlugin;
 	private final static String HTML_TEXT_TYPE = "text/html"; //$NON-NLS-1$
 
 	private final static Pattern PATTERN_INDEX = Pattern.compile("(index|default)\\.x?html?"); //$NON-NLS-1$
+	private final static Pattern PATTERN_RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)"); //$NON-NLS-1$
+
+	private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding"; //$NON-NLS-1$
+	private static final String HEADER_ACCEPT_RANGES = "Accept-Ranges"; //$NON-NLS-1$
+	private static final String HEADER_CACHE_CONTROL = "Cache-Control"; //$NON-NLS-1$
+	private static final String HEADER_CONTENT_RANGE = "Content-Range"; //$NON-NLS-1$
+	private static final String HEADER_ETAG = "ETag"; //$NON-NLS-1$
+	private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since"; //$NON-NLS-1$
+	private static final String HEADER_IF_NONE_MATCH = "If-None-Match"; //$NON-NLS-1$
+	private static final String HEADER_IF_RANGE = "If-Range"; //$NON-NLS-1$
+	private static final String HEADER_LAST_MODIFIED = "Last-Modified"; //$NON-NLS-1$
+	private static final String HEADER_RANGE = "Range"; //$NON-NLS-1$
+	private static final String HEADER_VARY = "Vary"; //$NON-NLS-1$
+
+	private static final String BYTES_UNIT = "bytes"; //$NON-NLS-1$
+	private static final String GZIP_ENCODING = "gzip"; //$NON-NLS-1$
+	private static final String NO_CACHE = "no-cache"; //$NON-NLS-1$
+	private static final String WEAK_PREFIX = "W/"; //$NON-NLS-1$
+
+	private static final int MIN_COMPRESS_SIZE = 256;
+	private static final int MAX_COMPRESS_SIZE = 1024 * 1024;
+	private static final Set<String> COMPRESSIBLE_TYPES = new HashSet<String>(Arrays.asList(
+			"application/x-javascript", "application/javascript", "application/json", "application/xml")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+	private static final long[] RANGE_NOT_SATISFIABLE = new long[0];
+
+	private static final DateFormat HTTP_DATE_FORMAT = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US); //$NON-NLS-1$
+	static
+	{
+		HTTP_DATE_FORMAT.setTimeZone(TimeZone.getTimeZone("GMT")); //$NON-NLS-1$
+	}
 
 	private IURIMapper uriMapper;
+	private final LocalWebServerFileCache cache = new LocalWebServerFileCache();
 
 	/**
 	 * @param documentRoot
@@ -80,52 +125,48 @@ import com.aptana.webserver.core.WebServerCorePlugin;
 			{
 				String target = URLDecoder.decode(request.getRequestLine().getUri(), HTTP.UTF_8);
 				URI uri = URIUtil.fromString(target);
-				IFileStore fileStore = uriMapper.resolve(uri);
-				IFileInfo fileInfo = fileStore.fetchInfo();
-				if (fileInfo.isDirectory())
+				CachedFile cachedFile = cache.acquire(uri);
+				if (cachedFile == null)
 				{
-					fileInfo = getIndex(fileStore);
-					if (fileInfo.exists())
+					IFileStore fileStore = uriMapper.resolve(uri);
+					IFileInfo fileInfo = fileStore.fetchInfo();
+					if (fileInfo.isDirectory())
 					{
-						fileStore = fileStore.getChild(fileInfo.getName());
+						fileInfo = getIndex(fileStore);
+						if (fileInfo.exists())
+						{
+							fileStore = fileStore.getChild(fileInfo.getName());
+						}
+					}
+					if (!fileInfo.exists())
+					{
+						response.setStatusCode(HttpStatus.SC_NOT_FOUND);
+						response.setEntity(createTextEntity(MessageFormat.format(
+								Messages.LocalWebServerHttpRequestHandler_FILE_NOT_FOUND, uri.getPath())));
+					}
+					else if (fileInfo.isDirectory())
+					{
+						response.setStatusCode(HttpStatus.SC_FORBIDDEN);
+						response.setEntity(createTextEntity(Messages.LocalWebServerHttpRequestHandler_FORBIDDEN));
+					}
+					else
+					{
+						cachedFile = cache.put(uri, fileStore, fileInfo, getMimeType(fileStore.getName()));
 					}
 				}
-				if (!fileInfo.exists())
-				{
-					response.setStatusCode(HttpStatus.SC_NOT_FOUND);
-					response.setEntity(createTextEntity(MessageFormat.format(
-							Messages.LocalWebServerHttpRequestHandler_FILE_NOT_FOUND, uri.getPath())));
-				}
-				else if (fileInfo.isDirectory())
-				{
-					response.setStatusCode(HttpStatus.SC_FORBIDDEN);
-					response.setEntity(createTextEntity(Messages.LocalWebServerHttpRequestHandler_FORBIDDEN));
-				}
-				else
+				if (cachedFile != null)
 				{
-					response.setStatusCode(HttpStatus.SC_OK);
-					if (METHOD_GET.equals(method))
+					boolean retained = false;
+					try
 					{
-						File file = fileStore.toLocalFile(EFS.NONE, new NullProgressMonitor());
-						final File temporaryFile = (file == null) ? fileStore.toLocalFile(EFS.CACHE,
-								new NullProgressMonitor()) : null;
-						response.setEntity(new NFileEntity((file != null) ? file : temporaryFile, getMimeType(fileStore
-								.getName()))
-						{
-							@Override
-							public void finish()
-							{
-								super.finish();
-								if (temporaryFile != null && !temporaryFile.delete())
-								{
-									temporaryFile.deleteOnExit();
-								}
-							}
-						});
+						retained = serveFile(request, response, cachedFile, METHOD_GET.equals(method));
 					}
-					else
+					finally
 					{
-						response.setEntity(null);
+						if (!retained)
+						{
+							cachedFile.release();
+						}
 					}
 				}
 			}
@@ -149,6 +190,303 @@ import com.aptana.webserver.core.WebServerCorePlugin;
 		}
 	}
 
+	/**
+	 * Sets validator headers and answers with 304, 206, 416 or a full (possibly gzip encoded) response.
+	 * 
+	 * @param request
+	 * @param response
+	 * @param cachedFile
+	 * @param withBody
+	 *            <code>false</code> for HEAD requests
+	 * @return <code>true</code> if the response entity took over releasing the cached file
+	 * @throws IOException
+	 * @throws CoreException
+	 */
+	private static boolean serveFile(HttpRequest request, HttpResponse response, CachedFile cachedFile,
+			boolean withBody) throws IOException, CoreException
+	{
+		String mimeType = cachedFile.getMimeType();
+		long length = cachedFile.getLength();
+		long[] range = getRange(request, cachedFile);
+		boolean compressible = cachedFile.getPrecompressedFile() != null
+				|| (isCompressible(mimeType) && length >= MIN_COMPRESS_SIZE && length <= MAX_COMPRESS_SIZE);
+		boolean gzip = compressible && range == null && acceptsGzip(request);
+
+		response.setHeader(HEADER_LAST_MODIFIED, formatDate(cachedFile.getLastModified()));
+		response.setHeader(HEADER_ETAG, quote(cachedFile.getETag(gzip)));
+		response.setHeader(HEADER_CACHE_CONTROL, NO_CACHE);
+		response.setHeader(HEADER_ACCEPT_RANGES, BYTES_UNIT);
+		if (compressible)
+		{
+			response.setHeader(HEADER_VARY, HEADER_ACCEPT_ENCODING);
+		}
+		if (isNotModified(request, cachedFile))
+		{
+			response.setStatusCode(HttpStatus.SC_NOT_MODIFIED);
+			response.setEntity(null);
+			return false;
+		}
+		if (range == RANGE_NOT_SATISFIABLE)
+		{
+			response.setStatusCode(HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+			response.setHeader(HEADER_CONTENT_RANGE, BYTES_UNIT + " */" + length); //$NON-NLS-1$
+			response.setEntity(null);
+			return false;
+		}
+		if (range != null)
+		{
+			response.setStatusCode(HttpStatus.SC_PARTIAL_CONTENT);
+			response.setHeader(HEADER_CONTENT_RANGE, MessageFormat.format("{0} {1}-{2}/{3}", BYTES_UNIT, //$NON-NLS-1$
+					Long.toString(range[0]), Long.toString(range[1]), Long.toString(length)));
+		}
+		else
+		{
+			response.setStatusCode(HttpStatus.SC_OK);
+		}
+		if (!withBody)
+		{
+			if (gzip)
+			{
+				response.setHeader(HTTP.CONTENT_ENCODING, GZIP_ENCODING);
+			}
+			response.setEntity(null);
+			return false;
+		}
+
+		if (gzip)
+		{
+			File precompressedFile = cachedFile.getPrecompressedFile();
+			AbstractHttpEntity entity;
+			if (precompressedFile != null)
+			{
+				entity = new NFileEntity(precompressedFile, mimeType);
+			}
+			else
+			{
+				entity = new NByteArrayEntity(cachedFile.getGzipContent());
+				entity.setContentType(mimeType);
+			}
+			entity.setContentEncoding(GZIP_ENCODING);
+			response.setEntity(entity);
+			return false;
+		}
+		return serveFileContent(response, cachedFile, range);
+	}
+
+	private static boolean serveFileContent(HttpResponse response, final CachedFile cachedFile, long[] range)
+			throws CoreException
+	{
+		File file = cachedFile.getFile();
+		if (range != null)
+		{
+			response.setEntity(new FileRangeEntity(file, range[0], range[1] - range[0] + 1, cachedFile.getMimeType())
+			{
+				private boolean released;
+
+				@Override
+				public synchronized void finish()
+				{
+					super.finish();
+					if (!released)
+					{
+						released = true;
+						cachedFile.release();
+					}
+				}
+			});
+		}
+		else
+		{
+			response.setEntity(new NFileEntity(file, cachedFile.getMimeType())
+			{
+				private boolean released;
+
+				@Override
+				public synchronized void finish()
+				{
+					super.finish();
+					if (!released)
+					{
+						released = true;
+						cachedFile.release();
+					}
+				}
+			});
+		}
+		return true;
+	}
+
+	private static boolean isNotModified(HttpRequest request, CachedFile cachedFile)
+	{
+		Header ifNoneMatch = request.getFirstHeader(HEADER_IF_NONE_MATCH);
+		if (ifNoneMatch != null)
+		{
+			String eTag = quote(cachedFile.getETag(false));
+			String gzipETag = quote(cachedFile.getETag(true));
+			for (String tag : ifNoneMatch.getValue().split(",")) //$NON-NLS-1$
+			{
+				tag = tag.trim();
+				if (tag.startsWith(WEAK_PREFIX))
+				{
+					tag = tag.substring(WEAK_PREFIX.length());
+				}
+				if ("*".equals(tag) || eTag.equals(tag) || gzipETag.equals(tag)) //$NON-NLS-1$
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+		Header ifModifiedSince = request.getFirstHeader(HEADER_IF_MODIFIED_SINCE);
+		if (ifModifiedSince != null)
+		{
+			Date date = parseDate(ifModifiedSince.getValue());
+			return date != null && cachedFile.getLastModified() / 1000 <= date.getTime() / 1000;
+		}
+		return false;
+	}
+
+	/**
+	 * Parses a single byte range. Multiple ranges, malformed values and ranges with a stale If-Range are ignored,
+	 * in which case the full entity is served.
+	 * 
+	 * @param request
+	 * @param cachedFile
+	 * @return <code>null</code>, {@link #RANGE_NOT_SATISFIABLE} or the first and last byte positions
+	 */
+	private static long[] getRange(HttpRequest request, CachedFile cachedFile)
+	{
+		Header rangeHeader = request.getFirstHeader(HEADER_RANGE);
+		if (rangeHeader == null)
+		{
+			return null;
+		}
+		Matcher matcher = PATTERN_RANGE.matcher(rangeHeader.getValue().trim());
+		if (!matcher.matches() || (matcher.group(1).length() == 0 && matcher.group(2).length() == 0))
+		{
+			return null;
+		}
+		Header ifRange = request.getFirstHeader(HEADER_IF_RANGE);
+		if (ifRange != null)
+		{
+			String value = ifRange.getValue().trim();
+			if (!value.equals(quote(cachedFile.getETag(false)))
+					&& !value.equals(formatDate(cachedFile.getLastModified())))
+			{
+				return null;
+			}
+		}
+		long length = cachedFile.getLength();
+		try
+		{
+			long first;
+			long last;
+			if (matcher.group(1).length() == 0)
+			{
+				long suffix = Long.parseLong(matcher.group(2));
+				if (suffix == 0 || length == 0)
+				{
+					return RANGE_NOT_SATISFIABLE;
+				}
+				first = Math.max(0, length - suffix);
+				last = length - 1;
+			}
+			else
+			{
+				first = Long.parseLong(matcher.group(1));
+				last = (matcher.group(2).length() == 0) ? Long.MAX_VALUE : Long.parseLong(matcher.group(2));
+				if (last < first)
+				{
+					return null;
+				}
+				if (first >= length)
+				{
+					return RANGE_NOT_SATISFIABLE;
+				}
+				last = Math.min(last, length - 1);
+			}
+			return new long[] { first, last };
+		}
+		catch (NumberFormatException e)
+		{
+			return null;
+		}
+	}
+
+	private static boolean acceptsGzip(HttpRequest request)
+	{
+		Header acceptEncoding = request.getFirstHeader(HEADER_ACCEPT_ENCODING);
+		if (acceptEncoding == null)
+		{
+			return false;
+		}
+		for (String coding : acceptEncoding.getValue().split(",")) //$NON-NLS-1$
+		{
+			String[] parts = coding.split(";"); //$NON-NLS-1$
+			if (GZIP_ENCODING.equalsIgnoreCase(parts[0].trim()))
+			{
+				for (int i = 1; i < parts.length; ++i)
+				{
+					String param = parts[i].trim();
+					if (param.startsWith("q=")) //$NON-NLS-1$
+					{
+						try
+						{
+							return Float.parseFloat(param.substring(2)) > 0;
+						}
+						catch (NumberFormatException e)
+						{
+							return false;
+						}
+					}
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isCompressible(String mimeType)
+	{
+		return mimeType.startsWith("text/") || mimeType.endsWith("+xml") || COMPRESSIBLE_TYPES.contains(mimeType); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private static String quote(String eTag)
+	{
+		return '"' + eTag + '"';
+	}
+
+	private static String formatDate(long time)
+	{
+		synchronized (HTTP_DATE_FORMAT)
+		{
+			return HTTP_DATE_FORMAT.format(new Date(time));
+		}
+	}
+
+	private static Date parseDate(String value)
+	{
+		synchronized (HTTP_DATE_FORMAT)
+		{
+			try
+			{
+				return HTTP_DATE_FORMAT.parse(value.trim());
+			}
+			catch (ParseException e)
+			{
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Drops cached files, deleting temporary copies of non-local files.
+	 */
+	protected void dispose()
+	{
+		cache.clear();
+	}
+
 	private static HttpEntity createTextEntity(String text) throws UnsupportedEncodingException
 	{
 		NStringEntity entity = new NStringEntity(MessageFormat.format("<html><body><h1>{0}</h1></body></html>", text), //$NON-NLS-1$
@@ -4,6 +4,7 @@ import java.io.ByteArrayInputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -133,6 +134,7 @@ public class UnifiedBuilderTest extends TestCase
 	private IBuildParticipant participant;
 	private IProject project;
 	private IResourceDelta delta;
+	private int workerCount = 1;
 
 	private Mockery context = new Mockery()
 	{
@@ -183,6 +185,12 @@ public class UnifiedBuilderTest extends TestCase
 			{
 				return true;
 			}
+
+			@Override
+			protected int getWorkerCount(int fileCount)
+			{
+				return workerCount;
+			}
 		};
 	}
 
@@ -537,4 +545,113 @@ public class UnifiedBuilderTest extends TestCase
 		builder.build(IncrementalProjectBuilder.FULL_BUILD, null, new NullProgressMonitor());
 		context.assertIsSatisfied();
 	}
+
+	public void testConcurrentFullBuild() throws Exception
+	{
+		final int fileCount = 20;
+		for (int i = 0; i < fileCount; i++)
+		{
+			IFile file = project.getFile("file" + i + ".txt");
+			file.create(new ByteArrayInputStream(("Hello world " + i).getBytes()), true, null);
+		}
+
+		final Map<String, String> threadsByFile = Collections.synchronizedMap(new HashMap<String, String>());
+		participant = new RequiredBuildParticipant()
+		{
+			@Override
+			public boolean isConcurrent()
+			{
+				return true;
+			}
+
+			public void deleteFile(BuildContext context, IProgressMonitor monitor)
+			{
+			}
+
+			public void buildFile(BuildContext context, IProgressMonitor monitor)
+			{
+				assertNull("File built twice", threadsByFile.put(context.getName(), Thread.currentThread().getName()));
+
+				Collection<IProblem> problems = new ArrayList<IProblem>();
+				problems.add(createTask(context.getURI().toString(), context.getName(), IMarker.PRIORITY_HIGH, 1, 0, 1));
+				context.putProblems(IMarkerConstants.TASK_MARKER, problems);
+			}
+		};
+		workerCount = 2;
+		builder.build(IncrementalProjectBuilder.FULL_BUILD, null, new NullProgressMonitor());
+
+		// every file got built once, off the builder's thread, and got its marker
+		assertEquals(fileCount + 1, threadsByFile.size());
+		for (int i = 0; i < fileCount; i++)
+		{
+			String fileName = "file" + i + ".txt";
+			assertFalse(Thread.currentThread().getName().equals(threadsByFile.get(fileName)));
+
+			IMarker[] markers = project.getFile(fileName).findMarkers(IMarkerConstants.TASK_MARKER, true,
+					IResource.DEPTH_ZERO);
+			assertEquals(1, markers.length);
+			assertEquals(fileName, markers[0].getAttribute(IMarker.MESSAGE));
+		}
+	}
+
+	public void testConcurrentFailureStillRunsOtherParticipants() throws Exception
+	{
+		final int fileCount = 20;
+		for (int i = 0; i < fileCount; i++)
+		{
+			IFile file = project.getFile("file" + i + ".txt");
+			file.create(new ByteArrayInputStream(("Hello world " + i).getBytes()), true, null);
+		}
+
+		final IBuildParticipant failing = new RequiredBuildParticipant()
+		{
+			@Override
+			public boolean isConcurrent()
+			{
+				return true;
+			}
+
+			public void deleteFile(BuildContext context, IProgressMonitor monitor)
+			{
+			}
+
+			public void buildFile(BuildContext context, IProgressMonitor monitor)
+			{
+				if ("file3.txt".equals(context.getName()))
+				{
+					throw new IllegalStateException("Broken participant");
+				}
+			}
+		};
+		final List<String> built = Collections.synchronizedList(new ArrayList<String>());
+		final IBuildParticipant serial = new RequiredBuildParticipant()
+		{
+			public void deleteFile(BuildContext context, IProgressMonitor monitor)
+			{
+			}
+
+			public void buildFile(BuildContext context, IProgressMonitor monitor)
+			{
+				built.add(context.getName());
+			}
+		};
+		manager = new BuildParticipantManager()
+		{
+			public List<IBuildParticipant> getBuildParticipants(String contentTypeId)
+			{
+				return filterParticipants(getAllBuildParticipants(), contentTypeId);
+			}
+
+			public List<IBuildParticipant> getAllBuildParticipants()
+			{
+				return CollectionsUtil.newList(failing, serial);
+			}
+		};
+		workerCount = 2;
+		builder.build(IncrementalProjectBuilder.FULL_BUILD, null, new NullProgressMonitor());
+
+		// the file the concurrent participant failed on still went through the serial one
+		assertEquals(fileCount + 1, built.size());
+		assertTrue(built.contains("file3.txt"));
+	}
 }
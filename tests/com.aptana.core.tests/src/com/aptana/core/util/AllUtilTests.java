@@ -22,6 +22,7 @@ public class AllUtilTests
 		suite.addTestSuite(CollectionsUtilTest.class);
 		suite.addTestSuite(EclipseUtilTest.class);
 		suite.addTestSuite(ExecutableUtilTest.class);
+		suite.addTestSuite(ExpiringCacheTest.class);
 		suite.addTestSuite(ExpiringMapTests.class);
 		suite.addTestSuite(FileUtilTest.class);
 		suite.addTestSuite(FirefoxUtilTest.class);
@@ -0,0 +1,98 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.util;
+
+import junit.framework.TestCase;
+
+import com.aptana.core.IFilter;
+
+public class ExpiringCacheTest extends TestCase
+{
+
+	private static final int LONG_TIMEOUT = 60000 * 5; // 5 minutes
+	private static final int SHORT_TIMEOUT = 200; // 200 ms
+
+	public void testGet()
+	{
+		ExpiringCache<String, String> cache = new ExpiringCache<String, String>(10, LONG_TIMEOUT);
+		cache.put("one", "cat");
+		assertEquals("cat", cache.get("one"));
+		assertNull(cache.get("two"));
+	}
+
+	public void testEvictsLeastRecentlyUsed()
+	{
+		ExpiringCache<String, String> cache = new ExpiringCache<String, String>(2, LONG_TIMEOUT);
+		cache.put("one", "cat");
+		cache.put("two", "dog");
+		cache.get("one");
+		cache.put("three", "fish");
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		assertNull("Least recently used entry was kept", cache.get("two"));
+		assertEquals("cat", cache.get("one"));
+		assertEquals("fish", cache.get("three"));
+	}
+
+	public void testEnsureCapacityKeepsAllEntries()
+	{
+		ExpiringCache<String, String> cache = new ExpiringCache<String, String>(2, LONG_TIMEOUT);
+		cache.ensureCapacity(3);
+		cache.ensureCapacity(1);
+		cache.put("one", "cat");
+		cache.put("two", "dog");
+		cache.put("three", "fish");
+		assertEquals(3, cache.size());
+		assertEquals(0, cache.getEvictions());
+		cache.put("four", "bird");
+		assertEquals(1, cache.getEvictions());
+		assertNull(cache.get("one"));
+	}
+
+	public void testExpiredItemsAreSwept() throws InterruptedException
+	{
+		ExpiringCache<String, String> cache = new ExpiringCache<String, String>(10, SHORT_TIMEOUT);
+		cache.put("one", "cat");
+		cache.put("two", "dog");
+		Thread.sleep(SHORT_TIMEOUT + 50);
+		// touching another key removes all expired entries, not only the requested one
+		cache.put("three", "fish");
+		assertEquals(1, cache.size());
+		assertEquals(2, cache.getEvictions());
+		assertNull("An expired item was retrieved", cache.get("one"));
+	}
+
+	public void testRemoveAll()
+	{
+		ExpiringCache<String, String> cache = new ExpiringCache<String, String>(10, LONG_TIMEOUT);
+		cache.put("a/b", "cat");
+		cache.put("a/c", "dog");
+		cache.put("d", "fish");
+		int removed = cache.removeAll(new IFilter<String>()
+		{
+			public boolean include(String item)
+			{
+				return item.startsWith("a/");
+			}
+		});
+		assertEquals(2, removed);
+		assertNull(cache.get("a/b"));
+		assertEquals("fish", cache.get("d"));
+	}
+
+	public void testRemoveAndClear()
+	{
+		ExpiringCache<String, String> cache = new ExpiringCache<String, String>(10, LONG_TIMEOUT);
+		cache.put("one", "cat");
+		cache.put("two", "dog");
+		assertEquals("cat", cache.remove("one"));
+		assertNull(cache.get("one"));
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+}
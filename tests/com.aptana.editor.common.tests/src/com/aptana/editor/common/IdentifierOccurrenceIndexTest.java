@@ -0,0 +1,101 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.Position;
+
+@SuppressWarnings("nls")
+public class IdentifierOccurrenceIndexTest extends TestCase {
+
+	private IDocument document;
+	private IdentifierOccurrenceIndex index;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		document = new Document("var foo = 1;\nfunction bar(foo) {\n\treturn foo + foobar;\n}\n");
+		index = new IdentifierOccurrenceIndex(document);
+		document.addDocumentListener(new IDocumentListener() {
+			public void documentAboutToBeChanged(DocumentEvent event) {
+			}
+
+			public void documentChanged(DocumentEvent event) {
+				index.documentChanged(event);
+			}
+		});
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		document = null;
+		index = null;
+		super.tearDown();
+	}
+
+	public void testOccurrences() {
+		List<Position> positions = index.getOccurrences("foo");
+		assertEquals(3, positions.size());
+		assertEquals(new Position(4, 3), positions.get(0));
+		assertEquals(new Position(26, 3), positions.get(1));
+		assertEquals(new Position(41, 3), positions.get(2));
+		assertEquals(1, index.getOccurrences("foobar").size());
+		assertTrue(index.getOccurrences("fo").isEmpty());
+	}
+
+	public void testIsIdentifier() {
+		assertTrue(IdentifierOccurrenceIndex.isIdentifier("foo_1"));
+		assertFalse(IdentifierOccurrenceIndex.isIdentifier("foo bar"));
+		assertFalse(IdentifierOccurrenceIndex.isIdentifier("+="));
+		assertFalse(IdentifierOccurrenceIndex.isIdentifier(""));
+	}
+
+	public void testInsertShiftsFollowingOccurrences() throws Exception {
+		document.replace(0, 0, "// header\n");
+		assertSameAsRebuilt();
+		assertEquals(new Position(14, 3), index.getOccurrences("foo").get(0));
+	}
+
+	public void testEditInsideIdentifier() throws Exception {
+		// foo -> fooz on the first line
+		document.replace(7, 0, "z");
+		assertSameAsRebuilt();
+		assertEquals(2, index.getOccurrences("foo").size());
+		assertEquals(1, index.getOccurrences("fooz").size());
+	}
+
+	public void testMultiLineEdits() throws Exception {
+		// join the first two lines, then replace a range spanning lines
+		document.replace(12, 1, " ");
+		assertSameAsRebuilt();
+		document.replace(20, 25, "baz\nfoo\nqux");
+		assertSameAsRebuilt();
+		document.replace(0, document.getLength(), "");
+		assertSameAsRebuilt();
+		assertEquals(0, index.size());
+		document.replace(0, 0, "foo foo\nfoo");
+		assertSameAsRebuilt();
+		assertEquals(3, index.getOccurrences("foo").size());
+	}
+
+	private void assertSameAsRebuilt() {
+		IdentifierOccurrenceIndex expected = new IdentifierOccurrenceIndex(document);
+		assertEquals(expected.size(), index.size());
+		for (String name : new String[] { "var", "foo", "fooz", "function", "bar", "return", "foobar", "baz", "qux",
+				"header" }) {
+			assertEquals(name, expected.getOccurrences(name), index.getOccurrences(name));
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common.contentassist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("nls")
+public class MetadataCacheTest extends TestCase
+{
+	/**
+	 * Hands out a new list with the current contents of the "index" each time it's read.
+	 */
+	private static class TestCache extends MetadataCache<List<String>>
+	{
+		List<String> index = Collections.emptyList();
+		int loads;
+		Runnable duringLoad;
+
+		@Override
+		protected List<String> load()
+		{
+			loads++;
+			List<String> copy = new ArrayList<String>(index);
+			if (duringLoad != null)
+			{
+				duringLoad.run();
+			}
+			return copy;
+		}
+
+		@Override
+		protected boolean isLoaded(List<String> metadata)
+		{
+			return !metadata.isEmpty();
+		}
+	}
+
+	public void testLoadsOnce() throws Exception
+	{
+		TestCache cache = new TestCache();
+		cache.index = Arrays.asList("a", "b");
+
+		List<String> first = cache.get();
+		assertEquals(Arrays.asList("a", "b"), first);
+		assertSame(first, cache.get());
+		assertEquals(1, cache.loads);
+	}
+
+	public void testEmptyIndexIsNotKept() throws Exception
+	{
+		TestCache cache = new TestCache();
+		assertTrue(cache.get().isEmpty());
+
+		cache.index = Arrays.asList("a");
+		assertEquals(Arrays.asList("a"), cache.get());
+		assertEquals(2, cache.loads);
+	}
+
+	public void testReset() throws Exception
+	{
+		TestCache cache = new TestCache();
+		cache.index = Arrays.asList("a");
+		cache.get();
+
+		cache.index = Arrays.asList("b");
+		assertEquals(Arrays.asList("a"), cache.get());
+		cache.reset();
+		assertEquals(Arrays.asList("b"), cache.get());
+	}
+
+	public void testResetWhileLoadingDropsStaleCopy() throws Exception
+	{
+		final TestCache cache = new TestCache();
+		cache.index = Arrays.asList("old");
+		cache.duringLoad = new Runnable()
+		{
+			public void run()
+			{
+				// The index gets rewritten while we're reading it
+				cache.index = Arrays.asList("new");
+				cache.duringLoad = null;
+				cache.reset();
+			}
+		};
+
+		assertEquals(Arrays.asList("old"), cache.get());
+		assertEquals(Arrays.asList("new"), cache.get());
+		assertEquals(2, cache.loads);
+	}
+}
@@ -7,13 +7,16 @@
  */
 package com.aptana.editor.css.validator;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.runtime.CoreException;
 
 import com.aptana.core.build.AbstractBuildParticipant;
 import com.aptana.core.build.IProblem;
+import com.aptana.core.util.EclipseUtil;
 import com.aptana.editor.common.validation.AbstractValidatorTestCase;
 import com.aptana.editor.css.CSSPlugin;
 import com.aptana.editor.css.ICSSConstants;
@@ -167,4 +170,51 @@ public class CSSValidatorTest extends AbstractValidatorTestCase
 		List<IProblem> items = getParseErrors(text);
 		assertEquals(0, items.size());
 	}
+
+	public void testInvalidPropertyValue() throws CoreException
+	{
+		String text = "div {\ncolor: red;\n}\np {\ncolor: bluish;\n}";
+
+		List<IProblem> items = getParseErrors(text);
+		assertEquals(1, items.size());
+
+		IProblem item = items.get(0);
+		assertEquals(IMarker.SEVERITY_ERROR, item.getSeverity());
+		assertEquals(5, item.getLineNumber());
+		assertTrue(item.getMessage().contains("bluish"));
+	}
+
+	public void testUserFilterHidesError() throws CoreException
+	{
+		fValidator.setFilters(EclipseUtil.instanceScope(), ".*bluish.*");
+		try
+		{
+			String text = "p {\ncolor: bluish;\n}";
+
+			List<IProblem> items = getParseErrors(text);
+			assertEquals(0, items.size());
+		}
+		finally
+		{
+			fValidator.restoreDefaults();
+		}
+	}
+
+	public void testUserFiltersKeepTheirBackreferences()
+	{
+		List<Pattern> patterns = CSSValidator.createFilterPatterns(Arrays.asList("(foo)\\1", "(\\w+) is \\1"));
+		assertEquals(2, patterns.size());
+
+		assertTrue(CSSValidator.isIgnored("foofoo", patterns));
+		assertTrue(CSSValidator.isIgnored("bar is bar", patterns));
+		assertFalse(CSSValidator.isIgnored("bar is baz", patterns));
+		assertFalse(CSSValidator.isIgnored("a foofoo", patterns));
+	}
+
+	public void testInvalidUserFilterIsSkipped()
+	{
+		List<Pattern> patterns = CSSValidator.createFilterPatterns(Arrays.asList("(", ".*bluish.*"));
+		assertEquals(1, patterns.size());
+		assertTrue(CSSValidator.isIgnored("color bluish", patterns));
+	}
 }
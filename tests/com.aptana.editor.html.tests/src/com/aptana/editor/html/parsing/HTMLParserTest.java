@@ -264,6 +264,29 @@ public class HTMLParserTest extends TestCase
 		assertEquals(MessageFormat.format(Messages.HTMLParser_missing_end_tag_error, "title"), titleError.getMessage());
 	}
 
+	public void testEmbeddedLanguages() throws Exception
+	{
+		String source = "<script>var a = ;</script><p style=\"color: red\" onclick=\"go();\">x</p><script>var b = ;</script>";
+		fParseState = new HTMLParseState(source);
+		IParseNode result = fParser.parse(fParseState);
+
+		HTMLElementNode firstScript = (HTMLElementNode) result.getChild(0);
+		HTMLElementNode p = (HTMLElementNode) result.getChild(1);
+		HTMLElementNode secondScript = (HTMLElementNode) result.getChild(2);
+		assertTrue(firstScript.getChild(0) instanceof JSParseRootNode);
+		assertTrue(secondScript.getChild(0) instanceof JSParseRootNode);
+		assertEquals(1, p.getCSSStyleNodes().length);
+		assertEquals(1, p.getJSAttributeNodes().length);
+		assertEquals(source.indexOf("go()"), p.getJSAttributeNodes()[0].getStartingOffset());
+
+		// Errors from the embedded blocks are reported in document order
+		List<IParseError> errors = fParseState.getErrors();
+		assertEquals(2, errors.size());
+		assertEquals(IJSConstants.CONTENT_TYPE_JS, errors.get(0).getLangauge());
+		assertTrue(errors.get(0).getOffset() < source.indexOf("<p"));
+		assertTrue(errors.get(1).getOffset() > source.indexOf("</p>"));
+	}
+
 	public void testTypeAttributeForStyle() throws Exception
 	{
 		String source = "<style type=\"text/css\">html {color: red;}</style>";
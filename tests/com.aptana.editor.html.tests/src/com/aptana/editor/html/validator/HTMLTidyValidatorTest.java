@@ -483,6 +483,26 @@ public class HTMLTidyValidatorTest extends AbstractValidatorTestCase
 		assertDoesntContain(items, "meta attribute \"content\" has invalid value \"not specified\"");
 	}
 
+	public void testElementSpecificAttributeOnUppercaseElement() throws CoreException
+	{
+		// @formatter:off
+		String text = "<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01 Transitional//EN\">\n" +
+			"<HTML>\n" +
+			"<HEAD>\n" +
+			"<TITLE>Example</TITLE>\n" +
+			"</HEAD>\n" +
+			"<BODY alink=\"red\" VLINK=\"blue\" bogus=\"x\">\n" +
+			"<P>Yeah</P>\n" +
+			"</BODY>\n" +
+			"</HTML>\n";
+		// @formatter:on
+
+		List<IProblem> items = getParseErrors(text);
+		assertDoesntContain(items, "BODY proprietary attribute \"alink\"");
+		assertDoesntContain(items, "BODY proprietary attribute \"VLINK\"");
+		assertContains(items, "BODY proprietary attribute \"bogus\"");
+	}
+
 	protected List<IProblem> getParseErrors(String source) throws CoreException
 	{
 		return getParseErrors(source, new HTMLParseState(source), IHTMLConstants.TIDY_PROBLEM);
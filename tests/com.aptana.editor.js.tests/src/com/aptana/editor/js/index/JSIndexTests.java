@@ -21,7 +21,6 @@ import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Platform;
-import com.aptana.jetty.util.epl.ajax.JSON;
 
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.IOUtil;
@@ -40,7 +39,7 @@ import com.aptana.editor.js.contentassist.model.UserAgentElement;
 import com.aptana.index.core.Index;
 import com.aptana.index.core.IndexManager;
 import com.aptana.index.core.IndexPlugin;
-import com.aptana.index.core.IndexReader;
+import com.aptana.index.core.IndexRecord;
 import com.aptana.index.core.QueryResult;
 import com.aptana.index.core.SearchPattern;
 import com.aptana.index.core.build.BuildContext;
@@ -349,17 +348,17 @@ public class JSIndexTests extends TestCase
 		assertNotNull(properties);
 		assertEquals(1, properties.size());
 
-		// split result into columns
+		// skip the owning type and name columns
 		String word = properties.get(0).getWord();
-		String[] columns = IndexReader.DELIMITER_PATTERN.split(word);
-		assertEquals(3, columns.length);
+		String prefix = type.getName() + IJSIndexConstants.DELIMITER + property.getName() + IJSIndexConstants.DELIMITER;
+		assertTrue(word.startsWith(prefix));
 
-		// grab last column and parse as JSON
-		String json = columns[2];
-		Object m = JSON.parse(json);
+		// decode the record in the last column
+		assertTrue("Expected a record in the last column", IndexRecord.isRecord(word, prefix.length()));
+		Object m = IndexRecord.decode(word, prefix.length());
 
 		// make sure we have a map
-		assertTrue("Expected a Map from the JSON string", m instanceof Map);
+		assertTrue("Expected a Map from the record", m instanceof Map);
 		Map<?, ?> map = (Map<?, ?>) m;
 
 		// test userAgents for "special value" which is really just a null value.
@@ -0,0 +1,239 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.js.parsing;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import junit.framework.TestCase;
+
+import com.aptana.editor.js.parsing.ast.JSAssignmentNode;
+import com.aptana.editor.js.parsing.ast.JSParseRootNode;
+import com.aptana.parsing.ParseState;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.IParseRootNode;
+
+public class JSIncrementalReparserTest extends TestCase
+{
+	private static final String SOURCE = "/** doc */\n" //$NON-NLS-1$
+			+ "var a = 1;\n" //$NON-NLS-1$
+			+ "(function($) {\n" //$NON-NLS-1$
+			+ "  // inner\n" //$NON-NLS-1$
+			+ "  function f(x, y) {\n" //$NON-NLS-1$
+			+ "    if (x > y) { return x + y; } else { y++; }\n" //$NON-NLS-1$
+			+ "  }\n" //$NON-NLS-1$
+			+ "  $.fn.g = function() { return this; };\n" //$NON-NLS-1$
+			+ "})(jQuery);\n" //$NON-NLS-1$
+			+ "/* end */\n" //$NON-NLS-1$
+			+ "var z = 3;\n"; //$NON-NLS-1$
+
+	private JSParser fParser;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		fParser = new JSParser();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		fParser = null;
+	}
+
+	/**
+	 * Parse the source, then re-parse the edited source incrementally and check the result matches a full parse and
+	 * the previous result still describes the source
+	 * 
+	 * @param source
+	 * @param edited
+	 * @return
+	 * @throws Exception
+	 */
+	protected IParseRootNode assertReparse(String source, String edited) throws Exception
+	{
+		ParseState parseState = new ParseState(source);
+		IParseRootNode previous = fParser.parse(parseState);
+		assertTrue(parseState.getErrors().isEmpty());
+
+		JSIncrementalReparser reparser = new JSIncrementalReparser(new JSParser());
+		IParseRootNode updated = reparser.reparse((JSParseRootNode) previous, source, edited);
+		assertNotNull("The previous result should have been updated", updated); //$NON-NLS-1$
+		assertNotSame(previous, updated);
+
+		IParseRootNode full = fParser.parse(new ParseState(edited));
+		assertTree(full, updated, true);
+
+		ParseState incrementalState = new ParseState(edited);
+		incrementalState.setPreviousParseResult(source, previous);
+		IParseRootNode incremental = fParser.parse(incrementalState);
+		assertTrue(incrementalState.getErrors().isEmpty());
+		assertTree(full, incremental, true);
+
+		// the previous result may still be in use elsewhere. The subtrees before the edit are shared, so their parents
+		// are in the latest result
+		assertTree(fParser.parse(new ParseState(source)), previous, false);
+
+		return incremental;
+	}
+
+	/**
+	 * Check that both ASTs have the same text, shape and comments
+	 * 
+	 * @param expected
+	 * @param actual
+	 * @param checkParents
+	 */
+	protected void assertTree(IParseRootNode expected, IParseRootNode actual, boolean checkParents)
+	{
+		assertEquals(expected.toString(), actual.toString());
+		assertNodes(expected, actual, checkParents);
+
+		// comments are grouped by type after a full parse
+		IParseNode[] expectedComments = sortByOffset(expected.getCommentNodes());
+		IParseNode[] actualComments = sortByOffset(actual.getCommentNodes());
+		assertEquals(expectedComments.length, actualComments.length);
+
+		for (int i = 0; i < expectedComments.length; i++)
+		{
+			assertNode(expectedComments[i], actualComments[i]);
+		}
+	}
+
+	/**
+	 * sortByOffset
+	 * 
+	 * @param nodes
+	 * @return
+	 */
+	protected IParseNode[] sortByOffset(IParseNode[] nodes)
+	{
+		IParseNode[] result = nodes.clone();
+
+		Arrays.sort(result, new Comparator<IParseNode>()
+		{
+			public int compare(IParseNode o1, IParseNode o2)
+			{
+				return o1.getStartingOffset() - o2.getStartingOffset();
+			}
+		});
+
+		return result;
+	}
+
+	/**
+	 * Check that both trees have the same shape, node types and offsets
+	 * 
+	 * @param expected
+	 * @param actual
+	 * @param checkParents
+	 */
+	protected void assertNodes(IParseNode expected, IParseNode actual, boolean checkParents)
+	{
+		assertNode(expected, actual);
+		assertEquals(expected.getChildCount(), actual.getChildCount());
+
+		for (int i = 0; i < expected.getChildCount(); i++)
+		{
+			if (checkParents)
+			{
+				assertSame(actual, actual.getChild(i).getParent());
+			}
+
+			assertNodes(expected.getChild(i), actual.getChild(i), checkParents);
+		}
+	}
+
+	/**
+	 * assertNode
+	 * 
+	 * @param expected
+	 * @param actual
+	 */
+	protected void assertNode(IParseNode expected, IParseNode actual)
+	{
+		assertEquals(expected.getNodeType(), actual.getNodeType());
+		assertEquals(expected.getStartingOffset(), actual.getStartingOffset());
+		assertEquals(expected.getEndingOffset(), actual.getEndingOffset());
+	}
+
+	public void testInsertTopLevelStatement() throws Exception
+	{
+		assertReparse(SOURCE, SOURCE.replace("var a = 1;\n", "var a = 1;\nvar b = 2;\n")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public void testEditInsideFunctionBody() throws Exception
+	{
+		assertReparse(SOURCE, SOURCE.replace("return x + y;", "return x + y + 10;")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public void testDeleteStatementInsideFunctionBody() throws Exception
+	{
+		assertReparse(SOURCE, SOURCE.replace("  $.fn.g = function() { return this; };\n", "")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public void testEditComment() throws Exception
+	{
+		assertReparse(SOURCE, SOURCE.replace("// inner", "// a longer comment")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	public void testOperatorsAfterEditAreShifted() throws Exception
+	{
+		IParseRootNode root = assertReparse(SOURCE, SOURCE.replace("var a = 1;", "var a = 12345;")); //$NON-NLS-1$ //$NON-NLS-2$
+		String edited = SOURCE.replace("var a = 1;", "var a = 12345;"); //$NON-NLS-1$ //$NON-NLS-2$
+
+		IParseNode node = root.getNodeAtOffset(edited.indexOf("$.fn.g")); //$NON-NLS-1$
+		while (node != null && !(node instanceof JSAssignmentNode))
+		{
+			node = node.getParent();
+		}
+
+		assertNotNull(node);
+		assertEquals(edited.indexOf("= function"), ((JSAssignmentNode) node).getOperator().getStart()); //$NON-NLS-1$
+	}
+
+	public void testOnlyNodesEnclosingOrFollowingTheEditAreCopied() throws Exception
+	{
+		IParseRootNode previous = fParser.parse(new ParseState(SOURCE));
+		String edited = SOURCE.replace("return x + y;", "return x + y + 10;"); //$NON-NLS-1$ //$NON-NLS-2$
+
+		JSIncrementalReparser reparser = new JSIncrementalReparser(new JSParser());
+		IParseRootNode updated = reparser.reparse((JSParseRootNode) previous, SOURCE, edited);
+		assertNotNull(updated);
+
+		// "var a = 1;" comes before the edit, "var z = 3;" after it and the wrapper function call encloses it
+		assertSame(previous.getChild(0), updated.getChild(0));
+		assertSame(updated, updated.getChild(0).getParent());
+		assertNotSame(previous.getChild(1), updated.getChild(1));
+		assertNotSame(previous.getChild(2), updated.getChild(2));
+		assertEquals(previous.getChild(2).getStartingOffset() + 5, updated.getChild(2).getStartingOffset());
+	}
+
+	public void testUnterminatedStringFallsBackToFullParse() throws Exception
+	{
+		ParseState parseState = new ParseState(SOURCE);
+		IParseRootNode previous = fParser.parse(parseState);
+		String edited = SOURCE.replace("return this;", "return \"this;"); //$NON-NLS-1$ //$NON-NLS-2$
+
+		JSIncrementalReparser reparser = new JSIncrementalReparser(new JSParser());
+		assertNull(reparser.reparse((JSParseRootNode) previous, SOURCE, edited));
+
+		// the previous result is left as is
+		assertEquals(fParser.parse(new ParseState(SOURCE)).toString(), previous.toString());
+	}
+
+	public void testUnterminatedCommentFallsBackToFullParse() throws Exception
+	{
+		ParseState parseState = new ParseState(SOURCE);
+		IParseRootNode previous = fParser.parse(parseState);
+		String edited = SOURCE.replace("var a = 1;", "/* var a = 1;"); //$NON-NLS-1$ //$NON-NLS-2$
+
+		JSIncrementalReparser reparser = new JSIncrementalReparser(new JSParser());
+		assertNull(reparser.reparse((JSParseRootNode) previous, SOURCE, edited));
+	}
+}
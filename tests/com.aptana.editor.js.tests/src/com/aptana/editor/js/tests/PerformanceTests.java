@@ -23,6 +23,7 @@ import com.aptana.editor.js.parsing.JSParserPerformanceTest;
 import com.aptana.editor.js.parsing.JSScannerPerformanceTest;
 import com.aptana.editor.js.sdoc.parsing.SDocParserPerformanceTest;
 import com.aptana.editor.js.tests.performance.OpenJSEditorTest;
+import com.aptana.editor.js.validator.JSLintValidatorPerformanceTest;
 
 public class PerformanceTests
 {
@@ -44,6 +45,7 @@ public class PerformanceTests
 		suite.addTestSuite(JSBuildPerformanceTest.class);
 		suite.addTestSuite(JSCodeScannerPerformanceTest.class);
 		suite.addTestSuite(JSIndexingPerformanceTest.class);
+		suite.addTestSuite(JSLintValidatorPerformanceTest.class);
 		suite.addTestSuite(JSParserPerformanceTest.class);
 		suite.addTestSuite(JSScannerPerformanceTest.class);
 		suite.addTestSuite(JSSourcePartitionScannerPerformanceTest.class);
@@ -0,0 +1,81 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.js.validator;
+
+import java.io.File;
+import java.net.URL;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.test.performance.PerformanceTestCase;
+
+import com.aptana.core.util.ResourceUtil;
+import com.aptana.editor.js.JSPlugin;
+import com.aptana.index.core.FileStoreBuildContext;
+import com.aptana.index.core.build.BuildContext;
+
+public class JSLintValidatorPerformanceTest extends PerformanceTestCase
+{
+
+	private JSLintValidator validator;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		validator = new JSLintValidator()
+		{
+
+			@Override
+			protected String getPreferenceNode()
+			{
+				return JSPlugin.PLUGIN_ID;
+			}
+
+			@Override
+			public String getId()
+			{
+				return ID;
+			}
+		};
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		validator = null;
+		super.tearDown();
+	}
+
+	public void testValidate() throws Exception
+	{
+		// read in the file
+		URL url = FileLocator.find(Platform.getBundle("com.aptana.editor.js.tests"),
+				Path.fromPortableString("performance/ext/ext-core.js"), null);
+		File file = ResourceUtil.resourcePathToFile(url);
+		IFileStore fileStore = EFS.getStore(file.toURI());
+
+		// Ok now actually validate the thing, the real work
+		for (int i = 0; i < 50; i++)
+		{
+			// Don't measure reading in string...
+			BuildContext context = new FileStoreBuildContext(fileStore);
+			context.getContents();
+
+			startMeasuring();
+			validator.buildFile(context, null);
+			stopMeasuring();
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+}
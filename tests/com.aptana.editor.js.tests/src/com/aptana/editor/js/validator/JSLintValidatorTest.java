@@ -2760,6 +2760,29 @@ public class JSLintValidatorTest extends AbstractValidatorTestCase
 		assertProblemExists(items, "Duplicate '1'.", 3, IMarker.SEVERITY_WARNING, 29);
 	}
 
+	public void testReusedLintStateDoesNotLeak() throws CoreException
+	{
+		// @formatter:off
+		String text = "/*jslint undef: false */\n" +
+				"var foo = function() {\n" +
+				"  hello();\n" +
+				"};";
+		// @formatter:on
+
+		List<IProblem> first = getParseErrors(text);
+		getParseErrors("/*global hello */\nvar chris = blah = 'something';");
+		List<IProblem> second = getParseErrors(text);
+
+		assertEquals(first.size(), second.size());
+		for (int i = 0; i < first.size(); i++)
+		{
+			IProblem expected = first.get(i);
+			assertProblem(second.get(i), expected.getMessage(), expected.getLineNumber(), expected.getSeverity(),
+					expected.getOffset());
+		}
+		assertProblemExists(second, "'hello' was used before it was defined.", 3, IMarker.SEVERITY_WARNING, 50);
+	}
+
 	protected void assertProblemExists(List<IProblem> items, String msg, int line, int severity, int offset)
 	{
 		IProblem item = assertContains(items, msg);
@@ -0,0 +1,125 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.aptana.filesystem.ftp.internal;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+
+import com.enterprisedt.net.ftp.FTPFile;
+
+@SuppressWarnings("nls")
+public class MachineListedFileTest extends TestCase {
+
+	public void testFileFacts() {
+		FTPFile file = MachineListedFile.parse("type=file;size=1024;modify=20120315101530;perm=rw;UNIX.mode=0644;UNIX.owner=max;UNIX.group=staff; index.html");
+		assertNotNull(file);
+		assertEquals("index.html", file.getName());
+		assertFalse(file.isDir());
+		assertEquals(1024, file.size());
+		assertEquals(utc(2012, 3, 15, 10, 15, 30, 0), file.lastModified().getTime());
+		assertEquals("-rw-r--r--", file.getPermissions());
+		assertEquals("max", file.getOwner());
+		assertEquals("staff", file.getGroup());
+	}
+
+	public void testFactNamesIgnoreCase() {
+		FTPFile file = MachineListedFile.parse("Type=File;Size=10;Modify=20120315101530; a.txt");
+		assertNotNull(file);
+		assertFalse(file.isDir());
+		assertEquals(10, file.size());
+		assertEquals(utc(2012, 3, 15, 10, 15, 30, 0), file.lastModified().getTime());
+	}
+
+	public void testDirectoryNameWithSpaces() {
+		FTPFile file = MachineListedFile.parse("type=dir;modify=20111231235959; my documents");
+		assertNotNull(file);
+		assertTrue(file.isDir());
+		assertEquals("my documents", file.getName());
+	}
+
+	public void testNameWithPathIsReducedToLastSegment() {
+		FTPFile file = MachineListedFile.parse("type=file;size=1; /home/user/a.txt");
+		assertNotNull(file);
+		assertEquals("a.txt", file.getName());
+	}
+
+	public void testCurrentAndParentDirectories() {
+		FTPFile cdir = MachineListedFile.parse("type=cdir;modify=20120101000000; /home/user");
+		assertNotNull(cdir);
+		assertTrue(cdir.isDir());
+		assertEquals(".", cdir.getName());
+
+		FTPFile pdir = MachineListedFile.parse("type=pdir;modify=20120101000000; /home");
+		assertNotNull(pdir);
+		assertTrue(pdir.isDir());
+		assertEquals("..", pdir.getName());
+	}
+
+	public void testSymbolicLink() {
+		FTPFile link = MachineListedFile.parse("type=OS.unix=slink:/var/www;modify=20120101000000; www");
+		assertNotNull(link);
+		assertEquals("www", link.getName());
+		assertTrue(MachineListedFile.containsLink(new FTPFile[] { link }));
+
+		FTPFile file = MachineListedFile.parse("type=file;size=1; a.txt");
+		assertFalse(MachineListedFile.containsLink(new FTPFile[] { file }));
+		assertTrue(MachineListedFile.containsLink(new FTPFile[] { file, link }));
+	}
+
+	public void testModifyTimeIsUTC() {
+		TimeZone defaultTimeZone = TimeZone.getDefault();
+		try {
+			TimeZone.setDefault(TimeZone.getTimeZone("America/Los_Angeles"));
+			FTPFile file = MachineListedFile.parse("type=file;modify=20120701120000; a.txt");
+			assertEquals(utc(2012, 7, 1, 12, 0, 0, 0), file.lastModified().getTime());
+		} finally {
+			TimeZone.setDefault(defaultTimeZone);
+		}
+	}
+
+	public void testModifyTimeWithFraction() {
+		FTPFile file = MachineListedFile.parse("type=file;modify=20120315101530.5; a.txt");
+		assertEquals(utc(2012, 3, 15, 10, 15, 30, 500), file.lastModified().getTime());
+
+		file = MachineListedFile.parse("type=file;modify=20120315101530.123456; a.txt");
+		assertEquals(utc(2012, 3, 15, 10, 15, 30, 123), file.lastModified().getTime());
+	}
+
+	public void testMissingOrInvalidModifyTime() {
+		FTPFile file = MachineListedFile.parse("type=file;size=1; a.txt");
+		assertEquals(0, file.lastModified().getTime());
+
+		file = MachineListedFile.parse("type=file;modify=2012xx15101530; a.txt");
+		assertEquals(0, file.lastModified().getTime());
+	}
+
+	public void testPermFactWithoutMode() {
+		assertEquals("drwx------", MachineListedFile.parse("type=dir;perm=flcdmpe; dir").getPermissions());
+		assertEquals("dr-x------", MachineListedFile.parse("type=dir;perm=le; dir").getPermissions());
+		assertEquals("-rw-------", MachineListedFile.parse("type=file;perm=adfrw; a.txt").getPermissions());
+		assertEquals("-r--------", MachineListedFile.parse("type=file;perm=r; a.txt").getPermissions());
+	}
+
+	public void testMalformedLines() {
+		assertNull(MachineListedFile.parse("index.html"));
+		assertNull(MachineListedFile.parse(" index.html"));
+		assertNull(MachineListedFile.parse("type=file; "));
+		assertNull(MachineListedFile.parse("size=10;modify=20120101000000; a.txt"));
+	}
+
+	private static long utc(int year, int month, int day, int hour, int minute, int second, int millis) {
+		Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		calendar.clear();
+		calendar.set(year, month - 1, day, hour, minute, second);
+		calendar.set(Calendar.MILLISECOND, millis);
+		return calendar.getTimeInMillis();
+	}
+}
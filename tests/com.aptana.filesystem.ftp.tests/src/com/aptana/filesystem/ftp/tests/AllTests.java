@@ -13,6 +13,7 @@ import junit.framework.TestSuite;
 import org.kohsuke.junit.ParallelTestSuite;
 
 import com.aptana.filesystem.ftp.FTPConnectionPointTest;
+import com.aptana.filesystem.ftp.internal.MachineListedFileTest;
 
 public class AllTests
 {
@@ -24,6 +25,7 @@ public class AllTests
 		suite.addTestSuite(FTPConnectionPointTest.class);
 		suite.addTestSuite(FTPConnectionTest.class);
 		suite.addTestSuite(FTPConnectionWithBasePathTest.class);
+		suite.addTestSuite(MachineListedFileTest.class);
 		// $JUnit-END$
 		return suite;
 	}
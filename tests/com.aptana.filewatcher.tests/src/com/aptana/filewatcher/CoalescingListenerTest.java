@@ -0,0 +1,184 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.filewatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("nls")
+public class CoalescingListenerTest extends TestCase
+{
+
+	private static final long TIMEOUT = 5000;
+	private static final String ROOT = "/root";
+
+	private ScheduledExecutorService dispatcher;
+	private BlockingQueue<List<FileEvent>> batches;
+	private CoalescingListener listener;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		dispatcher = Executors.newSingleThreadScheduledExecutor();
+		batches = new LinkedBlockingQueue<List<FileEvent>>();
+		listener = new CoalescingListener(new IFileEventBatchListener()
+		{
+			public void filesChanged(List<FileEvent> events)
+			{
+				batches.add(events);
+			}
+		}, dispatcher);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		listener.dispose();
+		dispatcher.shutdownNow();
+		super.tearDown();
+	}
+
+	public void testCreatedThenModifiedIsCreated() throws Exception
+	{
+		listener.fileCreated(1, ROOT, "a.txt");
+		listener.fileModified(1, ROOT, "a.txt");
+		listener.fileModified(1, ROOT, "a.txt");
+
+		assertBatch("[created a.txt in /root]");
+	}
+
+	public void testCreatedThenDeletedIsDropped() throws Exception
+	{
+		listener.fileCreated(1, ROOT, "a.txt");
+		listener.fileModified(1, ROOT, "b.txt");
+		listener.fileDeleted(1, ROOT, "a.txt");
+
+		assertBatch("[modified b.txt in /root]");
+	}
+
+	public void testModifiedThenDeletedIsDeleted() throws Exception
+	{
+		listener.fileModified(1, ROOT, "a.txt");
+		listener.fileDeleted(1, ROOT, "a.txt");
+
+		assertBatch("[deleted a.txt in /root]");
+	}
+
+	public void testDeletedThenCreatedIsModified() throws Exception
+	{
+		listener.fileDeleted(1, ROOT, "a.txt");
+		listener.fileCreated(1, ROOT, "a.txt");
+
+		List<FileEvent> batch = assertBatch("[modified a.txt in /root]");
+		assertEquals(1, batch.get(0).getWatchId());
+		assertNull(batch.get(0).getOldName());
+	}
+
+	public void testDeletedThenModifiedIsModified() throws Exception
+	{
+		listener.fileDeleted(1, ROOT, "a.txt");
+		listener.fileModified(1, ROOT, "a.txt");
+
+		assertBatch("[modified a.txt in /root]");
+	}
+
+	public void testRenamedThenModifiedIsRenamed() throws Exception
+	{
+		listener.fileRenamed(1, ROOT, "old.txt", "new.txt");
+		listener.fileModified(1, ROOT, "new.txt");
+
+		assertBatch("[renamed old.txt -> new.txt in /root]");
+	}
+
+	public void testModifiedThenRenamedIsRenamed() throws Exception
+	{
+		listener.fileModified(1, ROOT, "new.txt");
+		listener.fileRenamed(1, ROOT, "old.txt", "new.txt");
+
+		assertBatch("[renamed old.txt -> new.txt in /root]");
+	}
+
+	public void testFilesAreKeptApart() throws Exception
+	{
+		listener.fileModified(1, ROOT, "a.txt");
+		listener.fileModified(1, ROOT, "b.txt");
+		listener.fileModified(1, "/other", "a.txt");
+		listener.fileDeleted(1, ROOT, "c.txt");
+
+		assertBatch("[modified a.txt in /root, modified b.txt in /root, modified a.txt in /other, deleted c.txt in /root]");
+	}
+
+	public void testBatchWaitsForQuietPeriod() throws Exception
+	{
+		long start = System.currentTimeMillis();
+		listener.fileModified(1, ROOT, "a.txt");
+		Thread.sleep(CoalescingListener.QUIET_PERIOD / 2);
+		long last = System.currentTimeMillis();
+		listener.fileModified(1, ROOT, "b.txt");
+
+		assertBatch("[modified a.txt in /root, modified b.txt in /root]");
+		long delivered = System.currentTimeMillis();
+		assertTrue(delivered - last >= CoalescingListener.QUIET_PERIOD);
+		assertTrue(delivered - start >= CoalescingListener.QUIET_PERIOD * 3 / 2);
+	}
+
+	public void testSeparateBurstsAreSeparateBatches() throws Exception
+	{
+		listener.fileModified(1, ROOT, "a.txt");
+		assertBatch("[modified a.txt in /root]");
+
+		listener.fileModified(1, ROOT, "a.txt");
+		assertBatch("[modified a.txt in /root]");
+	}
+
+	public void testBatchIsDeliveredAfterMaxDelay() throws Exception
+	{
+		// events keep coming faster than the quiet period, the batch still has to go out
+		long start = System.currentTimeMillis();
+		long end = start + CoalescingListener.MAX_DELAY * 2;
+		int count = 0;
+		List<FileEvent> batch = null;
+		while (batch == null && System.currentTimeMillis() < end)
+		{
+			listener.fileModified(1, ROOT, "file" + count++ + ".txt");
+			batch = batches.poll(CoalescingListener.QUIET_PERIOD / 4, TimeUnit.MILLISECONDS);
+		}
+		long delivered = System.currentTimeMillis();
+
+		assertNotNull(batch);
+		assertTrue(delivered - start >= CoalescingListener.MAX_DELAY);
+		assertTrue(batch.size() > 1);
+		assertEquals("file0.txt", batch.get(0).getName());
+	}
+
+	public void testDisposeDropsPendingEvents() throws Exception
+	{
+		listener.fileModified(1, ROOT, "a.txt");
+		listener.dispose();
+		listener.fileModified(1, ROOT, "b.txt");
+
+		assertNull(batches.poll(CoalescingListener.QUIET_PERIOD * 3, TimeUnit.MILLISECONDS));
+	}
+
+	private List<FileEvent> assertBatch(String expected) throws InterruptedException
+	{
+		List<FileEvent> batch = batches.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+		assertNotNull("No batch delivered", batch);
+		assertEquals(expected, new ArrayList<FileEvent>(batch).toString());
+		return batch;
+	}
+
+}
@@ -0,0 +1,203 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.filewatcher.poller;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import net.contentobjects.jnotify.IJNotify;
+import net.contentobjects.jnotify.JNotifyListener;
+
+@SuppressWarnings("nls")
+public class PollingNotifierTest extends TestCase
+{
+
+	private static final long TIMEOUT = 10000;
+
+	private File root;
+	private PollingNotifier notifier;
+	private BlockingQueue<String> events;
+	private JNotifyListener listener;
+	private int watch = -1;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		root = File.createTempFile("watched", "");
+		root.delete();
+		root.mkdirs();
+		notifier = new PollingNotifier();
+		events = new LinkedBlockingQueue<String>();
+		listener = new JNotifyListener()
+		{
+			public void fileCreated(int wd, String rootPath, String name)
+			{
+				events.add("created " + name + " in " + rootPath);
+			}
+
+			public void fileDeleted(int wd, String rootPath, String name)
+			{
+				events.add("deleted " + name + " in " + rootPath);
+			}
+
+			public void fileModified(int wd, String rootPath, String name)
+			{
+				events.add("modified " + name + " in " + rootPath);
+			}
+
+			public void fileRenamed(int wd, String rootPath, String oldName, String newName)
+			{
+				events.add("renamed " + oldName + " -> " + newName + " in " + rootPath);
+			}
+		};
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		try
+		{
+			if (watch != -1)
+			{
+				notifier.removeWatch(watch);
+			}
+		}
+		finally
+		{
+			delete(root);
+			super.tearDown();
+		}
+	}
+
+	public void testChangesAreReportedRelativeToWatchedPath() throws Exception
+	{
+		File modified = createFile(root, "modified.txt");
+		File deleted = createFile(root, "deleted.txt");
+		File folder = new File(root, "folder");
+		folder.mkdir();
+		createFile(folder, "unchanged.txt");
+		watch = notifier.addWatch(root.getPath(), IJNotify.FILE_ANY, true, listener);
+
+		createFile(folder, "created.txt");
+		assertTrue(modified.setLastModified(modified.lastModified() - 10000));
+		assertTrue(deleted.delete());
+
+		Set<String> expected = new HashSet<String>();
+		expected.add("created folder" + File.separator + "created.txt in " + root.getPath());
+		expected.add("modified modified.txt in " + root.getPath());
+		expected.add("deleted deleted.txt in " + root.getPath());
+		Set<String> actual = await(expected);
+		// depending on the timestamp resolution the folder may be reported as modified too
+		actual.remove("modified folder in " + root.getPath());
+		assertEquals(expected, actual);
+	}
+
+	public void testExistingFilesAreNotReported() throws Exception
+	{
+		createFile(root, "existing.txt");
+		watch = notifier.addWatch(root.getPath(), IJNotify.FILE_ANY, true, listener);
+
+		// waits for more than one poll
+		assertNull(events.poll(PollingNotifier.POLL_FREQUENCY * 2 + 500, TimeUnit.MILLISECONDS));
+	}
+
+	public void testMaskFiltersEvents() throws Exception
+	{
+		File existing = createFile(root, "existing.txt");
+		watch = notifier.addWatch(root.getPath(), IJNotify.FILE_DELETED, false, listener);
+
+		createFile(root, "created.txt");
+		assertTrue(existing.delete());
+
+		Set<String> expected = new HashSet<String>();
+		expected.add("deleted existing.txt in " + root.getPath());
+		assertEquals(expected, await(expected));
+		assertNull(events.poll(PollingNotifier.POLL_FREQUENCY + 500, TimeUnit.MILLISECONDS));
+	}
+
+	public void testSubtreeIsOnlyWatchedWhenAsked() throws Exception
+	{
+		File folder = new File(root, "folder");
+		folder.mkdir();
+		watch = notifier.addWatch(root.getPath(), IJNotify.FILE_CREATED, false, listener);
+
+		createFile(folder, "nested.txt");
+		createFile(root, "top.txt");
+
+		Set<String> expected = new HashSet<String>();
+		expected.add("created top.txt in " + root.getPath());
+		assertEquals(expected, await(expected));
+		assertNull(events.poll(PollingNotifier.POLL_FREQUENCY + 500, TimeUnit.MILLISECONDS));
+	}
+
+	public void testRemovedWatchIsNotReported() throws Exception
+	{
+		int id = notifier.addWatch(root.getPath(), IJNotify.FILE_ANY, true, listener);
+		assertTrue(notifier.removeWatch(id));
+		assertFalse(notifier.removeWatch(id));
+
+		createFile(root, "created.txt");
+		assertNull(events.poll(PollingNotifier.POLL_FREQUENCY * 2 + 500, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Collects the reported events until all the expected ones were seen, or the timeout expires.
+	 */
+	private Set<String> await(Set<String> expected) throws InterruptedException
+	{
+		Set<String> result = new HashSet<String>();
+		long end = System.currentTimeMillis() + TIMEOUT;
+		while (!result.containsAll(expected))
+		{
+			String event = events.poll(end - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+			if (event == null)
+			{
+				break;
+			}
+			result.add(event);
+		}
+		return result;
+	}
+
+	private static File createFile(File folder, String name) throws IOException
+	{
+		File file = new File(folder, name);
+		FileOutputStream out = new FileOutputStream(file);
+		try
+		{
+			out.write(name.getBytes());
+		}
+		finally
+		{
+			out.close();
+		}
+		return file;
+	}
+
+	private static void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if (children != null)
+		{
+			for (File child : children)
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
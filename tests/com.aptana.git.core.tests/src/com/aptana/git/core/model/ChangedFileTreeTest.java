@@ -0,0 +1,92 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.git.core.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.aptana.git.core.model.ChangedFile.Status;
+
+public class ChangedFileTreeTest extends TestCase
+{
+
+	private ChangedFileTree tree;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		List<ChangedFile> files = new ArrayList<ChangedFile>();
+		files.add(new ChangedFile("README", Status.MODIFIED));
+		files.add(new ChangedFile("src/a/One.java", Status.NEW));
+		files.add(new ChangedFile("src/a/Two.java", Status.DELETED));
+		files.add(new ChangedFile("src/b/Three.java", Status.MODIFIED));
+		tree = new ChangedFileTree(files);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		tree = null;
+		super.tearDown();
+	}
+
+	public void testGet()
+	{
+		assertEquals(4, tree.size());
+		assertEquals(Status.NEW, tree.get("src/a/One.java").getStatus());
+		assertEquals(Status.MODIFIED, tree.get(new String[] { "README" }).getStatus());
+		assertNull(tree.get("src/a"));
+		assertNull(tree.get("src/a/Missing.java"));
+	}
+
+	public void testHasChanges()
+	{
+		assertTrue(tree.hasChanges(new String[0]));
+		assertTrue(tree.hasChanges(new String[] { "src" }));
+		assertTrue(tree.hasChanges(new String[] { "src", "b", "Three.java" }));
+		assertFalse(tree.hasChanges(new String[] { "src", "c" }));
+		assertFalse(tree.hasChanges(new String[] { "docs" }));
+	}
+
+	public void testGetFiles()
+	{
+		List<ChangedFile> files = new ArrayList<ChangedFile>(tree.getFiles(new String[] { "src", "a" }));
+		Collections.sort(files);
+		assertEquals(2, files.size());
+		assertEquals("src/a/One.java", files.get(0).path);
+		assertEquals("src/a/Two.java", files.get(1).path);
+		assertEquals(4, tree.getFiles(new String[0]).size());
+		assertTrue(tree.getFiles(new String[] { "lib" }).isEmpty());
+	}
+
+	public void testRemovePrunesEmptyFolders()
+	{
+		assertTrue(tree.remove("src/b/Three.java"));
+		assertFalse(tree.remove("src/b/Three.java"));
+		assertFalse(tree.hasChanges(new String[] { "src", "b" }));
+		assertTrue(tree.hasChanges(new String[] { "src" }));
+		assertEquals(3, tree.size());
+
+		assertTrue(tree.remove("src/a/One.java"));
+		assertTrue(tree.remove("src/a/Two.java"));
+		assertFalse(tree.hasChanges(new String[] { "src" }));
+		assertTrue(tree.hasChanges(new String[0]));
+	}
+
+	public void testAddReplacesSamePath()
+	{
+		ChangedFile replacement = new ChangedFile("src/a/One.java", Status.MODIFIED);
+		tree.add(replacement);
+		assertEquals(4, tree.size());
+		assertSame(replacement, tree.get("src/a/One.java"));
+	}
+}
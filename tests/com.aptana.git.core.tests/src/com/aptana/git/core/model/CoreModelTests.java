@@ -17,9 +17,12 @@ public class CoreModelTests
 	{
 		TestSuite suite = new TestSuite(CoreModelTests.class.getName());
 		// $JUnit-BEGIN$
+		suite.addTestSuite(ChangedFileTreeTest.class);
 		suite.addTestSuite(GitExecutableTest.class);
+		suite.addTestSuite(GitIndexFileTest.class);
 		suite.addTestSuite(GitIndexTest.class);
 		suite.addTestSuite(GitRefTest.class);
+		suite.addTestSuite(GitRevListTest.class);
 		suite.addTestSuite(GitRevSpecifierTest.class);
 		suite.addTestSuite(GitRepositoryTest.class);
 		// $JUnit-END$
@@ -0,0 +1,128 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.git.core.model;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IPath;
+
+@SuppressWarnings("nls")
+public class GitIndexFileTest extends GitTestCase
+{
+
+	public void testStagedAndUnstagedChanges() throws Exception
+	{
+		GitRepository repo = createRepo();
+		IPath workingDirectory = repo.workingDirectory();
+		writeFile(workingDirectory, "a.txt", "a");
+		writeFile(workingDirectory, "dir/b.txt", "b");
+		writeFile(workingDirectory, "dir/sub/c.txt", "c");
+		assertTrue(repo.execute(GitRepository.ReadWrite.WRITE, "add", ".").isOK());
+
+		// Nothing committed yet, everything in the index is new
+		Map<String, List<String>> staged = stagedChanges(repo);
+		assertEquals(3, staged.size());
+		assertEquals("A", staged.get("dir/sub/c.txt").get(4));
+		assertEquals(":000000", staged.get("dir/sub/c.txt").get(0));
+
+		assertTrue(repo.execute(GitRepository.ReadWrite.WRITE, "commit", "-m", "Initial commit").isOK());
+		assertTrue(stagedChanges(repo).isEmpty());
+		assertTrue(unstagedChanges(repo, Collections.<String> emptySet()).isEmpty());
+
+		// Stage a modification and a deletion, then make unstaged changes
+		writeFile(workingDirectory, "dir/b.txt", "staged");
+		assertTrue(repo.execute(GitRepository.ReadWrite.WRITE, "add", "dir/b.txt").isOK());
+		assertTrue(repo.execute(GitRepository.ReadWrite.WRITE, "rm", "-q", "a.txt").isOK());
+		writeFile(workingDirectory, "dir/sub/c.txt", "unstaged");
+
+		staged = stagedChanges(repo);
+		assertEquals(2, staged.size());
+		assertEquals("M", staged.get("dir/b.txt").get(4));
+		assertEquals(GitIndexFile.hashFile(workingDirectory.append("dir/b.txt").toFile()), staged.get("dir/b.txt")
+				.get(3));
+		assertEquals("D", staged.get("a.txt").get(4));
+
+		Map<String, List<String>> unstaged = unstagedChanges(repo, Collections.<String> emptySet());
+		assertEquals(1, unstaged.size());
+		assertEquals("M", unstaged.get("dir/sub/c.txt").get(4));
+
+		// Limit to a directory
+		assertTrue(unstagedChanges(repo, Collections.singleton("dir/b.txt")).isEmpty());
+		assertEquals(1, unstagedChanges(repo, Collections.singleton("dir")).size());
+
+		// Deleted from the working tree
+		assertTrue(workingDirectory.append("dir/b.txt").toFile().delete());
+		unstaged = unstagedChanges(repo, Collections.<String> emptySet());
+		assertEquals(2, unstaged.size());
+		assertEquals("D", unstaged.get("dir/b.txt").get(4));
+	}
+
+	public void testIndexVersion4() throws Exception
+	{
+		GitRepository repo = createRepo();
+		IPath workingDirectory = repo.workingDirectory();
+		writeFile(workingDirectory, "dir/one.txt", "1");
+		writeFile(workingDirectory, "dir/two.txt", "2");
+		writeFile(workingDirectory, "other/three.txt", "3");
+		assertTrue(repo.execute(GitRepository.ReadWrite.WRITE, "add", ".").isOK());
+		assertTrue(repo.execute(GitRepository.ReadWrite.WRITE, "update-index", "--index-version", "4").isOK());
+
+		Set<String> paths = stagedChanges(repo).keySet();
+		assertEquals(3, paths.size());
+		assertTrue(paths.contains("dir/one.txt"));
+		assertTrue(paths.contains("dir/two.txt"));
+		assertTrue(paths.contains("other/three.txt"));
+	}
+
+	public void testContentConversions() throws Exception
+	{
+		GitRepository repo = createRepo();
+		IPath workingDirectory = repo.workingDirectory();
+		writeFile(workingDirectory, "a.txt", "a");
+		assertTrue(repo.execute(GitRepository.ReadWrite.WRITE, "add", ".").isOK());
+
+		// The repository setting overrides any global one
+		assertTrue(repo.execute(GitRepository.ReadWrite.WRITE, "config", "core.autocrlf", "false").isOK());
+		assertFalse(repo.readIndexFile().tracksAttributes());
+		assertFalse(repo.mayConvertContents(repo.readIndexFile()));
+
+		assertTrue(repo.execute(GitRepository.ReadWrite.WRITE, "config", "core.autocrlf", "input").isOK());
+		assertTrue(repo.mayConvertContents(repo.readIndexFile()));
+		assertTrue(repo.execute(GitRepository.ReadWrite.WRITE, "config", "core.autocrlf", "false").isOK());
+
+		writeFile(workingDirectory, "dir/.gitattributes", "*.txt eol=crlf");
+		assertTrue(repo.execute(GitRepository.ReadWrite.WRITE, "add", ".").isOK());
+		assertTrue(repo.readIndexFile().tracksAttributes());
+		assertTrue(repo.mayConvertContents(repo.readIndexFile()));
+	}
+
+	private Map<String, List<String>> stagedChanges(GitRepository repo) throws Exception
+	{
+		return repo.readIndexFile().stagedChanges(repo.objectHeaders(), repo.objectContents(),
+				Collections.<String> emptySet());
+	}
+
+	private Map<String, List<String>> unstagedChanges(GitRepository repo, Set<String> paths) throws Exception
+	{
+		return repo.readIndexFile().unstagedChanges(repo.workingDirectory(), paths);
+	}
+
+	private void writeFile(IPath workingDirectory, String path, String contents) throws Exception
+	{
+		File file = workingDirectory.append(path).toFile();
+		file.getParentFile().mkdirs();
+		FileWriter writer = new FileWriter(file);
+		writer.write(contents);
+		writer.close();
+	}
+}
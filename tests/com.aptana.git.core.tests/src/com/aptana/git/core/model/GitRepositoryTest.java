@@ -615,6 +615,52 @@ public class GitRepositoryTest extends GitTestCase
 		assertTrue(urls.contains("git@github.com:user/newRemote.git"));
 	}
 
+	public void testCatFileAndRevParse() throws Throwable
+	{
+		testAddFileStageUnstageAndCommit();
+		GitRepository repo = getRepo();
+
+		IStatus status = repo.revParse(GitRepository.HEAD);
+		assertTrue(status.isOK());
+		assertEquals(repo.toSHA(GitRef.refFromString(GitRef.REFS_HEADS + "master")), status.getMessage());
+		assertFalse(repo.revParse("no-such-branch").isOK());
+
+		status = repo.catFile("HEAD:file.txt");
+		assertTrue(status.isOK());
+		assertEquals("Hello World!", status.getMessage());
+
+		// Stage a change, the index entry should be read again
+		FileWriter writer = new FileWriter(fileToAdd());
+		writer.write("Hello again!");
+		writer.close();
+		assertRefresh();
+		GitIndex index = repo.index();
+		assertStageFiles(index, index.changedFiles());
+
+		status = repo.catFile(":0:file.txt");
+		assertTrue(status.isOK());
+		assertEquals("Hello again!", status.getMessage());
+	}
+
+	public void testCatFileSeesIndexRewrittenWithSameTimestampAndSize() throws Throwable
+	{
+		testCatFileAndRevParse();
+		GitRepository repo = getRepo();
+		File index = repo.gitFile("index");
+		long modified = index.lastModified();
+
+		// Same length contents, and make the index look untouched
+		FileWriter writer = new FileWriter(fileToAdd());
+		writer.write("Hello there!");
+		writer.close();
+		assertTrue(repo.execute(GitRepository.ReadWrite.WRITE, "add", "file.txt").isOK());
+		assertTrue(index.setLastModified(modified));
+
+		IStatus status = repo.catFile(":0:file.txt");
+		assertTrue(status.isOK());
+		assertEquals("Hello there!", status.getMessage());
+	}
+
 	protected String fileToAdd() throws Exception
 	{
 		return getRepo().workingDirectory() + File.separator + "file.txt";
@@ -0,0 +1,76 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.git.core.model;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+@SuppressWarnings("nls")
+public class GitRevListTest extends GitTestCase
+{
+
+	public void testWalkRevisionList() throws Exception
+	{
+		GitRepository repo = createRepo();
+		commit(repo, "1", "-m", "First commit");
+		commit(repo, "2", "-m", "Second commit", "-m", "Has a body\nover two lines");
+		commit(repo, "3", "-m", "Third commit");
+
+		GitRevList revList = new GitRevList(repo);
+		assertTrue(revList.walkRevisionListWithSpecifier(null, new NullProgressMonitor()).isOK());
+		List<GitCommit> commits = revList.getCommits();
+		assertEquals(3, commits.size());
+		assertEquals("Third commit", commits.get(0).getSubject());
+		assertEquals("Third commit", commits.get(0).getComment());
+		assertEquals("Second commit", commits.get(1).getSubject());
+		// The body isn't listed with the commits, it's read when asked for
+		assertEquals("Second commit\n\nHas a body\nover two lines", commits.get(1).getComment());
+		assertEquals(commits.get(1).sha(), commits.get(0).parents().get(0));
+		assertFalse(commits.get(2).hasParent());
+	}
+
+	public void testWalkRevisionListWithListener() throws Exception
+	{
+		GitRepository repo = createRepo();
+		commit(repo, "1", "-m", "First commit");
+		commit(repo, "2", "-m", "Second commit");
+
+		final List<List<GitCommit>> pages = new ArrayList<List<GitCommit>>();
+		GitRevList revList = new GitRevList(repo);
+		assertTrue(revList.walkRevisionListWithSpecifier(null, 1, new IGitRevListListener()
+		{
+			public void commitsLoaded(List<GitCommit> commits)
+			{
+				pages.add(commits);
+			}
+		}, new NullProgressMonitor()).isOK());
+		assertEquals(1, pages.size());
+		assertEquals(1, pages.get(0).size());
+		assertEquals("Second commit", pages.get(0).get(0).getSubject());
+	}
+
+	private void commit(GitRepository repo, String contents, String... message) throws Exception
+	{
+		File file = repo.workingDirectory().append("file.txt").toFile();
+		FileWriter writer = new FileWriter(file);
+		writer.write(contents);
+		writer.close();
+		assertTrue(repo.execute(GitRepository.ReadWrite.WRITE, "add", "file.txt").isOK());
+		List<String> args = new ArrayList<String>();
+		args.add("commit");
+		for (String part : message)
+		{
+			args.add(part);
+		}
+		assertTrue(repo.execute(GitRepository.ReadWrite.WRITE, args.toArray(new String[args.size()])).isOK());
+	}
+}
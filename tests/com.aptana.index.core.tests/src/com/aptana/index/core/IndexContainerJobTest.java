@@ -6,6 +6,7 @@ import java.util.List;
 
 import junit.framework.TestCase;
 
+import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -17,6 +18,7 @@ import org.jmock.lib.legacy.ClassImposteriser;
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.FileUtil;
 import com.aptana.index.core.build.BuildContext;
+import com.aptana.internal.index.core.DocumentManifest;
 
 public class IndexContainerJobTest extends TestCase
 {
@@ -62,7 +64,7 @@ public class IndexContainerJobTest extends TestCase
 
 	public void testTypicalIndex() throws Exception
 	{
-		final File indexFile = File.createTempFile("fake_indexFile", ".index");
+		final DocumentManifest manifest = new DocumentManifest(File.createTempFile("fake_indexFile", ".manifest"));
 
 		// Generate some structure in the tmp dir
 		final File file1 = new File(tmpDir, "file1");
@@ -110,8 +112,8 @@ public class IndexContainerJobTest extends TestCase
 				oneOf(index).remove(URI.create(dir1.toURI().toString() + File.separator + "fileY"));
 				oneOf(index).remove(URI.create(dir1.toURI().toString() + File.separator + "fileZ"));
 
-				oneOf(index).getIndexFile();
-				will(returnValue(indexFile));
+				allowing(index).getManifest();
+				will(returnValue(manifest));
 
 				// We remove and index the files.
 				oneOf(index).remove(URI.create(file1.toURI().toString()));
@@ -128,5 +130,10 @@ public class IndexContainerJobTest extends TestCase
 		});
 		job.run(new NullProgressMonitor());
 		context.assertIsSatisfied();
+
+		// Every indexed file is recorded in the manifest, so an untouched file won't be indexed again
+		assertNotNull(manifest.get(file1.toURI().toString()));
+		assertNotNull(manifest.get(file5.toURI().toString()));
+		assertFalse(manifest.hasChanged(file1.toURI().toString(), EFS.getStore(file1.toURI())));
 	}
 }
@@ -13,6 +13,7 @@ public class IndexCoreTests extends TestCase
 		//$JUnit-BEGIN$
 		suite.addTestSuite(FileStoreBuildContextTest.class);
 		suite.addTestSuite(IndexContainerJobTest.class);
+		suite.addTestSuite(IndexRecordTest.class);
 		suite.addTestSuite(IndexTest.class);
 		//$JUnit-END$
 		return suite;
@@ -0,0 +1,109 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.aptana.jetty.util.epl.ajax.JSON;
+import com.aptana.jetty.util.epl.ajax.JSON.Convertible;
+import com.aptana.jetty.util.epl.ajax.JSON.Output;
+
+@SuppressWarnings("nls")
+public class IndexRecordTest extends TestCase
+{
+	private static class Element implements Convertible
+	{
+		@SuppressWarnings("rawtypes")
+		public void fromJSON(Map object)
+		{
+		}
+
+		public void toJSON(Output out)
+		{
+			out.add("name", "getElementById");
+			out.add("description", "Returns the element with the given id,\n\"quoted\" é中\0");
+			out.add("isMethod", true);
+			out.add("isConstructor", false);
+			out.add("count", -3L);
+			out.add("big", Long.MAX_VALUE);
+			out.add("ratio", 0.5);
+			out.add("userAgents", null);
+			out.add("types", Arrays.asList("String", "Number"));
+			out.add("parameters", new Object[] { new Element2() });
+		}
+	}
+
+	private static class Element2 implements Convertible
+	{
+		@SuppressWarnings("rawtypes")
+		public void fromJSON(Map object)
+		{
+		}
+
+		public void toJSON(Output out)
+		{
+			out.add("name", "id");
+			out.add("types", new String[0]);
+		}
+	}
+
+	public void testDecodeMatchesJSON()
+	{
+		Element element = new Element();
+		String record = IndexRecord.encode(element);
+
+		assertTrue(IndexRecord.isRecord(record, 0));
+
+		Map<?, ?> fromRecord = (Map<?, ?>) IndexRecord.decode(record, 0);
+		Map<?, ?> fromJSON = (Map<?, ?>) JSON.parse(JSON.toString(element));
+
+		assertEquals(fromJSON.keySet(), fromRecord.keySet());
+		assertEquals(fromJSON.get("name"), fromRecord.get("name"));
+		assertEquals(fromJSON.get("description"), fromRecord.get("description"));
+		assertSame(Boolean.TRUE, fromRecord.get("isMethod"));
+		assertSame(Boolean.FALSE, fromRecord.get("isConstructor"));
+		assertEquals(fromJSON.get("count"), fromRecord.get("count"));
+		assertEquals(fromJSON.get("big"), fromRecord.get("big"));
+		assertEquals(fromJSON.get("ratio"), fromRecord.get("ratio"));
+		assertTrue(fromRecord.containsKey("userAgents"));
+		assertNull(fromRecord.get("userAgents"));
+		assertTrue(Arrays.equals((Object[]) fromJSON.get("types"), (Object[]) fromRecord.get("types")));
+
+		Object[] parameters = (Object[]) fromRecord.get("parameters");
+		assertEquals(1, parameters.length);
+		assertEquals("id", ((Map<?, ?>) parameters[0]).get("name"));
+		assertEquals(0, ((Object[]) ((Map<?, ?>) parameters[0]).get("types")).length);
+	}
+
+	public void testDecodeAtOffset()
+	{
+		String word = "Document\0getElementById\0" + IndexRecord.encode(new Element2());
+
+		assertFalse(IndexRecord.isRecord(word, 0));
+		assertTrue(IndexRecord.isRecord(word, 24));
+		assertEquals("id", ((Map<?, ?>) IndexRecord.decode(word, 24)).get("name"));
+	}
+
+	public void testTruncatedRecord()
+	{
+		String record = IndexRecord.encode(new Element());
+
+		try
+		{
+			IndexRecord.decode(record.substring(0, record.length() / 2), 0);
+			fail("Expected an IllegalArgumentException");
+		}
+		catch (IllegalArgumentException e)
+		{
+			// expected
+		}
+	}
+}
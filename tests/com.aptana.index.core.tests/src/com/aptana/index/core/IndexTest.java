@@ -3,6 +3,8 @@ package com.aptana.index.core;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.List;
 import java.util.Set;
@@ -164,6 +166,58 @@ public class IndexTest extends TestCase
 		assertEquals("relative_path.rb", docs.iterator().next());
 	}
 
+	public void testRegexQueriesKeepTheirCaseSensitivity() throws Exception
+	{
+		createIndex("regex_case");
+		index.addEntry("category", "Key", new URI("upper.rb"));
+		index.addEntry("category", "key", new URI("lower.rb"));
+
+		// the same regex text is compiled differently for each case sensitivity
+		assertEquals(1, index.query(new String[] { "category" }, "key",
+				SearchPattern.REGEX_MATCH | SearchPattern.CASE_SENSITIVE).size());
+		assertEquals(2, index.query(new String[] { "category" }, "key", SearchPattern.REGEX_MATCH).size());
+		assertEquals(1, index.query(new String[] { "category" }, "key",
+				SearchPattern.REGEX_MATCH | SearchPattern.CASE_SENSITIVE).size());
+	}
+
+	public void testConcurrentPatternQueries() throws Exception
+	{
+		createIndex("concurrent_patterns");
+		for (int i = 0; i < 10; i++)
+		{
+			index.addEntry("category", "key" + i, new URI("file" + i + ".rb"));
+		}
+
+		final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++)
+		{
+			threads[t] = new Thread("Query " + t)
+			{
+				public void run()
+				{
+					// more distinct patterns than the cache holds, so it also gets cleared while others read it
+					for (int i = 0; i < 1000; i++)
+					{
+						String pattern = "key" + (i % 10) + "|x" + i;
+						List<QueryResult> result = index.query(new String[] { "category" }, pattern,
+								SearchPattern.REGEX_MATCH | SearchPattern.CASE_SENSITIVE);
+						if (result == null || result.size() != 1)
+						{
+							failures.add(pattern + " -> " + result);
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+		assertEquals(Collections.emptyList(), failures);
+	}
+
 	public void testQueryDocumentNames() throws Exception
 	{
 		createIndex("query_doc_names");
@@ -260,6 +314,42 @@ public class IndexTest extends TestCase
 		// categories/words/files?
 	}
 
+	public void testStagingIndexQueriesFallThroughToIndex() throws Exception
+	{
+		createIndex("staging");
+		index.addEntry("type", "Foo", new URI("foo.js"));
+		index.addEntry("type", "Bar", new URI("bar.js"));
+
+		Index staging = index.createStagingIndex();
+		// bar.js is re-indexed in the staging index and no longer declares Bar
+		staging.remove(new URI("bar.js"));
+		staging.addEntry("type", "Baz", new URI("bar.js"));
+
+		List<QueryResult> results = staging.query(new String[] { "type" }, "Foo", SearchPattern.EXACT_MATCH
+				| SearchPattern.CASE_SENSITIVE);
+		assertEquals(1, results.size());
+		assertEquals(Collections.singleton("foo.js"), results.get(0).getDocuments());
+
+		results = staging.query(new String[] { "type" }, "Bar", SearchPattern.EXACT_MATCH
+				| SearchPattern.CASE_SENSITIVE);
+		assertTrue(results.isEmpty());
+
+		results = staging.query(new String[] { "type" }, "Baz", SearchPattern.EXACT_MATCH
+				| SearchPattern.CASE_SENSITIVE);
+		assertEquals(1, results.size());
+		assertEquals(Collections.singleton("bar.js"), results.get(0).getDocuments());
+
+		Set<String> documents = staging.queryDocumentNames(null);
+		assertEquals(2, documents.size());
+		assertTrue(documents.contains("foo.js"));
+		assertTrue(documents.contains("bar.js"));
+
+		// the real index doesn't see the staged entries until they are merged
+		results = index.query(new String[] { "type" }, "Baz", SearchPattern.EXACT_MATCH
+				| SearchPattern.CASE_SENSITIVE);
+		assertTrue(results == null || results.isEmpty());
+	}
+
 	public void testSave() throws Exception
 	{
 		// add an entry...
@@ -7,6 +7,8 @@ import junit.framework.TestSuite;
 import com.aptana.index.core.IndexCoreTests;
 import com.aptana.index.core.build.BuildContextTest;
 import com.aptana.internal.index.core.DiskIndexTest;
+import com.aptana.internal.index.core.DocumentManifestTest;
+import com.aptana.internal.index.core.MemoryIndexTest;
 
 public class AllIndexCoreTests extends TestCase
 {
@@ -16,6 +18,8 @@ public class AllIndexCoreTests extends TestCase
 		TestSuite suite = new TestSuite(AllIndexCoreTests.class.getName());
 		// $JUnit-BEGIN$
 		suite.addTestSuite(DiskIndexTest.class);
+		suite.addTestSuite(DocumentManifestTest.class);
+		suite.addTestSuite(MemoryIndexTest.class);
 		suite.addTestSuite(BuildContextTest.class);
 		suite.addTest(IndexCoreTests.suite());
 		// $JUnit-END$
@@ -10,6 +10,7 @@ package com.aptana.internal.index.core;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Map;
 
 import junit.framework.TestCase;
 
@@ -18,6 +19,8 @@ import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Platform;
 
 import com.aptana.core.util.ResourceUtil;
+import com.aptana.index.core.QueryResult;
+import com.aptana.index.core.SearchPattern;
 
 @SuppressWarnings("nls")
 public class DiskIndexTest extends TestCase
@@ -44,4 +47,105 @@ public class DiskIndexTest extends TestCase
 			fail("Expected an IOException, so that we'd catch it up the stack and clean up the index. Instead we got a NegativeArraySizeException!");
 		}
 	}
+
+	public void testReadBackMergedIndex() throws Exception
+	{
+		File file = File.createTempFile("disk", ".index");
+		file.delete();
+
+		try
+		{
+			DiskIndex index = new DiskIndex(file.getAbsolutePath());
+			index.initialize(false);
+
+			MemoryIndex memoryIndex = new MemoryIndex();
+			for (int i = 0; i < 300; i++)
+			{
+				memoryIndex.addEntry("category", "word" + (i % 10), "doc" + i);
+				memoryIndex.addEntry("large", "everywhere", "doc" + i);
+			}
+			index.mergeWith(memoryIndex);
+
+			// re-open so everything is read back through the mapped file
+			index = new DiskIndex(file.getAbsolutePath());
+			index.initialize(true);
+
+			assertEquals(300, index.getDocuments().size());
+
+			Map<String, QueryResult> results = index.addQueryResults(new String[] { "category" }, "word3",
+					SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE, null);
+			assertEquals(30, results.get("word3").getDocuments().size());
+
+			results = index.addQueryResults(new String[] { "large" }, "everywhere", SearchPattern.EXACT_MATCH
+					| SearchPattern.CASE_SENSITIVE, null);
+			assertEquals(300, results.get("everywhere").getDocuments().size());
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	public void testPrefixAndPatternQueries() throws Exception
+	{
+		File file = File.createTempFile("disk", ".index");
+		file.delete();
+
+		try
+		{
+			DiskIndex index = new DiskIndex(file.getAbsolutePath());
+			index.initialize(false);
+
+			MemoryIndex memoryIndex = new MemoryIndex();
+			String[] words = { "getElementById", "getelementsbyname", "GetAttribute", "setAttribute", "get", "zed" };
+			for (int i = 0; i < words.length; i++)
+			{
+				memoryIndex.addEntry("functions", words[i], "doc" + i);
+			}
+			index = index.mergeWith(memoryIndex);
+
+			// re-open so the dictionary is built from the words as they were written to disk
+			index = new DiskIndex(file.getAbsolutePath());
+			index.initialize(true);
+
+			String[] categories = new String[] { "functions" };
+			Map<String, QueryResult> results = index.addQueryResults(categories, "getE", SearchPattern.PREFIX_MATCH,
+					null);
+			assertEquals(2, results.size());
+			assertTrue(results.containsKey("getElementById"));
+			assertTrue(results.containsKey("getelementsbyname"));
+
+			results = index.addQueryResults(categories, "get", SearchPattern.PREFIX_MATCH
+					| SearchPattern.CASE_SENSITIVE, null);
+			assertEquals(3, results.size());
+			assertFalse(results.containsKey("GetAttribute"));
+
+			results = index.addQueryResults(categories, "GETATTRIBUTE", SearchPattern.EXACT_MATCH, null);
+			assertEquals(1, results.size());
+			assertEquals("[doc2]", results.get("GetAttribute").getDocuments().toString());
+
+			results = index.addQueryResults(categories, "*attribute", SearchPattern.PATTERN_MATCH, null);
+			assertEquals(2, results.size());
+
+			results = index.addQueryResults(categories, "nothing", SearchPattern.PREFIX_MATCH, null);
+			assertNull(results);
+
+			// the memory index answers the same queries for documents that haven't been saved yet
+			memoryIndex = new MemoryIndex();
+			memoryIndex.addEntry("functions", "getComputedStyle", "doc6");
+			memoryIndex.remove("doc0");
+			results = index.addQueryResults(categories, "getE", SearchPattern.PREFIX_MATCH, memoryIndex);
+			results = memoryIndex.addQueryResults(categories, "getE", SearchPattern.PREFIX_MATCH, results);
+			assertEquals(1, results.size());
+			assertTrue(results.containsKey("getelementsbyname"));
+
+			results = memoryIndex.addQueryResults(categories, "GETc", SearchPattern.PREFIX_MATCH, null);
+			assertEquals(1, results.size());
+			assertTrue(results.containsKey("getComputedStyle"));
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
 }
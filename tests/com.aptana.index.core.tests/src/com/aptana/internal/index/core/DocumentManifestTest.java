@@ -0,0 +1,93 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import java.io.File;
+import java.io.FileWriter;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.filesystem.EFS;
+
+@SuppressWarnings("nls")
+public class DocumentManifestTest extends TestCase
+{
+
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		file = File.createTempFile("document", ".manifest");
+		file.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		file.delete();
+		new File(file.getPath() + ".tmp").delete();
+		super.tearDown();
+	}
+
+	public void testSaveAndLoad() throws Exception
+	{
+		DocumentManifest manifest = new DocumentManifest(file);
+		manifest.put("a.js", new DocumentManifest.Entry(1, 2, 3));
+		manifest.put("b.js", new DocumentManifest.Entry(4, 5, Long.MIN_VALUE));
+		manifest.save();
+		assertTrue(file.isFile());
+		assertFalse(new File(file.getPath() + ".tmp").exists());
+
+		// saving again replaces the existing file
+		manifest.remove("a.js");
+		manifest.save();
+
+		manifest = new DocumentManifest(file);
+		manifest.load();
+		assertNull(manifest.get("a.js"));
+		DocumentManifest.Entry entry = manifest.get("b.js");
+		assertEquals(4, entry.size);
+		assertEquals(5, entry.lastModified);
+		assertEquals(Long.MIN_VALUE, entry.checksum);
+	}
+
+	public void testChecksumTellsSameSizeContentsApart() throws Exception
+	{
+		File document = File.createTempFile("document", ".js");
+
+		try
+		{
+			write(document, "var a = 1;");
+			long checksum = DocumentManifest.computeChecksum(EFS.getLocalFileSystem().fromLocalFile(document));
+			assertEquals(checksum, DocumentManifest.computeChecksum(EFS.getLocalFileSystem().fromLocalFile(document)));
+
+			write(document, "var b = 1;");
+			assertFalse(checksum == DocumentManifest.computeChecksum(EFS.getLocalFileSystem().fromLocalFile(document)));
+		}
+		finally
+		{
+			document.delete();
+		}
+	}
+
+	private static void write(File document, String contents) throws Exception
+	{
+		FileWriter writer = new FileWriter(document);
+
+		try
+		{
+			writer.write(contents);
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+}
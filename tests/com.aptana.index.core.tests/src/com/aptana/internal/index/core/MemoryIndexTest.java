@@ -0,0 +1,104 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.internal.index.core;
+
+import java.util.Map;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+import com.aptana.index.core.QueryResult;
+import com.aptana.index.core.SearchPattern;
+
+@SuppressWarnings("nls")
+public class MemoryIndexTest extends TestCase
+{
+
+	private static final String[] CATEGORIES = new String[] { "functions" };
+
+	private MemoryIndex index;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		index = new MemoryIndex();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		index = null;
+		super.tearDown();
+	}
+
+	public void testQueriesSeeEntriesAddedAfterTheFirstQuery() throws Exception
+	{
+		index.addEntry("functions", "getElementById", "doc0");
+		assertEquals("[getElementById]", query("gete", SearchPattern.PREFIX_MATCH));
+
+		index.addEntry("functions", "getElementsByName", "doc1");
+		index.addEntry("functions", "GetAttribute", "doc1");
+		index.addEntry("variables", "getEverything", "doc1");
+		assertEquals("[getElementById, getElementsByName]", query("gete", SearchPattern.PREFIX_MATCH));
+		assertEquals("[GetAttribute]", query("getattribute", SearchPattern.EXACT_MATCH));
+		assertEquals("[]", query("getattribute", SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE));
+		assertEquals("[GetAttribute, getElementById, getElementsByName]", query("*t*", SearchPattern.PATTERN_MATCH));
+	}
+
+	public void testQueriesDropRemovedDocuments() throws Exception
+	{
+		index.addEntry("functions", "getElementById", "doc0");
+		index.addEntry("functions", "getElementById", "doc1");
+		index.addEntry("functions", "getElementsByName", "doc1");
+		assertEquals("[getElementById, getElementsByName]", query("getE", SearchPattern.PREFIX_MATCH));
+
+		index.remove("doc1");
+		Map<String, QueryResult> results = index.addQueryResults(CATEGORIES, "getE", SearchPattern.PREFIX_MATCH,
+				null);
+		assertEquals(1, results.size());
+		assertEquals("[doc0]", results.get("getElementById").getDocuments().toString());
+
+		// re-adding a removed document
+		index.addEntry("functions", "getElementsByName", "doc1");
+		assertEquals("[getElementById, getElementsByName]", query("getE", SearchPattern.PREFIX_MATCH));
+	}
+
+	public void testQueriesSeeMergedEntries() throws Exception
+	{
+		index.addEntry("functions", "getElementById", "doc0");
+		index.addEntry("functions", "getElementsByName", "doc1");
+		assertEquals("[getElementById, getElementsByName]", query("getE", SearchPattern.PREFIX_MATCH));
+
+		// doc1 is replaced and doc0 removed
+		MemoryIndex other = new MemoryIndex();
+		other.addEntry("functions", "getComputedStyle", "doc1");
+		other.remove("doc0");
+		index.addEntries(other);
+
+		assertEquals("[]", query("getE", SearchPattern.PREFIX_MATCH));
+		assertEquals("[getComputedStyle]", query("get", SearchPattern.PREFIX_MATCH));
+		assertFalse(index.hasDocument("doc0"));
+		assertTrue(index.hasChanges("doc0"));
+	}
+
+	public void testQueriesDropRemovedCategories() throws Exception
+	{
+		index.addEntry("functions", "getElementById", "doc0");
+		assertEquals("[getElementById]", query("getE", SearchPattern.PREFIX_MATCH));
+
+		index.removeCategories(CATEGORIES);
+		assertEquals("[]", query("getE", SearchPattern.PREFIX_MATCH));
+	}
+
+	private String query(String key, int matchRule)
+	{
+		Map<String, QueryResult> results = index.addQueryResults(CATEGORIES, key, matchRule, null);
+		return new TreeSet<String>(results.keySet()).toString();
+	}
+}
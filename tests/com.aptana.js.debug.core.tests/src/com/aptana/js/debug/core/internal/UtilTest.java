@@ -0,0 +1,65 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.aptana.js.debug.core.internal;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("nls")
+public class UtilTest extends TestCase {
+
+	private static final char[] ALPHABET = { 'a', 'b', '*', '|', ' ', '#' };
+
+	public void testSplit() {
+		assertSplit("", '*');
+		assertSplit("abc", '*');
+		assertSplit("*", '*');
+		assertSplit("**", '*');
+		assertSplit("*a", '*');
+		assertSplit("a*", '*');
+		assertSplit("a**", '*');
+		assertSplit("a**b", '*');
+		assertSplit("frames*1*2|f|g", '*');
+		assertSplit("name|type|flags|", '|');
+		assertSplit("name|type|flags|| ", '|');
+	}
+
+	public void testSplitMatchesStringSplit() {
+		Random random = new Random(42);
+		for (int i = 0; i < 10000; ++i) {
+			char[] chars = new char[random.nextInt(16)];
+			for (int j = 0; j < chars.length; ++j) {
+				chars[j] = ALPHABET[random.nextInt(ALPHABET.length)];
+			}
+			String string = new String(chars);
+			assertSplit(string, '*');
+			assertSplit(string, '|');
+		}
+	}
+
+	public void testEncodeDecode() {
+		String[] strings = { "", "plain", "a*b", "a|b", "a#b", "*|#", "#2", "#1*#0|" };
+		for (String string : strings) {
+			String encoded = Util.encodeData(string);
+			assertEquals(-1, encoded.indexOf('*'));
+			assertEquals(-1, encoded.indexOf('|'));
+			assertEquals(string, Util.decodeData(encoded));
+		}
+	}
+
+	private static void assertSplit(String string, char separator) {
+		String[] expected = string.split(Pattern.quote(String.valueOf(separator)));
+		String[] actual = Util.split(string, separator);
+		assertTrue("Splitting \"" + string + "\" around '" + separator + "': expected " + Arrays.toString(expected)
+				+ " but was " + Arrays.toString(actual), Arrays.equals(expected, actual));
+	}
+}
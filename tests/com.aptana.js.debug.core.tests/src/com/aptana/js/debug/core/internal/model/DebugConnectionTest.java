@@ -0,0 +1,223 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.aptana.js.debug.core.internal.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("nls")
+public class DebugConnectionTest extends TestCase {
+
+	private static final int TIMEOUT = 5000;
+
+	private Socket hostSocket;
+	private Reader hostReader;
+	private Writer hostWriter;
+	private DebugConnection connection;
+	private final List<String[]> messages = Collections.synchronizedList(new ArrayList<String[]>());
+	private final CountDownLatch shutdown = new CountDownLatch(1);
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+		try {
+			Socket socket = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+			hostSocket = serverSocket.accept();
+			hostSocket.setSoTimeout(TIMEOUT);
+			hostReader = new BufferedReader(new InputStreamReader(hostSocket.getInputStream()));
+			hostWriter = new OutputStreamWriter(hostSocket.getOutputStream());
+			connection = DebugConnection.createConnection(socket);
+		} finally {
+			serverSocket.close();
+		}
+		connection.start(new DebugConnection.IHandler() {
+			public void handleMessage(String[] args) {
+				messages.add(args);
+			}
+
+			public void handleShutdown() {
+				shutdown.countDown();
+			}
+		});
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		// the host going away ends the reader thread, as it does when debugging ends
+		hostSocket.close();
+		shutdown.await(TIMEOUT, TimeUnit.MILLISECONDS);
+		connection.stop();
+		connection.dispose();
+		messages.clear();
+		super.tearDown();
+	}
+
+	public void testResponsesAreMatchedByRequestId() throws Exception {
+		List<Future<String[]>> futures = connection.sendCommandsAsync(Arrays.asList("first", "second", "third"));
+		List<String[]> commands = new ArrayList<String[]>();
+		for (int i = 0; i < 3; ++i) {
+			commands.add(readCommand());
+		}
+		assertEquals("first", commands.get(0)[1]);
+		assertEquals("second", commands.get(1)[1]);
+		assertEquals("third", commands.get(2)[1]);
+
+		// answers out of order
+		Collections.reverse(commands);
+		for (String[] command : commands) {
+			reply(command[0], "result", command[1]);
+		}
+
+		assertResponse("first", futures.get(0));
+		assertResponse("second", futures.get(1));
+		assertResponse("third", futures.get(2));
+		assertTrue(messages.isEmpty());
+	}
+
+	public void testRequestIdsAreUnique() throws Exception {
+		int count = 100;
+		List<String> list = new ArrayList<String>();
+		for (int i = 0; i < count; ++i) {
+			list.add("command" + i);
+		}
+		connection.sendCommandsAsync(list);
+		List<String> reqids = new ArrayList<String>();
+		for (int i = 0; i < count; ++i) {
+			String reqid = readCommand()[0];
+			assertFalse(reqids.contains(reqid));
+			reqids.add(reqid);
+		}
+	}
+
+	public void testConcurrentCallers() throws Exception {
+		final int callers = 20;
+		final int calls = 10;
+		Thread host = new Thread("Debug host") {
+			public void run() {
+				try {
+					for (int i = 0; i < callers * calls; ++i) {
+						String[] command = readCommand();
+						reply(command[0], "result", command[1]);
+					}
+				} catch (IOException e) {
+				}
+			}
+		};
+		host.start();
+
+		final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+		Thread[] threads = new Thread[callers];
+		for (int i = 0; i < callers; ++i) {
+			final int caller = i;
+			threads[i] = new Thread("Caller " + i) {
+				public void run() {
+					for (int j = 0; j < calls; ++j) {
+						String command = "caller" + caller + "call" + j;
+						try {
+							String[] response = connection.sendCommandAndWait(command);
+							if (response == null || response.length < 3 || !command.equals(response[2])) {
+								failures.add(command + " got " + (response == null ? null : Arrays.asList(response)));
+							}
+						} catch (Exception e) {
+							failures.add(command + " failed with " + e);
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join(TIMEOUT * 2);
+		}
+		host.join(TIMEOUT);
+		assertEquals(Collections.emptyList(), failures);
+		assertTrue(messages.isEmpty());
+	}
+
+	public void testOtherMessagesGoToHandler() throws Exception {
+		writeMessage("suspended*1*breakpoint");
+		Future<String[]> future = connection.sendCommandAsync("frames");
+		String[] command = readCommand();
+		reply(command[0], "frames");
+		assertResponse("frames", future);
+
+		// the reader thread handled the message before the reply
+		assertEquals(1, messages.size());
+		assertEquals(Arrays.asList("suspended", "1", "breakpoint"), Arrays.asList(messages.get(0)));
+	}
+
+	public void testOversizedMessageTerminatesConnection() throws Exception {
+		hostWriter.write(Integer.toString(DebugConnection.MAX_MESSAGE_SIZE + 1) + "*");
+		hostWriter.flush();
+		assertTrue(shutdown.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertTrue(connection.isTerminated());
+	}
+
+	private static void assertResponse(String expected, Future<String[]> future) throws Exception {
+		String[] response = future.get(TIMEOUT, TimeUnit.MILLISECONDS);
+		assertNotNull(response);
+		assertEquals(expected, response[response.length - 1]);
+	}
+
+	/**
+	 * Reads a command sent by the connection, returning its request id and the command itself
+	 */
+	private String[] readCommand() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		int ch;
+		while ((ch = hostReader.read()) != '*') {
+			if (ch == -1) {
+				throw new IOException("Connection closed");
+			}
+			sb.append((char) ch);
+		}
+		char[] buffer = new char[Integer.parseInt(sb.toString())];
+		int length = 0;
+		while (length < buffer.length) {
+			int n = hostReader.read(buffer, length, buffer.length - length);
+			if (n == -1) {
+				throw new IOException("Connection closed");
+			}
+			length += n;
+		}
+		String message = new String(buffer);
+		int index = message.indexOf('*');
+		return new String[] { message.substring(0, index), message.substring(index + 1) };
+	}
+
+	private void reply(String reqid, String... args) throws IOException {
+		StringBuilder sb = new StringBuilder(reqid);
+		for (String arg : args) {
+			sb.append('*').append(arg);
+		}
+		writeMessage(sb.toString());
+	}
+
+	private synchronized void writeMessage(String message) throws IOException {
+		hostWriter.write(message.length() + "*" + message);
+		hostWriter.flush();
+	}
+}
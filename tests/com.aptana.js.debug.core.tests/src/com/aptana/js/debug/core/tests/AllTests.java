@@ -0,0 +1,28 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.debug.core.tests;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import com.aptana.js.debug.core.internal.UtilTest;
+import com.aptana.js.debug.core.internal.model.DebugConnectionTest;
+
+public class AllTests
+{
+
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite(AllTests.class.getName());
+		// $JUnit-BEGIN$
+		suite.addTestSuite(UtilTest.class);
+		suite.addTestSuite(DebugConnectionTest.class);
+		// $JUnit-END$
+		return suite;
+	}
+}
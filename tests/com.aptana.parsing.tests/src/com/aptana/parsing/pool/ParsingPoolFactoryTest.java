@@ -17,6 +17,7 @@ import com.aptana.parsing.IParseState;
 import com.aptana.parsing.IParseStateCacheKey;
 import com.aptana.parsing.IParser;
 import com.aptana.parsing.IParserPool;
+import com.aptana.parsing.ParseCache;
 import com.aptana.parsing.ParseState;
 import com.aptana.parsing.ParseStateCacheKeyWithComments;
 import com.aptana.parsing.ParsingEngine;
@@ -317,4 +318,70 @@ public class ParsingPoolFactoryTest extends TestCase
 		assertEquals(3, parser.parses);
 	}
 
+	public void testCacheStatistics() throws Exception
+	{
+		queue.add(parseRootNode);
+		parsingEngine.parse("test", new ParseState("abc", 0));
+		parsingEngine.parse("test", new ParseState("abc", 0));
+		assertEquals(1, parser.parses);
+
+		ParseCache.Statistics statistics = parsingEngine.getCacheStatistics().get("test");
+		assertEquals(1, statistics.getHits());
+		assertEquals(1, statistics.getMisses());
+		assertEquals(0, statistics.getEvictions());
+	}
+
+	public void testCacheEvictsWhenOverNodeBudget() throws Exception
+	{
+		// every AST in this test is a single node, so only one fits
+		parsingEngine = new ParsingEngine(new ParserPoolProvider(parserPool), ParseCache.DEFAULT_BYTE_LIMIT, 1);
+
+		queue.add(parseRootNode);
+		queue.add(parseRootNode);
+		queue.add(parseRootNode);
+		parsingEngine.parse("test", new ParseState("a", 0));
+		parsingEngine.parse("test", new ParseState("b", 0));
+		parsingEngine.parse("test", new ParseState("b", 0));
+		assertEquals(2, parser.parses);
+
+		parsingEngine.parse("test", new ParseState("a", 0));
+		assertEquals(3, parser.parses);
+		assertEquals(2, parsingEngine.getCacheStatistics().get("test").getEvictions());
+	}
+
+	public void testPlainParseReusesParseWithComments() throws Exception
+	{
+		queue.add(parseRootNode);
+
+		IParseRootNode ast = parsingEngine.parse("test", new ParseStateCollectingComments("abc", 0));
+		assertEquals(parseRootNode, ast);
+
+		// a plain parse state asks for all comments, which the cached result has
+		ast = parsingEngine.parse("test", new ParseState("abc", 0));
+		assertEquals(parseRootNode, ast);
+		assertEquals(1, parser.parses);
+
+		parsingEngine.clearCache();
+		queue.add(parseRootNode);
+		queue.add(parseRootNode);
+
+		parsingEngine.parse("test", new ParseStateNotCollectingComments("abc", 0));
+		parsingEngine.parse("test", new ParseState("abc", 0));
+		assertEquals(3, parser.parses);
+	}
+
+	public void testLargeSourcesAreKeyedByContent() throws Exception
+	{
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 100; i++)
+		{
+			builder.append("var x").append(i).append(" = 0;\n");
+		}
+		String source = builder.toString();
+		// same length, same first, middle and last chars
+		String other = source.replace("x5 ", "y5 ");
+
+		assertEquals(new ParseState(source).getCacheKey("test"), new ParseState(source).getCacheKey("test"));
+		assertFalse(new ParseState(source).getCacheKey("test").equals(new ParseState(other).getCacheKey("test")));
+	}
 }
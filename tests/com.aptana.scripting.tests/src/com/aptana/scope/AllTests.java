@@ -17,6 +17,7 @@ public class AllTests
 		TestSuite suite = new TestSuite("Tests for com.aptana.scope");
 		// $JUnit-BEGIN$
 		suite.addTestSuite(ScopeSelectorTests.class);
+		suite.addTestSuite(ScopeSelectorIndexTests.class);
 		suite.addTestSuite(AndSelectorTests.class);
 		suite.addTestSuite(NameSelectorTests.class);
 		suite.addTestSuite(OrSelectorTests.class);
@@ -0,0 +1,96 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.scope;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class ScopeSelectorIndexTests extends TestCase
+{
+	private static final String[] SCOPES = new String[] {
+			"source.php string.quoted",
+			"text.html.markdown meta.disable-markdown meta.tag.block.any.html entity.name.tag.block.any.html",
+			"text.html.markdown meta.disable-markdown meta.tag.block.any.html string.quoted.double.html",
+			"source.js constant.numeric.js",
+			"source.js string.quoted.single.js",
+			"text.html.basic source.php.embedded.html string.unquoted.heredoc.php",
+			"text.html.ruby source.ruby comment.line",
+			"comment.block.documentation",
+			"keyword.control" };
+
+	private Map<IScopeSelector, String> selectors;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		selectors = new LinkedHashMap<IScopeSelector, String>();
+		for (String selector : Arrays.asList("entity", "meta.tag entity", "string", "source.php", "string.quoted",
+				"source.js constant.numeric", "source.js string",
+				"string - string.unquoted.old-plist - string.unquoted.heredoc, string.unquoted.heredoc string",
+				"text source string", "source string", "comment | keyword", "text.html (source.ruby & comment)",
+				"source - source.php"))
+		{
+			selectors.put(new ScopeSelector(selector), selector);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		selectors = null;
+
+		super.tearDown();
+	}
+
+	public void testSameResultsAsBestMatch()
+	{
+		ScopeSelectorIndex<String> index = new ScopeSelectorIndex<String>(selectors);
+
+		for (String scope : SCOPES)
+		{
+			IScopeSelector expected = ScopeSelector.bestMatch(selectors.keySet(), scope);
+
+			assertEquals(scope, expected, index.getBestMatchingSelector(scope));
+			assertEquals(scope, selectors.get(expected), index.getBestMatch(scope));
+			// memoized
+			assertEquals(scope, selectors.get(expected), index.getBestMatch(scope));
+		}
+	}
+
+	public void testNoMatch()
+	{
+		ScopeSelectorIndex<String> index = new ScopeSelectorIndex<String>(selectors);
+
+		assertNull(index.getBestMatch("markup.bold"));
+		assertNull(index.getBestMatch(null));
+	}
+
+	public void testMatchAnyIsUnindexed()
+	{
+		selectors.put(new MatchAnyScopeSelector(), "any");
+		ScopeSelectorIndex<String> index = new ScopeSelectorIndex<String>(selectors);
+
+		assertEquals("any", index.getBestMatch("markup.bold"));
+		assertEquals("string.quoted", index.getBestMatch("source.php string.quoted"));
+	}
+
+	public void testMatchDoesNotKeepState()
+	{
+		ScopeSelector selector = new ScopeSelector("meta.tag entity");
+		String scope = "text.html.markdown meta.disable-markdown meta.tag.block.any.html entity.name.tag.block.any.html";
+
+		assertEquals(Arrays.asList(0, 0, 8, 6), selector.match(scope));
+		assertNull(selector.match("source.js"));
+		assertTrue(selector.getMatchResults().isEmpty());
+	}
+}
@@ -0,0 +1,163 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.scripting.listeners;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import net.contentobjects.jnotify.IJNotify;
+
+import com.aptana.filewatcher.FileEvent;
+import com.aptana.scripting.model.CommandContext;
+import com.aptana.scripting.model.CommandElement;
+import com.aptana.scripting.model.CommandResult;
+import com.aptana.scripting.model.TriggerType;
+
+@SuppressWarnings("nls")
+public class FileWatcherRegistrantTest extends TestCase
+{
+
+	private static final long TIMEOUT = 10000;
+
+	private File root;
+	private CommandElement command;
+	private BlockingQueue<Map<String, String>> executions;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		root = File.createTempFile("watched", "");
+		root.delete();
+		root.mkdirs();
+		executions = new LinkedBlockingQueue<Map<String, String>>();
+		command = new CommandElement(new File(root.getParentFile(), "watcher.rb").getPath())
+		{
+			@SuppressWarnings("unchecked")
+			@Override
+			public CommandResult execute(CommandContext context)
+			{
+				executions.add((Map<String, String>) context.get(TriggerType.FILE_WATCHER.getName()));
+				return null;
+			}
+		};
+		command.setDisplayName("watcher");
+		command.setTrigger(TriggerType.FILE_WATCHER.getName(), new String[] { root.getPath() });
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		try
+		{
+			FileWatcherRegistrant.getInstance().removeWatcher(command);
+		}
+		finally
+		{
+			File[] children = root.listFiles();
+			if (children != null)
+			{
+				for (File child : children)
+				{
+					child.delete();
+				}
+			}
+			root.delete();
+			super.tearDown();
+		}
+	}
+
+	public void testCreatedPropertyMap()
+	{
+		Map<String, String> expected = new HashMap<String, String>();
+		expected.put("type", "created");
+		expected.put("rootPath", "/root");
+		expected.put("name", "a.txt");
+		assertEquals(expected, FileWatcherRegistrant.createPropertyMap(new FileEvent(IJNotify.FILE_CREATED, 1,
+				"/root", "a.txt", null)));
+	}
+
+	public void testDeletedPropertyMap()
+	{
+		Map<String, String> expected = new HashMap<String, String>();
+		expected.put("type", "deleted");
+		expected.put("rootPath", "/root");
+		expected.put("name", "a.txt");
+		assertEquals(expected, FileWatcherRegistrant.createPropertyMap(new FileEvent(IJNotify.FILE_DELETED, 1,
+				"/root", "a.txt", null)));
+	}
+
+	public void testModifiedPropertyMap()
+	{
+		Map<String, String> expected = new HashMap<String, String>();
+		expected.put("type", "modified");
+		expected.put("rootPath", "/root");
+		expected.put("name", "a.txt");
+		assertEquals(expected, FileWatcherRegistrant.createPropertyMap(new FileEvent(IJNotify.FILE_MODIFIED, 1,
+				"/root", "a.txt", null)));
+	}
+
+	public void testRenamedPropertyMap()
+	{
+		// renames have always been passed on as deletions of the old name
+		Map<String, String> expected = new HashMap<String, String>();
+		expected.put("type", "deleted");
+		expected.put("rootPath", "/root");
+		expected.put("oldName", "old.txt");
+		expected.put("newName", "new.txt");
+		assertEquals(expected, FileWatcherRegistrant.createPropertyMap(new FileEvent(IJNotify.FILE_RENAMED, 1,
+				"/root", "new.txt", "old.txt")));
+	}
+
+	public void testCommandRunsForEachChangedFile() throws Exception
+	{
+		FileWatcherRegistrant.getInstance().addWatcher(command);
+
+		createFile("a.txt");
+		createFile("b.txt");
+
+		// the two files usually arrive in one batch, the command still sees each of them
+		Set<String> names = new HashSet<String>();
+		long end = System.currentTimeMillis() + TIMEOUT;
+		while (names.size() < 2)
+		{
+			Map<String, String> properties = executions.poll(end - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+			assertNotNull("Command not run for " + names, properties);
+			assertEquals("created", properties.get("type"));
+			assertEquals(root.getPath(), properties.get("rootPath"));
+			names.add(properties.get("name"));
+		}
+		Set<String> expected = new HashSet<String>();
+		expected.add("a.txt");
+		expected.add("b.txt");
+		assertEquals(expected, names);
+	}
+
+	private void createFile(String name) throws IOException
+	{
+		FileOutputStream out = new FileOutputStream(new File(root, name));
+		try
+		{
+			out.write(name.getBytes());
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+}
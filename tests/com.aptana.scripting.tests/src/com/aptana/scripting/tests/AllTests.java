@@ -12,6 +12,7 @@ import junit.framework.TestResult;
 import junit.framework.TestSuite;
 
 import com.aptana.scripting.BundleConverterTest;
+import com.aptana.scripting.listeners.FileWatcherRegistrantTest;
 
 public class AllTests
 {
@@ -33,6 +34,7 @@ public class AllTests
 		suite.addTest(com.aptana.scope.parsing.AllScopeParsingTests.suite());
 		suite.addTestSuite(BundleConverterTest.class);
 		suite.addTestSuite(UnicodeCharsJRubyTest.class);
+		suite.addTestSuite(FileWatcherRegistrantTest.class);
 		// $JUnit-END$
 		return suite;
 	}
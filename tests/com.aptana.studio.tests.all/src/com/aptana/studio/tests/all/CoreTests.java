@@ -29,6 +29,7 @@ public class CoreTests
 		suite.addTest(com.aptana.buildpath.core.tests.BuildPathCoreTests.suite());
 		suite.addTest(com.aptana.core.tests.AllTests.suite());
 		suite.addTest(com.aptana.core.io.tests.AllTests.suite());
+		suite.addTest(com.aptana.filewatcher.tests.AllTests.suite());
 		// suite.addTest(com.aptana.filesystem.ftp.tests.AllTests.suite());
 		// suite.addTest(com.aptana.filesystem.secureftp.tests.AllTests.suite());
 		suite.addTest(com.aptana.filesystem.http.tests.AllTests.suite());
@@ -39,6 +40,7 @@ public class CoreTests
 		suite.addTest(com.aptana.samples.tests.AllTests.suite());
 		suite.addTest(com.aptana.scripting.tests.AllTests.suite());
 		suite.addTest(com.aptana.jira.core.tests.AllJiraCoreTests.suite());
+		suite.addTest(com.aptana.js.debug.core.tests.AllTests.suite());
 		// suite.addTest(com.aptana.syncing.core.tests.AllTests.suite());
 		// $JUnit-END$
 		return suite;
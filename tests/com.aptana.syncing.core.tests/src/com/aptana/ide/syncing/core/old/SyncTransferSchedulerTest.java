@@ -0,0 +1,221 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.syncing.core.old;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.filesystem.provider.FileInfo;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+public class SyncTransferSchedulerTest extends TestCase
+{
+
+	private File sourceFolder;
+	private File destinationFolder;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		sourceFolder = createFolder("source"); //$NON-NLS-1$
+		destinationFolder = createFolder("destination"); //$NON-NLS-1$
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		delete(sourceFolder);
+		delete(destinationFolder);
+		super.tearDown();
+	}
+
+	public void testSmallestFirst() throws Exception
+	{
+		SyncTransferScheduler scheduler = new SyncTransferScheduler(1, null);
+		add(scheduler, "large.txt", 3000); //$NON-NLS-1$
+		add(scheduler, "small.txt", 10); //$NON-NLS-1$
+		add(scheduler, "medium.txt", 200); //$NON-NLS-1$
+		assertEquals(3, scheduler.size());
+		scheduler.start();
+
+		List<String> names = new ArrayList<String>();
+		SyncTransferScheduler.Transfer transfer;
+		while ((transfer = scheduler.take()) != null)
+		{
+			assertTrue(transfer.isCompleted());
+			assertNull(transfer.getError());
+			names.add(transfer.getSource().getName());
+		}
+		assertEquals("[small.txt, medium.txt, large.txt]", names.toString()); //$NON-NLS-1$
+		assertEquals(3210, scheduler.getBytesTransferred());
+		assertEquals(3000, new File(destinationFolder, "large.txt").length()); //$NON-NLS-1$
+	}
+
+	public void testStopBeforeStartSkipsEverything() throws Exception
+	{
+		SyncTransferScheduler scheduler = new SyncTransferScheduler(2, null);
+		add(scheduler, "a.txt", 10); //$NON-NLS-1$
+		add(scheduler, "b.txt", 20); //$NON-NLS-1$
+		add(scheduler, "c.txt", 30); //$NON-NLS-1$
+		scheduler.stop();
+		scheduler.start();
+
+		assertNull(scheduler.take());
+		assertEquals(0, scheduler.getBytesTransferred());
+		assertEquals(0, destinationFolder.list().length);
+	}
+
+	public void testCanceledMonitorSkipsEverything() throws Exception
+	{
+		NullProgressMonitor monitor = new NullProgressMonitor();
+		monitor.setCanceled(true);
+		SyncTransferScheduler scheduler = new SyncTransferScheduler(2, monitor);
+		add(scheduler, "a.txt", 10); //$NON-NLS-1$
+		add(scheduler, "b.txt", 20); //$NON-NLS-1$
+		scheduler.start();
+
+		assertNull(scheduler.take());
+		assertEquals(0, scheduler.getBytesTransferred());
+		assertEquals(0, destinationFolder.list().length);
+	}
+
+	public void testStopLetsRunningTransfersComplete() throws Exception
+	{
+		SyncTransferScheduler scheduler = new SyncTransferScheduler(1, null);
+		final CountDownLatch running = new CountDownLatch(1);
+		final CountDownLatch resume = new CountDownLatch(1);
+		File file = createFile("first.txt", 1); //$NON-NLS-1$
+		FileInfo blockingInfo = new FileInfo(file.getName())
+		{
+			@Override
+			public boolean isDirectory()
+			{
+				running.countDown();
+				try
+				{
+					resume.await();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				return false;
+			}
+		};
+		blockingInfo.setExists(true);
+		blockingInfo.setLength(1);
+		scheduler.add(null, EFS.getLocalFileSystem().fromLocalFile(file), blockingInfo, EFS.getLocalFileSystem()
+				.fromLocalFile(new File(destinationFolder, file.getName())), true, true);
+		for (int i = 0; i < 5; ++i)
+		{
+			add(scheduler, "file" + i + ".txt", 100); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		scheduler.start();
+
+		assertTrue(running.await(5, TimeUnit.SECONDS));
+		scheduler.stop();
+		resume.countDown();
+
+		SyncTransferScheduler.Transfer transfer = scheduler.take();
+		assertNotNull(transfer);
+		assertTrue(transfer.isCompleted());
+		assertEquals("first.txt", transfer.getSource().getName()); //$NON-NLS-1$
+		// the transfers that had not started are skipped and not returned
+		assertNull(scheduler.take());
+		assertEquals(1, scheduler.getBytesTransferred());
+		assertEquals(1, destinationFolder.list().length);
+	}
+
+	public void testErrorIsReportedAndOtherTransfersContinue() throws Exception
+	{
+		SyncTransferScheduler scheduler = new SyncTransferScheduler(1, null);
+		File file = createFile("broken.txt", 1); //$NON-NLS-1$
+		FileInfo brokenInfo = new FileInfo(file.getName())
+		{
+			@Override
+			public boolean isDirectory()
+			{
+				throw new LinkageError("broken"); //$NON-NLS-1$
+			}
+		};
+		brokenInfo.setExists(true);
+		brokenInfo.setLength(1);
+		scheduler.add(null, EFS.getLocalFileSystem().fromLocalFile(file), brokenInfo, EFS.getLocalFileSystem()
+				.fromLocalFile(new File(destinationFolder, file.getName())), true, true);
+		add(scheduler, "good.txt", 10); //$NON-NLS-1$
+		scheduler.start();
+
+		SyncTransferScheduler.Transfer broken = scheduler.take();
+		assertNotNull(broken);
+		assertFalse(broken.isCompleted());
+		assertTrue(broken.getError() instanceof CoreException);
+		assertTrue(((CoreException) broken.getError()).getStatus().getException() instanceof LinkageError);
+
+		SyncTransferScheduler.Transfer good = scheduler.take();
+		assertNotNull(good);
+		assertTrue(good.isCompleted());
+		assertNull(scheduler.take());
+		assertEquals(10, scheduler.getBytesTransferred());
+	}
+
+	private void add(SyncTransferScheduler scheduler, String name, int length) throws IOException, CoreException
+	{
+		IFileStore source = EFS.getLocalFileSystem().fromLocalFile(createFile(name, length));
+		IFileInfo sourceInfo = source.fetchInfo();
+		IFileStore destination = EFS.getLocalFileSystem().fromLocalFile(new File(destinationFolder, name));
+		scheduler.add(null, source, sourceInfo, destination, true, true);
+	}
+
+	private File createFile(String name, int length) throws IOException
+	{
+		File file = new File(sourceFolder, name);
+		FileOutputStream out = new FileOutputStream(file);
+		try
+		{
+			out.write(new byte[length]);
+		}
+		finally
+		{
+			out.close();
+		}
+		return file;
+	}
+
+	private static File createFolder(String prefix) throws IOException
+	{
+		File folder = File.createTempFile(prefix, ""); //$NON-NLS-1$
+		folder.delete();
+		folder.mkdirs();
+		return folder;
+	}
+
+	private static void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if (children != null)
+		{
+			for (File child : children)
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
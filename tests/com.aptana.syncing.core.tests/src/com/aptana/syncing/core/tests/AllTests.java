@@ -12,6 +12,8 @@ import org.kohsuke.junit.ParallelTestSuite;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
+import com.aptana.ide.syncing.core.old.SyncTransferSchedulerTest;
+
 public class AllTests
 {
 
@@ -19,6 +21,8 @@ public class AllTests
 	{
 		TestSuite suite = new ParallelTestSuite(AllTests.class.getName(), 2);
 		// $JUnit-BEGIN$
+		suite.addTestSuite(SyncManifestTest.class);
+		suite.addTestSuite(SyncTransferSchedulerTest.class);
 		suite.addTestSuite(LocalSyncingTests.class);
 		suite.addTestSuite(LocalSyncingTestsWithSpaces.class);
 		suite.addTestSuite(FTPSyncingTests.class);
@@ -0,0 +1,121 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.syncing.core.tests;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.provider.FileInfo;
+
+import com.aptana.ide.syncing.core.old.SyncManifest;
+
+public class SyncManifestTest extends TestCase
+{
+
+	private static final String KEY = "file:/client -> ftp://server/root"; //$NON-NLS-1$
+
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		file = File.createTempFile("sync", ".manifest"); //$NON-NLS-1$ //$NON-NLS-2$
+		file.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		file.delete();
+		file = null;
+		super.tearDown();
+	}
+
+	public void testNewManifestIsIncomplete() throws Exception
+	{
+		SyncManifest manifest = new SyncManifest(file, KEY);
+		assertFalse(manifest.isComplete());
+		assertEquals(0, manifest.size());
+	}
+
+	public void testSaveAndLoad() throws Exception
+	{
+		SyncManifest manifest = new SyncManifest(file, KEY);
+		manifest.put("css", createInfo("css", true, 0, 1000L)); //$NON-NLS-1$ //$NON-NLS-2$
+		manifest.put("css/site.css", createInfo("site.css", false, 42, 2000L)); //$NON-NLS-1$ //$NON-NLS-2$
+		manifest.markComplete();
+		manifest.save();
+		assertTrue(file.isFile());
+
+		manifest = new SyncManifest(file, KEY);
+		assertTrue(manifest.isComplete());
+		assertEquals(2, manifest.size());
+		assertEquals(1, manifest.getFilePaths().size());
+
+		IFileInfo info = manifest.get("css/site.css"); //$NON-NLS-1$
+		assertNotNull(info);
+		assertTrue(info.exists());
+		assertFalse(info.isDirectory());
+		assertEquals("site.css", info.getName()); //$NON-NLS-1$
+		assertEquals(42, info.getLength());
+		assertEquals(2000L, info.getLastModified());
+		assertTrue(manifest.get("css").isDirectory()); //$NON-NLS-1$
+	}
+
+	public void testManifestForOtherRootsIsIgnored() throws Exception
+	{
+		SyncManifest manifest = new SyncManifest(file, KEY);
+		manifest.put("index.html", createInfo("index.html", false, 10, 1000L)); //$NON-NLS-1$ //$NON-NLS-2$
+		manifest.markComplete();
+		manifest.save();
+
+		manifest = new SyncManifest(file, "file:/client -> ftp://other/root"); //$NON-NLS-1$
+		assertFalse(manifest.isComplete());
+		assertEquals(0, manifest.size());
+	}
+
+	public void testRemoveDirectoryRemovesChildren() throws Exception
+	{
+		SyncManifest manifest = new SyncManifest(file, KEY);
+		manifest.put("js", createInfo("js", true, 0, 1000L)); //$NON-NLS-1$ //$NON-NLS-2$
+		manifest.put("js/app.js", createInfo("app.js", false, 10, 1000L)); //$NON-NLS-1$ //$NON-NLS-2$
+		manifest.put("js/lib/jquery.js", createInfo("jquery.js", false, 20, 1000L)); //$NON-NLS-1$ //$NON-NLS-2$
+		manifest.put("json.txt", createInfo("json.txt", false, 30, 1000L)); //$NON-NLS-1$ //$NON-NLS-2$
+
+		manifest.remove("js"); //$NON-NLS-1$
+		assertEquals(1, manifest.size());
+		assertNotNull(manifest.get("json.txt")); //$NON-NLS-1$
+	}
+
+	public void testInvalidate() throws Exception
+	{
+		SyncManifest manifest = new SyncManifest(file, KEY);
+		manifest.put("index.html", createInfo("index.html", false, 10, 1000L)); //$NON-NLS-1$ //$NON-NLS-2$
+		manifest.markComplete();
+		manifest.save();
+
+		manifest.invalidate();
+		manifest.save();
+		manifest = new SyncManifest(file, KEY);
+		assertFalse(manifest.isComplete());
+		assertEquals(0, manifest.size());
+	}
+
+	private static IFileInfo createInfo(String name, boolean directory, long length, long lastModified)
+	{
+		FileInfo info = new FileInfo(name);
+		info.setExists(true);
+		info.setDirectory(directory);
+		info.setLength(length);
+		info.setLastModified(lastModified);
+		return info;
+	}
+}
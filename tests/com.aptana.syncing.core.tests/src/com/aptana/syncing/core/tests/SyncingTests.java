@@ -35,6 +35,7 @@ import com.aptana.ide.core.io.CoreIOPlugin;
 import com.aptana.ide.core.io.IConnectionPoint;
 import com.aptana.ide.syncing.core.SyncingPlugin;
 import com.aptana.ide.syncing.core.old.ILogger;
+import com.aptana.ide.syncing.core.old.SyncManifest;
 import com.aptana.ide.syncing.core.old.SyncState;
 import com.aptana.ide.syncing.core.old.Synchronizer;
 import com.aptana.ide.syncing.core.old.VirtualFileSyncPair;
@@ -431,8 +432,30 @@ public abstract class SyncingTests extends TestCase
 	 */
 	protected VirtualFileSyncPair[] getSyncItems(boolean useCRC, int timeTolerance, IFileStore clientRoot,
 			IFileStore serverRoot) throws IOException, CoreException
+	{
+		return this.getSyncItems(useCRC, timeTolerance, clientRoot, serverRoot, null, false);
+	}
+
+	/**
+	 * getSyncItems
+	 * 
+	 * @param useCRC
+	 * @param timeTolerance
+	 * @param clientRoot
+	 * @param serverRoot
+	 * @param manifest
+	 * @param listFromManifest
+	 * @return SyncItem[]
+	 * @throws IOException
+	 * @throws CoreException
+	 */
+	protected VirtualFileSyncPair[] getSyncItems(boolean useCRC, int timeTolerance, IFileStore clientRoot,
+			IFileStore serverRoot, SyncManifest manifest, boolean listFromManifest) throws IOException,
+			CoreException
 	{
 		Synchronizer syncManager = new Synchronizer(useCRC, timeTolerance);
+		syncManager.setManifest(manifest);
+		syncManager.setListFromManifest(listFromManifest);
 
 		syncManager.setLogger(new ILogger()
 		{
@@ -458,6 +481,60 @@ public abstract class SyncingTests extends TestCase
 		return syncManager.getSyncItems(clientManager, serverManager, clientRoot, serverRoot, null);
 	}
 
+	/*
+	 * Manifest Tests
+	 */
+
+	public void testManifestIsOnlyUsedForUploads() throws IOException, CoreException
+	{
+		File file = File.createTempFile("sync", ".manifest"); //$NON-NLS-1$ //$NON-NLS-2$
+		file.delete();
+		try
+		{
+			long currentTime = new Date().getTime();
+			this.createServerFile("a.txt", currentTime); //$NON-NLS-1$
+
+			// the first sync lists the server and fills the manifest
+			SyncManifest manifest = new SyncManifest(file, serverDirectory.toString());
+			assertSyncPairLength(1, this.getSyncItems(false, 0, clientDirectory, serverDirectory, manifest, true));
+			assertTrue(manifest.isComplete());
+
+			// someone else adds a file to the server
+			this.createServerFile("b.txt", currentTime); //$NON-NLS-1$
+
+			// downloads and two-way syncs still list the server
+			assertSyncPairLength(2, this.getSyncItems(false, 0, clientDirectory, serverDirectory, manifest, false));
+			// which also refreshed the manifest
+			assertEquals(2, manifest.getFilePaths().size());
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	public void testEmptyManifestIsNotTrusted() throws IOException, CoreException
+	{
+		File file = File.createTempFile("sync", ".manifest"); //$NON-NLS-1$ //$NON-NLS-2$
+		file.delete();
+		try
+		{
+			SyncManifest manifest = new SyncManifest(file, serverDirectory.toString());
+			assertSyncPairLength(0, this.getSyncItems(false, 0, clientDirectory, serverDirectory, manifest, true));
+			assertTrue(manifest.isComplete());
+
+			// with no recorded file to check, an upload lists the server too
+			this.createServerFile("a.txt", new Date().getTime()); //$NON-NLS-1$
+			VirtualFileSyncPair[] items = this.getSyncItems(false, 0, clientDirectory, serverDirectory, manifest, true);
+			assertSyncPairLength(1, items);
+			assertEquals(SyncState.ServerItemOnly, items[0].getSyncState());
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
 	/*
 	 * Sync Item Tests
 	 */
@@ -19,6 +19,7 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.zip.GZIPInputStream;
 
 import junit.framework.TestCase;
 
@@ -73,4 +74,150 @@ public class LocalWebServerTest extends TestCase
 			}
 		}
 	}
+
+	public void testConditionalGet() throws IOException, CoreException
+	{
+		File dir = createDocumentRoot();
+		LocalWebServer webServer = null;
+		try
+		{
+			webServer = new LocalWebServer(EFS.getLocalFileSystem().fromLocalFile(dir).toURI());
+			URL url = new URL(webServer.getBaseURL(), "index.html"); //$NON-NLS-1$
+			HttpURLConnection connection = openConnection(url);
+			assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+			String eTag = connection.getHeaderField("ETag"); //$NON-NLS-1$
+			String lastModified = connection.getHeaderField("Last-Modified"); //$NON-NLS-1$
+			assertNotNull(eTag);
+			assertNotNull(lastModified);
+			assertEquals(PAGE_CONTENTS, readContents(connection.getInputStream()));
+
+			connection = openConnection(url);
+			connection.setRequestProperty("If-None-Match", eTag); //$NON-NLS-1$
+			assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, connection.getResponseCode());
+			connection.disconnect();
+
+			connection = openConnection(url);
+			connection.setRequestProperty("If-Modified-Since", lastModified); //$NON-NLS-1$
+			assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, connection.getResponseCode());
+			connection.disconnect();
+
+			connection = openConnection(url);
+			connection.setRequestProperty("If-None-Match", "\"stale\""); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+			assertEquals(PAGE_CONTENTS, readContents(connection.getInputStream()));
+		}
+		finally
+		{
+			if (webServer != null)
+			{
+				webServer.stop(true, new NullProgressMonitor());
+			}
+		}
+	}
+
+	public void testRangeGet() throws IOException, CoreException
+	{
+		File dir = createDocumentRoot();
+		LocalWebServer webServer = null;
+		try
+		{
+			webServer = new LocalWebServer(EFS.getLocalFileSystem().fromLocalFile(dir).toURI());
+			URL url = new URL(webServer.getBaseURL(), "index.html"); //$NON-NLS-1$
+			HttpURLConnection connection = openConnection(url);
+			connection.setRequestProperty("Range", "bytes=6-11"); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals(HttpURLConnection.HTTP_PARTIAL, connection.getResponseCode());
+			assertEquals("bytes 6-11/" + PAGE_CONTENTS.length(), connection.getHeaderField("Content-Range")); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals(PAGE_CONTENTS.substring(6, 12), readContents(connection.getInputStream()));
+
+			connection = openConnection(url);
+			connection.setRequestProperty("Range", "bytes=-7"); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals(HttpURLConnection.HTTP_PARTIAL, connection.getResponseCode());
+			assertEquals(PAGE_CONTENTS.substring(PAGE_CONTENTS.length() - 7), readContents(connection.getInputStream()));
+
+			connection = openConnection(url);
+			connection.setRequestProperty("Range", "bytes=1000-"); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals(416, connection.getResponseCode());
+			connection.disconnect();
+		}
+		finally
+		{
+			if (webServer != null)
+			{
+				webServer.stop(true, new NullProgressMonitor());
+			}
+		}
+	}
+
+	public void testGzipGet() throws IOException, CoreException
+	{
+		File dir = createDocumentRoot();
+		StringBuffer text = new StringBuffer();
+		for (int i = 0; i < 100; ++i)
+		{
+			text.append(PAGE_CONTENTS).append('\n');
+		}
+		File file = new File(dir, "large.html"); //$NON-NLS-1$
+		OutputStreamWriter w = new OutputStreamWriter(new FileOutputStream(file));
+		w.write(text.toString());
+		w.close();
+
+		LocalWebServer webServer = null;
+		try
+		{
+			webServer = new LocalWebServer(EFS.getLocalFileSystem().fromLocalFile(dir).toURI());
+			URL url = new URL(webServer.getBaseURL(), "large.html"); //$NON-NLS-1$
+			HttpURLConnection connection = openConnection(url);
+			connection.setRequestProperty("Accept-Encoding", "gzip"); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+			assertEquals("gzip", connection.getContentEncoding()); //$NON-NLS-1$
+			assertTrue(connection.getContentLength() < file.length());
+			assertEquals(text.toString(), readContents(new GZIPInputStream(connection.getInputStream())));
+
+			connection = openConnection(url);
+			assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+			assertNull(connection.getContentEncoding());
+			assertEquals(text.toString(), readContents(connection.getInputStream()));
+		}
+		finally
+		{
+			if (webServer != null)
+			{
+				webServer.stop(true, new NullProgressMonitor());
+			}
+		}
+	}
+
+	private File createDocumentRoot() throws IOException
+	{
+		File dir = File.createTempFile(getClass().getSimpleName(), "temp"); //$NON-NLS-1$
+		assertTrue(dir.delete());
+		assertTrue(dir.mkdir());
+		File file = new File(dir, "index.html"); //$NON-NLS-1$
+		OutputStreamWriter w = new OutputStreamWriter(new FileOutputStream(file));
+		w.write(PAGE_CONTENTS);
+		w.close();
+		return dir;
+	}
+
+	private static HttpURLConnection openConnection(URL url) throws IOException
+	{
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setAllowUserInteraction(false);
+		connection.setUseCaches(false);
+		return connection;
+	}
+
+	private static String readContents(InputStream stream) throws IOException
+	{
+		InputStreamReader in = new InputStreamReader(stream);
+		StringBuffer sb = new StringBuffer();
+		int n;
+		char[] cbuf = new char[1024];
+		while ((n = in.read(cbuf)) > 0)
+		{
+			sb.append(cbuf, 0, n);
+		}
+		in.close();
+		return sb.toString();
+	}
 }